@@ -40,6 +40,7 @@ import com.mkulesh.micromath.fman.FileType;
 import com.mkulesh.micromath.fman.FileUtils;
 import com.mkulesh.micromath.formula.FormulaList;
 import com.mkulesh.micromath.plus.R;
+import com.mkulesh.micromath.utils.TraceEvents;
 import com.mkulesh.micromath.utils.ViewUtils;
 import com.mkulesh.micromath.widgets.FloatingButtonsSet;
 
@@ -58,6 +59,8 @@ abstract public class BaseFragment extends Fragment implements OnClickListener
     public static final String OPENED_FILE_EMPTY = "";
     public static final String FILE_READING_OPERATION = "file_reading_operation";
     public static final String DEVELOPER_MODE = "developer_mode";
+    public static final String CALCULATION_PROFILER = "calculation_profiler";
+    public static final String TRACE_EVENTS = "trace_events";
 
     /**
      * Class members.
@@ -100,6 +103,15 @@ abstract public class BaseFragment extends Fragment implements OnClickListener
         secondaryButtonsSet = (FloatingButtonsSet) rootView.findViewById(R.id.main_flb_set_secondary);
 
         preferences = PreferenceManager.getDefaultSharedPreferences(activity);
+        TraceEvents.setEnabled(isTraceEventsEnabled());
+    }
+
+    @Override
+    public void onResume()
+    {
+        // the developer options could be changed in the settings activity
+        TraceEvents.setEnabled(isTraceEventsEnabled());
+        super.onResume();
     }
 
     @Override
@@ -404,6 +416,22 @@ abstract public class BaseFragment extends Fragment implements OnClickListener
         return false;
     }
 
+    /**
+     * Procedure returns true if the calculation profiler is enabled in the developer options
+     */
+    public boolean isCalculationProfilerEnabled()
+    {
+        return isDeveloperMode() && preferences.getBoolean(CALCULATION_PROFILER, false);
+    }
+
+    /**
+     * Procedure returns true if the recording of trace events is enabled in the developer options
+     */
+    public boolean isTraceEventsEnabled()
+    {
+        return isDeveloperMode() && preferences.getBoolean(TRACE_EVENTS, false);
+    }
+
     public int getFragmentNumber()
     {
         return fragmentNumber;
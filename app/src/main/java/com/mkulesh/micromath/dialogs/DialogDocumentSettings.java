@@ -23,6 +23,7 @@ import android.support.v7.widget.AppCompatEditText;
 import android.view.View;
 import android.widget.CheckBox;
 
+import com.mkulesh.micromath.math.QuasiMonteCarlo;
 import com.mkulesh.micromath.plus.R;
 import com.mkulesh.micromath.properties.DocumentProperties;
 import com.mkulesh.micromath.properties.DocumentPropertiesChangeIf;
@@ -33,8 +34,8 @@ public class DialogDocumentSettings extends DialogBase
     private final DocumentPropertiesChangeIf changeIf;
     private final DocumentProperties documentSettings;
     private final AppCompatEditText author, title, description;
-    private final HorizontalNumberPicker textWidthPicker, significantDigitsPicker;
-    private final CheckBox reformatBox, redefineAllowed;
+    private final HorizontalNumberPicker textWidthPicker, significantDigitsPicker, sampleBudgetPicker;
+    private final CheckBox reformatBox, redefineAllowed, plotFastMath;
 
     public DialogDocumentSettings(Activity context, DocumentPropertiesChangeIf changeIf,
                                   DocumentProperties documentSettings)
@@ -69,6 +70,14 @@ public class DialogDocumentSettings extends DialogBase
             significantDigitsPicker.maxValue = significantDigitsLimit[1];
         }
 
+        sampleBudgetPicker = findViewById(R.id.dialog_text_sample_budget);
+        sampleBudgetPicker.minValue = QuasiMonteCarlo.MIN_SAMPLE_BUDGET;
+        sampleBudgetPicker.maxValue = QuasiMonteCarlo.MAX_SAMPLE_BUDGET;
+        sampleBudgetPicker.setValue(QuasiMonteCarlo.limitSampleBudget(documentSettings.sampleBudget));
+
+        plotFastMath = findViewById(R.id.dialog_checkbox_plot_fast_math);
+        plotFastMath.setChecked(documentSettings.plotFastMath);
+
         redefineAllowed = findViewById(R.id.dialog_checkbox_redefine_allowed);
         redefineAllowed.setChecked(documentSettings.redefineAllowed);
     }
@@ -107,6 +116,16 @@ public class DialogDocumentSettings extends DialogBase
                     documentSettings.significantDigits = significantDigitsPicker.getValue();
                     isChanged = true;
                 }
+                if (documentSettings.sampleBudget != sampleBudgetPicker.getValue())
+                {
+                    documentSettings.sampleBudget = sampleBudgetPicker.getValue();
+                    isChanged = true;
+                }
+                if (documentSettings.plotFastMath != plotFastMath.isChecked())
+                {
+                    documentSettings.plotFastMath = plotFastMath.isChecked();
+                    isChanged = true;
+                }
                 if (documentSettings.redefineAllowed != redefineAllowed.isChecked())
                 {
                     documentSettings.redefineAllowed = redefineAllowed.isChecked();
@@ -98,6 +98,17 @@ public class DialogResultDetails extends DialogBase
         initialize(calculatedItems, doc);
     }
 
+    public DialogResultDetails(Context context, CalculatedValue value, DocumentProperties doc)
+    {
+        super(context, R.layout.dialog_result_details, R.string.action_details);
+
+        // Create data container
+        final ArrayList<ArgumentValueItem> calculatedItems = new ArrayList<>(1);
+        calculatedItems.add(new ArgumentValueItem(0, value));
+
+        initialize(calculatedItems, doc);
+    }
+
     public DialogResultDetails(Context context, double[] args, double[] vals, DocumentProperties doc)
     {
         super(context, R.layout.dialog_result_details, R.string.action_details);
@@ -129,6 +140,30 @@ public class DialogResultDetails extends DialogBase
                 + getContext().getString(R.string.dialog_list_items));
     }
 
+    /**
+     * Procedure shows the details of the last calculation, like the number of used series terms
+     */
+    public void setCalculationDetails(ArrayList<String> details)
+    {
+        final TextView detailsView = (TextView) findViewById(R.id.result_details_calculation);
+        if (details == null || details.isEmpty())
+        {
+            detailsView.setVisibility(View.GONE);
+            return;
+        }
+        final StringBuilder text = new StringBuilder();
+        for (String s : details)
+        {
+            if (text.length() > 0)
+            {
+                text.append("\n");
+            }
+            text.append(s);
+        }
+        detailsView.setText(text.toString());
+        detailsView.setVisibility(View.VISIBLE);
+    }
+
     private final class ArgumentValueAdapter extends ArrayAdapter<ArgumentValueItem>
     {
         private final DocumentProperties doc;
@@ -154,10 +189,10 @@ public class DialogResultDetails extends DialogBase
 
             // Lookup view for data population
             final TextView tvArgument = (TextView) convertView.findViewById(R.id.result_details_item_argument);
-            tvArgument.setText(item.argument.getResultDescription(doc));
+            tvArgument.setText(item.argument.getResultDescription(doc.significantDigits));
 
             final TextView tvValue = (TextView) convertView.findViewById(R.id.result_details_item_value);
-            tvValue.setText(item.value.getResultDescription(doc));
+            tvValue.setText(item.value.getResultDescription(doc.significantDigits));
 
             // To avoid a bug on some Android versions, set color to
             // TextView's instead of parent layout
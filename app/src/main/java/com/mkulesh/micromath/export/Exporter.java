@@ -28,6 +28,7 @@ import com.mkulesh.micromath.fman.FileType;
 import com.mkulesh.micromath.fman.FileUtils;
 import com.mkulesh.micromath.formula.FormulaList;
 import com.mkulesh.micromath.plus.R;
+import com.mkulesh.micromath.utils.TraceEvents;
 import com.mkulesh.micromath.utils.ViewUtils;
 
 import java.io.OutputStream;
@@ -53,6 +54,8 @@ public class Exporter
             {
                 return false;
             }
+            final String traceName = "Exporter " + fileType.toString();
+            TraceEvents.begin(traceName, TraceEvents.CATEGORY_EXPORT);
             try
             {
                 switch (fileType)
@@ -96,6 +99,10 @@ public class Exporter
                 ViewUtils.Debug(activity, error + ", " + e.getLocalizedMessage());
                 Toast.makeText(activity, error, Toast.LENGTH_LONG).show();
             }
+            finally
+            {
+                TraceEvents.end(traceName, TraceEvents.CATEGORY_EXPORT);
+            }
         }
         return false;
     }
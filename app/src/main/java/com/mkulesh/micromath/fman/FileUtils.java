@@ -24,6 +24,8 @@ import android.content.pm.ApplicationInfo;
 import android.content.res.AssetManager;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
 import android.provider.OpenableColumns;
 import android.text.TextUtils;
 import android.webkit.MimeTypeMap;
@@ -37,6 +39,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -364,6 +367,56 @@ public final class FileUtils
         return null;
     }
 
+    /**
+     * Procedure opens the given file as a channel that can be memory-mapped. Returns null for the assets and for
+     * the content providers that do not give a file descriptor
+     */
+    public static FileChannel getFileChannel(final Context c, final Uri u)
+    {
+        if (isAssetUri(u))
+        {
+            return null;
+        }
+        try
+        {
+            final ParcelFileDescriptor pfd = c.getContentResolver().openFileDescriptor(u, "r");
+            if (pfd != null)
+            {
+                return new ParcelFileDescriptor.AutoCloseInputStream(pfd).getChannel();
+            }
+        }
+        catch (Exception e)
+        {
+            ViewUtils.Debug(c, "cannot open file channel: " + e.getLocalizedMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Procedure opens a channel that writes the given file from its beginning. It does not show any message and can
+     * be called from a calculation thread
+     */
+    public static FileChannel getOutputChannel(final Context c, final Uri u)
+    {
+        if (isAssetUri(u))
+        {
+            return null;
+        }
+        try
+        {
+            final ParcelFileDescriptor pfd = c.getContentResolver().openFileDescriptor(u, "wt");
+            if (pfd != null)
+            {
+                return new ParcelFileDescriptor.AutoCloseOutputStream(pfd).getChannel();
+            }
+        }
+        catch (Exception e)
+        {
+            ViewUtils.Debug(c, "cannot open output channel: " + e.getLocalizedMessage());
+        }
+        return null;
+    }
+
     public static OutputStream getOutputStream(final Context c, final Uri u)
     {
         try
@@ -449,6 +502,59 @@ public final class FileUtils
         return result;
     }
 
+    /**
+     * Procedure returns a stamp that is changed if the content of the given file is changed: the size and the time
+     * of the last modification. Returns null if these properties are not known
+     */
+    public static String getFileStamp(final Context c, final Uri uri)
+    {
+        if (isAssetUri(uri))
+        {
+            // assets are only changed together with the application
+            return "asset:" + getAppTimeStamp(c);
+        }
+        if (isContentUri(uri))
+        {
+            String result = null;
+            Cursor cursor = null;
+            try
+            {
+                cursor = c.getContentResolver().query(uri, null, null, null, null);
+                if (cursor != null && cursor.moveToFirst())
+                {
+                    final int sizeIdx = cursor.getColumnIndex(OpenableColumns.SIZE);
+                    final int dateIdx = cursor.getColumnIndex(DocumentsContract.Document.COLUMN_LAST_MODIFIED);
+                    if (sizeIdx >= 0 && dateIdx >= 0 && !cursor.isNull(sizeIdx) && !cursor.isNull(dateIdx))
+                    {
+                        result = cursor.getLong(sizeIdx) + ":" + cursor.getLong(dateIdx);
+                    }
+                }
+            }
+            catch (Exception e)
+            {
+                ViewUtils.Debug(c, "cannot resolve file stamp: " + e.getLocalizedMessage());
+            }
+            finally
+            {
+                if (cursor != null)
+                {
+                    cursor.close();
+                }
+            }
+            return result;
+        }
+        final Uri fileUri = ensureScheme(uri);
+        if ("file".equals(fileUri.getScheme()) && fileUri.getPath() != null)
+        {
+            final File f = new File(fileUri.getPath());
+            if (f.isFile())
+            {
+                return f.length() + ":" + f.lastModified();
+            }
+        }
+        return null;
+    }
+
     static public Uri getParentDirectory(final Uri uri)
     {
         final List<String> segments = uri.getPathSegments();
@@ -18,8 +18,8 @@
  ******************************************************************************/
 package com.mkulesh.micromath.formula;
 
-import com.mkulesh.micromath.formula.CalculaterTask.CancelException;
 import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CancelException;
 
 public interface CalculatableIf
 {
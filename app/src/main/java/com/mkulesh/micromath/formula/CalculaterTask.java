@@ -23,29 +23,133 @@ import android.view.View;
 import android.view.View.OnClickListener;
 import android.widget.Toast;
 
+import com.mkulesh.micromath.math.CalculationThreadIf;
+import com.mkulesh.micromath.math.CancelException;
 import com.mkulesh.micromath.plus.R;
+import com.mkulesh.micromath.utils.TraceEvents;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 
-public class CalculaterTask extends AsyncTask<Void, CalculationResult, Void> implements OnClickListener
+public class CalculaterTask extends AsyncTask<Void, CalculationResult, Void> implements OnClickListener,
+        CalculationThreadIf
 {
-    public static final class CancelException extends Exception
-    {
-        private static final long serialVersionUID = 4916095827341L;
+    /**
+     * Calculation budgets: the time is given in milliseconds, an evaluation is one iteration of a loop over the
+     * formula values (interval points, series terms, integrand points, function calls)
+     */
+    public static final long FORMULA_TIME_BUDGET = 120000L;
+    public static final long FORMULA_EVALUATION_BUDGET = 1L << 30;
+    public static final long DOCUMENT_TIME_BUDGET = 600000L;
+    public static final long DOCUMENT_EVALUATION_BUDGET = 1L << 33;
 
-        public CancelException()
-        {
-            // empty
-        }
-    }
+    // the formulas whose estimated number of term evaluations exceeds this value are calculated at last
+    public static final double EXPENSIVE_FORMULA_EVALUATIONS = 1.0e7;
+
+    // the budgets are checked once per given number of evaluations
+    private static final long BUDGET_CHECK_MASK = (1L << 10) - 1;
 
     private final FormulaList list;
     private final ArrayList<CalculationResult> formulas;
+    private final ArrayList<CalculationResult> abortedFormulas = new ArrayList<CalculationResult>();
+    // the formulas that depend on an aborted equation, guarded by abortedFormulas as well
+    private final Set<LinkHolder> skippedFormulas = Collections.newSetFromMap(
+            new IdentityHashMap<LinkHolder, Boolean>());
+    // the errors reported by the formulas during the calculation, shown when the calculation is finished
+    private final ArrayList<String> reportedErrors = new ArrayList<String>();
+    private final DependencyGraph dependencyGraph;
+    private final CalculationProfiler profiler;
+    private volatile boolean cancelRequested = false;
+    private long documentStartTime = 0, formulaStartTime = 0;
+    private long documentEvaluations = 0, formulaEvaluations = 0;
+    private boolean fastMath = false;
 
-    CalculaterTask(FormulaList list, ArrayList<CalculationResult> formulas)
+    CalculaterTask(FormulaList list, List<CalculationResult> formulas, CalculationProfiler profiler)
     {
         this.list = list;
-        this.formulas = formulas;
+        this.dependencyGraph = list.getFormulaListView().getDependencyGraph();
+        this.formulas = scheduleFormulas(formulas, dependencyGraph);
+        this.profiler = profiler;
+    }
+
+    /**
+     * Returns the profiler that collects the calculation time of formulas and terms, or null if profiling is disabled
+     */
+    public CalculationProfiler getProfiler()
+    {
+        return profiler;
+    }
+
+    /**
+     * Procedure enables or disables the reduced-precision math functions (see TableMath) and returns the previous
+     * state. The fast math is only enabled while a plot is sampled: numeric results are calculated with full precision
+     */
+    public boolean setFastMath(boolean fastMath)
+    {
+        final boolean previous = this.fastMath;
+        this.fastMath = fastMath;
+        return previous;
+    }
+
+    /**
+     * Procedure returns whether the reduced-precision math functions shall be used by the given thread
+     */
+    public static boolean isFastMath(CalculaterTask thread)
+    {
+        return thread != null && thread.fastMath;
+    }
+
+    /**
+     * Procedure stores an error that is found in the calculation thread. The error is shown in the UI thread when
+     * the calculation is finished
+     */
+    public void reportError(String error)
+    {
+        synchronized (reportedErrors)
+        {
+            reportedErrors.add(error);
+        }
+    }
+
+    /**
+     * Procedure estimates the calculation cost of all formulas and moves the expensive formulas to the end of the
+     * list so that cheap results are shown first. An expensive equation is moved together with all formulas that
+     * depend on it, so that its result is still calculated before it is used.
+     */
+    private static ArrayList<CalculationResult> scheduleFormulas(List<CalculationResult> formulas,
+                                                                 DependencyGraph dependencyGraph)
+    {
+        final ArrayList<Equation> expensiveEquations = new ArrayList<Equation>();
+        for (CalculationResult f : formulas)
+        {
+            if (!f.isEmpty())
+            {
+                f.estimateCost();
+            }
+            if (f instanceof Equation && f.getEstimatedEvaluations() > EXPENSIVE_FORMULA_EVALUATIONS)
+            {
+                expensiveEquations.add((Equation) f);
+            }
+        }
+        final Set<LinkHolder> dependents = dependencyGraph.getDependents(expensiveEquations);
+        final ArrayList<CalculationResult> scheduled = new ArrayList<CalculationResult>(formulas.size());
+        final ArrayList<CalculationResult> deferred = new ArrayList<CalculationResult>();
+        for (CalculationResult f : formulas)
+        {
+            if (f.getEstimatedEvaluations() > EXPENSIVE_FORMULA_EVALUATIONS || dependents.contains(f))
+            {
+                deferred.add(f);
+            }
+            else
+            {
+                scheduled.add(f);
+            }
+        }
+        scheduled.addAll(deferred);
+        return scheduled;
     }
 
     @Override
@@ -57,17 +161,60 @@ public class CalculaterTask extends AsyncTask<Void, CalculationResult, Void> imp
     @Override
     protected Void doInBackground(Void... params)
     {
+        TraceEvents.begin("CalculaterTask", TraceEvents.CATEGORY_CALCULATION);
+        documentStartTime = System.currentTimeMillis();
+        if (profiler != null)
+        {
+            profiler.start();
+        }
         for (CalculationResult f : formulas)
         {
+            if (cancelRequested)
+            {
+                break;
+            }
+            f.setProfiler(profiler);
+            if (isSkipped(f))
+            {
+                // the formula uses an aborted equation: its values are dropped, the result is cleared in UI thread
+                f.abortResult();
+                publishProgress(f);
+                continue;
+            }
             if (!f.isEmpty())
             {
+                final CalculationProfiler.Entry profile = (profiler != null) ? profiler.enterResult(f) : null;
+                // the name of a formula is only built if the trace is recorded
+                final String traceName = TraceEvents.isEnabled() ? f.toString() : null;
+                if (traceName != null)
+                {
+                    TraceEvents.begin(traceName, TraceEvents.CATEGORY_CALCULATION);
+                }
                 try
                 {
+                    formulaStartTime = System.currentTimeMillis();
+                    formulaEvaluations = 0;
                     f.calculate(this);
                 }
                 catch (CancelException e)
                 {
-                    break;
+                    if (!e.isBudgetExceeded())
+                    {
+                        break;
+                    }
+                    // only this formula and its dependents are aborted: the partial values are dropped here so that
+                    // the following formulas do not use them, the result is cleared in the UI thread
+                    f.abortResult();
+                    final Set<LinkHolder> dependents = (f instanceof Equation) ?
+                            dependencyGraph.getDependents(Collections.singletonList((Equation) f)) : null;
+                    synchronized (abortedFormulas)
+                    {
+                        abortedFormulas.add(f);
+                        if (dependents != null)
+                        {
+                            skippedFormulas.addAll(dependents);
+                        }
+                    }
                 }
                 catch (OutOfMemoryError ex)
                 {
@@ -75,19 +222,60 @@ public class CalculaterTask extends AsyncTask<Void, CalculationResult, Void> imp
                     Toast.makeText(list.getActivity(), error, Toast.LENGTH_LONG).show();
                     break;
                 }
+                finally
+                {
+                    if (traceName != null)
+                    {
+                        TraceEvents.end(traceName, TraceEvents.CATEGORY_CALCULATION);
+                    }
+                    if (profile != null)
+                    {
+                        profiler.leaveResult(profile, formulaEvaluations);
+                    }
+                }
                 publishProgress(f);
             }
         }
+        if (profiler != null)
+        {
+            profiler.stop();
+        }
+        TraceEvents.end("CalculaterTask", TraceEvents.CATEGORY_CALCULATION);
         return null;
     }
 
+    /**
+     * Procedure checks whether the given formula depends on an aborted equation
+     */
+    private boolean isSkipped(CalculationResult f)
+    {
+        synchronized (abortedFormulas)
+        {
+            return skippedFormulas.contains(f);
+        }
+    }
+
     @Override
     protected void onProgressUpdate(CalculationResult... formula)
     {
         CalculationResult f = formula[0];
         if (f != null)
         {
-            f.showResult();
+            boolean isAborted;
+            synchronized (abortedFormulas)
+            {
+                isAborted = abortedFormulas.contains(f) || skippedFormulas.contains(f);
+            }
+            TraceEvents.begin("showResult", TraceEvents.CATEGORY_DRAWING);
+            if (isAborted)
+            {
+                f.invalidateResult();
+            }
+            else
+            {
+                f.showResult();
+            }
+            TraceEvents.end("showResult", TraceEvents.CATEGORY_DRAWING);
         }
     }
 
@@ -97,6 +285,7 @@ public class CalculaterTask extends AsyncTask<Void, CalculationResult, Void> imp
         list.setInOperation(/*owner=*/this, /*inOperation=*/false, /*stopHandler=*/this);
         String error = list.getActivity().getResources().getString(R.string.error_calculation_aborted);
         Toast.makeText(list.getActivity(), error, Toast.LENGTH_LONG).show();
+        TraceEvents.writeInBackground(list.getActivity());
         super.onCancelled();
     }
 
@@ -104,19 +293,56 @@ public class CalculaterTask extends AsyncTask<Void, CalculationResult, Void> imp
     protected void onPostExecute(Void result)
     {
         list.setInOperation(/*owner=*/this, /*inOperation=*/false, /*stopHandler=*/this);
+        if (profiler != null)
+        {
+            profiler.showHeatMap();
+        }
+        if (!abortedFormulas.isEmpty())
+        {
+            String error = String.format(list.getActivity().getResources().getString(
+                    R.string.error_calculation_budget_exceeded), abortedFormulas.size());
+            Toast.makeText(list.getActivity(), error, Toast.LENGTH_LONG).show();
+        }
+        synchronized (reportedErrors)
+        {
+            for (String error : reportedErrors)
+            {
+                Toast.makeText(list.getActivity(), error, Toast.LENGTH_LONG).show();
+            }
+        }
+        // all results are shown at this point, so the trace contains the drawing of the last formulas as well
+        TraceEvents.writeInBackground(list.getActivity());
     }
 
     @Override
     public void onClick(View v)
     {
+        cancelRequested = true;
         cancel(false);
     }
 
+    /**
+     * Procedure checks whether the calculation is cancelled or the current formula exceeds its budget. It is
+     * called once per loop iteration and not for every term, so it only reads a volatile flag and counts
+     * evaluations; the clock is read once per BUDGET_CHECK_MASK + 1 evaluations.
+     */
+    @Override
     public void checkCancelation() throws CancelException
     {
-        if (isCancelled())
+        if (cancelRequested)
         {
             throw new CancelException();
         }
+        formulaEvaluations++;
+        if ((formulaEvaluations & BUDGET_CHECK_MASK) == 0)
+        {
+            documentEvaluations += BUDGET_CHECK_MASK + 1;
+            final long time = System.currentTimeMillis();
+            if (formulaEvaluations > FORMULA_EVALUATION_BUDGET || documentEvaluations > DOCUMENT_EVALUATION_BUDGET
+                    || time - formulaStartTime > FORMULA_TIME_BUDGET || time - documentStartTime > DOCUMENT_TIME_BUDGET)
+            {
+                throw new CancelException(/*budgetExceeded=*/true);
+            }
+        }
     }
 }
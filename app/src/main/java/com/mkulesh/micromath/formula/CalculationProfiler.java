@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.formula;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.os.Debug;
+import android.text.format.Formatter;
+
+import com.mkulesh.micromath.plus.R;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Class that collects the calculation profile of a document: the wall time, the number of evaluations and the
+ * allocated memory for each calculation result and each term subtree. The profiler is only created if it is enabled
+ * in the app settings, the calculation thread feeds it and the UI thread reads it after the calculation.
+ *
+ * The time and the memory of a term include all its arguments. If a term is called recursively, only the outermost
+ * call is measured. The self time of a term excludes the time of its profiled arguments: it is used for the heat map
+ * so that only the terms that really spend the time are highlighted and not all their parents.
+ *
+ * The allocated memory is taken from the deprecated allocation counters of android.os.Debug. They are exact on Dalvik
+ * only: on ART, the counters are approximate and may not count the allocations of compiled code, so the memory column
+ * is an indication and not a measurement there.
+ */
+public class CalculationProfiler
+{
+    /**
+     * The number of the hottest terms shown in the result details
+     */
+    private static final int HOT_TERMS_NUMBER = 3;
+
+    public static final class Entry
+    {
+        private long evaluations = 0, time = 0, selfTime = 0, allocated = 0;
+        private long startTime = 0, startAllocated = 0;
+        private int depth = 0;
+
+        public long getEvaluations()
+        {
+            return evaluations;
+        }
+
+        public long getTime()
+        {
+            return time;
+        }
+
+        public long getSelfTime()
+        {
+            return selfTime;
+        }
+
+        public long getAllocated()
+        {
+            return allocated;
+        }
+
+        private void enter()
+        {
+            if (depth++ == 0)
+            {
+                startTime = System.nanoTime();
+                startAllocated = getAllocatedSize();
+            }
+        }
+
+        /**
+         * Procedure finishes a call and returns its time, or zero if this is not the outermost call
+         */
+        private long leave()
+        {
+            if (--depth == 0)
+            {
+                final long callTime = System.nanoTime() - startTime;
+                time += callTime;
+                selfTime += callTime;
+                allocated += getAllocatedSize() - startAllocated;
+                return callTime;
+            }
+            return 0;
+        }
+    }
+
+    private final IdentityHashMap<CalculationResult, Entry> results = new IdentityHashMap<CalculationResult, Entry>();
+    private final IdentityHashMap<FormulaTerm, Entry> terms = new IdentityHashMap<FormulaTerm, Entry>();
+    // the terms that are currently calculated, the innermost one is the last
+    private final ArrayList<Entry> activeTerms = new ArrayList<Entry>();
+
+    /*********************************************************
+     * Methods called from the calculation thread
+     *********************************************************/
+
+    /**
+     * Procedure starts the allocation counting for the calculation thread. The counters are only reliable on Dalvik
+     */
+    @SuppressWarnings("deprecation")
+    public void start()
+    {
+        Debug.startAllocCounting();
+    }
+
+    /**
+     * Procedure stops the allocation counting for the calculation thread
+     */
+    @SuppressWarnings("deprecation")
+    public void stop()
+    {
+        Debug.stopAllocCounting();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static long getAllocatedSize()
+    {
+        return Debug.getThreadAllocSize();
+    }
+
+    public Entry enterResult(CalculationResult f)
+    {
+        Entry e = results.get(f);
+        if (e == null)
+        {
+            e = new Entry();
+            results.put(f, e);
+        }
+        e.enter();
+        return e;
+    }
+
+    /**
+     * Procedure finishes the measurement of a calculation result, the evaluations are the loop iterations counted by
+     * the calculation thread
+     */
+    public void leaveResult(Entry e, long evaluations)
+    {
+        e.leave();
+        e.evaluations += evaluations;
+    }
+
+    public Entry enterTerm(FormulaTerm t)
+    {
+        Entry e = terms.get(t);
+        if (e == null)
+        {
+            e = new Entry();
+            terms.put(t, e);
+        }
+        e.evaluations++;
+        e.enter();
+        activeTerms.add(e);
+        return e;
+    }
+
+    /**
+     * Procedure finishes the measurement of a term, its time is excluded from the self time of the calling term
+     */
+    public void leaveTerm(Entry e)
+    {
+        activeTerms.remove(activeTerms.size() - 1);
+        final long callTime = e.leave();
+        if (!activeTerms.isEmpty())
+        {
+            activeTerms.get(activeTerms.size() - 1).selfTime -= callTime;
+        }
+    }
+
+    /*********************************************************
+     * Methods called from UI thread
+     *********************************************************/
+
+    /**
+     * Procedure returns the profile description of the given result or null if the result is not profiled
+     */
+    public ArrayList<String> getDescription(Context context, CalculationResult f)
+    {
+        final Entry e = results.get(f);
+        if (e == null)
+        {
+            return null;
+        }
+        final ArrayList<String> retValue = new ArrayList<String>();
+        retValue.add(String.format(context.getResources().getString(R.string.dialog_result_details_profile),
+                formatTime(e.time), e.evaluations, Formatter.formatShortFileSize(context, e.allocated)));
+
+        final ArrayList<Map.Entry<FormulaTerm, Entry>> hotTerms = new ArrayList<Map.Entry<FormulaTerm, Entry>>();
+        for (Map.Entry<FormulaTerm, Entry> t : terms.entrySet())
+        {
+            if (t.getKey().getFormulaRoot() == f)
+            {
+                hotTerms.add(t);
+            }
+        }
+        Collections.sort(hotTerms, new Comparator<Map.Entry<FormulaTerm, Entry>>()
+        {
+            @Override
+            public int compare(Map.Entry<FormulaTerm, Entry> lhs, Map.Entry<FormulaTerm, Entry> rhs)
+            {
+                // Long.compare is not available before API 19
+                final long lhsTime = lhs.getValue().time, rhsTime = rhs.getValue().time;
+                return (rhsTime < lhsTime) ? -1 : ((rhsTime == lhsTime) ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < Math.min(HOT_TERMS_NUMBER, hotTerms.size()); i++)
+        {
+            final Entry t = hotTerms.get(i).getValue();
+            retValue.add(String.format(context.getResources().getString(R.string.dialog_result_details_profile_term),
+                    hotTerms.get(i).getKey().getTermCode(), formatTime(t.time), t.evaluations,
+                    Formatter.formatShortFileSize(context, t.allocated)));
+        }
+        return retValue;
+    }
+
+    /**
+     * Procedure colors all profiled terms depending on the fraction of the total calculation time spent in the term
+     * itself, without its arguments
+     */
+    public void showHeatMap()
+    {
+        long totalTime = 0;
+        for (Entry e : results.values())
+        {
+            totalTime += e.time;
+        }
+        if (totalTime <= 0)
+        {
+            return;
+        }
+        for (Map.Entry<FormulaTerm, Entry> t : terms.entrySet())
+        {
+            t.getKey().setProfileHeat((double) t.getValue().selfTime / (double) totalTime);
+        }
+        updateTextColor();
+    }
+
+    /**
+     * Procedure removes the colors set by showHeatMap
+     */
+    public void clearHeatMap()
+    {
+        for (FormulaTerm t : terms.keySet())
+        {
+            t.setProfileHeat(Double.NaN);
+        }
+        updateTextColor();
+    }
+
+    private void updateTextColor()
+    {
+        for (CalculationResult f : results.keySet())
+        {
+            f.updateTextColor();
+        }
+    }
+
+    /**
+     * Procedure returns the heat map color for the given fraction of the calculation time
+     */
+    public static int getHeatColor(int normalColor, int hotColor, double heat)
+    {
+        final double h = Math.max(0.0, Math.min(1.0, heat));
+        return Color.argb(
+                (int) Math.round(Color.alpha(normalColor) + h * (Color.alpha(hotColor) - Color.alpha(normalColor))),
+                (int) Math.round(Color.red(normalColor) + h * (Color.red(hotColor) - Color.red(normalColor))),
+                (int) Math.round(Color.green(normalColor) + h * (Color.green(hotColor) - Color.green(normalColor))),
+                (int) Math.round(Color.blue(normalColor) + h * (Color.blue(hotColor) - Color.blue(normalColor))));
+    }
+
+    private static String formatTime(long nanoTime)
+    {
+        return String.format(Locale.ENGLISH, "%.3g", (double) nanoTime / 1.0e6);
+    }
+}
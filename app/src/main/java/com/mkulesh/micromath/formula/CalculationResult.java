@@ -19,20 +19,41 @@
 package com.mkulesh.micromath.formula;
 
 import android.content.Context;
+import android.text.format.Formatter;
 import android.util.AttributeSet;
 import android.widget.LinearLayout;
 
-import com.mkulesh.micromath.formula.CalculaterTask.CancelException;
 import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CancelException;
 import com.mkulesh.micromath.plots.FunctionIf;
 import com.mkulesh.micromath.plots.views.PlotView;
+import com.mkulesh.micromath.plus.R;
 import com.mkulesh.micromath.undo.FormulaState;
 import com.mkulesh.micromath.utils.ViewUtils;
 
 import org.apache.commons.math3.util.FastMath;
 
+import java.util.ArrayList;
+import java.util.Locale;
+
 public abstract class CalculationResult extends LinkHolder
 {
+    /**
+     * Estimated memory in bytes needed to store one calculated value
+     */
+    protected static final double VALUE_MEMORY_SIZE = 40.0;
+
+    /**
+     * Estimated calculation cost: the number of term evaluations and the memory in bytes
+     */
+    private double estimatedEvaluations = Double.NaN;
+    private double estimatedMemory = Double.NaN;
+
+    /**
+     * The profiler of the last calculation, or null if the calculation was not profiled
+     */
+    private CalculationProfiler profiler = null;
+
     /*********************************************************
      * Constructors
      *********************************************************/
@@ -79,6 +100,17 @@ public abstract class CalculationResult extends LinkHolder
      */
     public abstract void showResult();
 
+    /**
+     * Procedure drops the values calculated so far if the calculation of this object is aborted, so that other
+     * formulas do not use them.
+     *
+     * This method is called in a separate thread and shall not update any UI elements
+     */
+    public void abortResult()
+    {
+        // empty
+    }
+
     /**
      * Procedure returns true if the calculation and content checking shall be skipped for this formula
      */
@@ -114,6 +146,79 @@ public abstract class CalculationResult extends LinkHolder
         return true;
     }
 
+    /*********************************************************
+     * Cost estimation
+     *********************************************************/
+
+    /**
+     * Procedure estimates the calculation cost of this object before the calculation starts: the number of values
+     * is given by the sizes of all linked intervals, each value needs the worst-case number of term evaluations
+     * given by the loops and integrals within the formula.
+     *
+     * This method is called from UI thread
+     */
+    public void estimateCost()
+    {
+        double points = 1.0;
+        for (Equation e : getAllIntervals())
+        {
+            points *= e.getIntervalSize();
+        }
+        estimatedEvaluations = points * getEvaluationCost(new ArrayList<Equation>());
+        estimatedMemory = points * VALUE_MEMORY_SIZE;
+    }
+
+    public double getEstimatedEvaluations()
+    {
+        return estimatedEvaluations;
+    }
+
+    public double getEstimatedMemory()
+    {
+        return estimatedMemory;
+    }
+
+    /**
+     * Procedure returns the description of the estimated calculation cost or null if it is not estimated
+     */
+    public String getEstimatedCostDescription()
+    {
+        if (Double.isNaN(estimatedEvaluations) || Double.isNaN(estimatedMemory))
+        {
+            return null;
+        }
+        return String.format(getContext().getResources().getString(R.string.dialog_result_details_cost),
+                String.format(Locale.ENGLISH, "%.3g", estimatedEvaluations),
+                Formatter.formatShortFileSize(getContext(), (long) estimatedMemory));
+    }
+
+    /*********************************************************
+     * Profiling
+     *********************************************************/
+
+    /**
+     * Procedure sets the profiler of the current calculation.
+     *
+     * This method is called in a separate thread
+     */
+    public void setProfiler(CalculationProfiler profiler)
+    {
+        this.profiler = profiler;
+    }
+
+    public boolean isProfiled()
+    {
+        return profiler != null;
+    }
+
+    /**
+     * Procedure returns the profile of the last calculation or null if it was not profiled
+     */
+    public ArrayList<String> getProfileDescription()
+    {
+        return (profiler == null) ? null : profiler.getDescription(getContext(), this);
+    }
+
     /*********************************************************
      * Helper methods
      *********************************************************/
@@ -136,14 +241,14 @@ public abstract class CalculationResult extends LinkHolder
             final CalculatedValue calcVal = new CalculatedValue();
             // inspect minimum value
             calcVal.setValue(minMaxValues[FunctionIf.MIN]);
-            String strMin = calcVal.getResultDescription(getFormulaList().getDocumentSettings());
+            String strMin = calcVal.getResultDescription(getFormulaList().getDocumentSettings().significantDigits);
             if (updateMin && calcVal.isNaN())
             {
                 isValid = false;
             }
             // inspect maximum value
             calcVal.setValue(minMaxValues[FunctionIf.MAX]);
-            String strMax = calcVal.getResultDescription(getFormulaList().getDocumentSettings());
+            String strMax = calcVal.getResultDescription(getFormulaList().getDocumentSettings().significantDigits);
             if (updateMax && calcVal.isNaN())
             {
                 isValid = false;
@@ -196,10 +301,10 @@ public abstract class CalculationResult extends LinkHolder
             final CalculatedValue xMaxVal = new CalculatedValue();
             final CalculatedValue yMinVal = new CalculatedValue();
             final CalculatedValue yMaxVal = new CalculatedValue();
-            xMinVal.processRealTerm(null, xMinTerm);
-            xMaxVal.processRealTerm(null, xMaxTerm);
-            yMinVal.processRealTerm(null, yMinTerm);
-            yMaxVal.processRealTerm(null, yMaxTerm);
+            xMinTerm.getRealValue(null, xMinVal);
+            xMaxTerm.getRealValue(null, xMaxVal);
+            yMinTerm.getRealValue(null, yMinVal);
+            yMaxTerm.getRealValue(null, yMaxVal);
             view.setArea(xMinVal.getReal(), xMaxVal.getReal(), yMinVal.getReal(), yMaxVal.getReal());
         }
         catch (CancelException e)
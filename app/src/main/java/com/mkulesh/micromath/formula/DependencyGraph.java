@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.formula;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Class that holds the links between the formulas of a document: a link holder depends directly on the intervals
+ * and functions used in its terms, and indirectly on the intervals and functions used by these functions.
+ *
+ * The direct links are stored as sets together with the reverse links ("who depends on me"). The transitive closure
+ * of a link holder is calculated on demand and cached. If the direct links of a formula are changed, only the cached
+ * closures that contain this formula are invalidated.
+ *
+ * The formulas do not re-implement equals(), therefore all sets and maps of this class are identity-based.
+ */
+public class DependencyGraph
+{
+    private static class Node
+    {
+        // direct links
+        final LinkedHashSet<Equation> directIntervals = new LinkedHashSet<Equation>();
+        final LinkedHashSet<Equation> directFunctions = new LinkedHashSet<Equation>();
+
+        // reverse links
+        final LinkedHashSet<LinkHolder> intervalDependents = new LinkedHashSet<LinkHolder>();
+        final LinkedHashSet<LinkHolder> functionDependents = new LinkedHashSet<LinkHolder>();
+
+        // cached transitive closure, null if not calculated
+        LinkedHashSet<Equation> allIntervals = null;
+        LinkedHashSet<Equation> allFunctions = null;
+        ArrayList<Equation> allIntervalsList = null;
+        ArrayList<Equation> allFunctionsList = null;
+
+        // this flag is set if this node is a part of at least one cached closure
+        boolean inClosure = false;
+    }
+
+    private final IdentityHashMap<LinkHolder, Node> nodes = new IdentityHashMap<LinkHolder, Node>();
+
+    /**
+     * Procedure clears the graph
+     */
+    public void clear()
+    {
+        nodes.clear();
+    }
+
+    /**
+     * Procedure removes all direct links of the given formula
+     */
+    public void clearLinks(LinkHolder h)
+    {
+        final Node n = nodes.get(h);
+        if (n == null || (n.directIntervals.isEmpty() && n.directFunctions.isEmpty()))
+        {
+            return;
+        }
+        invalidate(h, n);
+        for (Equation e : n.directIntervals)
+        {
+            getNode(e).intervalDependents.remove(h);
+        }
+        for (Equation e : n.directFunctions)
+        {
+            getNode(e).functionDependents.remove(h);
+        }
+        n.directIntervals.clear();
+        n.directFunctions.clear();
+    }
+
+    /**
+     * Procedure removes the given formula from the graph. The links of other formulas to this formula are kept
+     * until these formulas are validated again
+     */
+    public void remove(LinkHolder h)
+    {
+        final Node n = nodes.get(h);
+        if (n != null)
+        {
+            clearLinks(h);
+            invalidate(h, n);
+            nodes.remove(h);
+        }
+    }
+
+    /**
+     * Procedure adds a direct link from the given formula to the given interval or function
+     */
+    public void addLink(LinkHolder h, Equation e)
+    {
+        final Node n = getNode(h);
+        final boolean added = e.isInterval() ? n.directIntervals.add(e) : n.directFunctions.add(e);
+        if (added)
+        {
+            invalidate(h, n);
+            if (e.isInterval())
+            {
+                getNode(e).intervalDependents.add(h);
+            }
+            else
+            {
+                getNode(e).functionDependents.add(h);
+            }
+        }
+    }
+
+    /**
+     * Procedure returns the list of directly linked intervals
+     */
+    public ArrayList<Equation> getDirectIntervals(LinkHolder h)
+    {
+        final Node n = nodes.get(h);
+        return (n == null) ? new ArrayList<Equation>() : new ArrayList<Equation>(n.directIntervals);
+    }
+
+    /**
+     * Procedure returns the list of all linked intervals, in the order of their first appearance
+     */
+    public ArrayList<Equation> getAllIntervals(LinkHolder h)
+    {
+        return getClosure(h).allIntervalsList;
+    }
+
+    /**
+     * Procedure returns the list of all linked functions, in the order of their first appearance
+     */
+    public ArrayList<Equation> getAllFunctions(LinkHolder h)
+    {
+        return getClosure(h).allFunctionsList;
+    }
+
+    /**
+     * Procedure returns the list of intervals that are linked indirectly but not directly
+     */
+    public ArrayList<String> getIndirectIntervals(LinkHolder h)
+    {
+        final Node n = getClosure(h);
+        final ArrayList<String> retValue = new ArrayList<String>();
+        if (n.directIntervals.size() != n.allIntervals.size())
+        {
+            for (Equation li : n.allIntervalsList)
+            {
+                if (!n.directIntervals.contains(li))
+                {
+                    retValue.add(li.getName());
+                }
+            }
+        }
+        return retValue;
+    }
+
+    /**
+     * Procedure checks whether the given formula is directly or indirectly linked to the given equation
+     */
+    public boolean dependsOn(LinkHolder h, Equation e)
+    {
+        final Node n = getClosure(h);
+        return n.allFunctions.contains(e) || n.allIntervals.contains(e);
+    }
+
+    /**
+     * Procedure checks whether the given formula directly or indirectly calls the given function
+     */
+    public boolean callsFunction(LinkHolder h, Equation e)
+    {
+        return getClosure(h).allFunctions.contains(e);
+    }
+
+    /**
+     * Procedure collects all formulas that are directly or indirectly linked to one of the given equations
+     */
+    public Set<LinkHolder> getDependents(Collection<Equation> equations)
+    {
+        final Set<LinkHolder> retValue = Collections.newSetFromMap(new IdentityHashMap<LinkHolder, Boolean>());
+        final ArrayDeque<LinkHolder> queue = new ArrayDeque<LinkHolder>();
+        for (Equation e : equations)
+        {
+            final Node n = nodes.get(e);
+            if (n != null)
+            {
+                queue.addAll(n.intervalDependents);
+                queue.addAll(n.functionDependents);
+            }
+        }
+        // the formulas that use a dependent formula as a function are also dependent
+        while (!queue.isEmpty())
+        {
+            final LinkHolder d = queue.poll();
+            final Node n = nodes.get(d);
+            if (retValue.add(d) && n != null)
+            {
+                queue.addAll(n.functionDependents);
+            }
+        }
+        return retValue;
+    }
+
+    private Node getNode(LinkHolder h)
+    {
+        Node n = nodes.get(h);
+        if (n == null)
+        {
+            n = new Node();
+            nodes.put(h, n);
+        }
+        return n;
+    }
+
+    /**
+     * Procedure drops the cached closure of the given formula and of all formulas that use it as a function. Only
+     * the nodes being a part of a cached closure are visited
+     */
+    private void invalidate(LinkHolder h, Node n)
+    {
+        if (!n.inClosure)
+        {
+            return;
+        }
+        final ArrayDeque<Node> queue = new ArrayDeque<Node>();
+        n.inClosure = false;
+        queue.add(n);
+        while (!queue.isEmpty())
+        {
+            final Node c = queue.poll();
+            c.allIntervals = null;
+            c.allFunctions = null;
+            c.allIntervalsList = null;
+            c.allFunctionsList = null;
+            for (LinkHolder d : c.functionDependents)
+            {
+                final Node dn = nodes.get(d);
+                if (dn != null && dn.inClosure)
+                {
+                    dn.inClosure = false;
+                    queue.add(dn);
+                }
+            }
+        }
+    }
+
+    /**
+     * Procedure calculates the transitive closure of the given formula if it is not cached. The functions are
+     * traversed in depth-first order without recursion, each function is visited once
+     */
+    private Node getClosure(LinkHolder h)
+    {
+        final Node root = getNode(h);
+        if (root.allFunctions != null)
+        {
+            return root;
+        }
+        final LinkedHashSet<Equation> allIntervals = new LinkedHashSet<Equation>(root.directIntervals);
+        final LinkedHashSet<Equation> allFunctions = new LinkedHashSet<Equation>();
+        final IdentityHashMap<LinkHolder, Boolean> visited = new IdentityHashMap<LinkHolder, Boolean>();
+        final ArrayDeque<Iterator<Equation>> stack = new ArrayDeque<Iterator<Equation>>();
+        visited.put(h, Boolean.TRUE);
+        root.inClosure = true;
+        stack.push(root.directFunctions.iterator());
+        while (!stack.isEmpty())
+        {
+            final Iterator<Equation> it = stack.peek();
+            if (!it.hasNext())
+            {
+                stack.pop();
+                continue;
+            }
+            final Equation e = it.next();
+            allFunctions.add(e);
+            if (visited.put(e, Boolean.TRUE) == null)
+            {
+                final Node n = getNode(e);
+                n.inClosure = true;
+                allIntervals.addAll(n.directIntervals);
+                stack.push(n.directFunctions.iterator());
+            }
+        }
+        root.allIntervals = allIntervals;
+        root.allFunctions = allFunctions;
+        root.allIntervalsList = new ArrayList<Equation>(allIntervals);
+        root.allFunctionsList = new ArrayList<Equation>(allFunctions);
+        return root;
+    }
+}
@@ -23,12 +23,13 @@ import android.content.res.Resources;
 import android.util.AttributeSet;
 import android.view.View;
 
+import com.mkulesh.micromath.core.ArgumentHolderIf;
 import com.mkulesh.micromath.dialogs.DialogResultDetails;
-import com.mkulesh.micromath.formula.CalculaterTask.CancelException;
 import com.mkulesh.micromath.formula.TermField.ErrorNotification;
 import com.mkulesh.micromath.formula.terms.FileOperations;
 import com.mkulesh.micromath.formula.terms.Intervals;
 import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CancelException;
 import com.mkulesh.micromath.math.EquationArrayResult;
 import com.mkulesh.micromath.plus.R;
 import com.mkulesh.micromath.utils.ViewUtils;
@@ -55,8 +56,20 @@ public class Equation extends CalculationResult implements ArgumentHolderIf, Cal
         {
             if (value == null)
             {
+                // the cached value is also used by numeric results: it is always calculated with full precision
                 value = new CalculatedValue();
-                rightTerm.getValue(thread, value);
+                final boolean fastMath = (thread != null) && thread.setFastMath(false);
+                try
+                {
+                    rightTerm.getValue(thread, value);
+                }
+                finally
+                {
+                    if (thread != null)
+                    {
+                        thread.setFastMath(fastMath);
+                    }
+                }
             }
             return value;
         }
@@ -145,8 +158,7 @@ public class Equation extends CalculationResult implements ArgumentHolderIf, Cal
             if (isValid && !leftTerm.isEmpty())
             {
                 String errorMsg = null;
-                final ArrayList<Equation> allFunctions = getAllFunctions();
-                if (allFunctions.contains(this))
+                if (callsFunction(this))
                 {
                     isValid = false;
                     errorMsg = getContext().getResources().getString(R.string.error_recursive_call);
@@ -169,7 +181,7 @@ public class Equation extends CalculationResult implements ArgumentHolderIf, Cal
                 final String errorMsg = checkArrayResult();
                 if (errorMsg == null)
                 {
-                    arrayResult = new EquationArrayResult(this, rightTerm);
+                    arrayResult = new EquationArrayResult();
                 }
                 else
                 {
@@ -292,7 +304,22 @@ public class Equation extends CalculationResult implements ArgumentHolderIf, Cal
     @Override
     public void invalidateResult()
     {
-        arrayResult = null;
+        // the calculated values are dropped but the kind of result defined by the validation is kept
+        if (arrayResult != null)
+        {
+            arrayResult.clear();
+        }
+        if (constantResult != null)
+        {
+            constantResult = new EquationConstantResult();
+        }
+    }
+
+    @Override
+    public void abortResult()
+    {
+        // the invalidation only drops the calculated values and does not update any UI elements
+        invalidateResult();
     }
 
     @Override
@@ -302,19 +329,67 @@ public class Equation extends CalculationResult implements ArgumentHolderIf, Cal
         {
             return;
         }
-        fileOperation(true);
-        arrayResult.calculate(thread, getArguments());
-        fileOperation(false);
+        try
+        {
+            fileOperation(thread, true);
+            calculateArray(thread);
+        }
+        finally
+        {
+            fileOperation(thread, false);
+        }
     }
 
-    public void fileOperation(boolean status)
+    /**
+     * Procedure collects the intervals of all array indices and fills the array result
+     */
+    private void calculateArray(final CalculaterTask thread) throws CancelException
+    {
+        arrayResult.clear();
+        final ArrayList<String> arguments = getArguments();
+        final int dimNumber = arguments.size();
+        if (dimNumber < 1 || dimNumber > EquationArrayResult.MAX_DIMENSION)
+        {
+            return;
+        }
+
+        final ArrayList<ArrayList<Double>> intervalValues = new ArrayList<ArrayList<Double>>();
+        final CalculatedValue[] argValues = new CalculatedValue[dimNumber];
+        for (int dim = 0; dim < dimNumber; dim++)
+        {
+            final FormulaBase f = getFormulaList().getFormula(arguments.get(dim), 0, getId(), true);
+            if (f == null || !(f instanceof Equation) || !((Equation) f).isInterval())
+            {
+                return;
+            }
+            final ArrayList<Double> interval = ((Equation) f).getInterval(thread);
+            if (interval == null || interval.isEmpty() || interval.get(interval.size() - 1).intValue() <= 0)
+            {
+                return;
+            }
+            intervalValues.add(interval);
+            argValues[dim] = new CalculatedValue();
+        }
+
+        setArgumentValues(argValues);
+        arrayResult.calculate(thread, intervalValues, argValues, new EquationArrayResult.ElementFunction()
+        {
+            @Override
+            public void getValue(CalculatedValue outValue) throws CancelException
+            {
+                rightTerm.getValue(thread, outValue);
+            }
+        });
+    }
+
+    public void fileOperation(CalculaterTask thread, boolean status) throws CancelException
     {
         FormulaTerm t = rightTerm.getTerm();
         if (t != null && t instanceof FileOperations)
         {
             if (status)
             {
-                ((FileOperations) t).prepareFileOperation();
+                ((FileOperations) t).prepareFileOperation(thread);
             }
             else
             {
@@ -375,6 +450,15 @@ public class Equation extends CalculationResult implements ArgumentHolderIf, Cal
         }
     }
 
+    /**
+     * Procedure returns the properties that define how other formulas are linked to this equation: the name, the
+     * arguments and whether it is an interval
+     */
+    public String getSignature()
+    {
+        return getName() + ":" + getArguments() + ":" + isInterval();
+    }
+
     /**
      * Procedure returns the parsed name of this formula
      */
@@ -392,6 +476,62 @@ public class Equation extends CalculationResult implements ArgumentHolderIf, Cal
         return this.argumentValues != null;
     }
 
+    @Override
+    public boolean isDeterministic(ArrayList<Equation> visited)
+    {
+        if (visited.contains(this))
+        {
+            // recursive calls are detected during the links validation
+            return true;
+        }
+        visited.add(this);
+        return super.isDeterministic(visited);
+    }
+
+    @Override
+    public double getEvaluationCost(ArrayList<Equation> visited)
+    {
+        if (visited.contains(this))
+        {
+            // recursive calls are detected during the links validation
+            return 1.0;
+        }
+        visited.add(this);
+        final double cost = super.getEvaluationCost(visited);
+        visited.remove(this);
+        return cost;
+    }
+
+    /**
+     * Procedure returns the real value of this variable if it is given by a number, and NaN otherwise. Nothing is
+     * calculated, so this method can be called from UI thread
+     */
+    public double getEstimatedValue(ArrayList<Equation> visited)
+    {
+        if (visited.contains(this) || getArguments() != null)
+        {
+            return Double.NaN;
+        }
+        visited.add(this);
+        final double value = rightTerm.getEstimatedValue(visited);
+        visited.remove(this);
+        return value;
+    }
+
+    /**
+     * Procedure returns the number of points if this root formula represents an interval, and 1 otherwise. The
+     * interval boundaries are only calculated if they are cheap
+     */
+    public double getIntervalSize()
+    {
+        FormulaTerm t = rightTerm.getTerm();
+        if (t != null && t instanceof Intervals)
+        {
+            return ((Intervals) t).getIntervalSize();
+        }
+        return 1.0;
+    }
+
     /**
      * Procedure checks whether this root formula represents an interval
      */
@@ -409,6 +549,14 @@ public class Equation extends CalculationResult implements ArgumentHolderIf, Cal
         return leftTerm.getParser().isArray();
     }
 
+    /**
+     * Procedure returns the calculated array if this root formula represents an array
+     */
+    public EquationArrayResult getArrayResult()
+    {
+        return arrayResult;
+    }
+
     /**
      * Procedure returns declared interval if this root formula represents an interval
      */
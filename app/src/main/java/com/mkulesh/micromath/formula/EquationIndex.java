@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.formula;
+
+import com.mkulesh.micromath.utils.ViewUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Class that indexes the equations of the formula list by their names and holds the positions of all formulas of
+ * the list, so that the name resolution does not need to scan the whole list.
+ *
+ * The positions are ordinals in the document order. They are assigned incrementally if a formula is appended to the
+ * end of the list, and they are recalculated on the next name resolution if a formula is inserted elsewhere.
+ */
+public class EquationIndex
+{
+    private final HashMap<String, ArrayList<Equation>> equations = new HashMap<String, ArrayList<Equation>>();
+    private final HashMap<Equation, String> names = new HashMap<Equation, String>();
+    private final HashMap<Integer, Integer> positions = new HashMap<Integer, Integer>();
+    private boolean positionsValid = true;
+    private int nextPosition = 0;
+
+    /**
+     * Procedure clears the index
+     */
+    public void clear()
+    {
+        equations.clear();
+        names.clear();
+        positions.clear();
+        positionsValid = true;
+        nextPosition = 0;
+    }
+
+    /**
+     * Procedure adds the given formula. If it is appended to the end of the list, its position is known, otherwise
+     * all positions will be recalculated
+     */
+    public void add(FormulaBase f, boolean appended)
+    {
+        addEquation(f);
+        if (appended && positionsValid)
+        {
+            positions.put(f.getId(), nextPosition++);
+        }
+        else
+        {
+            positionsValid = false;
+        }
+    }
+
+    /**
+     * Procedure removes the given formula. The order of the remaining positions is not changed
+     */
+    public void remove(FormulaBase f)
+    {
+        if (f instanceof Equation && names.containsKey(f))
+        {
+            removeName((Equation) f, names.remove(f));
+        }
+        positions.remove(f.getId());
+    }
+
+    /**
+     * Procedure replaces the given formula by the new one at the same position
+     */
+    public void replace(FormulaBase oldFormula, FormulaBase newFormula)
+    {
+        final Integer position = positions.get(oldFormula.getId());
+        remove(oldFormula);
+        addEquation(newFormula);
+        if (position != null)
+        {
+            positions.put(newFormula.getId(), position);
+        }
+        else
+        {
+            positionsValid = false;
+        }
+    }
+
+    /**
+     * Procedure updates the name of the given equation if it is indexed. It returns true if the name was changed
+     */
+    public boolean updateName(Equation e)
+    {
+        if (!names.containsKey(e))
+        {
+            return false;
+        }
+        final String oldName = names.get(e);
+        final String newName = e.getName();
+        if (oldName == null ? newName == null : oldName.equals(newName))
+        {
+            return false;
+        }
+        removeName(e, oldName);
+        names.put(e, newName);
+        addName(e, newName);
+        return true;
+    }
+
+    /**
+     * Procedure returns the equations that are indexed by the given name, or null if there are no such equations
+     */
+    public List<Equation> getEquations(String name)
+    {
+        return equations.get(name);
+    }
+
+    /**
+     * Procedure returns whether the positions shall be recalculated by setPositions
+     */
+    public boolean isPositionsValid()
+    {
+        return positionsValid;
+    }
+
+    /**
+     * Procedure sets the positions from the given list of all formulas in the document order
+     */
+    public void setPositions(List<FormulaBase> formulas)
+    {
+        positions.clear();
+        nextPosition = 0;
+        for (FormulaBase f : formulas)
+        {
+            positions.put(f.getId(), nextPosition++);
+        }
+        positionsValid = true;
+    }
+
+    /**
+     * Procedure returns the position of the formula with given ID, or INVALID_INDEX if it is not in the list
+     */
+    public int getPosition(int id)
+    {
+        final Integer position = positions.get(id);
+        return position == null ? ViewUtils.INVALID_INDEX : position;
+    }
+
+    private void addEquation(FormulaBase f)
+    {
+        if (f instanceof Equation)
+        {
+            final Equation e = (Equation) f;
+            final String name = e.getName();
+            names.put(e, name);
+            addName(e, name);
+        }
+    }
+
+    private void addName(Equation e, String name)
+    {
+        if (name == null)
+        {
+            return;
+        }
+        ArrayList<Equation> list = equations.get(name);
+        if (list == null)
+        {
+            list = new ArrayList<Equation>(1);
+            equations.put(name, list);
+        }
+        list.add(e);
+    }
+
+    private void removeName(Equation e, String name)
+    {
+        final ArrayList<Equation> list = (name == null) ? null : equations.get(name);
+        if (list != null)
+        {
+            list.remove(e);
+            if (list.isEmpty())
+            {
+                equations.remove(name);
+            }
+        }
+    }
+}
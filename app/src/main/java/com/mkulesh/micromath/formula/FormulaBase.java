@@ -277,7 +277,7 @@ public abstract class FormulaBase extends CustomLayout implements FormulaChangeI
                 }
                 else
                 {
-                    getFormulaList().onManualInput();
+                    getFormulaList().onManualInput(this);
                 }
             }
         }
@@ -484,7 +484,7 @@ public abstract class FormulaBase extends CustomLayout implements FormulaChangeI
                 t.setText(content);
             }
         }
-        getFormulaList().onManualInput();
+        getFormulaList().onManualInput(this);
     }
 
     @Override
@@ -492,14 +492,14 @@ public abstract class FormulaBase extends CustomLayout implements FormulaChangeI
     {
         if (isRootFormula() && getFormulaList().deleteSelectedEquations())
         {
-            getFormulaList().onManualInput();
+            getFormulaList().onManualInput(this);
             return;
         }
         if (parentField != null)
         {
             parentField.onTermDelete(removeElements(), null);
         }
-        getFormulaList().onManualInput();
+        getFormulaList().onManualInput(this);
     }
 
     @Override
@@ -964,6 +964,49 @@ public abstract class FormulaBase extends CustomLayout implements FormulaChangeI
         return isValid;
     }
 
+    /**
+     * Procedure checks whether this formula always gives the same value for the same values of its arguments
+     */
+    public boolean isDeterministic(ArrayList<Equation> visited)
+    {
+        for (TermField t : terms)
+        {
+            if (!t.isDeterministic(visited))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Procedure estimates the number of term evaluations needed to calculate this formula once. The given list
+     * contains the functions that are currently estimated
+     */
+    public double getEvaluationCost(ArrayList<Equation> visited)
+    {
+        double cost = 1.0;
+        for (TermField t : terms)
+        {
+            cost += t.getEvaluationCost(visited);
+        }
+        return cost;
+    }
+
+    /**
+     * Procedure collects recursively the details of the last calculation, like the number of used series terms
+     */
+    public void collectCalculationDetails(ArrayList<String> out)
+    {
+        for (TermField t : terms)
+        {
+            if (t.isTerm())
+            {
+                t.getTerm().collectCalculationDetails(out);
+            }
+        }
+    }
+
     /**
      * Procedure checks that all declared terms are empty
      */
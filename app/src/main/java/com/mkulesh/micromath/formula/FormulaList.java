@@ -55,6 +55,7 @@ import com.mkulesh.micromath.undo.UndoState;
 import com.mkulesh.micromath.utils.ClipboardManager;
 import com.mkulesh.micromath.utils.CompatUtils;
 import com.mkulesh.micromath.utils.IdGenerator;
+import com.mkulesh.micromath.utils.TraceEvents;
 import com.mkulesh.micromath.utils.ViewUtils;
 import com.mkulesh.micromath.widgets.ListChangeIf;
 import com.mkulesh.micromath.widgets.ScaledDimensions;
@@ -66,7 +67,11 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -127,10 +132,19 @@ public class FormulaList implements OnClickListener, ListChangeIf, DocumentPrope
     private XmlLoaderTask xmlLoaderTask = null;
     private final UndoState undoState;
     private TestSession taSession = null;
+    private CalculationProfiler calculationProfiler = null;
 
     @SuppressLint("UseSparseArrays")
     private final HashMap<Integer, FormulaBase> formulas = new HashMap<Integer, FormulaBase>();
 
+    // state of the incremental validation: the formulas changed since the last validation, the formulas found invalid
+    // and the signatures of the validated equations
+    private final HashSet<Integer> changedFormulas = new HashSet<Integer>();
+    private final HashSet<Integer> invalidFormulas = new HashSet<Integer>();
+    @SuppressLint("UseSparseArrays")
+    private final HashMap<Integer, String> equationSignatures = new HashMap<Integer, String>();
+    private int validatedStructureVersion = ViewUtils.INVALID_INDEX;
+
     /*********************************************************
      * Constructors
      *********************************************************/
@@ -439,6 +453,7 @@ public class FormulaList implements OnClickListener, ListChangeIf, DocumentPrope
         {
             // term operations
             FormulaBase s = formulas.get(selectedFormulaId);
+            onFormulaChanged(s);
             if (s != null)
             {
                 TermField tf = s.findFocusedTerm();
@@ -469,7 +484,7 @@ public class FormulaList implements OnClickListener, ListChangeIf, DocumentPrope
         ClipboardManager.copyToClipboard(getContext(), ClipboardManager.CLIPBOARD_LIST_OBJECT);
         ArrayList<FormulaBase.BaseType> types = new ArrayList<FormulaBase.BaseType>();
         ArrayList<Parcelable> data = new ArrayList<Parcelable>();
-        final ArrayList<FormulaBase> fList = formulaListView.getFormulas(FormulaBase.class);
+        final List<FormulaBase> fList = formulaListView.getFormulas(FormulaBase.class);
         for (FormulaBase f : fList)
         {
             if (selectedEquations.contains(f))
@@ -501,7 +516,7 @@ public class FormulaList implements OnClickListener, ListChangeIf, DocumentPrope
         }
         int dataIdx = 0;
         FormulaBase lastInserted = null;
-        final ArrayList<FormulaBase> fList = formulaListView.getFormulas(FormulaBase.class);
+        final List<FormulaBase> fList = formulaListView.getFormulas(FormulaBase.class);
         ReplaceState replaceState = new ReplaceState();
         for (int viewIdx = 0; viewIdx < fList.size(); viewIdx++)
         {
@@ -551,6 +566,26 @@ public class FormulaList implements OnClickListener, ListChangeIf, DocumentPrope
         isContentValid();
     }
 
+    /**
+     * Procedure is called on manual input within the given formula
+     */
+    public void onManualInput(FormulaBase f)
+    {
+        onFormulaChanged(f);
+        onManualInput();
+    }
+
+    /**
+     * Procedure marks the given formula to be re-validated by the next validation
+     */
+    public void onFormulaChanged(FormulaBase f)
+    {
+        if (f != null)
+        {
+            changedFormulas.add(f.getId());
+        }
+    }
+
     @Override
     public void onDocumentPropertiesChange(boolean isChanged)
     {
@@ -567,6 +602,8 @@ public class FormulaList implements OnClickListener, ListChangeIf, DocumentPrope
         }
         if (isChanged)
         {
+            // document settings like redefineAllowed affect the validation of all formulas
+            validatedStructureVersion = ViewUtils.INVALID_INDEX;
             calculate();
         }
     }
@@ -596,7 +633,7 @@ public class FormulaList implements OnClickListener, ListChangeIf, DocumentPrope
      */
     public void writeToBundle(Bundle outState)
     {
-        final ArrayList<FormulaBase> fList = formulaListView.getFormulas(FormulaBase.class);
+        final List<FormulaBase> fList = formulaListView.getFormulas(FormulaBase.class);
         final int n = fList.size();
         outState.putInt(STATE_FORMULA_NUMBER, n);
         int selectedLine = ViewUtils.INVALID_INDEX;
@@ -688,7 +725,7 @@ public class FormulaList implements OnClickListener, ListChangeIf, DocumentPrope
             serializer.startTag(FormulaList.XML_NS, FormulaList.XML_MAIN_TAG);
             serializer.startTag(FormulaList.XML_NS, XML_LIST_TAG);
             documentSettings.writeToXml(serializer);
-            final ArrayList<FormulaBase> fList = formulaListView.getFormulas(FormulaBase.class);
+            final List<FormulaBase> fList = formulaListView.getFormulas(FormulaBase.class);
             for (FormulaBase f : fList)
             {
                 final String term = f.getBaseType().toString().toLowerCase(Locale.ENGLISH);
@@ -764,6 +801,7 @@ public class FormulaList implements OnClickListener, ListChangeIf, DocumentPrope
             if (s != null)
             {
                 final FormulaBase f = getFormula(s.formulaId);
+                onFormulaChanged(f);
                 if (f != null && s.termId != ViewUtils.INVALID_INDEX)
                 {
                     final TermField t = f.findTermWithId(s.termId);
@@ -1076,7 +1114,7 @@ public class FormulaList implements OnClickListener, ListChangeIf, DocumentPrope
         formulaListView.clearFocus();
         // search for the last formula before first deleted that will still in the view
         int selectedFormulaId = ViewUtils.INVALID_INDEX;
-        final ArrayList<FormulaBase> fList = formulaListView.getFormulas(FormulaBase.class);
+        final List<FormulaBase> fList = formulaListView.getFormulas(FormulaBase.class);
         if (selectedEquations.size() < fList.size())
         {
             boolean equationFound = false;
@@ -1156,21 +1194,86 @@ public class FormulaList implements OnClickListener, ListChangeIf, DocumentPrope
     }
 
     /**
-     * Procedure performs validity check for all formulas
+     * Procedure performs validity check for all formulas. If the list structure is not changed since the last
+     * validation, only the changed formulas and the formulas that are linked to them are validated
      */
     private boolean isContentValid()
     {
-        boolean isValid = true;
-        final ArrayList<FormulaBase> fList = formulaListView.getFormulas(FormulaBase.class);
-        ArrayList<Integer> invalidFormulas = new ArrayList<Integer>();
+        if (validatedStructureVersion != formulaListView.getStructureVersion())
+        {
+            return isContentValid(formulaListView.getFormulas(FormulaBase.class), true);
+        }
+        if (changedFormulas.isEmpty())
+        {
+            return invalidFormulas.isEmpty();
+        }
+        // collect changed formulas and the formulas that depend on changed equations
+        final ArrayList<FormulaBase> fList = new ArrayList<FormulaBase>();
+        final ArrayList<Equation> changedEquations = new ArrayList<Equation>();
+        for (Integer id : changedFormulas)
+        {
+            final FormulaBase f = formulas.get(id);
+            if (f != null && formulaListView.getPosition(f) != ViewUtils.INVALID_INDEX)
+            {
+                fList.add(f);
+                if (f instanceof Equation)
+                {
+                    changedEquations.add((Equation) f);
+                }
+            }
+        }
+        if (!changedEquations.isEmpty())
+        {
+            for (LinkHolder f : formulaListView.getDependencyGraph().getDependents(changedEquations))
+            {
+                if (!fList.contains(f) && formulaListView.getPosition(f) != ViewUtils.INVALID_INDEX)
+                {
+                    fList.add(f);
+                }
+            }
+        }
+        Collections.sort(fList, new Comparator<FormulaBase>()
+        {
+            @Override
+            public int compare(FormulaBase lhs, FormulaBase rhs)
+            {
+                return formulaListView.getPosition(lhs) - formulaListView.getPosition(rhs);
+            }
+        });
+        return isContentValid(fList, false);
+    }
+
+    /**
+     * Procedure validates the given formulas in two passes. If a changed equation gets other arguments or becomes
+     * an interval, the formulas that are not linked to it may be affected: in this case, all formulas are validated
+     */
+    private boolean isContentValid(List<FormulaBase> fList, boolean allFormulas)
+    {
+        if (allFormulas)
+        {
+            invalidFormulas.clear();
+            equationSignatures.clear();
+            formulaListView.getDependencyGraph().clear();
+        }
+        boolean headersChanged = allFormulas;
         // first pass - validate single formulas
         for (FormulaBase m : fList)
         {
+            invalidFormulas.remove(m.getId());
             if (!m.isContentValid(FormulaBase.ValidationPassType.VALIDATE_SINGLE_FORMULA))
             {
                 invalidFormulas.add(m.getId());
-                isValid = false;
             }
+            if (m instanceof Equation)
+            {
+                final String signature = ((Equation) m).getSignature();
+                final String oldSignature = equationSignatures.put(m.getId(), signature);
+                if (!allFormulas && !signature.equals(oldSignature))
+                {
+                    return isContentValid(formulaListView.getFormulas(FormulaBase.class), true);
+                }
+            }
+            headersChanged |= m instanceof TextFragment;
         }
         // second pass - validate links
         for (FormulaBase m : fList)
@@ -1181,12 +1284,17 @@ public class FormulaList implements OnClickListener, ListChangeIf, DocumentPrope
             }
             if (!m.isContentValid(FormulaBase.ValidationPassType.VALIDATE_LINKS))
             {
-                isValid = false;
+                invalidFormulas.add(m.getId());
             }
         }
         // last pass: re-numbering text headers
-        numbering();
-        return isValid;
+        if (headersChanged)
+        {
+            numbering();
+        }
+        changedFormulas.clear();
+        validatedStructureVersion = formulaListView.getStructureVersion();
+        return invalidFormulas.isEmpty();
     }
 
     /**
@@ -1194,7 +1302,7 @@ public class FormulaList implements OnClickListener, ListChangeIf, DocumentPrope
      */
     private void numbering()
     {
-        final ArrayList<TextFragment> textList = formulaListView.getFormulas(TextFragment.class);
+        final List<TextFragment> textList = formulaListView.getFormulas(TextFragment.class);
         final int[] headerNumber = TextProperties.getInitialNumber();
         for (TextFragment m : textList)
         {
@@ -1207,16 +1315,23 @@ public class FormulaList implements OnClickListener, ListChangeIf, DocumentPrope
      */
     public void calculate()
     {
-        final ArrayList<CalculationResult> fList = formulaListView.getFormulas(CalculationResult.class);
+        TraceEvents.begin("FormulaList.calculate", TraceEvents.CATEGORY_CALCULATION);
+        final List<CalculationResult> fList = formulaListView.getFormulas(CalculationResult.class);
         for (CalculationResult f : fList)
         {
             f.invalidateResult();
         }
+        if (calculationProfiler != null)
+        {
+            calculationProfiler.clearHeatMap();
+        }
+        calculationProfiler = fragment.isCalculationProfilerEnabled() ? new CalculationProfiler() : null;
         if (isContentValid())
         {
-            CalculaterTask calculaterTask = new CalculaterTask(this, fList);
+            CalculaterTask calculaterTask = new CalculaterTask(this, fList, calculationProfiler);
             CompatUtils.executeAsyncTask(calculaterTask);
         }
+        TraceEvents.end("FormulaList.calculate", TraceEvents.CATEGORY_CALCULATION);
     }
 
     /**
@@ -33,12 +33,17 @@ import com.mkulesh.micromath.widgets.ListChangeIf;
 import com.mkulesh.micromath.widgets.ListChangeIf.Position;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class FormulaListView
 {
     private final Context context;
     private final LinearLayout list;
     private boolean termDeleted = false;
+    private final EquationIndex equationIndex = new EquationIndex();
+    private final DependencyGraph dependencyGraph = new DependencyGraph();
+    private final FormulaRegistry formulaRegistry = new FormulaRegistry();
+    private int structureVersion = 0;
 
     /**
      * Default constructor
@@ -72,6 +77,10 @@ public class FormulaListView
     public void clear()
     {
         list.removeAllViews();
+        equationIndex.clear();
+        dependencyGraph.clear();
+        formulaRegistry.clear();
+        structureVersion++;
         clearFocus();
     }
 
@@ -84,23 +93,34 @@ public class FormulaListView
     }
 
     /**
-     * Getter for the list of formulas of given type
+     * Getter for the read-only list of formulas of given type
      */
-    @SuppressWarnings("unchecked")
-    public <T> ArrayList<T> getFormulas(Class<T> c)
+    public <T> List<T> getFormulas(Class<T> c)
     {
-        ArrayList<T> retValue = new ArrayList<T>();
+        if (!formulaRegistry.isValid())
+        {
+            formulaRegistry.setFormulas(collectFormulas());
+        }
+        return formulaRegistry.get(c);
+    }
+
+    /**
+     * Procedure walks through the list and collects all formulas in the document order
+     */
+    private ArrayList<FormulaBase> collectFormulas()
+    {
+        ArrayList<FormulaBase> retValue = new ArrayList<FormulaBase>();
         final int n = list.getChildCount();
         for (int i = 0; i < n; i++)
         {
             View v = list.getChildAt(i);
             if (v instanceof ListRow)
             {
-                ((ListRow) v).getFormulas(c, retValue);
+                ((ListRow) v).getFormulas(FormulaBase.class, retValue);
             }
-            else if (c.isInstance(v))
+            else if (v instanceof FormulaBase)
             {
-                retValue.add((T) v);
+                retValue.add((FormulaBase) v);
             }
         }
         return retValue;
@@ -192,12 +212,17 @@ public class FormulaListView
      */
     private void addAsRow(FormulaBase f, int rowIdx)
     {
+        structureVersion++;
         if (rowIdx >= 0 && rowIdx <= list.getChildCount())
         {
+            equationIndex.add(f, rowIdx == list.getChildCount());
+            formulaRegistry.add(f, rowIdx == list.getChildCount());
             list.addView(f, rowIdx);
         }
         else
         {
+            equationIndex.add(f, true);
+            formulaRegistry.add(f, true);
             list.addView(f);
         }
     }
@@ -228,6 +253,11 @@ public class FormulaListView
                     ((FormulaBase) v).checkFormulaDepth();
                 }
             }
+            final boolean appended = rowIdx == list.getChildCount() - 1
+                    && (colIdx == ViewUtils.INVALID_INDEX || colIdx >= row.getChildCount());
+            equationIndex.add(f, appended);
+            formulaRegistry.add(f, appended);
+            structureVersion++;
             if (colIdx == ViewUtils.INVALID_INDEX)
             {
                 row.addView(f);
@@ -264,6 +294,10 @@ public class FormulaListView
         {
             return null;
         }
+        equationIndex.remove(f);
+        formulaRegistry.remove(f);
+        removeLinks(f);
+        structureVersion++;
         View v = list.getChildAt(idx);
         if (v instanceof ListRow)
         {
@@ -301,6 +335,10 @@ public class FormulaListView
             {
                 if (((ListRow) v).replaceFormula(oldFormula, newFormula))
                 {
+                    equationIndex.replace(oldFormula, newFormula);
+                    formulaRegistry.replace(oldFormula, newFormula);
+                    removeLinks(oldFormula);
+                    structureVersion++;
                     return true;
                 }
             }
@@ -308,6 +346,10 @@ public class FormulaListView
             {
                 list.removeView(v);
                 list.addView(newFormula, i);
+                equationIndex.replace(oldFormula, newFormula);
+                formulaRegistry.replace(oldFormula, newFormula);
+                removeLinks(oldFormula);
+                structureVersion++;
                 return true;
             }
         }
@@ -398,49 +440,89 @@ public class FormulaListView
     }
 
     /**
-     * Procedure searches a root formula with given properties
+     * Procedure searches a root formula with given properties. The equations with the given name are taken from
+     * the equation index; the last one in the document order is returned. If searchAll is not set, only the
+     * equations that are not placed after the root formula are considered
      */
     public FormulaBase getFormula(String name, int argNumber, int rootId, boolean excludeRoot, boolean searchAll)
     {
-        int idx = getRowIndex(rootId);
-        if (idx == ViewUtils.INVALID_INDEX || searchAll)
+        final List<Equation> candidates = equationIndex.getEquations(name);
+        if (candidates == null)
         {
-            idx = list.getChildCount() - 1;
+            return null;
         }
-        for (int i = idx; i >= 0; i--)
+        ensurePositions();
+        final int rootPosition = searchAll ? ViewUtils.INVALID_INDEX : equationIndex.getPosition(rootId);
+        Equation retValue = null;
+        int retPosition = ViewUtils.INVALID_INDEX;
+        for (Equation f : candidates)
         {
-            final View vRow = list.getChildAt(i);
-            if (vRow instanceof ListRow)
+            final int position = equationIndex.getPosition(f.getId());
+            if (rootPosition != ViewUtils.INVALID_INDEX && position > rootPosition)
             {
-                ListRow row = ((ListRow) vRow);
-                int col = row.getFormulaIndex(rootId);
-                if (col == ViewUtils.INVALID_INDEX || searchAll)
-                {
-                    col = row.getChildCount() - 1;
-                }
-                for (int j = col; j >= 0; j--)
-                {
-                    final View vCol = row.getChildAt(j);
-                    if (vCol instanceof Equation)
-                    {
-                        final Equation f = (Equation) vCol;
-                        if (f.isEqual(name, argNumber, rootId, excludeRoot))
-                        {
-                            return f;
-                        }
-                    }
-                }
+                continue;
             }
-            else if (vRow instanceof Equation)
+            if (position > retPosition && f.isEqual(name, argNumber, rootId, excludeRoot))
             {
-                final Equation f = (Equation) vRow;
-                if (f.isEqual(name, argNumber, rootId, excludeRoot))
-                {
-                    return f;
-                }
+                retValue = f;
+                retPosition = position;
             }
         }
-        return null;
+        return retValue;
+    }
+
+    /**
+     * Procedure updates the equation index if the name of the given equation is changed
+     */
+    public void updateEquationName(Equation e)
+    {
+        if (equationIndex.updateName(e))
+        {
+            structureVersion++;
+        }
+    }
+
+    /**
+     * Procedure returns the graph of links between the formulas of this list
+     */
+    public DependencyGraph getDependencyGraph()
+    {
+        return dependencyGraph;
+    }
+
+    private void removeLinks(FormulaBase f)
+    {
+        if (f instanceof LinkHolder)
+        {
+            dependencyGraph.remove((LinkHolder) f);
+        }
+    }
+
+    /**
+     * Procedure returns the version of the list structure. It is changed if a formula is added, deleted or
+     * replaced, or if an equation is renamed
+     */
+    public int getStructureVersion()
+    {
+        return structureVersion;
+    }
+
+    /**
+     * Procedure returns the position of the given formula in the document order, or INVALID_INDEX if the formula
+     * is not in the list
+     */
+    public int getPosition(FormulaBase f)
+    {
+        ensurePositions();
+        return equationIndex.getPosition(f.getId());
+    }
+
+    private void ensurePositions()
+    {
+        if (!equationIndex.isPositionsValid())
+        {
+            equationIndex.setPositions(getFormulas(FormulaBase.class));
+        }
     }
 
     /*********************************************************
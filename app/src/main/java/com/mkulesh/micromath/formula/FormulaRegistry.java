@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.formula;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that holds the formulas of the formula list grouped by their types in the document order, so that the
+ * formulas of a given type are available without walking through the view hierarchy.
+ *
+ * The registry of a type is created on its first request. The registries are updated incrementally if a formula is
+ * appended to the end of the list, deleted or replaced, and they are re-created on the next request if a formula is
+ * inserted elsewhere. The returned lists are read-only snapshots: a registry that was given out is copied before it
+ * is changed.
+ */
+public class FormulaRegistry
+{
+    private static class Registry
+    {
+        ArrayList<FormulaBase> formulas;
+        List<FormulaBase> snapshot = null;
+
+        Registry(ArrayList<FormulaBase> formulas)
+        {
+            this.formulas = formulas;
+        }
+
+        ArrayList<FormulaBase> modify()
+        {
+            if (snapshot != null)
+            {
+                formulas = new ArrayList<FormulaBase>(formulas);
+                snapshot = null;
+            }
+            return formulas;
+        }
+    }
+
+    private final HashMap<Class<?>, Registry> registries = new HashMap<Class<?>, Registry>();
+    private boolean valid = true;
+
+    public FormulaRegistry()
+    {
+        clear();
+    }
+
+    /**
+     * Procedure clears all registries
+     */
+    public void clear()
+    {
+        registries.clear();
+        registries.put(FormulaBase.class, new Registry(new ArrayList<FormulaBase>()));
+        valid = true;
+    }
+
+    /**
+     * Procedure returns whether the registries correspond to the formula list
+     */
+    public boolean isValid()
+    {
+        return valid;
+    }
+
+    /**
+     * Procedure re-creates the registries from the given list of all formulas
+     */
+    public void setFormulas(List<FormulaBase> formulas)
+    {
+        registries.clear();
+        registries.put(FormulaBase.class, new Registry(new ArrayList<FormulaBase>(formulas)));
+        valid = true;
+    }
+
+    /**
+     * Procedure adds the given formula. If it is not appended to the end of the list, the registries will be
+     * re-created on the next request
+     */
+    public void add(FormulaBase f, boolean appended)
+    {
+        if (!valid)
+        {
+            return;
+        }
+        if (!appended)
+        {
+            valid = false;
+            return;
+        }
+        for (Map.Entry<Class<?>, Registry> e : registries.entrySet())
+        {
+            if (e.getKey().isInstance(f))
+            {
+                e.getValue().modify().add(f);
+            }
+        }
+    }
+
+    /**
+     * Procedure removes the given formula
+     */
+    public void remove(FormulaBase f)
+    {
+        if (!valid)
+        {
+            return;
+        }
+        for (Map.Entry<Class<?>, Registry> e : registries.entrySet())
+        {
+            if (e.getKey().isInstance(f))
+            {
+                e.getValue().modify().remove(f);
+            }
+        }
+    }
+
+    /**
+     * Procedure puts the new formula at the position of the old one
+     */
+    public void replace(FormulaBase oldFormula, FormulaBase newFormula)
+    {
+        if (!valid)
+        {
+            return;
+        }
+        for (Map.Entry<Class<?>, Registry> e : registries.entrySet())
+        {
+            final boolean oldInstance = e.getKey().isInstance(oldFormula);
+            final boolean newInstance = e.getKey().isInstance(newFormula);
+            if (oldInstance && newInstance)
+            {
+                final ArrayList<FormulaBase> formulas = e.getValue().modify();
+                formulas.set(formulas.indexOf(oldFormula), newFormula);
+            }
+            else if (oldInstance)
+            {
+                e.getValue().modify().remove(oldFormula);
+            }
+            else if (newInstance)
+            {
+                // the position of the new formula within this registry is not known
+                valid = false;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Procedure returns the read-only list of formulas of given type. The registries shall be valid
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> get(Class<T> c)
+    {
+        Registry r = registries.get(c);
+        if (r == null)
+        {
+            final ArrayList<FormulaBase> formulas = new ArrayList<FormulaBase>();
+            for (FormulaBase f : registries.get(FormulaBase.class).formulas)
+            {
+                if (c.isInstance(f))
+                {
+                    formulas.add(f);
+                }
+            }
+            r = new Registry(formulas);
+            registries.put(c, r);
+        }
+        if (r.snapshot == null)
+        {
+            r.snapshot = Collections.unmodifiableList(r.formulas);
+        }
+        return (List<T>) (List<?>) r.snapshot;
+    }
+}
@@ -27,9 +27,9 @@ import android.widget.LinearLayout;
 
 import com.mkulesh.micromath.dialogs.DialogResultDetails;
 import com.mkulesh.micromath.dialogs.DialogResultSettings;
-import com.mkulesh.micromath.formula.CalculaterTask.CancelException;
 import com.mkulesh.micromath.formula.TermField.ErrorNotification;
 import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CancelException;
 import com.mkulesh.micromath.math.EquationArrayResult;
 import com.mkulesh.micromath.plus.R;
 import com.mkulesh.micromath.properties.ResultProperties;
@@ -74,6 +74,9 @@ public class FormulaResult extends CalculationResult implements ResultProperties
     private ResultMatrixLayout arrayResultMatrix = null;
     private CustomTextView leftBracket = null, rightBracket = null;
 
+    // Details of the last calculation
+    private final ArrayList<String> calculationDetails = new ArrayList<String>();
+
     private final ResultProperties properties = new ResultProperties();
 
     // undo
@@ -233,6 +236,12 @@ public class FormulaResult extends CalculationResult implements ResultProperties
         arrayResultMatrix.setText("", getFormulaList().getDimen());
     }
 
+    @Override
+    public void abortResult()
+    {
+        clearResult();
+    }
+
     @Override
     public void calculate(CalculaterTask thread) throws CancelException
     {
@@ -271,6 +280,10 @@ public class FormulaResult extends CalculationResult implements ResultProperties
                     argValues[0].setValue(x);
                     arrayArgument.getValue1D(xIndex).setValue(x);
                     linkedIntervals.get(0).setArgumentValues(argValues);
+                    if (thread != null)
+                    {
+                        thread.checkCancelation();
+                    }
                     leftTerm.getValue(thread, arrayResult.getValue2D(xIndex, 0));
                 }
             }
@@ -300,6 +313,10 @@ public class FormulaResult extends CalculationResult implements ResultProperties
                     {
                         argValues[1][0].setValue(yValues.get(yIndex));
                         linkedIntervals.get(1).setArgumentValues(argValues[1]);
+                        if (thread != null)
+                        {
+                            thread.checkCancelation();
+                        }
                         leftTerm.getValue(thread, arrayResult.getValue2D(xIndex, yIndex));
                     }
                 }
@@ -309,6 +326,12 @@ public class FormulaResult extends CalculationResult implements ResultProperties
                 resultType = ResultType.NAN;
             }
         }
+        final String estimatedCost = getEstimatedCostDescription();
+        if (estimatedCost != null)
+        {
+            calculationDetails.add(estimatedCost);
+        }
+        collectCalculationDetails(calculationDetails);
         if (!leftTerm.isTerm() && ta != null)
         {
             ta.setResult(leftTerm.getText(), fillResultString());
@@ -364,9 +387,22 @@ public class FormulaResult extends CalculationResult implements ResultProperties
     {
         if (enableDetails())
         {
-            DialogResultDetails d = new DialogResultDetails(getFormulaList().getActivity(),
-                    arrayArgument, arrayResult,
-                    getFormulaList().getDocumentSettings());
+            final DialogResultDetails d = (resultType == ResultType.ARRAY_1D) ?
+                    new DialogResultDetails(getFormulaList().getActivity(), arrayArgument, arrayResult,
+                            getFormulaList().getDocumentSettings()) :
+                    new DialogResultDetails(getFormulaList().getActivity(), constantResult,
+                            getFormulaList().getDocumentSettings().significantDigits);
+            final ArrayList<String> profile = getProfileDescription();
+            if (profile == null)
+            {
+                d.setCalculationDetails(calculationDetails);
+            }
+            else
+            {
+                final ArrayList<String> details = new ArrayList<String>(calculationDetails);
+                details.addAll(profile);
+                d.setCalculationDetails(details);
+            }
             d.show();
         }
     }
@@ -409,7 +445,9 @@ public class FormulaResult extends CalculationResult implements ResultProperties
     @Override
     public boolean enableDetails()
     {
-        return resultType == ResultType.ARRAY_1D;
+        return resultType == ResultType.ARRAY_1D
+                || (resultType == ResultType.CONSTANT
+                && (!calculationDetails.isEmpty() || isProfiled()));
     }
 
     /*********************************************************
@@ -552,6 +590,7 @@ public class FormulaResult extends CalculationResult implements ResultProperties
         constantResult = null;
         arrayArgument = null;
         arrayResult = null;
+        calculationDetails.clear();
     }
 
     private void fillResultMatrix()
@@ -604,7 +643,7 @@ public class FormulaResult extends CalculationResult implements ResultProperties
                     }
                 }
                 String resultStr = arrayResult.getValue2D(dataRowIdx, dataColIdx).getResultDescription(
-                        getFormulaList().getDocumentSettings());
+                        getFormulaList().getDocumentSettings().significantDigits);
                 arrayResultMatrix.setText(r, c, resultStr);
             }
         }
@@ -661,7 +700,7 @@ public class FormulaResult extends CalculationResult implements ResultProperties
                     }
                 }
                 res.get(r).add(arrayResult.getValue2D(dataRowIdx, dataColIdx).getResultDescription(
-                        getFormulaList().getDocumentSettings()));
+                        getFormulaList().getDocumentSettings().significantDigits));
             }
         }
         return res;
@@ -676,7 +715,7 @@ public class FormulaResult extends CalculationResult implements ResultProperties
 
         if (resultType == ResultType.CONSTANT)
         {
-            return constantResult.getResultDescription(getFormulaList().getDocumentSettings());
+            return constantResult.getResultDescription(getFormulaList().getDocumentSettings().significantDigits);
         }
 
         if (isArrayResult())
@@ -35,6 +35,7 @@ import com.mkulesh.micromath.formula.terms.TrigonometricFunctions;
 import com.mkulesh.micromath.formula.terms.UserFunctions;
 import com.mkulesh.micromath.plus.R;
 import com.mkulesh.micromath.utils.ClipboardManager;
+import com.mkulesh.micromath.utils.CompatUtils;
 import com.mkulesh.micromath.utils.ViewUtils;
 import com.mkulesh.micromath.widgets.CustomEditText;
 import com.mkulesh.micromath.widgets.CustomLayout;
@@ -49,11 +50,21 @@ import java.util.List;
 
 public abstract class FormulaTerm extends FormulaBase implements CalculatableIf
 {
+    /**
+     * Constant used to estimate the calculation cost: the number of points or iterations assumed if a boundary is not
+     * given by a number
+     */
+    protected static final double ESTIMATION_DEFAULT_SIZE = 100.0;
+
     private final FormulaBase formulaRoot;
     protected CustomLayout functionMainLayout = null;
     protected FormulaTermTypeIf termType = null;
     protected boolean useBrackets = false;
 
+    // the fraction of the calculation time spent in this term, or NaN if the term is not profiled
+    private double profileHeat = Double.NaN;
+    private boolean profileHeatShown = false;
+
     /*********************************************************
      * Constructors
      *********************************************************/
@@ -138,6 +149,34 @@ public abstract class FormulaTerm extends FormulaBase implements CalculatableIf
      */
     protected abstract CustomEditText initializeTerm(CustomEditText v, LinearLayout l);
 
+    /*********************************************************
+     * Re-implementation for methods for FormulaBase superclass
+     *********************************************************/
+
+    /**
+     * Procedure updates the text color of this term: if the term is profiled, its symbols are colored depending on
+     * the fraction of the calculation time spent in this term. The arguments are colored by their own terms.
+     */
+    @Override
+    public void updateTextColor()
+    {
+        if (!Double.isNaN(profileHeat) || profileHeatShown)
+        {
+            int color = CompatUtils.getThemeColorAttr(getContext(), R.attr.colorFormulaNormal);
+            if (!Double.isNaN(profileHeat))
+            {
+                color = CalculationProfiler.getHeatColor(color,
+                        CompatUtils.getThemeColorAttr(getContext(), R.attr.colorFormulaInvalid), profileHeat);
+            }
+            for (View v : elements)
+            {
+                updateSymbolColor(v, color);
+            }
+            profileHeatShown = !Double.isNaN(profileHeat);
+        }
+        super.updateTextColor();
+    }
+
     /*********************************************************
      * Implementation for methods for FormulaChangeIf interface
      *********************************************************/
@@ -648,6 +687,31 @@ public abstract class FormulaTerm extends FormulaBase implements CalculatableIf
         return false;
     }
 
+    /**
+     * Procedure sets the fraction of the calculation time spent in this term. It will be shown as heat map by the
+     * next call of updateTextColor
+     */
+    public void setProfileHeat(double profileHeat)
+    {
+        this.profileHeat = profileHeat;
+    }
+
+    private void updateSymbolColor(View v, int color)
+    {
+        if (v instanceof CustomTextView)
+        {
+            ((CustomTextView) v).setTextColor(color);
+        }
+        else if (v instanceof LinearLayout)
+        {
+            final LinearLayout l = (LinearLayout) v;
+            for (int k = 0; k < l.getChildCount(); k++)
+            {
+                updateSymbolColor(l.getChildAt(k), color);
+            }
+        }
+    }
+
     protected void initializeMainLayout()
     {
         // store the main layout in order to show errors
@@ -25,12 +25,6 @@ import java.util.ArrayList;
 
 public abstract class LinkHolder extends FormulaBase
 {
-    private final ArrayList<Equation> directIntervals = new ArrayList<Equation>();
-    private final ArrayList<Equation> allIntervals = new ArrayList<Equation>();
-
-    private final ArrayList<Equation> directFunctions = new ArrayList<Equation>();
-    private final ArrayList<Equation> allFunctions = new ArrayList<Equation>();
-
     /*********************************************************
      * Constructors
      *********************************************************/
@@ -60,16 +54,13 @@ public abstract class LinkHolder extends FormulaBase
         switch (type)
         {
         case VALIDATE_SINGLE_FORMULA:
-            directIntervals.clear();
-            allIntervals.clear();
-            directFunctions.clear();
-            allFunctions.clear();
+            getDependencyGraph().clearLinks(this);
             isValid = super.isContentValid(type);
             break;
         case VALIDATE_LINKS:
             isValid = super.isContentValid(type);
-            collectAllIntervals(null);
-            collectAllFunctions(null);
+            // the closure is calculated here in order to be cached before the calculation thread uses it
+            getDependencyGraph().getAllFunctions(this);
             break;
         }
         return isValid;
@@ -79,12 +70,20 @@ public abstract class LinkHolder extends FormulaBase
      * LinkHolder-specific methods
      *********************************************************/
 
+    /**
+     * Procedure returns the dependency graph of the document
+     */
+    private DependencyGraph getDependencyGraph()
+    {
+        return getFormulaList().getFormulaListView().getDependencyGraph();
+    }
+
     /**
      * Procedure returns the list of directly linked intervals
      */
     public ArrayList<Equation> getDirectIntervals()
     {
-        return directIntervals;
+        return getDependencyGraph().getDirectIntervals(this);
     }
 
     /**
@@ -92,7 +91,7 @@ public abstract class LinkHolder extends FormulaBase
      */
     public ArrayList<Equation> getAllIntervals()
     {
-        return allIntervals;
+        return getDependencyGraph().getAllIntervals(this);
     }
 
     /**
@@ -100,7 +99,7 @@ public abstract class LinkHolder extends FormulaBase
      */
     public ArrayList<Equation> getAllFunctions()
     {
-        return allFunctions;
+        return getDependencyGraph().getAllFunctions(this);
     }
 
     /**
@@ -108,117 +107,34 @@ public abstract class LinkHolder extends FormulaBase
      */
     public ArrayList<String> getIndirectIntervals()
     {
-        ArrayList<String> retValue = new ArrayList<String>();
-        if (getDirectIntervals().size() != getAllIntervals().size())
-        {
-            for (Equation li : allIntervals)
-            {
-                if (!directIntervals.contains(li))
-                {
-                    retValue.add(li.getName());
-                }
-            }
-        }
-        return retValue;
+        return getDependencyGraph().getIndirectIntervals(this);
     }
 
     /**
-     * Procedure shall be called from a child term in order to inform this object that it depends on an interval or
-     * function
+     * Procedure checks whether this formula is directly or indirectly linked to the given equation
      */
-    public void addLinkedEquation(Equation linkedEquation)
+    public boolean dependsOn(Equation e)
     {
-        if (linkedEquation == null)
-        {
-            return;
-        }
-        if (linkedEquation.isInterval() && !directIntervals.contains(linkedEquation))
-        {
-            directIntervals.add(linkedEquation);
-        }
-        else if (!linkedEquation.isInterval() && !directFunctions.contains(linkedEquation))
-        {
-            directFunctions.add(linkedEquation);
-        }
+        return getDependencyGraph().dependsOn(this, e);
     }
 
     /**
-     * Procedure recursively collects linked intervals
+     * Procedure checks whether this formula directly or indirectly calls the given function
      */
-    protected ArrayList<Equation> collectAllIntervals(ArrayList<LinkHolder> callStack)
+    public boolean callsFunction(Equation e)
     {
-        for (Equation li : directIntervals)
-        {
-            if (!allIntervals.contains(li))
-            {
-                allIntervals.add(li);
-            }
-        }
-
-        // stack is used to prevent unlimited recursive calls
-        ArrayList<LinkHolder> stack = new ArrayList<LinkHolder>();
-        if (callStack != null)
-        {
-            for (LinkHolder lh : callStack)
-            {
-                stack.add(lh);
-            }
-        }
-        stack.add(this);
-
-        for (Equation e : directFunctions)
-        {
-            if (stack.contains(e))
-            {
-                continue;
-            }
-            ArrayList<Equation> tmpIntervals = e.collectAllIntervals(stack);
-            for (Equation li : tmpIntervals)
-            {
-                if (!allIntervals.contains(li))
-                {
-                    allIntervals.add(li);
-                }
-            }
-        }
-        return allIntervals;
+        return getDependencyGraph().callsFunction(this, e);
     }
 
     /**
-     * Procedure recursively collects all linked functions
+     * Procedure shall be called from a child term in order to inform this object that it depends on an interval or
+     * function
      */
-    protected ArrayList<Equation> collectAllFunctions(ArrayList<LinkHolder> callStack)
+    public void addLinkedEquation(Equation linkedEquation)
     {
-        // stack is used to prevent unlimited recursive calls
-        ArrayList<LinkHolder> stack = new ArrayList<LinkHolder>();
-        if (callStack != null)
-        {
-            for (LinkHolder lh : callStack)
-            {
-                stack.add(lh);
-            }
-        }
-        stack.add(this);
-
-        for (Equation e : directFunctions)
+        if (linkedEquation != null)
         {
-            if (!allFunctions.contains(e))
-            {
-                allFunctions.add(e);
-            }
-            if (stack.contains(e))
-            {
-                continue;
-            }
-            ArrayList<Equation> tmpFunctions = e.collectAllFunctions(stack);
-            for (Equation li : tmpFunctions)
-            {
-                if (!allFunctions.contains(li))
-                {
-                    allFunctions.add(li);
-                }
-            }
+            getDependencyGraph().addLink(this, linkedEquation);
         }
-        return allFunctions;
     }
 }
@@ -26,12 +26,13 @@ import android.view.View;
 import android.widget.LinearLayout;
 import android.widget.Toast;
 
-import com.mkulesh.micromath.formula.CalculaterTask.CancelException;
+import com.mkulesh.micromath.core.ArgumentHolderIf;
 import com.mkulesh.micromath.formula.FormulaBase.FocusType;
 import com.mkulesh.micromath.formula.PaletteButton.Category;
 import com.mkulesh.micromath.formula.terms.Comparators;
 import com.mkulesh.micromath.formula.terms.Intervals;
 import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CancelException;
 import com.mkulesh.micromath.plus.R;
 import com.mkulesh.micromath.undo.FormulaState;
 import com.mkulesh.micromath.utils.CompatUtils;
@@ -95,6 +96,9 @@ public class TermField implements TextChangeIf, FocusChangeIf, CalculatableIf
     private final TermParser parser = new TermParser();
     private Equation linkedVariable = null;
 
+    // value of a loop-invariant term calculated once before the loop starts
+    private CalculatedValue cachedValue = null;
+
     // custom errors that can be set externally
     public enum ErrorNotification
     {
@@ -193,6 +197,10 @@ public class TermField implements TextChangeIf, FocusChangeIf, CalculatableIf
         parser.setText(this, formulaRoot, text);
         if (text.isEquationName())
         {
+            if (formulaRoot instanceof Equation)
+            {
+                formulaRoot.getFormulaList().getFormulaListView().updateEquationName((Equation) formulaRoot);
+            }
             // in this mode, only a name is allowed and shall be unique
             if (parser.getFunctionName() != null && parser.errorId == NO_ERROR_ID)
             {
@@ -242,13 +250,27 @@ public class TermField implements TextChangeIf, FocusChangeIf, CalculatableIf
      */
     public CalculatedValue.ValueType getValue(CalculaterTask thread, CalculatedValue outValue) throws CancelException
     {
-        if (thread != null)
+        // the cancellation is not checked here but in the loops over the formula evaluations
+        if (cachedValue != null)
         {
-            thread.checkCancelation();
+            return outValue.assign(cachedValue);
         }
         if (isTerm())
         {
-            return term.getValue(thread, outValue);
+            final CalculationProfiler profiler = (thread != null) ? thread.getProfiler() : null;
+            if (profiler == null)
+            {
+                return term.getValue(thread, outValue);
+            }
+            final CalculationProfiler.Entry profile = profiler.enterTerm(term);
+            try
+            {
+                return term.getValue(thread, outValue);
+            }
+            finally
+            {
+                profiler.leaveTerm(profile);
+            }
         }
         else
         {
@@ -275,6 +297,87 @@ public class TermField implements TextChangeIf, FocusChangeIf, CalculatableIf
         }
     }
 
+    /**
+     * Procedure calculates the formula value and invalidates it if it is not a real number
+     */
+    public CalculatedValue.ValueType getRealValue(CalculaterTask thread, CalculatedValue outValue)
+            throws CancelException
+    {
+        getValue(thread, outValue);
+        return outValue.isReal() ? outValue.getValueType() : outValue.invalidate(CalculatedValue.ErrorType.NOT_A_REAL);
+    }
+
+    /**
+     * Procedure checks whether the value of this term is cached
+     */
+    public boolean isCached()
+    {
+        return cachedValue != null;
+    }
+
+    /**
+     * Procedure sets the cached value of this term that will be returned by getValue until it is reset to null
+     */
+    public void setCachedValue(CalculatedValue cachedValue)
+    {
+        this.cachedValue = cachedValue;
+    }
+
+    /**
+     * Procedure checks whether this term is an argument defined by one of the given argument holders
+     */
+    public boolean isArgumentOf(ArrayList<ArgumentHolderIf> holders)
+    {
+        return !isTerm() && contentType == ContentType.ARGUMENT && holders.contains(parser.getArgumentHolder());
+    }
+
+    /**
+     * Procedure checks whether this term always gives the same value for the same values of its arguments
+     */
+    public boolean isDeterministic(ArrayList<Equation> visited)
+    {
+        if (isTerm())
+        {
+            return term.isDeterministic(visited);
+        }
+        if (contentType == ContentType.VARIABLE_LINK && linkedVariable != null)
+        {
+            return linkedVariable.isDeterministic(visited);
+        }
+        return true;
+    }
+
+    /**
+     * Procedure estimates the number of term evaluations needed to calculate this term once. A linked variable is
+     * calculated only once per calculation and is therefore counted as a single evaluation
+     */
+    public double getEvaluationCost(ArrayList<Equation> visited)
+    {
+        return isTerm() ? term.getEvaluationCost(visited) : 1.0;
+    }
+
+    /**
+     * Procedure returns the real value of this term if it is given by a number or by a variable that is in turn
+     * given by a number. It is used to estimate the calculation cost in UI thread before the calculation starts, so
+     * nothing is calculated: only the parsed text of the terms is used. Returns NaN if the value is not available
+     */
+    public double getEstimatedValue(ArrayList<Equation> visited)
+    {
+        if (isTerm())
+        {
+            return Double.NaN;
+        }
+        if (contentType == ContentType.NUMBER && parser.getValue() != null && parser.getValue().isReal())
+        {
+            return parser.getValue().getReal();
+        }
+        if (contentType == ContentType.VARIABLE_LINK && linkedVariable != null)
+        {
+            return linkedVariable.getEstimatedValue(visited);
+        }
+        return Double.NaN;
+    }
+
     /**
      * Procedure checks whether this term holds a differentiable equation with respect to given variable name
      */
@@ -396,6 +499,7 @@ public class TermField implements TextChangeIf, FocusChangeIf, CalculatableIf
     @Override
     public void onTextChanged(String s, boolean isManualInput)
     {
+        formulaRoot.getFormulaList().onFormulaChanged(formulaRoot);
         boolean converted = false;
         final boolean isEmpty = (s == null || s.length() == 0);
         if (textChangeDetectionEnabled)
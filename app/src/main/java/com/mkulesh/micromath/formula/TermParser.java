@@ -18,6 +18,8 @@
  ******************************************************************************/
 package com.mkulesh.micromath.formula;
 
+import com.mkulesh.micromath.core.ArgumentHolderIf;
+import com.mkulesh.micromath.core.TextParser;
 import com.mkulesh.micromath.math.CalculatedValue;
 import com.mkulesh.micromath.plus.R;
 import com.mkulesh.micromath.utils.ViewUtils;
@@ -39,14 +41,14 @@ public class TermParser
 
     public int errorId = TermField.NO_ERROR_ID;
 
-    public static final String CONST_NAN = "NaN";
-    public static final String CONST_INF = "∞";
-    public static final String CONST_E = "e";
-    public static final String CONST_PI1 = "π";
-    public static final String CONST_PI2 = "pi";
-    public static final String IMAGINARY_UNIT = "i";
-    public static final String POSITIVE_SIGN = "+";
-    public static final String NEGATIVE_SIGN = "-";
+    public static final String CONST_NAN = TextParser.CONST_NAN;
+    public static final String CONST_INF = TextParser.CONST_INF;
+    public static final String CONST_E = TextParser.CONST_E;
+    public static final String CONST_PI1 = TextParser.CONST_PI1;
+    public static final String CONST_PI2 = TextParser.CONST_PI2;
+    public static final String IMAGINARY_UNIT = TextParser.IMAGINARY_UNIT;
+    public static final String POSITIVE_SIGN = TextParser.POSITIVE_SIGN;
+    public static final String NEGATIVE_SIGN = TextParser.NEGATIVE_SIGN;
 
     public TermParser()
     {
@@ -118,6 +120,21 @@ public class TermParser
 
         String text = inText.trim();
 
+        // check for infinity: it is only allowed in the fields that support it, like loop boundaries
+        if (editText.isInfinityEnabled())
+        {
+            if (CONST_INF.equals(text) || (POSITIVE_SIGN + CONST_INF).equals(text))
+            {
+                value = new CalculatedValue(CalculatedValue.ValueType.REAL, Double.POSITIVE_INFINITY, 0.0);
+                return;
+            }
+            else if ((NEGATIVE_SIGN + CONST_INF).equals(text))
+            {
+                value = new CalculatedValue(CalculatedValue.ValueType.REAL, Double.NEGATIVE_INFINITY, 0.0);
+                return;
+            }
+        }
+
         // check for forbidden content
         if (CONST_NAN.equals(text) || CONST_INF.equals(text))
         {
@@ -145,7 +162,7 @@ public class TermParser
         // check if is a valid complex value
         try
         {
-            Complex cmplValue = complexValueOf(text);
+            Complex cmplValue = TextParser.complexValueOf(text);
             if (cmplValue != null)
             {
                 if (!editText.isComplexEnabled())
@@ -325,57 +342,4 @@ public class TermParser
         }
         return false;
     }
-
-    public static Complex complexValueOf(String text)
-    {
-        // text shall contain imaginary unit
-        if (text == null || !text.contains(IMAGINARY_UNIT))
-        {
-            return null;
-        }
-
-        // imaginary unit shall be the last character
-        final int unitPos = text.indexOf(IMAGINARY_UNIT);
-        if (unitPos != text.length() - 1)
-        {
-            return null;
-        }
-
-        // search for +/- sign before imaginary unit
-        int signPos = text.lastIndexOf(POSITIVE_SIGN);
-        if (signPos < 0)
-        {
-            signPos = text.lastIndexOf(NEGATIVE_SIGN);
-        }
-        if (signPos < 0)
-        {
-            signPos = 0;
-        }
-
-        // split real and imaginary part
-        String rePart = "", imPart = "";
-        try
-        {
-            rePart = (signPos > 0) ? text.substring(0, signPos) : "0.0";
-            imPart = (unitPos > signPos) ? text.substring(signPos, unitPos) : "1.0";
-            if (imPart.equals(POSITIVE_SIGN) || imPart.equals(NEGATIVE_SIGN))
-            {
-                imPart += "1.0";
-            }
-        }
-        catch (IndexOutOfBoundsException e)
-        {
-            return null;
-        }
-
-        // convert both parts
-        try
-        {
-            return new Complex(Double.valueOf(rePart), Double.valueOf(imPart));
-        }
-        catch (NumberFormatException e)
-        {
-            return null;
-        }
-    }
 }
@@ -137,7 +137,7 @@ public class TextFragment extends FormulaBase implements TextPropertiesChangeIf
                 getFormulaList().getUndoState().addEntry(formulaState);
             }
             updateTextView();
-            getFormulaList().onManualInput();
+            getFormulaList().onManualInput(this);
         }
         formulaState = null;
     }
@@ -19,13 +19,17 @@
 package com.mkulesh.micromath.formula;
 
 import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.SystemClock;
 import android.util.Xml;
 
 import com.mkulesh.micromath.fman.FileUtils;
 import com.mkulesh.micromath.plus.R;
 import com.mkulesh.micromath.properties.DocumentProperties;
 import com.mkulesh.micromath.properties.TextProperties;
+import com.mkulesh.micromath.utils.RecordedXmlParser;
 import com.mkulesh.micromath.utils.SynchronizedBoolean;
+import com.mkulesh.micromath.utils.TraceEvents;
 import com.mkulesh.micromath.utils.ViewUtils;
 import com.mkulesh.micromath.utils.XmlUtils;
 import com.mkulesh.micromath.widgets.ListChangeIf.Position;
@@ -34,8 +38,15 @@ import org.xmlpull.v1.XmlPullParser;
 
 import java.io.InputStream;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class XmlLoaderTask extends AsyncTask<Void, FormulaBase.BaseType, Void>
+/**
+ * The document is parsed in the background thread: each formula is recorded into a view-independent list of XML
+ * events. The formula views are created from these records in the UI thread, in batches that are limited by the
+ * time of a frame so that the UI remains responsive
+ */
+public class XmlLoaderTask extends AsyncTask<Void, Void, Void>
 {
     public enum PostAction
     {
@@ -44,17 +55,49 @@ public class XmlLoaderTask extends AsyncTask<Void, FormulaBase.BaseType, Void>
         INTERRUPT
     }
 
+    /**
+     * Parsed formula that waits for the creation of its view
+     */
+    private static final class ParsedFormula
+    {
+        final FormulaBase.BaseType type;
+        final XmlPullParser parser;
+
+        ParsedFormula(FormulaBase.BaseType type, XmlPullParser parser)
+        {
+            this.type = type;
+            this.parser = parser;
+        }
+    }
+
+    /**
+     * The time in milliseconds that the creation of views may take per frame
+     */
+    private static final long FRAME_BUDGET = 12;
+
     private final FormulaList list;
     private final InputStream stream;
     private final String name;
-    private XmlPullParser parser = null;
     private int firstFormulaId = ViewUtils.INVALID_INDEX;
-    private final SynchronizedBoolean isPublishRuns = new SynchronizedBoolean();
     private final SynchronizedBoolean isAborted = new SynchronizedBoolean();
     private final int[] headerNumber;
+    private final ConcurrentLinkedQueue<ParsedFormula> parsedFormulas = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean isCreationPending = new AtomicBoolean(false);
+    private final Handler handler = new Handler();
+    private boolean isParsingFinished = false;
+    private boolean isCreationFailed = false;
+
+    private final Runnable formulaCreator = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            createFormulas();
+        }
+    };
 
     // result of operation
-    public String error = null;
+    public volatile String error = null;
     public PostAction postAction = null;
 
     XmlLoaderTask(FormulaList list, InputStream stream, String name, PostAction postAction)
@@ -69,6 +112,7 @@ public class XmlLoaderTask extends AsyncTask<Void, FormulaBase.BaseType, Void>
     @Override
     protected void onPreExecute()
     {
+        TraceEvents.begin("XmlLoaderTask", TraceEvents.CATEGORY_LOADING);
         list.clear();
         list.setInOperation(/* owner= */this, /* inOperation= */true, /* stopHandler= */null);
     }
@@ -76,11 +120,11 @@ public class XmlLoaderTask extends AsyncTask<Void, FormulaBase.BaseType, Void>
     @Override
     protected Void doInBackground(Void... arg0)
     {
-        isPublishRuns.set(false);
         isAborted.set(false);
+        TraceEvents.begin("parse document", TraceEvents.CATEGORY_LOADING);
         try
         {
-            parser = Xml.newPullParser();
+            final XmlPullParser parser = Xml.newPullParser();
             parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
             parser.setInput(stream, null);
             parser.nextTag();
@@ -135,15 +179,11 @@ public class XmlLoaderTask extends AsyncTask<Void, FormulaBase.BaseType, Void>
                         }
                         if (t != null)
                         {
-                            isPublishRuns.set(true);
                             parser.require(XmlPullParser.START_TAG, FormulaList.XML_NS, n2);
-                            publishProgress(t);
-                            synchronized (isPublishRuns)
+                            parsedFormulas.add(new ParsedFormula(t, RecordedXmlParser.record(parser)));
+                            if (isCreationPending.compareAndSet(false, true))
                             {
-                                while (isPublishRuns.isSet())
-                                {
-                                    isPublishRuns.wait();
-                                }
+                                publishProgress();
                             }
                             if (error != null)
                             {
@@ -160,14 +200,6 @@ public class XmlLoaderTask extends AsyncTask<Void, FormulaBase.BaseType, Void>
                             postAction = PostAction.INTERRUPT;
                             return null;
                         }
-                        try
-                        {
-                            Thread.sleep(25);
-                        }
-                        catch (InterruptedException e)
-                        {
-                            // nothing to do
-                        }
                     }
                 }
                 else
@@ -181,24 +213,79 @@ public class XmlLoaderTask extends AsyncTask<Void, FormulaBase.BaseType, Void>
             error = String.format(list.getActivity().getResources().getString(R.string.error_file_read), name);
             ViewUtils.Debug(this, error + ", " + e.getLocalizedMessage());
         }
+        finally
+        {
+            TraceEvents.end("parse document", TraceEvents.CATEGORY_LOADING);
+        }
         return null;
     }
 
     @Override
-    protected void onProgressUpdate(FormulaBase.BaseType... t)
+    protected void onProgressUpdate(Void... par)
     {
-        if (isAborted.isSet())
+        createFormulas();
+    }
+
+    @Override
+    protected void onPostExecute(Void par)
+    {
+        FileUtils.closeStream(stream);
+        isParsingFinished = true;
+        createFormulas();
+    }
+
+    /**
+     * Procedure creates the views of the parsed formulas until the time of a frame is over. If parsed formulas
+     * remain, it is scheduled again; otherwise, the loading is finished if the parsing is finished
+     */
+    private void createFormulas()
+    {
+        isCreationPending.set(false);
+        final long deadline = SystemClock.uptimeMillis() + FRAME_BUDGET;
+        ParsedFormula p;
+        while ((p = parsedFormulas.poll()) != null)
+        {
+            if (isAborted.isSet() || isCreationFailed)
+            {
+                // remaining formulas are dropped
+                continue;
+            }
+            isCreationFailed = !createFormula(p);
+            if (SystemClock.uptimeMillis() >= deadline)
+            {
+                break;
+            }
+        }
+        if (!parsedFormulas.isEmpty())
+        {
+            if (isCreationPending.compareAndSet(false, true))
+            {
+                handler.post(formulaCreator);
+            }
+        }
+        else if (isParsingFinished)
         {
-            isPublishRuns.set(false);
-            return;
+            finishLoading();
         }
-        FormulaBase f = list.addBaseFormula(t[0]);
+    }
+
+    /**
+     * Procedure creates the view of the given parsed formula and adds it to the end of the list. Returns false if the
+     * formula can not be read
+     */
+    private boolean createFormula(ParsedFormula p)
+    {
+        boolean isValid = true;
+        final String traceName = "read " + p.type.toString();
+        TraceEvents.begin(traceName, TraceEvents.CATEGORY_LOADING);
+        FormulaBase f = list.addBaseFormula(p.type);
         try
         {
-            f.readFromXml(parser);
+            f.readFromXml(p.parser);
         }
         catch (Exception e)
         {
+            isValid = false;
             error = String.format(list.getActivity().getResources().getString(R.string.error_file_read), name);
             ViewUtils.Debug(this, error + ", " + e.getLocalizedMessage());
         }
@@ -214,19 +301,27 @@ public class XmlLoaderTask extends AsyncTask<Void, FormulaBase.BaseType, Void>
                 firstFormulaId = f.getId();
             }
         }
-        isPublishRuns.set(false);
+        TraceEvents.end(traceName, TraceEvents.CATEGORY_LOADING);
+        return isValid;
     }
 
-    @Override
-    protected void onPostExecute(Void par)
+    private void finishLoading()
     {
-        FileUtils.closeStream(stream);
+        handler.removeCallbacks(formulaCreator);
+        if (isAborted.isSet())
+        {
+            error = null;
+            postAction = PostAction.INTERRUPT;
+        }
         DocumentProperties.setDocumentVersion(DocumentProperties.LATEST_DOCUMENT_VERSION);
         if (list.getSelectedFormulaId() == ViewUtils.INVALID_INDEX)
         {
             list.setSelectedFormula(firstFormulaId, false);
         }
         list.setInOperation(/* owner= */this, /* inOperation= */false, /* stopHandler= */null);
+        // the loading span is opened in onPreExecute and closed here, both in UI thread, after the last view is created
+        TraceEvents.end("XmlLoaderTask", TraceEvents.CATEGORY_LOADING);
+        TraceEvents.writeInBackground(list.getActivity());
     }
 
     public void abort()
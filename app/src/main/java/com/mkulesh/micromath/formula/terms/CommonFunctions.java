@@ -27,12 +27,12 @@ import android.widget.LinearLayout;
 import com.mkulesh.micromath.formula.BracketParser;
 import com.mkulesh.micromath.formula.CalculatableIf;
 import com.mkulesh.micromath.formula.CalculaterTask;
-import com.mkulesh.micromath.formula.CalculaterTask.CancelException;
 import com.mkulesh.micromath.formula.FormulaBase;
 import com.mkulesh.micromath.formula.FormulaTermTypeIf;
 import com.mkulesh.micromath.formula.Palette;
 import com.mkulesh.micromath.formula.TermField;
 import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CancelException;
 import com.mkulesh.micromath.plus.R;
 import com.mkulesh.micromath.widgets.CustomEditText;
 import com.mkulesh.micromath.widgets.CustomTextView;
@@ -289,6 +289,10 @@ public class CommonFunctions extends FunctionBase
             switch (getFunctionType())
             {
             case POWER:
+                if (CalculaterTask.isFastMath(thread))
+                {
+                    return outValue.fastPow(a0, argVal[1]);
+                }
                 return outValue.pow(a0, argVal[1]);
 
             case SQRT:
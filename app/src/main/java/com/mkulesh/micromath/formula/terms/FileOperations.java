@@ -23,26 +23,31 @@ import android.net.Uri;
 import android.util.AttributeSet;
 import android.widget.LinearLayout;
 
+import com.mkulesh.micromath.core.BinaryDataTable;
+import com.mkulesh.micromath.core.DataTable;
+import com.mkulesh.micromath.core.DataTableCache;
+import com.mkulesh.micromath.core.DataTableIf;
+import com.mkulesh.micromath.core.DataTableWriter;
+import com.mkulesh.micromath.core.MappedDataTable;
 import com.mkulesh.micromath.fman.FileUtils;
 import com.mkulesh.micromath.formula.CalculatableIf;
 import com.mkulesh.micromath.formula.CalculaterTask;
-import com.mkulesh.micromath.formula.CalculaterTask.CancelException;
 import com.mkulesh.micromath.formula.Equation;
 import com.mkulesh.micromath.formula.FormulaBase;
 import com.mkulesh.micromath.formula.FormulaTermTypeIf;
+import com.mkulesh.micromath.formula.LinkHolder;
 import com.mkulesh.micromath.formula.Palette;
 import com.mkulesh.micromath.formula.TermField;
-import com.mkulesh.micromath.formula.TermParser;
 import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CancelException;
+import com.mkulesh.micromath.math.EquationArrayResult;
 import com.mkulesh.micromath.plus.R;
+import com.mkulesh.micromath.utils.ViewUtils;
 
-import org.apache.commons.math3.complex.Complex;
-
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
+import java.nio.channels.FileChannel;
 import java.util.Locale;
 
 public class FileOperations extends FunctionBase
@@ -57,7 +62,8 @@ public class FileOperations extends FunctionBase
      */
     public enum FunctionType implements FormulaTermTypeIf
     {
-        READ(R.drawable.p_file_read, R.string.math_file_read);
+        READ(R.drawable.p_file_read, R.string.math_file_read),
+        WRITE(R.drawable.p_file_write, R.string.math_file_write);
 
         private final int imageId;
         private final int descriptionId;
@@ -118,11 +124,20 @@ public class FileOperations extends FunctionBase
         return null;
     }
 
+    /**
+     * The parsed files are shared between the calculations: an unchanged file is not read again. The cached
+     * memory-mapped files are limited separately since they occupy the address space of the app
+     */
+    private static final DataTableCache fileCache = new DataTableCache(
+            Math.min(Runtime.getRuntime().maxMemory() / 8, 64L * 1024L * 1024L), 512L * 1024L * 1024L);
+
     /**
      * Private attributes
      */
     private TermField fileName = null;
-    private final ArrayList<ArrayList<String>> fileBuffer = new ArrayList<>();
+    private TermField arrayName = null;
+    private DataTableIf fileData = null;
+    private Equation arrayEquation = null;
 
     /*********************************************************
      * Constructors
@@ -138,7 +153,11 @@ public class FileOperations extends FunctionBase
         }
         createGeneralFunction(R.layout.formula_file_operation, s, 1, idx);
         fileName = terms.get(0);
-        if (fileName == null)
+        if (termType == FunctionType.WRITE)
+        {
+            arrayName = addArgument(fileName, R.layout.formula_file_write_arg, 0);
+        }
+        if (fileName == null || (termType == FunctionType.WRITE && arrayName == null))
         {
             throw new Exception("cannot initialize function terms");
         }
@@ -171,46 +190,19 @@ public class FileOperations extends FunctionBase
     @Override
     public CalculatedValue.ValueType getValue(CalculaterTask thread, CalculatedValue outValue) throws CancelException
     {
+        if (termType == FunctionType.WRITE)
+        {
+            return writeFile(thread, outValue);
+        }
         if (getFormulaRoot() instanceof Equation)
         {
             Equation eq = (Equation) getFormulaRoot();
             final int argNumber = eq.getArguments() != null ? eq.getArguments().size() : 0;
-            String strValue = null;
-            if (argNumber == 1 || argNumber == 2)
+            if (fileData != null && (argNumber == 1 || argNumber == 2))
             {
                 final int a0 = eq.getArgumentValue(0).getInteger();
-                if (a0 < fileBuffer.size())
-                {
-                    final ArrayList<String> line = fileBuffer.get(a0);
-                    final int a1 = (argNumber == 1) ? 0 : eq.getArgumentValue(1).getInteger();
-                    if (a1 < line.size())
-                    {
-                        strValue = line.get(a1);
-                    }
-                }
-            }
-            if (strValue != null)
-            {
-                try
-                {
-                    return outValue.setValue(Double.parseDouble(strValue));
-                }
-                catch (Exception ex)
-                {
-                    // nothing to do: we will try to convert it to complex
-                }
-                Complex cmplValue = TermParser.complexValueOf(strValue);
-                if (cmplValue != null)
-                {
-                    if (cmplValue.getImaginary() != 0.0)
-                    {
-                        return outValue.setComplexValue(cmplValue.getReal(), cmplValue.getImaginary());
-                    }
-                    else
-                    {
-                        return outValue.setValue(cmplValue.getReal());
-                    }
-                }
+                final int a1 = (argNumber == 1) ? 0 : eq.getArgumentValue(1).getInteger();
+                return fileData.getValue(a0, a1, outValue);
             }
             return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
         }
@@ -237,7 +229,12 @@ public class FileOperations extends FunctionBase
         switch (type)
         {
         case VALIDATE_SINGLE_FORMULA:
-            fileBuffer.clear();
+            if (termType == FunctionType.WRITE)
+            {
+                errorMsg = validateArray();
+                break;
+            }
+            fileData = null;
             final InputStream fileStream = openFileStream(fileName.getText());
             if (fileStream == null)
             {
@@ -261,11 +258,24 @@ public class FileOperations extends FunctionBase
         return errorMsg == null;
     }
 
+    @Override
+    protected boolean isRemainingTermOnDelete()
+    {
+        // the arguments of a file operation can not be deleted separately
+        return true;
+    }
+
     /*********************************************************
      * FormulaTermFileOperation-specific methods
      *********************************************************/
 
     private InputStream openFileStream(final String name)
+    {
+        final Uri uri = getFileUri(name);
+        return (uri == null) ? null : FileUtils.getInputStream(getContext(), uri, false);
+    }
+
+    private Uri getFileUri(final String name)
     {
         if (name == null || name.length() == 0)
         {
@@ -282,58 +292,231 @@ public class FileOperations extends FunctionBase
             imageUri = FileUtils.catUri(getContext(), getFormulaList().getParentDirectory(), name);
         }
 
-        if (imageUri == null)
+        return imageUri;
+    }
+
+    public void prepareFileOperation(CalculaterTask thread) throws CancelException
+    {
+        fileData = null;
+        if (termType != FunctionType.READ)
         {
-            return null;
+            return;
+        }
+        final Uri uri = getFileUri(fileName.getText());
+        if (uri == null)
+        {
+            return;
+        }
+
+        final String stamp = FileUtils.getFileStamp(getContext(), uri);
+        if (stamp != null)
+        {
+            fileData = fileCache.get(uri.toString(), stamp);
+            if (fileData != null)
+            {
+                return;
+            }
+        }
+
+        final BinaryDataTable.Format binaryFormat = BinaryDataTable.getFormat(fileName.getText());
+        if (binaryFormat != null)
+        {
+            fileData = readBinaryFile(uri, binaryFormat, thread);
+        }
+        else if (!mapFile(uri, thread))
+        {
+            fileData = readFile(uri);
         }
 
-        return FileUtils.getInputStream(getContext(), imageUri, false);
+        if (fileData != null && stamp != null)
+        {
+            fileCache.put(uri.toString(), stamp, fileData);
+        }
     }
 
-    public void prepareFileOperation()
+    /**
+     * Procedure memory-maps the given file if its parsed columns would not fit into the heap. Returns false if the
+     * file shall be read into the heap. A file that can not be mapped is not read into the heap instead: the error
+     * is reported to the calculation thread and the file data remain empty
+     */
+    private boolean mapFile(Uri uri, CalculaterTask thread) throws CancelException
     {
-        fileBuffer.clear();
-        final InputStream fileStream = openFileStream(fileName.getText());
-        if (fileStream == null)
+        final FileChannel channel = FileUtils.getFileChannel(getContext(), uri);
+        if (channel == null)
         {
-            return;
+            // the assets and the contents without a file descriptor can not be mapped
+            return false;
         }
-
         try
         {
-            BufferedReader r = new BufferedReader(new InputStreamReader(fileStream));
-            String line;
-            while ((line = r.readLine()) != null)
+            if (DataTable.isHeapSufficient(channel.size()))
             {
-                // ignore empty strings
-                final String trimmedString = line.trim();
-                if (trimmedString.isEmpty())
-                {
-                    continue;
-                }
-                final String[] tokens = trimmedString.split("\\s+");
-                final ArrayList<String> tokenList = new ArrayList<>(tokens.length);
-                for (String s : tokens)
-                {
-                    final String s1 = s.trim();
-                    if (!s1.isEmpty())
-                    {
-                        tokenList.add(s1);
-                    }
-                }
-                fileBuffer.add(tokenList);
+                return false;
             }
+            final MappedDataTable table = MappedDataTable.map(channel);
+            // the line index is built here, in the calculation thread, so that the cache knows its size
+            table.buildLineIndex(thread);
+            fileData = table;
+        }
+        catch (IOException e)
+        {
+            thread.reportError(String.format(getContext().getResources().getString(R.string.error_file_map),
+                    fileName.getText(), e.getLocalizedMessage()));
+        }
+        finally
+        {
+            FileUtils.closeStream(channel);
+        }
+        return true;
+    }
+
+    /**
+     * Procedure reads the given file into primitive columns
+     */
+    private DataTableIf readFile(Uri uri)
+    {
+        final InputStream fileStream = FileUtils.getInputStream(getContext(), uri, false);
+        if (fileStream == null)
+        {
+            return null;
+        }
+        DataTable table = null;
+        try
+        {
+            table = DataTable.read(new InputStreamReader(fileStream));
         }
         catch (IOException e)
         {
             // nothing to do
         }
+        FileUtils.closeStream(fileStream);
+        return table;
+    }
 
+    /**
+     * Procedure provides the values of a binary file without text parsing: the file is memory-mapped if possible,
+     * otherwise it is read into the heap. A file that can not be mapped is not read into the heap instead
+     */
+    private DataTableIf readBinaryFile(Uri uri, BinaryDataTable.Format format, CalculaterTask thread)
+    {
+        final FileChannel channel = FileUtils.getFileChannel(getContext(), uri);
+        if (channel != null)
+        {
+            BinaryDataTable table = null;
+            try
+            {
+                table = BinaryDataTable.map(channel, format);
+            }
+            catch (Exception e)
+            {
+                reportInvalidFile(thread, e);
+            }
+            FileUtils.closeStream(channel);
+            return table;
+        }
+        final InputStream fileStream = FileUtils.getInputStream(getContext(), uri, false);
+        if (fileStream == null)
+        {
+            return null;
+        }
+        BinaryDataTable table = null;
+        try
+        {
+            table = BinaryDataTable.read(fileStream, format);
+        }
+        catch (Exception e)
+        {
+            reportInvalidFile(thread, e);
+        }
         FileUtils.closeStream(fileStream);
+        return table;
+    }
+
+    /**
+     * Procedure reports a binary file that can not be mapped or has an invalid header. Any exception is caught here
+     * since a broken file shall not stop the calculation of other formulas
+     */
+    private void reportInvalidFile(CalculaterTask thread, Exception e)
+    {
+        thread.reportError(String.format(getContext().getResources().getString(R.string.error_file_invalid),
+                fileName.getText(), e.getLocalizedMessage()));
     }
 
     public void finishFileOperation()
     {
-        fileBuffer.clear();
+        fileData = null;
+    }
+
+    /**
+     * Procedure searches the array to be written and links it to the root formula. Returns an error message or null
+     */
+    private String validateArray()
+    {
+        arrayEquation = null;
+        if (arrayName == null)
+        {
+            // the constructor is not finished yet
+            return null;
+        }
+        if (getFileUri(fileName.getText()) == null)
+        {
+            return String.format(getContext().getResources().getString(R.string.error_file_write),
+                    fileName.getText());
+        }
+        final String name = arrayName.getText().trim();
+        final FormulaBase f = getFormulaList().getFormula(name, ViewUtils.INVALID_INDEX, getFormulaRoot().getId(),
+                true);
+        if (f == null || !(f instanceof Equation))
+        {
+            return String.format(getContext().getResources().getString(R.string.error_unknown_array), name);
+        }
+        if (!((Equation) f).isArray())
+        {
+            return String.format(getContext().getResources().getString(R.string.error_not_an_array), name);
+        }
+        arrayEquation = (Equation) f;
+        if (getFormulaRoot() instanceof LinkHolder)
+        {
+            ((LinkHolder) getFormulaRoot()).addLinkedEquation(arrayEquation);
+        }
+        return null;
+    }
+
+    /**
+     * Procedure streams the linked array into the file: the binary format is selected by the file extension, other
+     * files are written as text. The value of this term is the number of written elements
+     */
+    private CalculatedValue.ValueType writeFile(CalculaterTask thread, CalculatedValue outValue)
+            throws CancelException
+    {
+        final Uri uri = getFileUri(fileName.getText());
+        final EquationArrayResult array = (arrayEquation != null) ? arrayEquation.getArrayResult() : null;
+        if (uri == null || array == null || array.getRawValues() == null)
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+        }
+        final FileChannel channel = FileUtils.getOutputChannel(getContext(), uri);
+        if (channel == null)
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+        }
+        long written = -1;
+        try
+        {
+            final DataTableWriter writer = new DataTableWriter(channel, thread);
+            final BinaryDataTable.Format binaryFormat = BinaryDataTable.getFormat(fileName.getText());
+            written = (binaryFormat != null) ? writer.writeBinary(array, binaryFormat)
+                    : writer.writeText(array, DataTableWriter.getSeparator(fileName.getText()));
+        }
+        catch (IOException e)
+        {
+            ViewUtils.Debug(getContext(), "cannot write file: " + e.getLocalizedMessage());
+        }
+        finally
+        {
+            FileUtils.closeStream(channel);
+        }
+        return (written < 0) ? outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER)
+                : outValue.setValue(written);
     }
 }
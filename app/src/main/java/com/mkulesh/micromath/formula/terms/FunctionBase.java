@@ -246,7 +246,7 @@ public abstract class FunctionBase extends FormulaTerm
             TermField prevTerm = deleteArgument(ownerTerm,
                     getContext().getResources().getString(R.string.formula_term_separator), /*storeUndoState=*/true);
 
-            getFormulaRoot().getFormulaList().onManualInput();
+            getFormulaRoot().getFormulaList().onManualInput(getFormulaRoot());
             if (prevTerm != null)
             {
                 prevTerm.requestFocus();
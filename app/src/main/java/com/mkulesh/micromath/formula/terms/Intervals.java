@@ -23,18 +23,17 @@ import android.util.AttributeSet;
 import android.widget.LinearLayout;
 
 import com.mkulesh.micromath.formula.CalculaterTask;
-import com.mkulesh.micromath.formula.CalculaterTask.CancelException;
 import com.mkulesh.micromath.formula.Equation;
 import com.mkulesh.micromath.formula.FormulaTerm;
 import com.mkulesh.micromath.formula.FormulaTermTypeIf;
 import com.mkulesh.micromath.formula.TermField;
 import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CancelException;
+import com.mkulesh.micromath.math.IntervalPoints;
 import com.mkulesh.micromath.plus.R;
 import com.mkulesh.micromath.widgets.CustomEditText;
 import com.mkulesh.micromath.widgets.CustomTextView;
 
-import org.apache.commons.math3.util.FastMath;
-
 import java.util.ArrayList;
 import java.util.Locale;
 
@@ -161,32 +160,25 @@ public class Intervals extends FormulaTerm
     {
         if (getFormulaRoot() instanceof Equation)
         {
-            minValue.processRealTerm(thread, minValueTerm);
-            nextValue.processRealTerm(thread, nextValueTerm);
-            maxValue.processRealTerm(thread, maxValueTerm);
+            minValueTerm.getRealValue(thread, minValue);
+            nextValueTerm.getRealValue(thread, nextValue);
+            maxValueTerm.getRealValue(thread, maxValue);
             if (minValue.isNaN() || nextValue.isNaN() || maxValue.isNaN())
             {
                 return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_REAL);
             }
-            final CalculatedValue calcDelta = getDelta(minValue.getReal(), nextValue.getReal(), maxValue.getReal());
+            final double min = minValue.getReal(), max = maxValue.getReal();
+            final double delta = IntervalPoints.getDelta(min, nextValue.getReal(), max);
             final CalculatedValue ravArg = ((Equation) getFormulaRoot()).getArgumentValue(0);
-            if (calcDelta.isNaN() || ravArg.isNaN())
+            if (Double.isNaN(delta) || ravArg.isNaN())
             {
                 return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_REAL);
             }
             final long idx = ravArg.getInteger();
-            final int N = getNumberOfPoints(minValue.getReal(), maxValue.getReal(), calcDelta.getReal());
-            if (idx == 0)
-            {
-                return outValue.setValue(minValue.getReal());
-            }
-            else if (idx == N)
+            final int N = IntervalPoints.getNumberOfPoints(min, max, delta);
+            if (idx >= 0 && idx <= N)
             {
-                return outValue.setValue(maxValue.getReal());
-            }
-            else if (idx > 0 && idx < N)
-            {
-                return outValue.setValue(minValue.getReal() + calcDelta.getReal() * (double) idx);
+                return outValue.setValue(IntervalPoints.getPoint(min, max, delta, N, idx));
             }
         }
         return outValue.invalidate(CalculatedValue.ErrorType.TERM_NOT_READY);
@@ -272,67 +264,31 @@ public class Intervals extends FormulaTerm
      */
     public ArrayList<Double> getInterval(CalculaterTask thread) throws CancelException
     {
-        minValue.processRealTerm(thread, minValueTerm);
-        nextValue.processRealTerm(thread, nextValueTerm);
-        maxValue.processRealTerm(thread, maxValueTerm);
+        minValueTerm.getRealValue(thread, minValue);
+        nextValueTerm.getRealValue(thread, nextValue);
+        maxValueTerm.getRealValue(thread, maxValue);
         if (minValue.isNaN() || nextValue.isNaN() || maxValue.isNaN())
         {
             return null;
         }
-        final CalculatedValue calcDelta = getDelta(minValue.getReal(), nextValue.getReal(), maxValue.getReal());
-        if (calcDelta.isNaN())
-        {
-            return null;
-        }
-        final int N = getNumberOfPoints(minValue.getReal(), maxValue.getReal(), calcDelta.getReal());
-        ArrayList<Double> retValue = new ArrayList<Double>(N);
-        for (int idx = 0; idx <= N; idx++)
-        {
-            if (thread != null)
-            {
-                thread.checkCancelation();
-            }
-            if (idx == 0)
-            {
-                retValue.add(minValue.getReal());
-            }
-            else if (idx == N)
-            {
-                retValue.add(maxValue.getReal());
-            }
-            else
-            {
-                retValue.add(minValue.getReal() + calcDelta.getReal() * (double) idx);
-            }
-        }
-        return retValue;
+        return IntervalPoints.getPoints(thread, minValue.getReal(), nextValue.getReal(), maxValue.getReal());
     }
 
     /**
-     * Procedure checks and returns delta value
+     * Procedure estimates the number of points of this interval without calculation thread. If the boundaries are
+     * not given by numbers, a default number of points is assumed
      */
-    private CalculatedValue getDelta(final double min, final double next, final double max)
-    {
-        final CalculatedValue calcVal = new CalculatedValue();
-        if (next <= min || max < next)
-        {
-            // error: invalid boundaries
-            calcVal.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
-        }
-        else
-        {
-            calcVal.setValue(next - min);
-        }
-        return calcVal;
-    }
-
-    private int getNumberOfPoints(double min, double max, double delta)
+    public double getIntervalSize()
     {
-        int N = (int) FastMath.ceil(((max - min) / delta));
-        if (N > 0 && min + delta * (double) N > max + delta / 2)
+        final double min = minValueTerm.getEstimatedValue(new ArrayList<Equation>());
+        final double next = nextValueTerm.getEstimatedValue(new ArrayList<Equation>());
+        final double max = maxValueTerm.getEstimatedValue(new ArrayList<Equation>());
+        if (CalculatedValue.isInvalidReal(min) || CalculatedValue.isInvalidReal(next)
+                || CalculatedValue.isInvalidReal(max))
         {
-            N--;
+            return ESTIMATION_DEFAULT_SIZE;
         }
-        return N;
+        final double delta = IntervalPoints.getDelta(min, next, max);
+        return Double.isNaN(delta) ? 1.0 : IntervalPoints.getNumberOfPoints(min, max, delta) + 1.0;
     }
 }
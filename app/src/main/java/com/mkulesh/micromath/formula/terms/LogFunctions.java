@@ -25,11 +25,11 @@ import android.widget.LinearLayout;
 
 import com.mkulesh.micromath.formula.CalculatableIf;
 import com.mkulesh.micromath.formula.CalculaterTask;
-import com.mkulesh.micromath.formula.CalculaterTask.CancelException;
 import com.mkulesh.micromath.formula.FormulaTermTypeIf;
 import com.mkulesh.micromath.formula.Palette;
 import com.mkulesh.micromath.formula.TermField;
 import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CancelException;
 import com.mkulesh.micromath.plus.R;
 import com.mkulesh.micromath.properties.DocumentProperties;
 
@@ -222,6 +222,7 @@ public class LogFunctions extends FunctionBase
                 terms.get(i).getValue(thread, argVal[i]);
             }
             final CalculatedValue a0 = argVal[0];
+            final boolean fastMath = CalculaterTask.isFastMath(thread);
             switch (getFunctionType())
             {
             case SINH:
@@ -232,11 +233,11 @@ public class LogFunctions extends FunctionBase
                 return outValue.tanh(a0);
 
             case EXP:
-                return outValue.exp(a0);
+                return fastMath ? outValue.fastExp(a0) : outValue.exp(a0);
             case LN:
-                return outValue.log(a0);
+                return fastMath ? outValue.fastLog(a0) : outValue.log(a0);
             case LOG10:
-                return outValue.log10(a0);
+                return fastMath ? outValue.fastLog10(a0) : outValue.log10(a0);
             }
         }
         return outValue.invalidate(CalculatedValue.ErrorType.TERM_NOT_READY);
@@ -25,17 +25,19 @@ import android.widget.LinearLayout;
 
 import com.mkulesh.micromath.formula.CalculatableIf;
 import com.mkulesh.micromath.formula.CalculaterTask;
-import com.mkulesh.micromath.formula.CalculaterTask.CancelException;
+import com.mkulesh.micromath.formula.Equation;
 import com.mkulesh.micromath.formula.FormulaTermTypeIf;
 import com.mkulesh.micromath.formula.Palette;
 import com.mkulesh.micromath.formula.TermField;
 import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CancelException;
 import com.mkulesh.micromath.plus.R;
 import com.mkulesh.micromath.properties.DocumentProperties;
 
 import org.apache.commons.math3.util.FastMath;
 import org.apache.commons.math3.util.Precision;
 
+import java.util.ArrayList;
 import java.util.Locale;
 
 public class NumberFunctions extends FunctionBase
@@ -296,6 +298,12 @@ public class NumberFunctions extends FunctionBase
         return outValue.invalidate(CalculatedValue.ErrorType.TERM_NOT_READY);
     }
 
+    @Override
+    public boolean isDeterministic(ArrayList<Equation> visited)
+    {
+        return termType != FunctionType.RANDOM && super.isDeterministic(visited);
+    }
+
     @Override
     public CalculatableIf.DifferentiableType isDifferentiable(String var)
     {
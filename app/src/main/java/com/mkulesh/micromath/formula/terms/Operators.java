@@ -23,12 +23,12 @@ import android.util.AttributeSet;
 import android.widget.LinearLayout;
 
 import com.mkulesh.micromath.formula.CalculaterTask;
-import com.mkulesh.micromath.formula.CalculaterTask.CancelException;
 import com.mkulesh.micromath.formula.FormulaTerm;
 import com.mkulesh.micromath.formula.FormulaTermTypeIf;
 import com.mkulesh.micromath.formula.TermField;
 import com.mkulesh.micromath.formula.TermField.BracketsType;
 import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CancelException;
 import com.mkulesh.micromath.plus.R;
 import com.mkulesh.micromath.widgets.CustomEditText;
 import com.mkulesh.micromath.widgets.CustomTextView;
@@ -313,7 +313,7 @@ public class Operators extends FormulaTerm
             }
             parentField.onTermDelete(removeElements(), r);
         }
-        getFormulaRoot().getFormulaList().onManualInput();
+        getFormulaRoot().getFormulaList().onManualInput(getFormulaRoot());
     }
 
     /*********************************************************
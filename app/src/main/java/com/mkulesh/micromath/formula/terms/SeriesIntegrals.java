@@ -22,22 +22,30 @@ import android.content.Context;
 import android.util.AttributeSet;
 import android.widget.LinearLayout;
 
-import com.mkulesh.micromath.formula.ArgumentHolderIf;
+import com.mkulesh.micromath.core.ArgumentHolderIf;
 import com.mkulesh.micromath.formula.CalculaterTask;
-import com.mkulesh.micromath.formula.CalculaterTask.CancelException;
+import com.mkulesh.micromath.formula.Equation;
 import com.mkulesh.micromath.formula.FormulaTerm;
 import com.mkulesh.micromath.formula.FormulaTermTypeIf;
 import com.mkulesh.micromath.formula.TermField;
 import com.mkulesh.micromath.formula.TermField.BracketsType;
+import com.mkulesh.micromath.math.AdaptiveCubature;
 import com.mkulesh.micromath.math.CalculatedValue;
 import com.mkulesh.micromath.math.CalculatedValue.ValueType;
+import com.mkulesh.micromath.math.CancelException;
+import com.mkulesh.micromath.math.ChunkedReduction;
+import com.mkulesh.micromath.math.DoubleExponentialQuadrature;
+import com.mkulesh.micromath.math.InfiniteSeries;
+import com.mkulesh.micromath.math.QuasiMonteCarlo;
+import com.mkulesh.micromath.math.RiddersDerivative;
+import com.mkulesh.micromath.math.SimpsonIntegrator;
 import com.mkulesh.micromath.plus.R;
+import com.mkulesh.micromath.properties.DocumentProperties;
 import com.mkulesh.micromath.utils.ViewUtils;
 import com.mkulesh.micromath.widgets.CustomEditText;
 import com.mkulesh.micromath.widgets.CustomTextView;
 import com.mkulesh.micromath.widgets.ScaledDimensions;
 
-import org.apache.commons.math3.complex.Complex;
 import org.apache.commons.math3.util.FastMath;
 
 import java.util.ArrayList;
@@ -127,6 +135,12 @@ public class SeriesIntegrals extends FormulaTerm implements ArgumentHolderIf
     private final LoopCalculator loopCalculator = new LoopCalculator();
     private DifferentiableType differentiableType = null;
 
+    // sub-terms of the argument term that do not depend on the loop index
+    private ArrayList<TermField> invariantTerms = null;
+
+    // this integral and directly nested integrals that can be calculated by a multidimensional cubature
+    private ArrayList<SeriesIntegrals> nestedIntegrals = null;
+
     // Attention: this is not thread-safety declaration!
     private final CalculatedValue minValue = new CalculatedValue(), maxValue = new CalculatedValue(),
             calcVal = new CalculatedValue(), argValue = new CalculatedValue();
@@ -198,22 +212,47 @@ public class SeriesIntegrals extends FormulaTerm implements ArgumentHolderIf
             {
                 return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_REAL);
             }
-            loopCalculator.setCalculaterTask(thread);
-            switch (getLoopType())
+            final ArrayList<TermField> hoistedTerms = hoistInvariantTerms(thread);
+            try
+            {
+                return calculateLoop(thread, outValue);
+            }
+            finally
             {
-            case SUMMATION:
-                return loopCalculator.summation(minValue.getInteger(), maxValue.getInteger(), outValue);
-            case PRODUCT:
-                return loopCalculator.product(minValue.getInteger(), maxValue.getInteger(), outValue);
-            case INTEGRAL:
-                return loopCalculator.integrate(getFormulaList().getDocumentSettings().significantDigits, outValue);
-            case DERIVATIVE:
-                return loopCalculator.derivative(differentiableType, getIndexName(), outValue);
+                releaseInvariantTerms(hoistedTerms);
             }
         }
         return outValue.invalidate(CalculatedValue.ErrorType.TERM_NOT_READY);
     }
 
+    private CalculatedValue.ValueType calculateLoop(CalculaterTask thread, CalculatedValue outValue)
+            throws CancelException
+    {
+        loopCalculator.setCalculaterTask(thread);
+        switch (getLoopType())
+        {
+        case SUMMATION:
+            if (isInfiniteBoundary(maxValue))
+            {
+                return loopCalculator.infiniteSeries(LoopType.SUMMATION, null, minValue.getInteger(),
+                        getFormulaList().getDocumentSettings().significantDigits, outValue);
+            }
+            return loopCalculator.summation(minValue.getInteger(), maxValue.getInteger(), outValue);
+        case PRODUCT:
+            if (isInfiniteBoundary(maxValue))
+            {
+                return loopCalculator.infiniteSeries(LoopType.PRODUCT, null, minValue.getInteger(),
+                        getFormulaList().getDocumentSettings().significantDigits, outValue);
+            }
+            return loopCalculator.product(minValue.getInteger(), maxValue.getInteger(), outValue);
+        case INTEGRAL:
+            return loopCalculator.integrate(getFormulaList().getDocumentSettings(), outValue);
+        case DERIVATIVE:
+            return loopCalculator.derivative(differentiableType, getIndexName(), outValue);
+        }
+        return outValue.invalidate(CalculatedValue.ErrorType.TERM_NOT_READY);
+    }
+
     @Override
     public DifferentiableType isDifferentiable(String var)
     {
@@ -234,19 +273,43 @@ public class SeriesIntegrals extends FormulaTerm implements ArgumentHolderIf
             {
                 return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_REAL);
             }
-            loopCalculator.setCalculaterTask(thread);
-            switch (getLoopType())
+            final ArrayList<TermField> hoistedTerms = hoistInvariantTerms(thread);
+            try
             {
-            case SUMMATION:
-                return loopCalculator.summationDerivative(var, minValue.getInteger(), maxValue.getInteger(), outValue);
+                return calculateLoopDerivative(var, thread, outValue);
+            }
+            finally
+            {
+                releaseInvariantTerms(hoistedTerms);
+            }
+        }
+        return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+    }
 
-            case PRODUCT:
-                return loopCalculator.productDerivative(var, minValue.getInteger(), maxValue.getInteger(), outValue);
+    private CalculatedValue.ValueType calculateLoopDerivative(String var, CalculaterTask thread,
+                                                              CalculatedValue outValue) throws CancelException
+    {
+        loopCalculator.setCalculaterTask(thread);
+        switch (getLoopType())
+        {
+        case SUMMATION:
+            if (isInfiniteBoundary(maxValue))
+            {
+                return loopCalculator.infiniteSeries(LoopType.SUMMATION, var, minValue.getInteger(),
+                        getFormulaList().getDocumentSettings().significantDigits, outValue);
+            }
+            return loopCalculator.summationDerivative(var, minValue.getInteger(), maxValue.getInteger(), outValue);
 
-            case DERIVATIVE:
-            case INTEGRAL:
+        case PRODUCT:
+            if (isInfiniteBoundary(maxValue))
+            {
                 return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
             }
+            return loopCalculator.productDerivative(var, minValue.getInteger(), maxValue.getInteger(), outValue);
+
+        case DERIVATIVE:
+        case INTEGRAL:
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
         }
         return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
     }
@@ -255,6 +318,8 @@ public class SeriesIntegrals extends FormulaTerm implements ArgumentHolderIf
     public boolean isContentValid(ValidationPassType type)
     {
         differentiableType = null;
+        invariantTerms = null;
+        nestedIntegrals = null;
         boolean isValid = true;
         switch (type)
         {
@@ -274,6 +339,103 @@ public class SeriesIntegrals extends FormulaTerm implements ArgumentHolderIf
         return isValid;
     }
 
+    @Override
+    public double getEvaluationCost(ArrayList<Equation> visited)
+    {
+        if (termType == null)
+        {
+            return 1.0;
+        }
+        if (getLoopType() == LoopType.INTEGRAL && getNestedIntegrals().size() > 1)
+        {
+            // the chain of nested integrals is calculated at once by a cubature or quasi-Monte Carlo method
+            final ArrayList<SeriesIntegrals> nested = getNestedIntegrals();
+            double boundaryCost = 0.0;
+            for (SeriesIntegrals loop : nested)
+            {
+                boundaryCost += loop.minValueTerm.getEvaluationCost(visited)
+                        + loop.maxValueTerm.getEvaluationCost(visited);
+            }
+            final double evaluations = (nested.size() <= LoopCalculator.CUBATURE_MAX_DIMENSION) ?
+                    LoopCalculator.CUBATURE_MAX_EVALUATIONS :
+                    FastMath.pow(2.0, getFormulaList().getDocumentSettings().sampleBudget);
+            return 1.0 + boundaryCost + evaluations * nested.get(nested.size() - 1).argTerm.getEvaluationCost(visited);
+        }
+        double boundaryCost = 0.0;
+        if (minValueTerm != null)
+        {
+            boundaryCost += minValueTerm.getEvaluationCost(visited);
+        }
+        if (maxValueTerm != null)
+        {
+            boundaryCost += maxValueTerm.getEvaluationCost(visited);
+        }
+        return 1.0 + boundaryCost + getEstimatedIterations() * argTerm.getEvaluationCost(visited);
+    }
+
+    /**
+     * Procedure returns the worst-case number of the argument evaluations of this loop
+     */
+    private double getEstimatedIterations()
+    {
+        switch (getLoopType())
+        {
+        case SUMMATION:
+        case PRODUCT:
+        {
+            final double min = minValueTerm.getEstimatedValue(new ArrayList<Equation>());
+            final double max = maxValueTerm.getEstimatedValue(new ArrayList<Equation>());
+            if (max == Double.POSITIVE_INFINITY)
+            {
+                return InfiniteSeries.MAX_TERMS_COUNT;
+            }
+            if (CalculatedValue.isInvalidReal(min) || CalculatedValue.isInvalidReal(max))
+            {
+                return ESTIMATION_DEFAULT_SIZE;
+            }
+            return FastMath.max(0.0, FastMath.floor(max) - FastMath.ceil(min) + 1.0);
+        }
+        case INTEGRAL:
+            // all stages of the Simpson's rule for real and imaginary part
+            return 2.0 * (FastMath.pow(2.0, SimpsonIntegrator.MAX_ITERATIONS_COUNT) + 1.0);
+        case DERIVATIVE:
+            return 2.0 * RiddersDerivative.MAX_ITERATIONS_COUNT;
+        }
+        return 1.0;
+    }
+
+    @Override
+    public void collectCalculationDetails(ArrayList<String> out)
+    {
+        if (loopCalculator.series.getTermsCount() > 0)
+        {
+            out.add(String.format(getContext().getResources().getString(R.string.dialog_result_details_series),
+                    getIndexName(), Long.toString(loopCalculator.series.getTermsCount()),
+                    String.format(Locale.ENGLISH, "%.2e", loopCalculator.series.getError())));
+        }
+        if (loopCalculator.cubatureEvaluations > 0)
+        {
+            out.add(String.format(getContext().getResources().getString(R.string.dialog_result_details_cubature),
+                    getIndexName(), Integer.toString(getNestedIntegrals().size()),
+                    Long.toString(loopCalculator.cubatureEvaluations),
+                    String.format(Locale.ENGLISH, "%.2e", loopCalculator.cubatureError)));
+        }
+        if (loopCalculator.monteCarloEvaluations > 0)
+        {
+            out.add(String.format(getContext().getResources().getString(R.string.dialog_result_details_monte_carlo),
+                    getIndexName(), Integer.toString(getNestedIntegrals().size()),
+                    Long.toString(loopCalculator.monteCarloEvaluations),
+                    String.format(Locale.ENGLISH, "%.2e", loopCalculator.monteCarloError)));
+        }
+        if (loopCalculator.quadratureEvaluations > 0)
+        {
+            out.add(String.format(getContext().getResources().getString(R.string.dialog_result_details_quadrature),
+                    getIndexName(), Long.toString(loopCalculator.quadratureEvaluations),
+                    String.format(Locale.ENGLISH, "%.2e", loopCalculator.quadratureError)));
+        }
+        super.collectCalculationDetails(out);
+    }
+
     @Override
     protected CustomTextView initializeSymbol(CustomTextView v)
     {
@@ -504,13 +666,171 @@ public class SeriesIntegrals extends FormulaTerm implements ArgumentHolderIf
         return false;
     }
 
+    /**
+     * Procedure returns the largest sub-terms of the argument term that do not depend on the loop index. The result
+     * is evaluated once after the validation since all argument links are known only after it.
+     */
+    private ArrayList<TermField> getInvariantTerms()
+    {
+        if (invariantTerms == null)
+        {
+            invariantTerms = new ArrayList<TermField>();
+            final ArrayList<ArgumentHolderIf> holders = new ArrayList<ArgumentHolderIf>();
+            holders.add(this);
+            if (collectInvariantTerms(argTerm, holders, invariantTerms) && argTerm.isTerm())
+            {
+                invariantTerms.add(argTerm);
+            }
+        }
+        return invariantTerms;
+    }
+
+    /**
+     * Procedure returns the chain of this integral and the integrals directly nested in its argument term, whose
+     * boundaries do not depend on the indices of the outer integrals. Such integrals are calculated jointly by a
+     * multidimensional cubature or, for higher dimensions, by the quasi-Monte Carlo method instead of the nested
+     * one-dimensional integration.
+     */
+    private ArrayList<SeriesIntegrals> getNestedIntegrals()
+    {
+        if (nestedIntegrals == null)
+        {
+            nestedIntegrals = new ArrayList<SeriesIntegrals>();
+            nestedIntegrals.add(this);
+            final ArrayList<ArgumentHolderIf> holders = new ArrayList<ArgumentHolderIf>();
+            final ArrayList<TermField> unused = new ArrayList<TermField>();
+            SeriesIntegrals outer = this;
+            while (nestedIntegrals.size() < LoopCalculator.NESTED_MAX_DIMENSION)
+            {
+                holders.add(outer);
+                final FormulaTerm t = outer.argTerm.getTerm();
+                if (!(t instanceof SeriesIntegrals) || ((SeriesIntegrals) t).getLoopType() != LoopType.INTEGRAL)
+                {
+                    break;
+                }
+                final SeriesIntegrals inner = (SeriesIntegrals) t;
+                if (!collectInvariantTerms(inner.minValueTerm, holders, unused)
+                        || !collectInvariantTerms(inner.maxValueTerm, holders, unused))
+                {
+                    break;
+                }
+                nestedIntegrals.add(inner);
+                outer = inner;
+            }
+        }
+        return nestedIntegrals;
+    }
+
+    /**
+     * Procedure recursively checks whether the given term depends on an argument defined by one of the given
+     * holders (this loop and all nested loops). The largest sub-terms that do not depend on them are added into
+     * the output list. Returns true if the given term itself does not depend on the given holders.
+     */
+    private static boolean collectInvariantTerms(TermField t, ArrayList<ArgumentHolderIf> holders,
+                                                 ArrayList<TermField> out)
+    {
+        if (!t.isTerm())
+        {
+            return !t.isArgumentOf(holders) && t.isDeterministic(new ArrayList<Equation>());
+        }
+        final FormulaTerm term = t.getTerm();
+        final boolean isHolder = term instanceof ArgumentHolderIf;
+        if (isHolder)
+        {
+            holders.add((ArgumentHolderIf) term);
+        }
+        boolean isInvariant = true;
+        final ArrayList<TermField> invariantChildren = new ArrayList<TermField>();
+        for (TermField c : term.getTerms())
+        {
+            if (collectInvariantTerms(c, holders, out))
+            {
+                if (c.isTerm())
+                {
+                    invariantChildren.add(c);
+                }
+            }
+            else
+            {
+                isInvariant = false;
+            }
+        }
+        if (isHolder)
+        {
+            holders.remove(holders.size() - 1);
+        }
+        if (isInvariant && term.isDeterministic(new ArrayList<Equation>()))
+        {
+            return true;
+        }
+        out.addAll(invariantChildren);
+        return false;
+    }
+
+    /**
+     * Procedure calculates all loop-invariant terms once and caches their values. The terms already cached by an
+     * outer loop are skipped. Returns the list of terms cached by this call.
+     */
+    private ArrayList<TermField> hoistInvariantTerms(CalculaterTask thread) throws CancelException
+    {
+        final ArrayList<TermField> hoistedTerms = new ArrayList<TermField>();
+        try
+        {
+            for (TermField t : getInvariantTerms())
+            {
+                if (!t.isCached())
+                {
+                    final CalculatedValue v = new CalculatedValue();
+                    t.getValue(thread, v);
+                    t.setCachedValue(v);
+                    hoistedTerms.add(t);
+                }
+            }
+        }
+        catch (CancelException ex)
+        {
+            releaseInvariantTerms(hoistedTerms);
+            throw ex;
+        }
+        return hoistedTerms;
+    }
+
+    private static void releaseInvariantTerms(ArrayList<TermField> hoistedTerms)
+    {
+        for (TermField t : hoistedTerms)
+        {
+            t.setCachedValue(null);
+        }
+    }
+
+    /**
+     * Procedure checks whether the given boundary value is an infinity supported by this loop: the upper bound of
+     * series and both bounds of integrals
+     */
+    private boolean isInfiniteBoundary(CalculatedValue v)
+    {
+        if (!v.isReal())
+        {
+            return false;
+        }
+        if (termType == LoopType.SUMMATION || termType == LoopType.PRODUCT)
+        {
+            return v.getReal() == Double.POSITIVE_INFINITY;
+        }
+        return termType == LoopType.INTEGRAL && Double.isInfinite(v.getReal());
+    }
+
     private boolean calculateBoundaries(CalculaterTask thread) throws CancelException
     {
+        loopCalculator.series.reset();
+        loopCalculator.cubatureEvaluations = 0;
+        loopCalculator.monteCarloEvaluations = 0;
+        loopCalculator.quadratureEvaluations = 0;
         minValue.invalidate(CalculatedValue.ErrorType.TERM_NOT_READY);
         if (minValueTerm != null)
         {
-            minValue.processRealTerm(thread, minValueTerm);
-            if (minValue.isNaN())
+            minValueTerm.getRealValue(thread, minValue);
+            if (minValue.isNaN() && !(termType == LoopType.INTEGRAL && isInfiniteBoundary(minValue)))
             {
                 return false;
             }
@@ -519,8 +839,8 @@ public class SeriesIntegrals extends FormulaTerm implements ArgumentHolderIf
         maxValue.invalidate(CalculatedValue.ErrorType.TERM_NOT_READY);
         if (maxValueTerm != null)
         {
-            maxValue.processRealTerm(thread, maxValueTerm);
-            if (maxValue.isNaN())
+            maxValueTerm.getRealValue(thread, maxValue);
+            if (maxValue.isNaN() && !isInfiniteBoundary(maxValue))
             {
                 return false;
             }
@@ -533,39 +853,88 @@ public class SeriesIntegrals extends FormulaTerm implements ArgumentHolderIf
      */
     class LoopCalculator
     {
-        private static final int SIMPSON_MAX_ITERATIONS_COUNT = 15;
-        private static final int RIDDER_MAX_ITERATIONS_COUNT = 10;
-        private static final double RIDDER_INITIAL_STEP = 0.05;
+        private static final int CUBATURE_MAX_DIMENSION = 3;
+        private static final int NESTED_MAX_DIMENSION = 10;
+        private static final long CUBATURE_MAX_EVALUATIONS = 1L << 18;
+
+        /**
+         * Infinite series and the name of the variable if the summation of derivatives is calculated.
+         */
+        private String seriesVar = null;
+        private final InfiniteSeries series = new InfiniteSeries(new InfiniteSeries.Term()
+        {
+            @Override
+            public void getValue(long idx, CalculatedValue outValue) throws CancelException
+            {
+                checkCancelation();
+                argValue.setValue((double) idx);
+                if (seriesVar == null)
+                {
+                    argTerm.getValue(calculaterTask, outValue);
+                }
+                else
+                {
+                    argTerm.getDerivativeValue(seriesVar, calculaterTask, outValue);
+                }
+            }
+        });
 
         /**
-         * Intermediate result.
+         * Number of integrand evaluations and error estimate of the last calculated multidimensional integral.
          */
-        private double qtrapResult;
+        private long cubatureEvaluations = 0;
+        private double cubatureError = Double.NaN;
+
+        /**
+         * Number of integrand evaluations and standard error of the last integral calculated by the quasi-Monte
+         * Carlo method.
+         */
+        private long monteCarloEvaluations = 0;
+        private double monteCarloError = Double.NaN;
+
+        /**
+         * Number of integrand evaluations and error estimate of the last integral calculated by the double
+         * exponential quadrature.
+         */
+        private long quadratureEvaluations = 0;
+        private double quadratureError = Double.NaN;
+        private DoubleExponentialQuadrature quadrature = null;
+
+        /**
+         * Numerical kernels of the Simpson integration and the Ridders differentiation.
+         */
+        private SimpsonIntegrator simpson = null;
+        private RiddersDerivative ridders = null;
 
         /**
          * Owner calculation thread.
          */
         private CalculaterTask calculaterTask = null;
 
+        public void setCalculaterTask(CalculaterTask calculaterTask)
+        {
+            this.calculaterTask = calculaterTask;
+        }
+
         /**
-         * Class holding intermediate calculation value that can have a complex part
+         * Procedure checks the cancellation and the calculation budget once per loop iteration
          */
-        private class IntermediateValue
+        private void checkCancelation() throws CancelException
         {
-            public double value;
-            public boolean complexDetected;
-
-            public IntermediateValue()
+            if (calculaterTask != null)
             {
-                value = Double.NaN;
-                complexDetected = false;
+                calculaterTask.checkCancelation();
             }
         }
 
-        public void setCalculaterTask(CalculaterTask calculaterTask)
-        {
-            this.calculaterTask = calculaterTask;
-        }
+        /**
+         * Reduction objects used to accumulate summation and product. The loops are reduced sequentially since the
+         * terms of a formula hold the argument value and their intermediate values: worker threads can not evaluate
+         * the same term tree in parallel. ParallelReduction is used by the batch evaluator that builds a separate
+         * expression for each worker.
+         */
+        private final ChunkedReduction sumReduction = new ChunkedReduction(ChunkedReduction.Type.SUM);
+        private final ChunkedReduction productReduction = new ChunkedReduction(ChunkedReduction.Type.PRODUCT);
 
         /**
          * Calculate summation
@@ -573,18 +942,30 @@ public class SeriesIntegrals extends FormulaTerm implements ArgumentHolderIf
         public CalculatedValue.ValueType summation(long minValue, long maxValue, CalculatedValue outValue)
                 throws CancelException
         {
-            outValue.setValue(0.0);
+            sumReduction.reset();
             for (long idx = minValue; idx <= maxValue; idx++)
             {
+                checkCancelation();
                 argValue.setValue((double) idx);
                 argTerm.getValue(calculaterTask, calcVal);
-                outValue.add(outValue, calcVal);
-                if (outValue.isNaN())
+                sumReduction.add(calcVal);
+                if (calcVal.isNaN())
                 {
                     break;
                 }
             }
-            return outValue.getValueType();
+            return sumReduction.getValue(outValue);
+        }
+
+        /**
+         * Calculate summation or product with infinite upper boundary. If the variable name is given, the summation of
+         * derivatives is calculated.
+         */
+        public CalculatedValue.ValueType infiniteSeries(LoopType type, String var, long minValue,
+                                                        int significantDigits, CalculatedValue outValue) throws CancelException
+        {
+            seriesVar = var;
+            return series.calculate(type == LoopType.PRODUCT, minValue, significantDigits, outValue);
         }
 
         /**
@@ -593,18 +974,19 @@ public class SeriesIntegrals extends FormulaTerm implements ArgumentHolderIf
         public CalculatedValue.ValueType summationDerivative(String var, long minValue, long maxValue,
                                                              CalculatedValue outValue) throws CancelException
         {
-            outValue.setValue(0.0);
+            sumReduction.reset();
             for (long idx = minValue; idx <= maxValue; idx++)
             {
+                checkCancelation();
                 argValue.setValue((double) idx);
                 argTerm.getDerivativeValue(var, calculaterTask, calcVal);
-                outValue.add(outValue, calcVal);
-                if (outValue.isNaN())
+                sumReduction.add(calcVal);
+                if (calcVal.isNaN())
                 {
                     break;
                 }
             }
-            return outValue.getValueType();
+            return sumReduction.getValue(outValue);
         }
 
         /**
@@ -613,18 +995,19 @@ public class SeriesIntegrals extends FormulaTerm implements ArgumentHolderIf
         public CalculatedValue.ValueType product(long minValue, long maxValue, CalculatedValue outValue)
                 throws CancelException
         {
-            outValue.setValue(1.0);
+            productReduction.reset();
             for (long idx = minValue; idx <= maxValue; idx++)
             {
+                checkCancelation();
                 argValue.setValue((double) idx);
                 argTerm.getValue(calculaterTask, calcVal);
-                outValue.multiply(outValue, calcVal);
-                if (outValue.isNaN())
+                productReduction.add(calcVal);
+                if (calcVal.isNaN())
                 {
                     break;
                 }
             }
-            return outValue.getValueType();
+            return productReduction.getValue(outValue);
         }
 
         /**
@@ -640,9 +1023,11 @@ public class SeriesIntegrals extends FormulaTerm implements ArgumentHolderIf
             final CalculatedValue tmp2 = new CalculatedValue();
             for (long k = minValue; k <= maxValue; k++)
             {
+                checkCancelation();
                 tmp2.setValue(1.0);
                 for (long m = k + 1; m <= maxValue; m++)
                 {
+                    checkCancelation();
                     argValue.setValue((double) m);
                     argTerm.getValue(calculaterTask, calcVal);
                     tmp2.multiply(tmp2, calcVal);
@@ -684,18 +1069,19 @@ public class SeriesIntegrals extends FormulaTerm implements ArgumentHolderIf
                 }
                 else if (differentiableType == DifferentiableType.NUMERICAL)
                 {
-                    final Complex z = calcVal.getComplex();
-                    final IntermediateValue re = loopCalculator.riddersDerivative(CalculatedValue.PartType.RE, z,
-                            LoopCalculator.RIDDER_INITIAL_STEP);
-                    if (re.complexDetected)
+                    final double zRe = calcVal.getReal(), zIm = calcVal.getImaginary();
+                    final RiddersDerivative ridders = getRiddersDerivative();
+                    final double re = ridders.differentiate(CalculatedValue.PartType.RE, zRe, zIm,
+                            RiddersDerivative.INITIAL_STEP);
+                    if (ridders.isComplexDetected())
                     {
-                        final IntermediateValue im = loopCalculator.riddersDerivative(CalculatedValue.PartType.IM, z,
-                                LoopCalculator.RIDDER_INITIAL_STEP);
-                        return outValue.setComplexValue(re.value, im.value);
+                        final double im = ridders.differentiate(CalculatedValue.PartType.IM, zRe, zIm,
+                                RiddersDerivative.INITIAL_STEP);
+                        return outValue.setComplexValue(re, im);
                     }
                     else
                     {
-                        return outValue.setValue(re.value);
+                        return outValue.setValue(re);
                     }
                 }
             }
@@ -705,186 +1091,208 @@ public class SeriesIntegrals extends FormulaTerm implements ArgumentHolderIf
         /**
          * Calculate defined integral
          */
-        public ValueType integrate(int significantDigits, CalculatedValue outValue) throws CancelException
+        public ValueType integrate(DocumentProperties doc, CalculatedValue outValue) throws CancelException
         {
-            final double absoluteAccuracy = FastMath.pow(10, -1.0 * significantDigits);
-            final IntermediateValue re = integrateSimpsons(CalculatedValue.PartType.RE, minValue.getReal(),
-                    maxValue.getReal(), absoluteAccuracy);
-            if (Double.isNaN(re.value))
+            final double absoluteAccuracy = FastMath.pow(10, -1.0 * doc.significantDigits);
+            final ArrayList<SeriesIntegrals> nested = getNestedIntegrals();
+            if (nested.size() > 1)
+            {
+                final double[] min = new double[nested.size()];
+                final double[] max = new double[nested.size()];
+                if (calculateCubatureDomain(nested, min, max))
+                {
+                    return (nested.size() <= CUBATURE_MAX_DIMENSION) ?
+                            integrateCubature(nested, min, max, absoluteAccuracy, outValue) :
+                            integrateMonteCarlo(nested, min, max, absoluteAccuracy, 1L << doc.sampleBudget,
+                                    outValue);
+                }
+            }
+            final double min = minValue.getReal(), max = maxValue.getReal();
+            if (Double.isInfinite(min) || Double.isInfinite(max))
+            {
+                return integrateDoubleExponential(min, max, absoluteAccuracy, outValue);
+            }
+            final SimpsonIntegrator simpson = getSimpsonIntegrator();
+            if (!simpson.integrate(CalculatedValue.PartType.RE, min, max, absoluteAccuracy))
+            {
+                return integrateDoubleExponential(min, max, absoluteAccuracy, outValue);
+            }
+            final double re = simpson.getValue();
+            if (Double.isNaN(re))
             {
                 return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
             }
-            if (re.complexDetected)
+            if (simpson.isComplexDetected())
             {
-                final IntermediateValue im = integrateSimpsons(CalculatedValue.PartType.IM, minValue.getReal(),
-                        maxValue.getReal(), absoluteAccuracy);
-                return outValue.setComplexValue(re.value, im.value);
+                if (!simpson.integrate(CalculatedValue.PartType.IM, min, max, absoluteAccuracy))
+                {
+                    return integrateDoubleExponential(min, max, absoluteAccuracy, outValue);
+                }
+                return outValue.setComplexValue(re, simpson.getValue());
             }
             else
             {
-                return outValue.setValue(re.value);
+                return outValue.setValue(re);
             }
         }
 
         /**
-         * Compute the n-th stage integral of trapezoid rule. This function should only be called by API
-         * <code>integrate()</code> in the package. To save time it does not verify arguments - caller does. The
-         * interval is divided equally into 2^n sections rather than an arbitrary m sections because this configuration
-         * can best utilize the already computed values.
+         * Calculate the boundaries of the chain of nested integrals. Returns false if a boundary is not valid or
+         * infinite: such integrals are calculated one by one.
          */
-        private boolean qtrapStage(CalculatedValue.PartType partType, final double min, final double max, final int n)
+        private boolean calculateCubatureDomain(final ArrayList<SeriesIntegrals> nested, double[] min, double[] max)
                 throws CancelException
         {
-            if (n == 0)
+            for (int i = 0; i < nested.size(); i++)
             {
-                final CalculatedValue minVal = new CalculatedValue();
-                argValue.setValue(min);
-                argTerm.getValue(calculaterTask, minVal);
-
-                final CalculatedValue maxVal = new CalculatedValue();
-                argValue.setValue(max);
-                argTerm.getValue(calculaterTask, maxVal);
-
-                qtrapResult = 0.5 * (max - min) * (minVal.getPart(partType) + maxVal.getPart(partType));
-                return (minVal.isComplex() || maxVal.isComplex());
-            }
-            else
-            {
-                boolean complexDetexted = false;
-                final CalculatedValue xVal = new CalculatedValue();
-
-                final long np = 1L << (n - 1); // number of new points in this stage
-                double sum = 0;
-                // spacing between adjacent new points
-                final double spacing = (max - min) / np;
-                double x = min + 0.5 * spacing; // the first new point
-                for (long i = 0; i < np; i++)
+                final SeriesIntegrals loop = nested.get(i);
+                if (i > 0 && !loop.calculateBoundaries(calculaterTask))
                 {
-                    argValue.setValue(x);
-                    argTerm.getValue(calculaterTask, xVal);
-                    sum += xVal.getPart(partType);
-                    x += spacing;
-                    if (xVal.isComplex())
-                    {
-                        complexDetexted = true;
-                    }
+                    return false;
+                }
+                min[i] = loop.minValue.getReal();
+                max[i] = loop.maxValue.getReal();
+                if (Double.isInfinite(min[i]) || Double.isInfinite(max[i]))
+                {
+                    return false;
                 }
-                // add the new sum to previously calculated result
-                qtrapResult = 0.5 * (qtrapResult + sum * spacing);
-                return complexDetexted;
             }
+            return true;
         }
 
         /**
-         * Integrate the function in the given interval. Implements <a
-         * href="http://mathworld.wolfram.com/SimpsonsRule.html"> Simpson's Rule</a> for integration of real univariate
-         * functions. For reference, see <b>Introduction to Numerical Analysis</b>, ISBN 038795452X, chapter 3. This
-         * implementation employs the basic trapezoid rule to calculate Simpson's rule.
+         * Calculate the multiple integral given by the chain of nested integrals using adaptive cubature. The
+         * integration domain is a rectangle since the boundaries of inner integrals do not depend on the outer
+         * indices. The error budget is shared between all dimensions.
          */
-        private IntermediateValue integrateSimpsons(CalculatedValue.PartType partType, final double min,
-                                                    final double max, final double absoluteAccuracy) throws CancelException
+        private ValueType integrateCubature(final ArrayList<SeriesIntegrals> nested, double[] min, double[] max,
+                                            double accuracy, CalculatedValue outValue) throws CancelException
         {
-            final IntermediateValue ans = new IntermediateValue();
-            // Simpson's rule requires at least two trapezoid stages.
-            double oldRes = 0;
-            if (qtrapStage(partType, min, max, 0))
+            final AdaptiveCubature cubature = new AdaptiveCubature(nested.size(), getMultipleIntegrand(nested));
+            final boolean isValid = cubature.integrate(min, max, accuracy, CUBATURE_MAX_EVALUATIONS);
+            cubatureEvaluations = cubature.getEvaluations();
+            cubatureError = cubature.getError();
+            if (!isValid)
             {
-                ans.complexDetected = true;
+                return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
             }
-            double oldt = qtrapResult;
-            for (int iter = 1; iter <= SIMPSON_MAX_ITERATIONS_COUNT; iter++)
+            return cubature.isComplexDetected() ? outValue.setComplexValue(cubature.getReal(),
+                    cubature.getImaginary()) : outValue.setValue(cubature.getReal());
+        }
+
+        /**
+         * Calculate the multiple integral given by the chain of nested integrals using the randomized quasi-Monte
+         * Carlo method. It is used for the dimensions where the number of cubature points grows too fast. The
+         * sampling stops if the standard error is within the accuracy or the sample budget is exhausted.
+         */
+        private ValueType integrateMonteCarlo(final ArrayList<SeriesIntegrals> nested, double[] min, double[] max,
+                                              double accuracy, long maxEvaluations, CalculatedValue outValue)
+                throws CancelException
+        {
+            final QuasiMonteCarlo monteCarlo = new QuasiMonteCarlo(nested.size(), getMultipleIntegrand(nested));
+            final boolean isValid = monteCarlo.integrate(min, max, accuracy, maxEvaluations);
+            monteCarloEvaluations = monteCarlo.getEvaluations();
+            monteCarloError = monteCarlo.getError();
+            if (!isValid)
             {
-                if (qtrapStage(partType, min, max, iter))
-                {
-                    ans.complexDetected = true;
-                }
-                final double t = qtrapResult;
-                if (CalculatedValue.isInvalidReal(t))
-                {
-                    ans.value = Double.NaN;
-                    ans.complexDetected = false;
-                    return ans;
-                }
-                final double res = (4 * t - oldt) / 3.0;
-                if (iter > 1)
+                return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+            }
+            return monteCarlo.isComplexDetected() ? outValue.setComplexValue(monteCarlo.getReal(),
+                    monteCarlo.getImaginary()) : outValue.setValue(monteCarlo.getReal());
+        }
+
+        /**
+         * Procedure returns the integrand of the multiple integral given by the chain of nested integrals
+         */
+        private AdaptiveCubature.Integrand getMultipleIntegrand(final ArrayList<SeriesIntegrals> nested)
+        {
+            final TermField integrandTerm = nested.get(nested.size() - 1).argTerm;
+            return new AdaptiveCubature.Integrand()
+            {
+                @Override
+                public void getValue(double[] x, CalculatedValue outValue) throws CancelException
                 {
-                    final double delta = FastMath.abs(res - oldRes);
-                    if (delta <= absoluteAccuracy)
+                    checkCancelation();
+                    for (int i = 0; i < x.length; i++)
                     {
-                        ans.value = res;
-                        return ans;
+                        nested.get(i).argValue.setValue(x[i]);
                     }
+                    integrandTerm.getValue(calculaterTask, outValue);
                 }
-                oldRes = res;
-                oldt = t;
-            }
-            ans.value = oldRes;
-            return ans;
+            };
         }
 
         /**
-         * Returns the derivative of a function func at a point x by Ridders’ method of polynomial extrapolation. The
-         * value h is input as an estimated initial stepsize; it need not be small, but rather should be an increment in
-         * x over which func changes substantially. An estimate of the error in the derivative is returned as err.
+         * Calculate the integral using the double exponential quadrature. It is used if a boundary is infinite or the
+         * integrand can not be calculated in an endpoint of the interval.
          */
-        IntermediateValue riddersDerivative(CalculatedValue.PartType partType, Complex z, double h)
+        private ValueType integrateDoubleExponential(double min, double max, double accuracy, CalculatedValue outValue)
                 throws CancelException
         {
-            final int NTAB = RIDDER_MAX_ITERATIONS_COUNT;
-            final double CON = 1.4;
-            final double CON2 = (CON * CON);
-
-            double err = 1.0e30;
-            double hh = h;
-            double[][] a = new double[NTAB + 1][NTAB + 1];
-
-            final IntermediateValue ans = new IntermediateValue();
-            final CalculatedValue leftVal = new CalculatedValue();
-            final CalculatedValue rightVal = new CalculatedValue();
-
-            argValue.setComplexValue(z.getReal() + hh, z.getImaginary());
-            argTerm.getValue(calculaterTask, leftVal);
-            argValue.setComplexValue(z.getReal() - hh, z.getImaginary());
-            argTerm.getValue(calculaterTask, rightVal);
-            a[1][1] = (leftVal.getPart(partType) - rightVal.getPart(partType)) / (2.0 * hh);
-            if (leftVal.isComplex() || rightVal.isComplex())
+            if (quadrature == null)
             {
-                ans.complexDetected = true;
+                quadrature = new DoubleExponentialQuadrature(new DoubleExponentialQuadrature.Integrand()
+                {
+                    @Override
+                    public void getValue(double x, CalculatedValue outValue) throws CancelException
+                    {
+                        checkCancelation();
+                        argValue.setValue(x);
+                        argTerm.getValue(calculaterTask, outValue);
+                    }
+                });
             }
-
-            for (int i = 2; i <= NTAB; i++)
+            final boolean isValid = quadrature.integrate(min, max, accuracy);
+            quadratureEvaluations = quadrature.getEvaluations();
+            quadratureError = quadrature.getError();
+            if (!isValid)
             {
-                hh /= CON;
+                return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+            }
+            return quadrature.isComplexDetected() ? outValue.setComplexValue(quadrature.getReal(),
+                    quadrature.getImaginary()) : outValue.setValue(quadrature.getReal());
+        }
 
-                argValue.setComplexValue(z.getReal() + hh, z.getImaginary());
-                argTerm.getValue(calculaterTask, leftVal);
-                argValue.setComplexValue(z.getReal() - hh, z.getImaginary());
-                argTerm.getValue(calculaterTask, rightVal);
-                a[1][i] = (leftVal.getPart(partType) - rightVal.getPart(partType)) / (2.0 * hh);
-                if (leftVal.isComplex() || rightVal.isComplex())
+        /**
+         * Procedure returns the Simpson integrator of the integral term
+         */
+        private SimpsonIntegrator getSimpsonIntegrator()
+        {
+            if (simpson == null)
+            {
+                simpson = new SimpsonIntegrator(new DoubleExponentialQuadrature.Integrand()
                 {
-                    ans.complexDetected = true;
-                }
+                    @Override
+                    public void getValue(double x, CalculatedValue outValue) throws CancelException
+                    {
+                        checkCancelation();
+                        argValue.setValue(x);
+                        argTerm.getValue(calculaterTask, outValue);
+                    }
+                });
+            }
+            return simpson;
+        }
 
-                double fac = CON2;
-                for (int j = 2; j <= i; j++)
+        /**
+         * Procedure returns the numerical differentiator of the derivative term
+         */
+        private RiddersDerivative getRiddersDerivative()
+        {
+            if (ridders == null)
+            {
+                ridders = new RiddersDerivative(new RiddersDerivative.Function()
                 {
-                    a[j][i] = (a[j - 1][i] * fac - a[j - 1][i - 1]) / (fac - 1.0);
-                    fac = CON2 * fac;
-                    final double errt = FastMath.max(FastMath.abs(a[j][i] - a[j - 1][i]),
-                            FastMath.abs(a[j][i] - a[j - 1][i - 1]));
-                    if (errt <= err)
+                    @Override
+                    public void getValue(double re, double im, CalculatedValue outValue) throws CancelException
                     {
-                        err = errt;
-                        ans.value = a[j][i];
+                        checkCancelation();
+                        argValue.setComplexValue(re, im);
+                        argTerm.getValue(calculaterTask, outValue);
                     }
-                }
-                if (FastMath.abs(a[i][i] - a[i - 1][i - 1]) >= 2.0 * (err))
-                {
-                    break;
-                }
+                });
             }
-            return ans;
+            return ridders;
         }
     }
 }
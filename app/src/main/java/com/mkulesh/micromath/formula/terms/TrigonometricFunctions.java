@@ -25,11 +25,11 @@ import android.widget.LinearLayout;
 
 import com.mkulesh.micromath.formula.CalculatableIf;
 import com.mkulesh.micromath.formula.CalculaterTask;
-import com.mkulesh.micromath.formula.CalculaterTask.CancelException;
 import com.mkulesh.micromath.formula.FormulaTermTypeIf;
 import com.mkulesh.micromath.formula.Palette;
 import com.mkulesh.micromath.formula.TermField;
 import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CancelException;
 import com.mkulesh.micromath.plus.R;
 
 import org.apache.commons.math3.util.FastMath;
@@ -200,20 +200,21 @@ public class TrigonometricFunctions extends FunctionBase
                 terms.get(i).getValue(thread, argVal[i]);
             }
             final CalculatedValue a0 = argVal[0];
+            final boolean fastMath = CalculaterTask.isFastMath(thread);
             switch (getFunctionType())
             {
             case SIN:
-                return outValue.sin(a0);
+                return fastMath ? outValue.fastSin(a0) : outValue.sin(a0);
             case ASIN:
                 return outValue.asin(a0);
 
             case COS:
-                return outValue.cos(a0);
+                return fastMath ? outValue.fastCos(a0) : outValue.cos(a0);
             case ACOS:
                 return outValue.acos(a0);
 
             case TAN:
-                return outValue.tan(a0);
+                return fastMath ? outValue.fastTan(a0) : outValue.tan(a0);
             case ATAN:
                 return outValue.atan(a0);
             case ATAN2:
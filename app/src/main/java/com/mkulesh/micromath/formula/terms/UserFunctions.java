@@ -26,7 +26,6 @@ import android.widget.LinearLayout;
 import com.mkulesh.micromath.formula.BracketParser;
 import com.mkulesh.micromath.formula.CalculatableIf;
 import com.mkulesh.micromath.formula.CalculaterTask;
-import com.mkulesh.micromath.formula.CalculaterTask.CancelException;
 import com.mkulesh.micromath.formula.Equation;
 import com.mkulesh.micromath.formula.FormulaBase;
 import com.mkulesh.micromath.formula.FormulaTermTypeIf;
@@ -34,6 +33,7 @@ import com.mkulesh.micromath.formula.LinkHolder;
 import com.mkulesh.micromath.formula.Palette;
 import com.mkulesh.micromath.formula.TermField;
 import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CancelException;
 import com.mkulesh.micromath.plus.R;
 import com.mkulesh.micromath.utils.ViewUtils;
 import com.mkulesh.micromath.widgets.CustomEditText;
@@ -330,6 +330,10 @@ public class UserFunctions extends FunctionBase
             case FUNCTION_INDEX:
                 if (linkedFunction != null && linkedFunction.setArgumentValues(argVal))
                 {
+                    if (thread != null)
+                    {
+                        thread.checkCancelation();
+                    }
                     return linkedFunction.getValue(thread, outValue);
                 }
                 break;
@@ -338,6 +342,19 @@ public class UserFunctions extends FunctionBase
         return outValue.invalidate(CalculatedValue.ErrorType.TERM_NOT_READY);
     }
 
+    @Override
+    public boolean isDeterministic(ArrayList<Equation> visited)
+    {
+        return (linkedFunction == null || linkedFunction.isDeterministic(visited)) && super.isDeterministic(visited);
+    }
+
+    @Override
+    public double getEvaluationCost(ArrayList<Equation> visited)
+    {
+        final double cost = super.getEvaluationCost(visited);
+        return (linkedFunction == null) ? cost : cost + linkedFunction.getEvaluationCost(visited);
+    }
+
     @Override
     public CalculatableIf.DifferentiableType isDifferentiable(String var)
     {
@@ -29,13 +29,13 @@ import com.mkulesh.micromath.dialogs.DialogAxisSettings;
 import com.mkulesh.micromath.dialogs.DialogColorMapSettings;
 import com.mkulesh.micromath.dialogs.DialogPlotSettings;
 import com.mkulesh.micromath.formula.CalculaterTask;
-import com.mkulesh.micromath.formula.CalculaterTask.CancelException;
 import com.mkulesh.micromath.formula.CalculationResult;
 import com.mkulesh.micromath.formula.Equation;
 import com.mkulesh.micromath.formula.FormulaList;
 import com.mkulesh.micromath.formula.TermField;
 import com.mkulesh.micromath.formula.TermField.ErrorNotification;
 import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CancelException;
 import com.mkulesh.micromath.plots.views.ColorMapView;
 import com.mkulesh.micromath.plots.views.PlotView;
 import com.mkulesh.micromath.plots.views.SurfacePlotView;
@@ -187,7 +187,19 @@ public class PlotContour extends CalculationResult implements SizeChangingLayout
     @Override
     public void calculate(CalculaterTask thread) throws CancelException
     {
-        function.calculate(thread);
+        final boolean fastMath = (thread != null)
+                && thread.setFastMath(getFormulaList().getDocumentSettings().plotFastMath);
+        try
+        {
+            function.calculate(thread);
+        }
+        finally
+        {
+            if (thread != null)
+            {
+                thread.setFastMath(fastMath);
+            }
+        }
         if (functionView instanceof SurfacePlotView)
         {
             ((SurfacePlotView) functionView).renderSurface(function);
@@ -671,13 +683,13 @@ public class PlotContour extends CalculationResult implements SizeChangingLayout
             minMaxValues[FunctionIf.X][FunctionIf.MIN] = Double.NEGATIVE_INFINITY;
             if (!xMin.isEmpty())
             {
-                calcVal.processRealTerm(thread, xMin);
+                xMin.getRealValue(thread, calcVal);
                 minMaxValues[FunctionIf.X][FunctionIf.MIN] = calcVal.getReal();
             }
             minMaxValues[FunctionIf.X][FunctionIf.MAX] = Double.POSITIVE_INFINITY;
             if (!xMax.isEmpty())
             {
-                calcVal.processRealTerm(thread, xMax);
+                xMax.getRealValue(thread, calcVal);
                 minMaxValues[FunctionIf.X][FunctionIf.MAX] = calcVal.getReal();
             }
             xValues = linkedIntervals.get(0).fillBoundedInterval(thread, xValues, minMaxValues[FunctionIf.X]);
@@ -689,13 +701,13 @@ public class PlotContour extends CalculationResult implements SizeChangingLayout
             minMaxValues[FunctionIf.Y][FunctionIf.MIN] = Double.NEGATIVE_INFINITY;
             if (!yMin.isEmpty())
             {
-                calcVal.processRealTerm(thread, yMin);
+                yMin.getRealValue(thread, calcVal);
                 minMaxValues[FunctionIf.Y][FunctionIf.MIN] = calcVal.getReal();
             }
             minMaxValues[FunctionIf.Y][FunctionIf.MAX] = Double.POSITIVE_INFINITY;
             if (!yMax.isEmpty())
             {
-                calcVal.processRealTerm(thread, yMax);
+                yMax.getRealValue(thread, calcVal);
                 minMaxValues[FunctionIf.Y][FunctionIf.MAX] = calcVal.getReal();
             }
             yValues = linkedIntervals.get(1).fillBoundedInterval(thread, yValues, minMaxValues[FunctionIf.Y]);
@@ -724,7 +736,11 @@ public class PlotContour extends CalculationResult implements SizeChangingLayout
                 {
                     argValues[1][0].setValue(yValues[j]);
                     linkedIntervals.get(1).setArgumentValues(argValues[1]);
-                    calcVal.processRealTerm(thread, functionTerm);
+                    if (thread != null)
+                    {
+                        thread.checkCancelation();
+                    }
+                    functionTerm.getRealValue(thread, calcVal);
                     final double zVal = calcVal.getReal();
                     zValues[i][j] = zVal;
                     if (i == 0 && j == 0)
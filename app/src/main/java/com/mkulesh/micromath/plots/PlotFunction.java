@@ -34,7 +34,6 @@ import com.mkulesh.micromath.dialogs.DialogPlotSettings;
 import com.mkulesh.micromath.dialogs.DialogRadioGroup;
 import com.mkulesh.micromath.dialogs.DialogResultDetails;
 import com.mkulesh.micromath.formula.CalculaterTask;
-import com.mkulesh.micromath.formula.CalculaterTask.CancelException;
 import com.mkulesh.micromath.formula.CalculationResult;
 import com.mkulesh.micromath.formula.Equation;
 import com.mkulesh.micromath.formula.FormulaList;
@@ -43,6 +42,7 @@ import com.mkulesh.micromath.formula.TermField;
 import com.mkulesh.micromath.formula.TermField.BracketsType;
 import com.mkulesh.micromath.formula.TermField.ErrorNotification;
 import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CancelException;
 import com.mkulesh.micromath.plots.views.FunctionPlotView;
 import com.mkulesh.micromath.plus.R;
 import com.mkulesh.micromath.properties.AxisPropertiesChangeIf;
@@ -197,9 +197,21 @@ public class PlotFunction extends CalculationResult implements SizeChangingLayou
     @Override
     public void calculate(CalculaterTask thread) throws CancelException
     {
-        for (Function2D f : functions)
+        final boolean fastMath = (thread != null)
+                && thread.setFastMath(getFormulaList().getDocumentSettings().plotFastMath);
+        try
+        {
+            for (Function2D f : functions)
+            {
+                f.calculate(thread);
+            }
+        }
+        finally
         {
-            f.calculate(thread);
+            if (thread != null)
+            {
+                thread.setFastMath(fastMath);
+            }
         }
     }
 
@@ -1029,13 +1041,13 @@ public class PlotFunction extends CalculationResult implements SizeChangingLayou
                 {
                     xValues = new double[1];
                 }
-                calcVal.processRealTerm(thread, x);
+                x.getRealValue(thread, calcVal);
                 xValues[0] = calcVal.getReal();
                 if (yValues.length != 1)
                 {
                     yValues = new double[1];
                 }
-                calcVal.processRealTerm(thread, y);
+                y.getRealValue(thread, calcVal);
                 yValues[0] = calcVal.getReal();
                 xMinMaxValues[FunctionIf.MIN] = xMinMaxValues[FunctionIf.MAX] = xValues[0];
                 yMinMaxValues[FunctionIf.MIN] = yMinMaxValues[FunctionIf.MAX] = yValues[0];
@@ -1059,9 +1071,13 @@ public class PlotFunction extends CalculationResult implements SizeChangingLayou
                 {
                     argValues[0].setValue(par.get(i));
                     linkedInterval.setArgumentValues(argValues);
-                    calcVal.processRealTerm(thread, x);
+                    if (thread != null)
+                    {
+                        thread.checkCancelation();
+                    }
+                    x.getRealValue(thread, calcVal);
                     final double xVal = calcVal.getReal();
-                    calcVal.processRealTerm(thread, y);
+                    y.getRealValue(thread, calcVal);
                     final double yVal = calcVal.getReal();
                     xValues[i] = xVal;
                     yValues[i] = yVal;
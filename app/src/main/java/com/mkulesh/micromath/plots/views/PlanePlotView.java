@@ -32,6 +32,7 @@ import com.mkulesh.micromath.math.Vector2D;
 import com.mkulesh.micromath.plots.FunctionIf;
 import com.mkulesh.micromath.plots.FunctionIf.Type;
 import com.mkulesh.micromath.plus.R;
+import com.mkulesh.micromath.utils.TraceEvents;
 import com.mkulesh.micromath.utils.ViewUtils;
 
 import java.util.ArrayList;
@@ -206,6 +207,7 @@ public abstract class PlanePlotView extends PlotView
     @Override
     protected void onDraw(Canvas can)
     {
+        TraceEvents.begin("PlanePlotView.onDraw", TraceEvents.CATEGORY_DRAWING);
         try
         {
             if (drawingCache == null)
@@ -289,6 +291,10 @@ public abstract class PlanePlotView extends PlotView
             Toast.makeText(getContext(), error, Toast.LENGTH_LONG).show();
             return;
         }
+        finally
+        {
+            TraceEvents.end("PlanePlotView.onDraw", TraceEvents.CATEGORY_DRAWING);
+        }
     }
 
     protected void drawBorder(Canvas c, Paint p)
@@ -35,6 +35,7 @@ import com.mkulesh.micromath.math.Vector2D;
 import com.mkulesh.micromath.plots.FunctionIf;
 import com.mkulesh.micromath.plus.R;
 import com.mkulesh.micromath.properties.PlotProperties.TwoDPlotStyle;
+import com.mkulesh.micromath.utils.TraceEvents;
 import com.mkulesh.micromath.utils.ViewUtils;
 
 @SuppressLint("RtlHardcoded")
@@ -246,6 +247,7 @@ public class SurfacePlotView extends PlotView
     @Override
     protected void onDraw(Canvas can)
     {
+        TraceEvents.begin("SurfacePlotView.onDraw", TraceEvents.CATEGORY_DRAWING);
         try
         {
             if (drawingCache == null)
@@ -314,6 +316,10 @@ public class SurfacePlotView extends PlotView
             Toast.makeText(getContext(), error, Toast.LENGTH_LONG).show();
             return;
         }
+        finally
+        {
+            TraceEvents.end("SurfacePlotView.onDraw", TraceEvents.CATEGORY_DRAWING);
+        }
     }
 
     /**
@@ -22,6 +22,7 @@ import android.content.Context;
 import android.os.Bundle;
 
 import com.mkulesh.micromath.formula.FormulaList;
+import com.mkulesh.micromath.math.QuasiMonteCarlo;
 import com.mkulesh.micromath.utils.CompatUtils;
 import com.mkulesh.micromath.widgets.ScaledDimensions;
 
@@ -43,6 +44,8 @@ public class DocumentProperties
     private static final String STATE_DOCUMENT_REFORMAT = "document_reformat";
     private static final String STATE_DOCUMENT_TEXT_WIDTH = "document_text_width";
     private static final String STATE_DOCUMENT_SIGNIFICANT_DIGITS = "document_significant_digits";
+    private static final String STATE_DOCUMENT_SAMPLE_BUDGET = "document_sample_budget";
+    private static final String STATE_DOCUMENT_PLOT_FAST_MATH = "document_plot_fast_math";
     private static final String STATE_DOCUMENT_SCALE_FACTOR = "document_scale_factor";
     private static final String STATE_DOCUMENT_REDEFINE_ALLOWED = "document_redefine_allowed";
 
@@ -56,6 +59,8 @@ public class DocumentProperties
     public static final String XML_PROP_DESCRIPTION = "description";
     public static final String XML_PROP_TEXT_WIDTH = "textWidth";
     public static final String XML_PROP_SIGNIFICANT_DIGITS = "significantDigits";
+    public static final String XML_PROP_SAMPLE_BUDGET = "sampleBudget";
+    public static final String XML_PROP_PLOT_FAST_MATH = "plotFastMath";
     public static final String XML_PROP_SCALE = "scale";
     public static final String XML_PROP_REDEFINE_ALLOWED = "redefineAllowed";
 
@@ -77,6 +82,8 @@ public class DocumentProperties
     public boolean reformat = false; // not saved in xml
     public int textWidth = 60;
     public int significantDigits = 6;
+    public int sampleBudget = 16; // power of two of the maximal number of Monte Carlo samples
+    public boolean plotFastMath = false; // plots are sampled using reduced-precision math functions
     private ScaledDimensions scaledDimensions = null;
     public boolean redefineAllowed = false;
 
@@ -106,6 +113,8 @@ public class DocumentProperties
         reformat = inState.getBoolean(STATE_DOCUMENT_REFORMAT);
         textWidth = inState.getInt(STATE_DOCUMENT_TEXT_WIDTH);
         significantDigits = inState.getInt(STATE_DOCUMENT_SIGNIFICANT_DIGITS);
+        sampleBudget = QuasiMonteCarlo.limitSampleBudget(inState.getInt(STATE_DOCUMENT_SAMPLE_BUDGET));
+        plotFastMath = inState.getBoolean(STATE_DOCUMENT_PLOT_FAST_MATH);
         scaledDimensions.setScaleFactor(inState.getFloat(STATE_DOCUMENT_SCALE_FACTOR));
         redefineAllowed = inState.getBoolean(STATE_DOCUMENT_REDEFINE_ALLOWED);
     }
@@ -120,6 +129,8 @@ public class DocumentProperties
         outState.putBoolean(STATE_DOCUMENT_REFORMAT, reformat);
         outState.putInt(STATE_DOCUMENT_TEXT_WIDTH, textWidth);
         outState.putInt(STATE_DOCUMENT_SIGNIFICANT_DIGITS, significantDigits);
+        outState.putInt(STATE_DOCUMENT_SAMPLE_BUDGET, sampleBudget);
+        outState.putBoolean(STATE_DOCUMENT_PLOT_FAST_MATH, plotFastMath);
         outState.putFloat(STATE_DOCUMENT_SCALE_FACTOR, scaledDimensions.getScaleFactor());
         outState.putBoolean(STATE_DOCUMENT_REDEFINE_ALLOWED, redefineAllowed);
     }
@@ -147,6 +158,23 @@ public class DocumentProperties
         {
             significantDigits = Integer.parseInt(attr);
         }
+        attr = parser.getAttributeValue(null, XML_PROP_SAMPLE_BUDGET);
+        if (attr != null)
+        {
+            try
+            {
+                sampleBudget = QuasiMonteCarlo.limitSampleBudget(Integer.parseInt(attr));
+            }
+            catch (NumberFormatException e)
+            {
+                // a malformed value is ignored: the default sample budget is used
+            }
+        }
+        attr = parser.getAttributeValue(null, XML_PROP_PLOT_FAST_MATH);
+        if (attr != null)
+        {
+            plotFastMath = Boolean.parseBoolean(attr);
+        }
         attr = parser.getAttributeValue(null, XML_PROP_SCALE);
         if (attr != null)
         {
@@ -176,6 +204,8 @@ public class DocumentProperties
 
         serializer.attribute(FormulaList.XML_NS, XML_PROP_TEXT_WIDTH, String.valueOf(textWidth));
         serializer.attribute(FormulaList.XML_NS, XML_PROP_SIGNIFICANT_DIGITS, String.valueOf(significantDigits));
+        serializer.attribute(FormulaList.XML_NS, XML_PROP_SAMPLE_BUDGET, String.valueOf(sampleBudget));
+        serializer.attribute(FormulaList.XML_NS, XML_PROP_PLOT_FAST_MATH, String.valueOf(plotFastMath));
         serializer.attribute(FormulaList.XML_NS, XML_PROP_SCALE, df.format(scaledDimensions.getScaleFactor()));
         serializer.attribute(FormulaList.XML_NS, XML_PROP_REDEFINE_ALLOWED, String.valueOf(redefineAllowed));
     }
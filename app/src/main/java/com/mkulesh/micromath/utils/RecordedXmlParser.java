@@ -0,0 +1,475 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.utils;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+
+/**
+ * Pull parser that replays the events of a single XML element recorded from another parser. The recorded events
+ * do not depend on any view: an element can be recorded in a background thread and replayed later in the UI thread
+ * by the same readFromXml methods that read the original stream. The namespaces are not processed.
+ */
+public class RecordedXmlParser implements XmlPullParser
+{
+    private static final String NO_NAMESPACE = "";
+
+    private static final class Event
+    {
+        final int type;
+        final int depth;
+        final String name;
+        final String[] attributes;
+        final boolean isEmpty;
+        String text;
+
+        Event(int type, int depth, String name, String[] attributes, boolean isEmpty, String text)
+        {
+            this.type = type;
+            this.depth = depth;
+            this.name = name;
+            this.attributes = attributes;
+            this.isEmpty = isEmpty;
+            this.text = text;
+        }
+    }
+
+    private final ArrayList<Event> events;
+    private int position = 0;
+    private int eventType = START_TAG;
+    private String text = null;
+
+    private RecordedXmlParser(ArrayList<Event> events)
+    {
+        this.events = events;
+    }
+
+    /**
+     * Procedure records the element that starts at the current START_TAG of the given parser. After this call, the
+     * given parser is positioned at the corresponding END_TAG, and the returned parser at the START_TAG
+     */
+    public static RecordedXmlParser record(XmlPullParser source) throws XmlPullParserException, IOException
+    {
+        source.require(START_TAG, null, null);
+        final ArrayList<Event> events = new ArrayList<>();
+        int depth = 0;
+        int type = START_TAG;
+        while (true)
+        {
+            switch (type)
+            {
+            case START_TAG:
+                depth++;
+                final String[] attributes = new String[2 * source.getAttributeCount()];
+                for (int i = 0; i < source.getAttributeCount(); i++)
+                {
+                    attributes[2 * i] = source.getAttributeName(i);
+                    attributes[2 * i + 1] = source.getAttributeValue(i);
+                }
+                events.add(new Event(START_TAG, depth, source.getName(), attributes, source.isEmptyElementTag(),
+                        null));
+                break;
+            case END_TAG:
+                events.add(new Event(END_TAG, depth, source.getName(), null, false, null));
+                depth--;
+                break;
+            case TEXT:
+            case IGNORABLE_WHITESPACE:
+            case ENTITY_REF:
+                final String t = source.getText();
+                if (t == null)
+                {
+                    break;
+                }
+                final Event last = events.get(events.size() - 1);
+                if (last.type == TEXT)
+                {
+                    last.text += t;
+                }
+                else
+                {
+                    events.add(new Event(TEXT, depth, null, null, false, t));
+                }
+                break;
+            case CDSECT:
+                events.add(new Event(CDSECT, depth, null, null, false, source.getText()));
+                break;
+            default:
+                // comments and processing instructions are not recorded
+                break;
+            }
+            if (depth == 0)
+            {
+                break;
+            }
+            type = source.nextToken();
+        }
+        return new RecordedXmlParser(events);
+    }
+
+    /*********************************************************
+     * Navigation
+     *********************************************************/
+
+    @Override
+    public int getEventType()
+    {
+        return eventType;
+    }
+
+    @Override
+    public int next()
+    {
+        nextToken();
+        if (eventType == CDSECT || eventType == TEXT)
+        {
+            // like the original parser, the neighbouring text and CDATA sections are reported as a single text
+            eventType = TEXT;
+            while (position + 1 < events.size() && isText(events.get(position + 1).type))
+            {
+                position++;
+                text += events.get(position).text;
+            }
+        }
+        return eventType;
+    }
+
+    @Override
+    public int nextToken()
+    {
+        if (eventType == END_DOCUMENT || position + 1 >= events.size())
+        {
+            position = events.size();
+            eventType = END_DOCUMENT;
+            text = null;
+        }
+        else
+        {
+            position++;
+            eventType = events.get(position).type;
+            text = events.get(position).text;
+        }
+        return eventType;
+    }
+
+    @Override
+    public int nextTag() throws XmlPullParserException
+    {
+        next();
+        if (eventType == TEXT && isWhitespace())
+        {
+            next();
+        }
+        if (eventType != START_TAG && eventType != END_TAG)
+        {
+            throw new XmlPullParserException("expected start or end tag", this, null);
+        }
+        return eventType;
+    }
+
+    @Override
+    public String nextText() throws XmlPullParserException
+    {
+        if (eventType != START_TAG)
+        {
+            throw new XmlPullParserException("parser must be on START_TAG to read next text", this, null);
+        }
+        String result = "";
+        if (next() == TEXT)
+        {
+            result = text;
+            next();
+        }
+        if (eventType != END_TAG)
+        {
+            throw new XmlPullParserException("END_TAG expected", this, null);
+        }
+        return result;
+    }
+
+    @Override
+    public void require(int type, String namespace, String name) throws XmlPullParserException
+    {
+        if (type != eventType || (namespace != null && !namespace.equals(getNamespace()))
+                || (name != null && !name.equals(getName())))
+        {
+            throw new XmlPullParserException("expected " + TYPES[type] + " " + name, this, null);
+        }
+    }
+
+    private static boolean isText(int type)
+    {
+        return type == TEXT || type == CDSECT;
+    }
+
+    private Event getEvent()
+    {
+        return (position < events.size()) ? events.get(position) : null;
+    }
+
+    /*********************************************************
+     * Current event
+     *********************************************************/
+
+    @Override
+    public int getDepth()
+    {
+        final Event e = getEvent();
+        return (e == null) ? 0 : e.depth;
+    }
+
+    @Override
+    public String getName()
+    {
+        return (eventType == START_TAG || eventType == END_TAG) ? getEvent().name : null;
+    }
+
+    @Override
+    public String getNamespace()
+    {
+        return (eventType == START_TAG || eventType == END_TAG) ? NO_NAMESPACE : null;
+    }
+
+    @Override
+    public String getPrefix()
+    {
+        return null;
+    }
+
+    @Override
+    public boolean isEmptyElementTag() throws XmlPullParserException
+    {
+        if (eventType != START_TAG)
+        {
+            throw new XmlPullParserException("parser must be on START_TAG", this, null);
+        }
+        return getEvent().isEmpty;
+    }
+
+    @Override
+    public String getText()
+    {
+        return (eventType == TEXT || eventType == CDSECT) ? text : null;
+    }
+
+    @Override
+    public char[] getTextCharacters(int[] holderForStartAndLength)
+    {
+        final String t = getText();
+        if (t == null)
+        {
+            holderForStartAndLength[0] = -1;
+            holderForStartAndLength[1] = -1;
+            return null;
+        }
+        holderForStartAndLength[0] = 0;
+        holderForStartAndLength[1] = t.length();
+        return t.toCharArray();
+    }
+
+    @Override
+    public boolean isWhitespace() throws XmlPullParserException
+    {
+        if (eventType != TEXT && eventType != CDSECT)
+        {
+            throw new XmlPullParserException("parser must be on a text", this, null);
+        }
+        return text.trim().length() == 0;
+    }
+
+    @Override
+    public String getPositionDescription()
+    {
+        return TYPES[Math.min(eventType, TYPES.length - 1)] + " at recorded event " + position;
+    }
+
+    @Override
+    public int getLineNumber()
+    {
+        return -1;
+    }
+
+    @Override
+    public int getColumnNumber()
+    {
+        return -1;
+    }
+
+    /*********************************************************
+     * Attributes
+     *********************************************************/
+
+    @Override
+    public int getAttributeCount()
+    {
+        return (eventType == START_TAG) ? getEvent().attributes.length / 2 : -1;
+    }
+
+    @Override
+    public String getAttributeName(int index)
+    {
+        return getAttribute(2 * index);
+    }
+
+    @Override
+    public String getAttributeValue(int index)
+    {
+        return getAttribute(2 * index + 1);
+    }
+
+    @Override
+    public String getAttributeValue(String namespace, String name)
+    {
+        if (eventType != START_TAG || (namespace != null && !NO_NAMESPACE.equals(namespace)))
+        {
+            return null;
+        }
+        final String[] attributes = getEvent().attributes;
+        for (int i = 0; i < attributes.length; i += 2)
+        {
+            if (attributes[i].equals(name))
+            {
+                return attributes[i + 1];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String getAttributeNamespace(int index)
+    {
+        getAttribute(2 * index);
+        return NO_NAMESPACE;
+    }
+
+    @Override
+    public String getAttributePrefix(int index)
+    {
+        getAttribute(2 * index);
+        return null;
+    }
+
+    @Override
+    public String getAttributeType(int index)
+    {
+        getAttribute(2 * index);
+        return "CDATA";
+    }
+
+    @Override
+    public boolean isAttributeDefault(int index)
+    {
+        getAttribute(2 * index);
+        return false;
+    }
+
+    private String getAttribute(int index)
+    {
+        if (eventType != START_TAG)
+        {
+            throw new IndexOutOfBoundsException("parser must be on START_TAG");
+        }
+        return getEvent().attributes[index];
+    }
+
+    /*********************************************************
+     * Namespaces, features and input: not supported for a recorded element
+     *********************************************************/
+
+    @Override
+    public int getNamespaceCount(int depth)
+    {
+        return 0;
+    }
+
+    @Override
+    public String getNamespacePrefix(int pos) throws XmlPullParserException
+    {
+        throw new XmlPullParserException("namespaces are not processed", this, null);
+    }
+
+    @Override
+    public String getNamespaceUri(int pos) throws XmlPullParserException
+    {
+        throw new XmlPullParserException("namespaces are not processed", this, null);
+    }
+
+    @Override
+    public String getNamespace(String prefix)
+    {
+        return null;
+    }
+
+    @Override
+    public void setFeature(String name, boolean state) throws XmlPullParserException
+    {
+        if (state)
+        {
+            throw new XmlPullParserException("feature is not supported: " + name, this, null);
+        }
+    }
+
+    @Override
+    public boolean getFeature(String name)
+    {
+        return false;
+    }
+
+    @Override
+    public void setProperty(String name, Object value) throws XmlPullParserException
+    {
+        throw new XmlPullParserException("property is not supported: " + name, this, null);
+    }
+
+    @Override
+    public Object getProperty(String name)
+    {
+        return null;
+    }
+
+    @Override
+    public void setInput(Reader in) throws XmlPullParserException
+    {
+        throw new XmlPullParserException("input of a recorded element can not be changed", this, null);
+    }
+
+    @Override
+    public void setInput(InputStream inputStream, String inputEncoding) throws XmlPullParserException
+    {
+        throw new XmlPullParserException("input of a recorded element can not be changed", this, null);
+    }
+
+    @Override
+    public String getInputEncoding()
+    {
+        return null;
+    }
+
+    @Override
+    public void defineEntityReplacementText(String entityName, String replacementText)
+            throws XmlPullParserException
+    {
+        throw new XmlPullParserException("entity replacement is not supported", this, null);
+    }
+}
@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.utils;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.JsonWriter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Class that records begin and end events of the calculation, loading, drawing and export routines and writes them
+ * in the Chrome Trace Event format into the external files directory of the app. The file can be opened in any
+ * viewer that supports this format, for example chrome://tracing.
+ *
+ * Recording is only active if it is enabled in the developer options. The number of stored events is limited, the
+ * oldest events are dropped first.
+ */
+public final class TraceEvents
+{
+    public static final String TRACE_FILE = "trace_events.json";
+
+    /**
+     * Event categories
+     */
+    public static final String CATEGORY_CALCULATION = "calculation";
+    public static final String CATEGORY_LOADING = "loading";
+    public static final String CATEGORY_DRAWING = "drawing";
+    public static final String CATEGORY_EXPORT = "export";
+
+    private static final int MAX_EVENTS_NUMBER = 100000;
+
+    private static final class Event
+    {
+        final String name, category;
+        final boolean begin;
+        final long time, threadId;
+
+        Event(String name, String category, boolean begin)
+        {
+            this.name = name;
+            this.category = category;
+            this.begin = begin;
+            this.time = System.nanoTime() / 1000L;
+            this.threadId = Thread.currentThread().getId();
+        }
+    }
+
+    private static volatile boolean enabled = false;
+    private static final ArrayDeque<Event> events = new ArrayDeque<Event>();
+    private static final HashMap<Long, String> threadNames = new HashMap<Long, String>();
+    private static final ExecutorService fileWriter = Executors.newSingleThreadExecutor();
+
+    private TraceEvents()
+    {
+        // this class has only static methods
+    }
+
+    public static void setEnabled(boolean enabled)
+    {
+        if (!enabled)
+        {
+            synchronized (events)
+            {
+                events.clear();
+                threadNames.clear();
+            }
+        }
+        TraceEvents.enabled = enabled;
+    }
+
+    public static boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Procedure records the begin of a traced routine
+     */
+    public static void begin(String name, String category)
+    {
+        if (enabled)
+        {
+            add(new Event(name, category, true));
+        }
+    }
+
+    /**
+     * Procedure records the end of a traced routine. The name and category shall be the same as for begin
+     */
+    public static void end(String name, String category)
+    {
+        if (enabled)
+        {
+            add(new Event(name, category, false));
+        }
+    }
+
+    private static void add(Event e)
+    {
+        synchronized (events)
+        {
+            if (events.size() >= MAX_EVENTS_NUMBER)
+            {
+                events.removeFirst();
+            }
+            events.addLast(e);
+            if (!threadNames.containsKey(e.threadId))
+            {
+                threadNames.put(e.threadId, Thread.currentThread().getName());
+            }
+        }
+    }
+
+    /**
+     * Procedure writes all recorded events into the trace file in a background thread. It can be called from UI
+     * thread; the requests are processed one after another so that the file is never written twice at the same time
+     */
+    public static void writeInBackground(Context context)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        fileWriter.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                write(appContext);
+            }
+        });
+    }
+
+    /**
+     * Procedure writes all recorded events into the trace file. It should not be called from UI thread since the
+     * file can be large
+     */
+    public static void write(Context context)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+        final ArrayList<Event> list;
+        final HashMap<Long, String> names;
+        synchronized (events)
+        {
+            list = new ArrayList<Event>(events);
+            names = new HashMap<Long, String>(threadNames);
+        }
+        final File file = new File(context.getExternalFilesDir(null), TRACE_FILE);
+        JsonWriter writer = null;
+        try
+        {
+            final int pid = Process.myPid();
+            writer = new JsonWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+            writer.beginObject();
+            writer.name("traceEvents").beginArray();
+            for (Map.Entry<Long, String> n : names.entrySet())
+            {
+                writer.beginObject();
+                writer.name("name").value("thread_name");
+                writer.name("ph").value("M");
+                writer.name("pid").value(pid);
+                writer.name("tid").value(n.getKey());
+                writer.name("args").beginObject().name("name").value(n.getValue()).endObject();
+                writer.endObject();
+            }
+            for (Event e : list)
+            {
+                writer.beginObject();
+                writer.name("name").value(e.name);
+                writer.name("cat").value(e.category);
+                writer.name("ph").value(e.begin ? "B" : "E");
+                writer.name("ts").value(e.time);
+                writer.name("pid").value(pid);
+                writer.name("tid").value(e.threadId);
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.name("displayTimeUnit").value("ms");
+            writer.endObject();
+        }
+        catch (Exception e)
+        {
+            ViewUtils.Debug(context, "cannot write trace file " + file.getAbsolutePath() + ": "
+                    + e.getLocalizedMessage());
+        }
+        finally
+        {
+            if (writer != null)
+            {
+                try
+                {
+                    writer.close();
+                }
+                catch (Exception e)
+                {
+                    // nothing to do
+                }
+            }
+        }
+    }
+}
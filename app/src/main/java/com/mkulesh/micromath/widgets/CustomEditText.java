@@ -63,6 +63,7 @@ public class CustomEditText extends AppCompatEditText implements OnLongClickList
     private boolean comparatorEnabled = false;
     private boolean newTermEnabled = false;
     private boolean fileOperationEnabled = false;
+    private boolean infinityEnabled = false;
 
     // context menu handling
     private ContextMenuHandler menuHandler = null;
@@ -108,6 +109,7 @@ public class CustomEditText extends AppCompatEditText implements OnLongClickList
             comparatorEnabled = a.getBoolean(R.styleable.CustomViewExtension_comparatorEnabled, false);
             newTermEnabled = a.getBoolean(R.styleable.CustomViewExtension_newTermEnabled, false);
             fileOperationEnabled = a.getBoolean(R.styleable.CustomViewExtension_fileOperationEnabled, false);
+            infinityEnabled = a.getBoolean(R.styleable.CustomViewExtension_infinityEnabled, false);
             // menu
             menuHandler.initialize(a);
             a.recycle();
@@ -165,6 +167,11 @@ public class CustomEditText extends AppCompatEditText implements OnLongClickList
         return fileOperationEnabled;
     }
 
+    public boolean isInfinityEnabled()
+    {
+        return infinityEnabled;
+    }
+
     /*********************************************************
      * Interface
      *********************************************************/
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.benchmark;
+
+import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CancelException;
+import com.mkulesh.micromath.math.EquationArrayResult;
+import com.mkulesh.micromath.math.IntervalPoints;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fill and diagonal lookup of the array result of an equation. The total number of elements is the same for all
+ * ranks
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ArrayBenchmark
+{
+    private static final int ELEMENTS_NUMBER = 1 << 15;
+
+    @Param({ "1", "2", "3" })
+    public int rank;
+
+    private final EquationArrayResult arrayResult = new EquationArrayResult();
+    private final ArrayList<ArrayList<Double>> intervalValues = new ArrayList<ArrayList<Double>>();
+    private CalculatedValue[] argValues;
+    private EquationArrayResult.ElementFunction function;
+
+    @Setup
+    public void setup() throws CancelException
+    {
+        final int size = (int) Math.round(Math.pow(ELEMENTS_NUMBER, 1.0 / rank));
+        argValues = new CalculatedValue[rank];
+        for (int dim = 0; dim < rank; dim++)
+        {
+            intervalValues.add(IntervalPoints.getPoints(null, 0.0, 1.0, size - 1));
+            argValues[dim] = new CalculatedValue();
+        }
+        function = new EquationArrayResult.ElementFunction()
+        {
+            @Override
+            public void getValue(CalculatedValue outValue) throws CancelException
+            {
+                outValue.setValue(0.0);
+                for (CalculatedValue a : argValues)
+                {
+                    outValue.add(outValue, a);
+                }
+            }
+        };
+        arrayResult.calculate(null, intervalValues, argValues, function);
+    }
+
+    @Benchmark
+    public EquationArrayResult fill() throws CancelException
+    {
+        arrayResult.calculate(null, intervalValues, argValues, function);
+        return arrayResult;
+    }
+
+    @Benchmark
+    public double lookupDiagonal()
+    {
+        double sum = 0.0;
+        final ArrayList<Double> interval = intervalValues.get(0);
+        for (Double d : interval)
+        {
+            for (CalculatedValue a : argValues)
+            {
+                a.setValue(d);
+            }
+            sum += arrayResult.getValue(argValues).getReal();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.benchmark;
+
+import com.mkulesh.micromath.math.CalculatedValue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Arithmetic and transcendental operations on real and complex calculated values
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CalculatedValueBenchmark
+{
+    @Param({ "REAL", "COMPLEX" })
+    public CalculatedValue.ValueType valueType;
+
+    private final CalculatedValue f = new CalculatedValue(), g = new CalculatedValue(), out = new CalculatedValue();
+
+    @Setup
+    public void setup()
+    {
+        if (valueType == CalculatedValue.ValueType.COMPLEX)
+        {
+            f.setComplexValue(1.5, 0.5);
+            g.setComplexValue(0.75, -0.25);
+        }
+        else
+        {
+            f.setValue(1.5);
+            g.setValue(0.75);
+        }
+    }
+
+    @Benchmark
+    public CalculatedValue add()
+    {
+        out.add(f, g);
+        return out;
+    }
+
+    @Benchmark
+    public CalculatedValue multiply()
+    {
+        out.multiply(f, g);
+        return out;
+    }
+
+    @Benchmark
+    public CalculatedValue divide()
+    {
+        out.divide(f, g);
+        return out;
+    }
+
+    @Benchmark
+    public CalculatedValue pow()
+    {
+        out.pow(f, g);
+        return out;
+    }
+
+    @Benchmark
+    public CalculatedValue sqrt()
+    {
+        out.sqrt(f);
+        return out;
+    }
+
+    @Benchmark
+    public CalculatedValue sin()
+    {
+        out.sin(f);
+        return out;
+    }
+
+    @Benchmark
+    public CalculatedValue asin()
+    {
+        out.asin(f);
+        return out;
+    }
+
+    @Benchmark
+    public CalculatedValue nthRoot()
+    {
+        out.nthRoot(f, 3);
+        return out;
+    }
+
+    @Benchmark
+    public CalculatedValue fastSin()
+    {
+        out.fastSin(f);
+        return out;
+    }
+
+    @Benchmark
+    public CalculatedValue exp()
+    {
+        out.exp(f);
+        return out;
+    }
+
+    @Benchmark
+    public CalculatedValue fastExp()
+    {
+        out.fastExp(f);
+        return out;
+    }
+
+    @Benchmark
+    public CalculatedValue log()
+    {
+        out.log(f);
+        return out;
+    }
+
+    @Benchmark
+    public CalculatedValue fastLog()
+    {
+        out.fastLog(f);
+        return out;
+    }
+
+    @Benchmark
+    public CalculatedValue fastPow()
+    {
+        out.fastPow(f, g);
+        return out;
+    }
+}
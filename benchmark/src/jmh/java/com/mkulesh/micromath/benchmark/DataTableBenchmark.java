@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.benchmark;
+
+import com.mkulesh.micromath.core.DataTable;
+import com.mkulesh.micromath.math.CalculatedValue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of a data file with three columns and the access to its values, as done by the read() function
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DataTableBenchmark
+{
+    private static final int ROWS_NUMBER = 1 << 15;
+
+    private String fileContent;
+    private DataTable table;
+    private final CalculatedValue value = new CalculatedValue();
+
+    @Setup
+    public void setup() throws IOException
+    {
+        final Random random = new Random(0);
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < ROWS_NUMBER; i++)
+        {
+            sb.append(i).append(' ').append(random.nextDouble()).append('\t').append(random.nextGaussian() * 1.0e5)
+                    .append('\n');
+        }
+        fileContent = sb.toString();
+        table = DataTable.read(new StringReader(fileContent));
+    }
+
+    @Benchmark
+    public DataTable read() throws IOException
+    {
+        return DataTable.read(new StringReader(fileContent));
+    }
+
+    @Benchmark
+    public double getValue()
+    {
+        double sum = 0.0;
+        for (int i = 0; i < ROWS_NUMBER; i++)
+        {
+            table.getValue(i, 1, value);
+            sum += value.getReal();
+        }
+        return sum;
+    }
+}
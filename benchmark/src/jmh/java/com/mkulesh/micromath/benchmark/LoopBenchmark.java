@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.benchmark;
+
+import com.mkulesh.micromath.math.AdaptiveCubature;
+import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CalculationThreadIf;
+import com.mkulesh.micromath.math.CancelException;
+import com.mkulesh.micromath.math.ChunkedReduction;
+import com.mkulesh.micromath.math.DoubleExponentialQuadrature;
+import com.mkulesh.micromath.math.InfiniteSeries;
+import com.mkulesh.micromath.math.ParallelReduction;
+import com.mkulesh.micromath.math.QuasiMonteCarlo;
+import com.mkulesh.micromath.math.RiddersDerivative;
+import com.mkulesh.micromath.math.SimpsonIntegrator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Summation, product, infinite series, integral and derivative loops. All loops are calculated by the numerical
+ * methods of the math package that are also used by the application and the batch evaluator; the term of the loop
+ * is 1/(x + shift)^2 where the shift is a complex number if the value type is COMPLEX
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LoopBenchmark
+{
+    private static final long LOOP_SIZE = 4 * ParallelReduction.MIN_TERMS;
+    private static final int SIGNIFICANT_DIGITS = 6;
+    private static final double ACCURACY = 1.0e-6;
+    private static final long CUBATURE_MAX_EVALUATIONS = 1L << 18;
+    private static final long MONTE_CARLO_MAX_EVALUATIONS = 1L << 16;
+
+    @Param({ "REAL", "COMPLEX" })
+    public CalculatedValue.ValueType valueType;
+
+    private final CalculatedValue argValue = new CalculatedValue(), shift = new CalculatedValue(),
+            one = new CalculatedValue(), outValue = new CalculatedValue();
+    private final ParallelReduction sumReduction = new ParallelReduction(ChunkedReduction.Type.SUM);
+    private final ParallelReduction productReduction = new ParallelReduction(ChunkedReduction.Type.PRODUCT);
+    private final ArrayList<Worker> sumWorker = new ArrayList<Worker>(), productWorker = new ArrayList<Worker>();
+    private final ArrayList<Worker> sumWorkers = new ArrayList<Worker>(), productWorkers = new ArrayList<Worker>();
+    private final CalculationThreadIf thread = new CalculationThreadIf()
+    {
+        @Override
+        public void checkCancelation()
+        {
+            // empty
+        }
+    };
+
+    private InfiniteSeries infiniteSeries;
+
+    private SimpsonIntegrator simpson;
+    private DoubleExponentialQuadrature quadrature;
+    private AdaptiveCubature cubature;
+    private QuasiMonteCarlo monteCarlo;
+    private RiddersDerivative ridders;
+
+    @Setup
+    public void setup()
+    {
+        one.setValue(1.0);
+        if (valueType == CalculatedValue.ValueType.COMPLEX)
+        {
+            shift.setComplexValue(1.0, 0.5);
+        }
+        else
+        {
+            shift.setValue(1.0);
+        }
+        sumWorker.add(new Worker(false));
+        productWorker.add(new Worker(true));
+        for (int i = 0; i < ParallelReduction.getWorkersNumber(); i++)
+        {
+            sumWorkers.add(new Worker(false));
+            productWorkers.add(new Worker(true));
+        }
+        infiniteSeries = new InfiniteSeries(new InfiniteSeries.Term()
+        {
+            @Override
+            public void getValue(long idx, CalculatedValue outValue)
+            {
+                argValue.setValue((double) idx);
+                getTerm(argValue, outValue);
+            }
+        });
+        final DoubleExponentialQuadrature.Integrand integrand = new DoubleExponentialQuadrature.Integrand()
+        {
+            @Override
+            public void getValue(double x, CalculatedValue outValue) throws CancelException
+            {
+                argValue.setValue(x);
+                getTerm(argValue, outValue);
+            }
+        };
+        simpson = new SimpsonIntegrator(integrand);
+        quadrature = new DoubleExponentialQuadrature(integrand);
+        final AdaptiveCubature.Integrand multipleIntegrand = new AdaptiveCubature.Integrand()
+        {
+            @Override
+            public void getValue(double[] x, CalculatedValue outValue) throws CancelException
+            {
+                double r = 0.0;
+                for (double xi : x)
+                {
+                    r += xi * xi;
+                }
+                argValue.setValue(r);
+                getTerm(argValue, outValue);
+            }
+        };
+        cubature = new AdaptiveCubature(2, multipleIntegrand);
+        monteCarlo = new QuasiMonteCarlo(5, multipleIntegrand);
+        ridders = new RiddersDerivative(new RiddersDerivative.Function()
+        {
+            @Override
+            public void getValue(double re, double im, CalculatedValue outValue) throws CancelException
+            {
+                argValue.setComplexValue(re, im);
+                getTerm(argValue, outValue);
+            }
+        });
+    }
+
+    /**
+     * Procedure calculates the term 1/(x + shift)^2 for the given argument value
+     */
+    private void getTerm(CalculatedValue x, CalculatedValue outValue)
+    {
+        outValue.add(x, shift);
+        outValue.multiply(outValue, outValue);
+        outValue.divide(one, outValue);
+    }
+
+    /**
+     * Worker of the parallel reduction with its own argument value. The factors of a product are shifted by the
+     * shift value in order to keep the product finite
+     */
+    private final class Worker implements ParallelReduction.WorkerIf
+    {
+        private final boolean isProduct;
+        private final CalculatedValue x = new CalculatedValue();
+
+        Worker(boolean isProduct)
+        {
+            this.isProduct = isProduct;
+        }
+
+        @Override
+        public void getValue(long idx, CalculatedValue outValue, CalculationThreadIf thread)
+        {
+            x.setValue((double) idx);
+            getTerm(x, outValue);
+            if (isProduct)
+            {
+                outValue.add(outValue, shift);
+            }
+        }
+    }
+
+    @Benchmark
+    public CalculatedValue summation() throws CancelException
+    {
+        sumReduction.calculate(sumWorker, 1, LOOP_SIZE, thread, outValue);
+        return outValue;
+    }
+
+    @Benchmark
+    public CalculatedValue parallelSummation() throws CancelException
+    {
+        sumReduction.calculate(sumWorkers, 1, LOOP_SIZE, thread, outValue);
+        return outValue;
+    }
+
+    @Benchmark
+    public CalculatedValue product() throws CancelException
+    {
+        productReduction.calculate(productWorker, 1, LOOP_SIZE, thread, outValue);
+        return outValue;
+    }
+
+    @Benchmark
+    public CalculatedValue parallelProduct() throws CancelException
+    {
+        productReduction.calculate(productWorkers, 1, LOOP_SIZE, thread, outValue);
+        return outValue;
+    }
+
+    @Benchmark
+    public CalculatedValue infiniteSeries() throws CancelException
+    {
+        infiniteSeries.calculate(false, 1, SIGNIFICANT_DIGITS, outValue);
+        return outValue;
+    }
+
+    @Benchmark
+    public double integrateSimpson() throws CancelException
+    {
+        simpson.integrate(CalculatedValue.PartType.RE, 0.0, 10.0, ACCURACY);
+        return simpson.getValue();
+    }
+
+    @Benchmark
+    public double integrateDoubleExponential() throws CancelException
+    {
+        quadrature.integrate(0.0, Double.POSITIVE_INFINITY, ACCURACY);
+        return quadrature.getReal();
+    }
+
+    @Benchmark
+    public double integrateCubature() throws CancelException
+    {
+        cubature.integrate(new double[] { 0.0, 0.0 }, new double[] { 1.0, 1.0 }, ACCURACY, CUBATURE_MAX_EVALUATIONS);
+        return cubature.getReal();
+    }
+
+    @Benchmark
+    public double integrateMonteCarlo() throws CancelException
+    {
+        monteCarlo.integrate(new double[] { 0.0, 0.0, 0.0, 0.0, 0.0 }, new double[] { 1.0, 1.0, 1.0, 1.0, 1.0 },
+                ACCURACY, MONTE_CARLO_MAX_EVALUATIONS);
+        return monteCarlo.getReal();
+    }
+
+    @Benchmark
+    public double derivative() throws CancelException
+    {
+        return ridders.differentiate(CalculatedValue.PartType.RE, 1.0, 0.0, RiddersDerivative.INITIAL_STEP);
+    }
+}
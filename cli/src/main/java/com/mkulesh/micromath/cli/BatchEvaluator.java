@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.cli;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Command-line runner that calculates microMathematics documents without user interface. The documents are
+ * calculated in parallel, the results are written in CSV or JSON format, the timings are reported into the error
+ * stream
+ */
+public class BatchEvaluator
+{
+    private static final String FILE_EXT = ".mmt";
+    private static final String USAGE = "Usage: micromath-batch [--format csv|json] [--threads N] [--timeout ms] "
+            + "[--output file] <file.mmt|directory>...";
+
+    private ReportWriter.Format format = ReportWriter.Format.CSV;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long timeoutMillis = 0;
+    private String output = null;
+    private final ArrayList<File> files = new ArrayList<File>();
+
+    public static void main(String[] args)
+    {
+        final BatchEvaluator evaluator = new BatchEvaluator();
+        try
+        {
+            evaluator.parseArguments(args);
+        }
+        catch (Exception e)
+        {
+            System.err.println(e.getLocalizedMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        try
+        {
+            System.exit(evaluator.run());
+        }
+        catch (Exception e)
+        {
+            System.err.println(e.toString());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Procedure parses the command line arguments
+     */
+    private void parseArguments(String[] args) throws Exception
+    {
+        for (int i = 0; i < args.length; i++)
+        {
+            final String a = args[i];
+            if ("--format".equals(a) && i + 1 < args.length)
+            {
+                format = ReportWriter.Format.valueOf(args[++i].toUpperCase(Locale.ENGLISH));
+            }
+            else if ("--threads".equals(a) && i + 1 < args.length)
+            {
+                threads = Math.max(1, Integer.parseInt(args[++i]));
+            }
+            else if ("--timeout".equals(a) && i + 1 < args.length)
+            {
+                timeoutMillis = Long.parseLong(args[++i]);
+            }
+            else if ("--output".equals(a) && i + 1 < args.length)
+            {
+                output = args[++i];
+            }
+            else if (a.startsWith("--"))
+            {
+                throw new Exception("unknown option: " + a);
+            }
+            else
+            {
+                collectFiles(new File(a));
+            }
+        }
+        if (files.isEmpty())
+        {
+            throw new Exception("no documents given");
+        }
+    }
+
+    /**
+     * Procedure adds the given document or all documents of the given directory and its sub-directories
+     */
+    private void collectFiles(File f) throws Exception
+    {
+        if (f.isDirectory())
+        {
+            final File[] children = f.listFiles();
+            if (children != null)
+            {
+                Arrays.sort(children);
+                for (File c : children)
+                {
+                    if (c.isDirectory() || c.getName().endsWith(FILE_EXT))
+                    {
+                        collectFiles(c);
+                    }
+                }
+            }
+        }
+        else if (f.isFile())
+        {
+            files.add(f);
+        }
+        else
+        {
+            throw new Exception("file not found: " + f.getPath());
+        }
+    }
+
+    /**
+     * Procedure calculates all documents and returns the exit code: 0 if all documents are calculated, 1 otherwise
+     */
+    private int run() throws Exception
+    {
+        final long startTime = System.nanoTime();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+        final List<Future<DocumentReport>> futures = new ArrayList<Future<DocumentReport>>();
+        for (File f : files)
+        {
+            futures.add(executor.submit(new DocumentTask(f, timeoutMillis)));
+        }
+        executor.shutdown();
+
+        // the reports are written in the order of the given files independently of the execution order
+        final ArrayList<DocumentReport> reports = new ArrayList<DocumentReport>();
+        int failed = 0;
+        long calculationTime = 0;
+        for (Future<DocumentReport> future : futures)
+        {
+            final DocumentReport r = future.get();
+            reports.add(r);
+            calculationTime += r.getTotalTime();
+            if (r.getError() != null)
+            {
+                failed++;
+            }
+            System.err.println(r.getFile().getPath() + ": " + r.getEntries().size() + " results, load "
+                    + ReportWriter.formatMillis(r.getLoadTime()) + " ms, total "
+                    + ReportWriter.formatMillis(r.getTotalTime()) + " ms"
+                    + (r.getError() != null ? ", error: " + r.getError() : "")
+                    + (r.getWarnings().isEmpty() ? "" : ", warnings: " + r.getWarnings().size()));
+        }
+        final long elapsedTime = System.nanoTime() - startTime;
+
+        final PrintWriter out = (output == null) ? new PrintWriter(new OutputStreamWriter(System.out, "UTF-8")) :
+                new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), "UTF-8"));
+        try
+        {
+            new ReportWriter(format, out).write(reports);
+        }
+        finally
+        {
+            if (output != null)
+            {
+                out.close();
+            }
+        }
+
+        System.err.println(String.format(Locale.ENGLISH,
+                "%d documents (%d failed) in %s ms using %d threads: %.2f documents/s, parallel speedup %.2f",
+                reports.size(), failed, ReportWriter.formatMillis(elapsedTime), Math.min(threads, files.size()),
+                reports.size() / (elapsedTime / 1.0e9), calculationTime / (double) elapsedTime));
+        return failed == 0 ? 0 : 1;
+    }
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.cli;
+
+import com.mkulesh.micromath.cli.model.Result;
+import com.mkulesh.micromath.math.EquationArrayResult;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Calculation report of one document: the results converted into strings and the timings
+ */
+public class DocumentReport
+{
+    /**
+     * Result of a single formula
+     */
+    public static class Entry
+    {
+        public final int id;
+        public final String name;
+        public final String type;
+        public final String value;
+        public final ArrayList<String> argument;
+        public final ArrayList<ArrayList<String>> values;
+
+        Entry(int id, String name, String type, String value, ArrayList<String> argument,
+              ArrayList<ArrayList<String>> values)
+        {
+            this.id = id;
+            this.name = name;
+            this.type = type;
+            this.value = value;
+            this.argument = argument;
+            this.values = values;
+        }
+    }
+
+    private final File file;
+    private final ArrayList<Entry> entries = new ArrayList<Entry>();
+    private final ArrayList<String> warnings = new ArrayList<String>();
+    private String error = null;
+    private int significantDigits = 6;
+    private long loadTime = 0, totalTime = 0;
+
+    public DocumentReport(File file)
+    {
+        this.file = file;
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    public ArrayList<Entry> getEntries()
+    {
+        return entries;
+    }
+
+    public ArrayList<String> getWarnings()
+    {
+        return warnings;
+    }
+
+    public String getError()
+    {
+        return error;
+    }
+
+    public void setError(String error)
+    {
+        this.error = error;
+    }
+
+    public void setSignificantDigits(int significantDigits)
+    {
+        this.significantDigits = significantDigits;
+    }
+
+    /**
+     * Procedure returns the time in nanoseconds needed to read the document
+     */
+    public long getLoadTime()
+    {
+        return loadTime;
+    }
+
+    public void setLoadTime(long loadTime)
+    {
+        this.loadTime = loadTime;
+    }
+
+    /**
+     * Procedure returns the time in nanoseconds needed to read and calculate the document
+     */
+    public long getTotalTime()
+    {
+        return totalTime;
+    }
+
+    public void setTotalTime(long totalTime)
+    {
+        this.totalTime = totalTime;
+    }
+
+    public void addWarning(String warning)
+    {
+        warnings.add(warning);
+    }
+
+    /**
+     * Procedure converts the given result into strings. Unlike the result description, the arrays are not
+     * shortened
+     */
+    public void addResult(Result r)
+    {
+        ArrayList<String> argument = null;
+        ArrayList<ArrayList<String>> values = null;
+        if (r.isArrayResult())
+        {
+            final EquationArrayResult arrayResult = r.getArrayResult();
+            final int[] dim = arrayResult.getDimensions();
+            values = new ArrayList<ArrayList<String>>(dim[0]);
+            for (int i = 0; i < dim[0]; i++)
+            {
+                final ArrayList<String> row = new ArrayList<String>(dim[1]);
+                for (int j = 0; j < dim[1]; j++)
+                {
+                    row.add(arrayResult.getValue2D(i, j).getResultDescription(significantDigits));
+                }
+                values.add(row);
+            }
+            if (r.getArrayArgument() != null)
+            {
+                argument = new ArrayList<String>(dim[0]);
+                for (int i = 0; i < dim[0]; i++)
+                {
+                    argument.add(r.getArrayArgument().getValue1D(i).getResultDescription(significantDigits));
+                }
+            }
+        }
+        if (!r.isValid())
+        {
+            warnings.add(r.toString() + ": " + r.getError());
+        }
+        entries.add(new Entry(r.getId(), r.getName(), r.getResultType().toString().toLowerCase(Locale.ENGLISH),
+                r.getDescription(), argument, values));
+    }
+}
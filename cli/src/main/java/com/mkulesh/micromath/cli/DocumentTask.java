@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.cli;
+
+import com.mkulesh.micromath.cli.model.Document;
+import com.mkulesh.micromath.cli.model.DocumentReader;
+import com.mkulesh.micromath.cli.model.Formula;
+import com.mkulesh.micromath.cli.model.Result;
+import com.mkulesh.micromath.math.CalculationThreadIf;
+import com.mkulesh.micromath.math.CancelException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+
+/**
+ * Task that reads and calculates one document. Each task uses its own document instance, so that the tasks can be
+ * executed in parallel
+ */
+public class DocumentTask implements Callable<DocumentReport>, CalculationThreadIf
+{
+    private final File file;
+    private final long timeoutMillis;
+    private long deadline = Long.MAX_VALUE;
+
+    public DocumentTask(File file, long timeoutMillis)
+    {
+        this.file = file;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void checkCancelation() throws CancelException
+    {
+        if (Thread.currentThread().isInterrupted())
+        {
+            throw new CancelException();
+        }
+        if (System.currentTimeMillis() > deadline)
+        {
+            throw new CancelException(true);
+        }
+    }
+
+    @Override
+    public DocumentReport call()
+    {
+        final DocumentReport report = new DocumentReport(file);
+        final long startTime = System.nanoTime();
+        InputStream stream = null;
+        try
+        {
+            stream = new FileInputStream(file);
+            final Document doc = DocumentReader.read(stream, file.getAbsoluteFile().getParentFile());
+            report.setLoadTime(System.nanoTime() - startTime);
+            report.setSignificantDigits(doc.getProperties().significantDigits);
+            deadline = (timeoutMillis > 0) ? System.currentTimeMillis() + timeoutMillis : Long.MAX_VALUE;
+            doc.calculate(this);
+            for (Formula f : doc.getFormulas())
+            {
+                if (f instanceof Result)
+                {
+                    report.addResult((Result) f);
+                }
+                else if (!f.isValid())
+                {
+                    report.addWarning(f.toString() + ": " + f.getError());
+                }
+            }
+        }
+        catch (CancelException e)
+        {
+            report.setError(e.isBudgetExceeded() ? "timeout of " + timeoutMillis + " ms exceeded" : "cancelled");
+        }
+        catch (Exception e)
+        {
+            report.setError(e.getLocalizedMessage() != null ? e.getLocalizedMessage() : e.toString());
+        }
+        finally
+        {
+            if (stream != null)
+            {
+                try
+                {
+                    stream.close();
+                }
+                catch (Exception e)
+                {
+                    // nothing to do
+                }
+            }
+        }
+        report.setTotalTime(System.nanoTime() - startTime);
+        return report;
+    }
+}
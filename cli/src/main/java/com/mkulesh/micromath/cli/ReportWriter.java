@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.cli;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writer of the document reports in CSV or JSON format
+ */
+public class ReportWriter
+{
+    public enum Format
+    {
+        CSV,
+        JSON
+    }
+
+    private static final String CSV_SEPARATOR = ",";
+    private static final String[] CSV_HEADER = { "file", "id", "name", "type", "value", "time_ms", "error" };
+
+    private final Format format;
+    private final PrintWriter out;
+
+    public ReportWriter(Format format, PrintWriter out)
+    {
+        this.format = format;
+        this.out = out;
+    }
+
+    /**
+     * Procedure writes all given reports
+     */
+    public void write(List<DocumentReport> reports)
+    {
+        switch (format)
+        {
+        case CSV:
+            writeCsv(reports);
+            break;
+        case JSON:
+            writeJson(reports);
+            break;
+        }
+        out.flush();
+    }
+
+    /**
+     * Procedure writes one line per result. A document without results or with an error is written as a single
+     * line with empty result columns. Arrays are written as their description
+     */
+    private void writeCsv(List<DocumentReport> reports)
+    {
+        writeCsvLine(CSV_HEADER);
+        for (DocumentReport r : reports)
+        {
+            final String time = formatMillis(r.getTotalTime());
+            final String error = r.getError() == null ? "" : r.getError();
+            if (r.getEntries().isEmpty() || r.getError() != null)
+            {
+                writeCsvLine(new String[]{ r.getFile().getPath(), "", "", "", "", time, error });
+                continue;
+            }
+            for (DocumentReport.Entry e : r.getEntries())
+            {
+                writeCsvLine(new String[]{ r.getFile().getPath(), Integer.toString(e.id), e.name, e.type, e.value,
+                        time, error });
+            }
+        }
+    }
+
+    private void writeCsvLine(String[] fields)
+    {
+        for (int i = 0; i < fields.length; i++)
+        {
+            if (i > 0)
+            {
+                out.print(CSV_SEPARATOR);
+            }
+            out.print(escapeCsv(fields[i]));
+        }
+        out.println();
+    }
+
+    private static String escapeCsv(String s)
+    {
+        if (s.contains(CSV_SEPARATOR) || s.contains("\"") || s.contains("\n"))
+        {
+            return "\"" + s.replace("\"", "\"\"") + "\"";
+        }
+        return s;
+    }
+
+    /**
+     * Procedure writes an array of documents. Arrays are written completely
+     */
+    private void writeJson(List<DocumentReport> reports)
+    {
+        out.println("[");
+        for (int d = 0; d < reports.size(); d++)
+        {
+            final DocumentReport r = reports.get(d);
+            out.println("  {");
+            out.println("    \"file\": " + quote(r.getFile().getPath()) + ",");
+            out.println("    \"loadTimeMs\": " + formatMillis(r.getLoadTime()) + ",");
+            out.println("    \"totalTimeMs\": " + formatMillis(r.getTotalTime()) + ",");
+            out.println("    \"error\": " + (r.getError() == null ? "null" : quote(r.getError())) + ",");
+            out.println("    \"warnings\": " + toJson(r.getWarnings()) + ",");
+            out.print("    \"results\": [");
+            for (int i = 0; i < r.getEntries().size(); i++)
+            {
+                final DocumentReport.Entry e = r.getEntries().get(i);
+                out.println(i == 0 ? "" : ",");
+                out.print("      { \"id\": " + e.id + ", \"name\": " + quote(e.name) + ", \"type\": " + quote(e.type)
+                        + ", \"value\": " + quote(e.value));
+                if (e.argument != null)
+                {
+                    out.print(", \"argument\": " + toJson(e.argument));
+                }
+                if (e.values != null)
+                {
+                    out.print(", \"values\": [");
+                    for (int k = 0; k < e.values.size(); k++)
+                    {
+                        out.print((k == 0 ? "" : ", ") + toJson(e.values.get(k)));
+                    }
+                    out.print("]");
+                }
+                out.print(" }");
+            }
+            out.println(r.getEntries().isEmpty() ? "]" : "\n    ]");
+            out.println(d + 1 < reports.size() ? "  }," : "  }");
+        }
+        out.println("]");
+    }
+
+    private static String toJson(ArrayList<String> list)
+    {
+        final StringBuilder s = new StringBuilder("[");
+        for (int i = 0; i < list.size(); i++)
+        {
+            s.append(i == 0 ? "" : ", ").append(quote(list.get(i)));
+        }
+        return s.append("]").toString();
+    }
+
+    private static String quote(String s)
+    {
+        final StringBuilder q = new StringBuilder("\"");
+        for (char c : s.toCharArray())
+        {
+            switch (c)
+            {
+            case '"':
+                q.append("\\\"");
+                break;
+            case '\\':
+                q.append("\\\\");
+                break;
+            case '\n':
+                q.append("\\n");
+                break;
+            case '\r':
+                q.append("\\r");
+                break;
+            case '\t':
+                q.append("\\t");
+                break;
+            default:
+                if (c < 0x20)
+                {
+                    q.append(String.format(Locale.ENGLISH, "\\u%04x", (int) c));
+                }
+                else
+                {
+                    q.append(c);
+                }
+            }
+        }
+        return q.append("\"").toString();
+    }
+
+    public static String formatMillis(long nanos)
+    {
+        return String.format(Locale.ENGLISH, "%.3f", nanos / 1.0e6);
+    }
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.cli.model;
+
+import com.mkulesh.micromath.math.CalculationThreadIf;
+import com.mkulesh.micromath.math.CancelException;
+
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * Document of the batch evaluator: the ordered list of equations and results. A document is not thread-safe:
+ * in order to calculate several documents in parallel, each thread shall use its own document instance
+ */
+public class Document
+{
+    public static final String ASSET_PREFIX = "asset:";
+
+    private final DocumentProperties properties = new DocumentProperties();
+    private final ArrayList<Formula> formulas = new ArrayList<Formula>();
+    private File directory = null;
+
+    public Document()
+    {
+        // empty
+    }
+
+    /**
+     * Procedure sets the directory of the document file. The relative file names used by read and write are
+     * resolved within this directory
+     */
+    public void setDirectory(File directory)
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * Procedure returns the file with the given name used by a file operation, or null if the name is empty or
+     * refers to an asset of the app
+     */
+    public File getFile(String name)
+    {
+        if (name == null || name.trim().length() == 0 || name.startsWith(ASSET_PREFIX))
+        {
+            return null;
+        }
+        final File file = new File(name.trim());
+        return (file.isAbsolute() || directory == null) ? file : new File(directory, name.trim());
+    }
+
+    public DocumentProperties getProperties()
+    {
+        return properties;
+    }
+
+    public ArrayList<Formula> getFormulas()
+    {
+        return formulas;
+    }
+
+    /**
+     * Procedure returns all results of this document
+     */
+    public ArrayList<Result> getResults()
+    {
+        final ArrayList<Result> retValue = new ArrayList<Result>();
+        for (Formula f : formulas)
+        {
+            if (f instanceof Result)
+            {
+                retValue.add((Result) f);
+            }
+        }
+        return retValue;
+    }
+
+    /**
+     * Procedure adds a formula at the end of this document. The formula id shall be equal to its position
+     */
+    public void add(Formula f)
+    {
+        formulas.add(f);
+    }
+
+    /**
+     * Procedure searches an equation with the given name and the given number of arguments. If redefinition is
+     * allowed, only the equations declared before the root formula are visible
+     */
+    public Equation getEquation(String name, int argNumber, int rootId, boolean excludeRoot)
+    {
+        if (name == null)
+        {
+            return null;
+        }
+        int idx = rootId;
+        if (idx < 0 || idx >= formulas.size() || !properties.redefineAllowed)
+        {
+            idx = formulas.size() - 1;
+        }
+        for (int i = idx; i >= 0; i--)
+        {
+            final Formula f = formulas.get(i);
+            if (f instanceof Equation && ((Equation) f).isEqual(name, argNumber, rootId, excludeRoot))
+            {
+                return (Equation) f;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Procedure builds the expressions of all formulas and validates the links between them and the derivatives
+     */
+    public void build()
+    {
+        for (Formula f : formulas)
+        {
+            f.build();
+        }
+        for (Formula f : formulas)
+        {
+            f.collectLinks();
+        }
+        for (Formula f : formulas)
+        {
+            if (f instanceof Equation)
+            {
+                ((Equation) f).validateLinks();
+            }
+        }
+        for (Formula f : formulas)
+        {
+            f.validateDerivatives();
+        }
+    }
+
+    /**
+     * Procedure calculates all formulas in the document order
+     */
+    public void calculate(CalculationThreadIf thread) throws CancelException
+    {
+        for (Formula f : formulas)
+        {
+            f.invalidateResult();
+        }
+        for (Formula f : formulas)
+        {
+            if (thread != null)
+            {
+                thread.checkCancelation();
+            }
+            f.calculate(thread);
+        }
+    }
+}
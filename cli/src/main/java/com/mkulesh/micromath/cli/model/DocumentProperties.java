@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.cli.model;
+
+/**
+ * Document settings that affect the calculation
+ */
+public class DocumentProperties
+{
+    public static final String XML_PROP_VERSION = "documentVersion";
+    public static final String XML_PROP_SIGNIFICANT_DIGITS = "significantDigits";
+    public static final String XML_PROP_SAMPLE_BUDGET = "sampleBudget";
+    public static final String XML_PROP_REDEFINE_ALLOWED = "redefineAllowed";
+
+    /**
+     * Since version 2, the obsolete function codes are not accepted anymore
+     */
+    public static final int LATEST_DOCUMENT_VERSION = 2;
+    public static final int DEFAULT_DOCUMENT_VERSION = 1;
+
+    public int documentVersion = LATEST_DOCUMENT_VERSION;
+    public int significantDigits = 6;
+    public int sampleBudget = 16; // power of two of the maximal number of Monte Carlo samples
+    public boolean redefineAllowed = false;
+}
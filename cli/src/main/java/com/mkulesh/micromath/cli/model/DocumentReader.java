@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.cli.model;
+
+import com.mkulesh.micromath.math.QuasiMonteCarlo;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.File;
+import java.io.InputStream;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * Reader of a microMathematics document. Only the equations and the results are read: text fragments, plots and
+ * images do not contribute to the calculation
+ */
+public class DocumentReader
+{
+    public static final String XML_MAIN_TAG = "micromath";
+    public static final String XML_LIST_TAG = "formulaList";
+    public static final String XML_TERM_TAG = "term";
+    public static final String XML_EQUATION_TAG = "equation";
+    public static final String XML_RESULT_TAG = "result";
+    public static final String XML_PROP_KEY = "key";
+    public static final String XML_PROP_CODE = "code";
+    public static final String XML_PROP_TEXT = "text";
+    public static final String XML_PROP_DISABLE_CALCULATION = "disableCalculation";
+    public static final String XML_PROP_ARRAY_LENGTH = "arrayLength";
+
+    private static final int DEFAULT_ARRAY_LENGTH = 7;
+
+    /**
+     * Procedure reads the document from the given stream and builds all its formulas
+     */
+    public static Document read(InputStream stream) throws Exception
+    {
+        return read(stream, null);
+    }
+
+    /**
+     * Procedure reads the document from the given stream and builds all its formulas. The files used by the file
+     * operations are searched in the given directory
+     */
+    public static Document read(InputStream stream, File directory) throws Exception
+    {
+        final DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        final Element main = builder.parse(stream).getDocumentElement();
+        if (main == null || !XML_MAIN_TAG.equals(main.getTagName()))
+        {
+            throw new Exception("invalid document: tag " + XML_MAIN_TAG + " is not found");
+        }
+        final Element list = getChildElement(main, XML_LIST_TAG);
+        if (list == null)
+        {
+            throw new Exception("invalid document: tag " + XML_LIST_TAG + " is not found");
+        }
+
+        final Document doc = new Document();
+        doc.setDirectory(directory);
+        readProperties(list, doc.getProperties());
+        final NodeList children = list.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++)
+        {
+            if (!(children.item(i) instanceof Element))
+            {
+                continue;
+            }
+            final Element e = (Element) children.item(i);
+            final int id = doc.getFormulas().size();
+            if (XML_EQUATION_TAG.equals(e.getTagName()))
+            {
+                final TermNode leftTerm = getTerm(e, "leftTerm");
+                doc.add(new Equation(doc, id, leftTerm == null ? null : leftTerm.getText(), getTerm(e, "rightTerm")));
+            }
+            else if (XML_RESULT_TAG.equals(e.getTagName()))
+            {
+                final String arrayLength = e.getAttribute(XML_PROP_ARRAY_LENGTH);
+                doc.add(new Result(doc, id, getTerm(e, "leftTerm"),
+                        Boolean.parseBoolean(e.getAttribute(XML_PROP_DISABLE_CALCULATION)),
+                        arrayLength.length() > 0 ? Integer.parseInt(arrayLength) : DEFAULT_ARRAY_LENGTH));
+            }
+        }
+        doc.build();
+        return doc;
+    }
+
+    private static void readProperties(Element list, DocumentProperties properties)
+    {
+        String attr = list.getAttribute(DocumentProperties.XML_PROP_VERSION);
+        properties.documentVersion = (attr.length() > 0) ? Integer.parseInt(attr)
+                : DocumentProperties.DEFAULT_DOCUMENT_VERSION;
+        attr = list.getAttribute(DocumentProperties.XML_PROP_SIGNIFICANT_DIGITS);
+        if (attr.length() > 0)
+        {
+            properties.significantDigits = Integer.parseInt(attr);
+        }
+        attr = list.getAttribute(DocumentProperties.XML_PROP_SAMPLE_BUDGET);
+        if (attr.length() > 0)
+        {
+            try
+            {
+                properties.sampleBudget = QuasiMonteCarlo.limitSampleBudget(Integer.parseInt(attr));
+            }
+            catch (NumberFormatException e)
+            {
+                // a malformed value is ignored: the default sample budget is used
+            }
+        }
+        attr = list.getAttribute(DocumentProperties.XML_PROP_REDEFINE_ALLOWED);
+        if (attr.length() > 0)
+        {
+            properties.redefineAllowed = Boolean.parseBoolean(attr);
+        }
+    }
+
+    private static Element getChildElement(Element parent, String tag)
+    {
+        final NodeList children = parent.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++)
+        {
+            final Node n = children.item(i);
+            if (n instanceof Element && tag.equals(((Element) n).getTagName()))
+            {
+                return (Element) n;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Procedure returns the child term of the given formula with the given key
+     */
+    private static TermNode getTerm(Element formula, String key)
+    {
+        final NodeList children = formula.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++)
+        {
+            final Node n = children.item(i);
+            if (n instanceof Element && XML_TERM_TAG.equals(((Element) n).getTagName())
+                    && key.equals(((Element) n).getAttribute(XML_PROP_KEY)))
+            {
+                return readTerm((Element) n);
+            }
+        }
+        return null;
+    }
+
+    private static TermNode readTerm(Element e)
+    {
+        final String code = e.getAttribute(XML_PROP_CODE);
+        final TermNode t = new TermNode(e.getAttribute(XML_PROP_KEY), code.length() > 0 ? code : null,
+                e.hasAttribute(XML_PROP_TEXT) ? e.getAttribute(XML_PROP_TEXT) : null);
+        final NodeList children = e.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++)
+        {
+            final Node n = children.item(i);
+            if (n instanceof Element && XML_TERM_TAG.equals(((Element) n).getTagName()))
+            {
+                t.getChildren().add(readTerm((Element) n));
+            }
+        }
+        return t;
+    }
+}
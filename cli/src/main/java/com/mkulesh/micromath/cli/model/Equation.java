@@ -0,0 +1,366 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.cli.model;
+
+import com.mkulesh.micromath.core.ArgumentHolderIf;
+import com.mkulesh.micromath.core.TextParser;
+import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CalculationThreadIf;
+import com.mkulesh.micromath.math.CancelException;
+import com.mkulesh.micromath.math.EquationArrayResult;
+
+import java.util.ArrayList;
+
+/**
+ * Equation of the batch evaluator: a constant, an interval, a function or an array definition
+ */
+public class Equation extends Formula implements ArgumentHolderIf
+{
+    public static final String INTERVAL_CODE = "equidistant_interval";
+
+    private final String name;
+    private final ArrayList<String> arguments;
+    private final boolean isArray;
+    private final TermNode rightNode;
+    private Expression rightTerm = null;
+    private CalculatedValue[] argumentValues = null;
+
+    // Constant result is calculated once per calculation, array result is filled by the calculation
+    private boolean isConstantResult = false;
+    private CalculatedValue constantResult = null;
+    private EquationArrayResult arrayResult = null;
+
+    public Equation(Document document, int id, String leftText, TermNode rightNode)
+    {
+        super(document, id);
+        final TextParser parser = new TextParser();
+        if (parser.parse(leftText, false) && parser.getName() != null)
+        {
+            name = parser.getName();
+            arguments = parser.getArguments();
+            isArray = parser.isArray();
+        }
+        else
+        {
+            name = null;
+            arguments = null;
+            isArray = false;
+            setError(parser.getValue() != null ? "invalid equation name: " + leftText : parser.getError());
+        }
+        this.rightNode = rightNode;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Equation(Id: " + getId() + ", Name: " + name + (arguments != null ? arguments.toString() : "")
+                + (isInterval() ? ": interval" : "") + ")";
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public boolean isArray()
+    {
+        return isArray;
+    }
+
+    public boolean isInterval()
+    {
+        return rightNode != null && INTERVAL_CODE.equals(rightNode.getCode());
+    }
+
+    /**
+     * Procedure checks whether this equation is a constant that is calculated once per calculation
+     */
+    public boolean isConstant()
+    {
+        return isConstantResult;
+    }
+
+    /**
+     * Procedure checks whether this equation has the given name and the given number of arguments
+     */
+    public boolean isEqual(String name, int argNumber, int rootId, boolean excludeRoot)
+    {
+        if (this.name == null || (excludeRoot && getId() == rootId) || !this.name.equals(name))
+        {
+            return false;
+        }
+        if (argNumber < 0)
+        {
+            return true;
+        }
+        if (arguments != null)
+        {
+            // normal function with arguments
+            return arguments.size() == argNumber;
+        }
+        // a constant or an interval
+        return argNumber == 0 || (isInterval() && argNumber == 1);
+    }
+
+    /*********************************************************
+     * Implementation of ArgumentHolderIf interface
+     *********************************************************/
+
+    @Override
+    public ArrayList<String> getArguments()
+    {
+        return arguments;
+    }
+
+    @Override
+    public int getArgumentIndex(String text)
+    {
+        return (text != null && arguments != null) ? arguments.indexOf(text) : -1;
+    }
+
+    @Override
+    public CalculatedValue getArgumentValue(int idx)
+    {
+        if (argumentValues != null && idx < argumentValues.length && argumentValues[idx] != null)
+        {
+            return argumentValues[idx];
+        }
+        return CalculatedValue.NaN;
+    }
+
+    /**
+     * Procedure sets the list of argument values
+     */
+    public boolean setArgumentValues(CalculatedValue[] argumentValues)
+    {
+        this.argumentValues = argumentValues;
+        return this.argumentValues != null;
+    }
+
+    /*********************************************************
+     * Implementation of Formula methods
+     *********************************************************/
+
+    @Override
+    public void build()
+    {
+        if (!isValid())
+        {
+            return;
+        }
+        if (!document.getProperties().redefineAllowed && document.getEquation(name, -1, getId(), true) != null)
+        {
+            setError("duplicated identifier: " + name);
+            return;
+        }
+        final ExpressionBuilder builder = new ExpressionBuilder(document, this);
+        if (isInterval())
+        {
+            rightTerm = new IntervalExpression(this, builder.build(rightNode.getChild("minValue"), false),
+                    builder.build(rightNode.getChild("nextValue"), false),
+                    builder.build(rightNode.getChild("maxValue"), false));
+        }
+        else
+        {
+            builder.pushHolder(this);
+            rightTerm = builder.build(rightNode, false);
+        }
+        final ArrayList<Equation> links = new ArrayList<Equation>();
+        rightTerm.collectLinks(links);
+        setLinkedEquations(links);
+    }
+
+    @Override
+    protected Expression getExpression()
+    {
+        return rightTerm;
+    }
+
+    /**
+     * Procedure checks the links of this equation. It shall be called after all links of the document are collected
+     */
+    public void validateLinks()
+    {
+        isConstantResult = false;
+        if (!isValid())
+        {
+            return;
+        }
+        if (getAllFunctions().contains(this))
+        {
+            setError("recursive call: " + name);
+            return;
+        }
+        if (isInterval())
+        {
+            return;
+        }
+        if (getAllIntervals().isEmpty() && (arguments == null || arguments.isEmpty()))
+        {
+            isConstantResult = true;
+        }
+        else if (isArray)
+        {
+            setError(checkArrayResult());
+        }
+    }
+
+    private String checkArrayResult()
+    {
+        if (arguments.size() > EquationArrayResult.MAX_DIMENSION)
+        {
+            return "invalid array dimension: " + arguments.size();
+        }
+        // linked intervals are not allowed since all indexed variables in the right part are arguments
+        for (Equation e : getAllIntervals())
+        {
+            if (!arguments.contains(e.getName()))
+            {
+                return "interval " + e.getName() + " is not defined as index";
+            }
+        }
+        for (String s : arguments)
+        {
+            final Equation e = document.getEquation(s, 0, getId(), true);
+            if (e == null || !e.isInterval())
+            {
+                return "array index " + s + " is not an interval";
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void invalidateResult()
+    {
+        constantResult = null;
+        arrayResult = null;
+    }
+
+    @Override
+    public void calculate(final CalculationThreadIf thread) throws CancelException
+    {
+        if (!isValid() || !isArray || isInterval())
+        {
+            return;
+        }
+        final int dimNumber = arguments.size();
+        final ArrayList<ArrayList<Double>> intervalValues = new ArrayList<ArrayList<Double>>();
+        final CalculatedValue[] argValues = new CalculatedValue[dimNumber];
+        for (int dim = 0; dim < dimNumber; dim++)
+        {
+            final Equation e = document.getEquation(arguments.get(dim), 0, getId(), true);
+            final ArrayList<Double> interval = (e != null) ? e.getInterval(thread) : null;
+            if (interval == null || interval.isEmpty() || interval.get(interval.size() - 1).intValue() <= 0)
+            {
+                return;
+            }
+            intervalValues.add(interval);
+            argValues[dim] = new CalculatedValue();
+        }
+
+        final EquationArrayResult result = new EquationArrayResult();
+        setArgumentValues(argValues);
+        result.calculate(thread, intervalValues, argValues, new EquationArrayResult.ElementFunction()
+        {
+            @Override
+            public void getValue(CalculatedValue outValue) throws CancelException
+            {
+                rightTerm.getValue(thread, outValue);
+            }
+        });
+        arrayResult = result;
+    }
+
+    /*********************************************************
+     * Equation-specific methods
+     *********************************************************/
+
+    /**
+     * Procedure calculates the value of this equation for the current argument values
+     */
+    public CalculatedValue.ValueType getValue(CalculationThreadIf thread, CalculatedValue outValue)
+            throws CancelException
+    {
+        if (rightTerm == null || !isValid())
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.TERM_NOT_READY);
+        }
+        if (isConstantResult && argumentValues == null)
+        {
+            if (constantResult == null)
+            {
+                constantResult = new CalculatedValue();
+                rightTerm.getValue(thread, constantResult);
+            }
+            return outValue.assign(constantResult);
+        }
+        else if (arrayResult != null && argumentValues != null)
+        {
+            return outValue.assign(arrayResult.getValue(argumentValues));
+        }
+        return rightTerm.getValue(thread, outValue);
+    }
+
+    /**
+     * Procedure checks whether this equation is differentiable with respect to the given argument
+     */
+    public Expression.DifferentiableType isDifferentiable(ArgumentHolderIf holder, int index)
+    {
+        if (rightTerm == null || !isValid())
+        {
+            return Expression.DifferentiableType.NONE;
+        }
+        return rightTerm.isDifferentiable(holder, index);
+    }
+
+    /**
+     * Procedure calculates the derivative value of this equation for the current argument values
+     */
+    public CalculatedValue.ValueType getDerivativeValue(ArgumentHolderIf holder, int index,
+                                                        CalculationThreadIf thread, CalculatedValue outValue)
+            throws CancelException
+    {
+        if (rightTerm == null || !isValid())
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.TERM_NOT_READY);
+        }
+        return rightTerm.getDerivativeValue(holder, index, thread, outValue);
+    }
+
+    /**
+     * Procedure returns the calculated array if this equation represents an array
+     */
+    public EquationArrayResult getArrayResult()
+    {
+        return arrayResult;
+    }
+
+    /**
+     * Procedure returns declared interval if this equation represents an interval
+     */
+    public ArrayList<Double> getInterval(CalculationThreadIf thread) throws CancelException
+    {
+        if (rightTerm instanceof IntervalExpression && isValid())
+        {
+            return ((IntervalExpression) rightTerm).getInterval(thread);
+        }
+        return null;
+    }
+}
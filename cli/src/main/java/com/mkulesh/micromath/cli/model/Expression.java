@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.cli.model;
+
+import com.mkulesh.micromath.core.ArgumentHolderIf;
+import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CalculationThreadIf;
+import com.mkulesh.micromath.math.CancelException;
+
+import java.util.ArrayList;
+
+/**
+ * Base class of a calculatable term of the batch evaluator
+ */
+public abstract class Expression
+{
+    /**
+     * Kind of the derivative with respect to an argument. The types are ordered: the derivative of a term is not
+     * better than the derivative of its worst argument
+     */
+    public enum DifferentiableType
+    {
+        NONE,
+        NUMERICAL,
+        ANALYTICAL,
+        INDEPENDENT
+    }
+
+    /**
+     * Procedure calculates the value of this expression
+     */
+    public abstract CalculatedValue.ValueType getValue(CalculationThreadIf thread, CalculatedValue outValue)
+            throws CancelException;
+
+    /**
+     * Procedure checks whether this expression is differentiable with respect to the argument with the given index of
+     * the given holder
+     */
+    public DifferentiableType isDifferentiable(ArgumentHolderIf holder, int index)
+    {
+        return DifferentiableType.NONE;
+    }
+
+    /**
+     * Procedure calculates the derivative value with respect to the argument with the given index of the given
+     * holder. It is only called if this expression is analytically differentiable
+     */
+    public CalculatedValue.ValueType getDerivativeValue(ArgumentHolderIf holder, int index,
+                                                        CalculationThreadIf thread, CalculatedValue outValue)
+            throws CancelException
+    {
+        return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+    }
+
+    /**
+     * Procedure returns the worst derivative type of the given expressions
+     */
+    public static DifferentiableType isDifferentiable(Expression[] terms, ArgumentHolderIf holder, int index)
+    {
+        DifferentiableType retValue = DifferentiableType.INDEPENDENT;
+        for (Expression e : terms)
+        {
+            retValue = min(retValue, e.isDifferentiable(holder, index));
+        }
+        return retValue;
+    }
+
+    public static DifferentiableType min(DifferentiableType t1, DifferentiableType t2)
+    {
+        return DifferentiableType.values()[Math.min(t1.ordinal(), t2.ordinal())];
+    }
+
+    /**
+     * Procedure checks recursively whether all derivatives within this expression can be calculated. Returns the
+     * error message or null
+     */
+    public String checkDerivatives()
+    {
+        for (Expression e : getChildren())
+        {
+            final String error = e.checkDerivatives();
+            if (error != null)
+            {
+                return error;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Procedure returns the sub-expressions of this expression
+     */
+    protected abstract Expression[] getChildren();
+
+    /**
+     * Procedure checks whether this expression depends on an argument of one of the given holders
+     */
+    public boolean dependsOn(ArrayList<ArgumentHolderIf> holders)
+    {
+        for (Expression e : getChildren())
+        {
+            if (e.dependsOn(holders))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Procedure checks whether the copies of this expression can be calculated in parallel threads: the expression
+     * shall not change any state that it shares with other expressions, like the argument values of a function
+     */
+    public boolean isParallelizable()
+    {
+        for (Expression e : getChildren())
+        {
+            if (!e.isParallelizable())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Procedure collects the equations directly linked from this expression
+     */
+    public void collectLinks(ArrayList<Equation> out)
+    {
+        for (Expression e : getChildren())
+        {
+            e.collectLinks(out);
+        }
+    }
+
+    /**
+     * Procedure calculates the expression value and invalidates it if it is not a real number
+     */
+    public CalculatedValue.ValueType getRealValue(CalculationThreadIf thread, CalculatedValue outValue)
+            throws CancelException
+    {
+        getValue(thread, outValue);
+        return outValue.isReal() ? outValue.getValueType() : outValue.invalidate(CalculatedValue.ErrorType.NOT_A_REAL);
+    }
+}
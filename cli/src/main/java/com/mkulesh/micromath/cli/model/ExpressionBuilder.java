@@ -0,0 +1,313 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.cli.model;
+
+import com.mkulesh.micromath.core.ArgumentHolderIf;
+import com.mkulesh.micromath.core.TextParser;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Builder that converts the terms of a root formula into expressions. The first found error is stored in the root
+ * formula; an erroneous term is replaced by an invalid expression
+ */
+public class ExpressionBuilder
+{
+    public static final String FUNCTION_LINK_PREFIX = "content:com.mkulesh.micromath.link.";
+    public static final String FUNCTION_INDEX_PREFIX = "content:com.mkulesh.micromath.index.";
+    public static final String FUNCTION_ARGS_MARKER = ":";
+
+    private static final String KEY_LEFT_TERM = "leftTerm";
+    private static final String KEY_RIGHT_TERM = "rightTerm";
+    private static final String KEY_ARG_TERM = "argTerm";
+    private static final String KEY_INDEX = "index";
+    private static final String KEY_MIN_VALUE = "minValue";
+    private static final String KEY_MAX_VALUE = "maxValue";
+
+    private final Document document;
+    private final Formula root;
+    private final ArrayList<ArgumentHolderIf> holders = new ArrayList<ArgumentHolderIf>();
+    private final TextParser parser = new TextParser();
+    private boolean parallelEnabled = true;
+
+    public ExpressionBuilder(Document document, Formula root)
+    {
+        this.document = document;
+        this.root = root;
+    }
+
+    /**
+     * Procedure adds an argument holder. The arguments of the holders added later hide the arguments with the same
+     * name of the holders added before
+     */
+    public void pushHolder(ArgumentHolderIf holder)
+    {
+        holders.add(holder);
+    }
+
+    public void popHolder()
+    {
+        holders.remove(holders.size() - 1);
+    }
+
+    /**
+     * Procedure returns a copy of this builder with the current argument holders. It builds the copies of a loop
+     * term for the workers of a parallel reduction; the loops within such copies are calculated sequentially
+     */
+    private ExpressionBuilder fork()
+    {
+        final ExpressionBuilder builder = new ExpressionBuilder(document, root);
+        builder.holders.addAll(holders);
+        builder.parallelEnabled = false;
+        return builder;
+    }
+
+    /**
+     * Procedure converts the given term into an expression
+     */
+    public Expression build(TermNode node, boolean infinityEnabled)
+    {
+        if (node == null || node.isEmpty())
+        {
+            return invalid("empty term");
+        }
+        final String code = node.getCode();
+        if (code == null)
+        {
+            return buildText(node.getText(), infinityEnabled);
+        }
+        if (code.startsWith(FUNCTION_LINK_PREFIX))
+        {
+            return buildLink(node, code.substring(FUNCTION_LINK_PREFIX.length()), false);
+        }
+        if (code.startsWith(FUNCTION_INDEX_PREFIX))
+        {
+            return buildLink(node, code.substring(FUNCTION_INDEX_PREFIX.length()), true);
+        }
+        for (LoopExpression.LoopType t : LoopExpression.LoopType.values())
+        {
+            if (code.equals(t.name().toLowerCase(Locale.ENGLISH)))
+            {
+                return buildLoop(node, t);
+            }
+        }
+        final FunctionExpression.FunctionType f = FunctionExpression.getFunctionType(code,
+                document.getProperties().documentVersion);
+        if (f == null)
+        {
+            return invalid("unsupported term: " + code);
+        }
+        final ArrayList<TermNode> argNodes = getArgumentNodes(node);
+        if (f == FunctionExpression.FunctionType.READ || f == FunctionExpression.FunctionType.WRITE)
+        {
+            return buildFileOperation(f, argNodes);
+        }
+        if (argNodes.size() != f.getArgNumber())
+        {
+            return invalid("invalid number of arguments: " + code);
+        }
+        return new FunctionExpression(f, buildArguments(argNodes));
+    }
+
+    private Expression invalid(String error)
+    {
+        root.setError(error);
+        return TextExpression.newInvalid();
+    }
+
+    /**
+     * Procedure converts a number, a constant, an argument or a variable name into an expression
+     */
+    private Expression buildText(String text, boolean infinityEnabled)
+    {
+        if (!parser.parse(text, infinityEnabled))
+        {
+            return invalid(parser.getError());
+        }
+        if (parser.getValue() != null)
+        {
+            return TextExpression.newNumber(parser.getValue());
+        }
+        final String name = parser.getName();
+        for (int i = holders.size() - 1; i >= 0; i--)
+        {
+            final int idx = holders.get(i).getArgumentIndex(name);
+            if (idx >= 0)
+            {
+                return TextExpression.newArgument(holders.get(i), idx, parser.getSign());
+            }
+        }
+        final Equation e = document.getEquation(name, 0, root.getId(), true);
+        if (e != null && (e.getArguments() == null || e.getArguments().isEmpty()))
+        {
+            return TextExpression.newVariableLink(e, parser.getSign());
+        }
+        return invalid("unknown variable: " + name);
+    }
+
+    /**
+     * Procedure converts a call of an user-defined function or an array index into an expression
+     */
+    private Expression buildLink(TermNode node, String link, boolean isIndex)
+    {
+        final int markerPos = link.indexOf(FUNCTION_ARGS_MARKER);
+        final String name = (markerPos < 0) ? link : link.substring(0, markerPos);
+        final ArrayList<TermNode> argNodes = getArgumentNodes(node);
+        final Equation e = document.getEquation(name, argNodes.size(), root.getId(), false);
+        if (e == null)
+        {
+            return invalid((isIndex ? "unknown array: " : "unknown function: ") + name);
+        }
+        else if (e.getId() == root.getId())
+        {
+            return invalid("recursive call: " + name);
+        }
+        else if (!isIndex && e.isArray())
+        {
+            return invalid("not a function: " + name);
+        }
+        else if (isIndex && !e.isArray() && !e.isInterval())
+        {
+            return invalid("not an array: " + name);
+        }
+        return new LinkExpression(e, buildArguments(argNodes));
+    }
+
+    /**
+     * Procedure converts summation, product, integral or derivative into an expression. The index name of a
+     * derivative is resolved in the outer scope since it also defines the point where the derivative is calculated
+     */
+    private Expression buildLoop(TermNode node, LoopExpression.LoopType type)
+    {
+        final TermNode indexNode = node.getChild(KEY_INDEX);
+        if (indexNode == null || indexNode.getCode() != null || !parser.parse(indexNode.getText(), false)
+                || parser.getName() == null || parser.getArguments() != null)
+        {
+            return invalid("invalid index of " + type.toString().toLowerCase(Locale.ENGLISH));
+        }
+        final LoopExpression loop = new LoopExpression(type, parser.getName(), document.getProperties());
+        final boolean isDerivative = type == LoopExpression.LoopType.DERIVATIVE;
+        final Expression indexTerm = isDerivative ? build(indexNode, false) : null;
+        final Expression minValueTerm = isDerivative ? null : build(node.getChild(KEY_MIN_VALUE), true);
+        final Expression maxValueTerm = isDerivative ? null : build(node.getChild(KEY_MAX_VALUE), true);
+        if (parallelEnabled && (type == LoopExpression.LoopType.SUMMATION || type == LoopExpression.LoopType.PRODUCT))
+        {
+            loop.setWorkerSource(fork(), node.getChild(KEY_ARG_TERM));
+        }
+        pushHolder(loop);
+        final Expression argTerm = build(node.getChild(KEY_ARG_TERM), false);
+        popHolder();
+        loop.setTerms(minValueTerm, maxValueTerm, indexTerm, argTerm);
+        return loop;
+    }
+
+    /**
+     * Procedure converts read or write into an expression. Their arguments are not terms: the first one is a file
+     * name, the second one is the name of the written array
+     */
+    private Expression buildFileOperation(FunctionExpression.FunctionType type, ArrayList<TermNode> argNodes)
+    {
+        if (argNodes.size() != type.getArgNumber())
+        {
+            return invalid("invalid number of arguments: " + type.getLowerCaseName());
+        }
+        final String fileName = argNodes.get(0).getText();
+        final File file = document.getFile(fileName);
+        if (type == FunctionExpression.FunctionType.READ)
+        {
+            if (file == null || !file.canRead())
+            {
+                return invalid("cannot read file: " + fileName);
+            }
+            return FunctionExpression.newRead(root, file);
+        }
+        if (file == null)
+        {
+            return invalid("cannot write file: " + fileName);
+        }
+        final String arrayName = (argNodes.get(1).getText() == null) ? "" : argNodes.get(1).getText().trim();
+        final Equation e = document.getEquation(arrayName, -1, root.getId(), true);
+        if (e == null)
+        {
+            return invalid("unknown array: " + arrayName);
+        }
+        if (!e.isArray())
+        {
+            return invalid("not an array: " + arrayName);
+        }
+        return FunctionExpression.newWrite(file, e);
+    }
+
+    private Expression[] buildArguments(ArrayList<TermNode> argNodes)
+    {
+        final Expression[] args = new Expression[argNodes.size()];
+        for (int i = 0; i < args.length; i++)
+        {
+            args[i] = build(argNodes.get(i), false);
+        }
+        return args;
+    }
+
+    /**
+     * Procedure returns the argument terms in the order of the arguments: the left term is followed by the right
+     * term, the numbered argument terms are ordered by the number
+     */
+    private static ArrayList<TermNode> getArgumentNodes(TermNode node)
+    {
+        final ArrayList<TermNode> argNodes = new ArrayList<TermNode>(node.getChildren());
+        Collections.sort(argNodes, new Comparator<TermNode>()
+        {
+            @Override
+            public int compare(TermNode lhs, TermNode rhs)
+            {
+                return getArgumentOrder(lhs.getKey()) - getArgumentOrder(rhs.getKey());
+            }
+        });
+        return argNodes;
+    }
+
+    private static int getArgumentOrder(String key)
+    {
+        if (KEY_LEFT_TERM.equals(key))
+        {
+            return 0;
+        }
+        if (KEY_RIGHT_TERM.equals(key))
+        {
+            return 1;
+        }
+        if (key != null && key.startsWith(KEY_ARG_TERM))
+        {
+            try
+            {
+                return key.length() == KEY_ARG_TERM.length() ? 0 : Integer.parseInt(key.substring(
+                        KEY_ARG_TERM.length()));
+            }
+            catch (NumberFormatException e)
+            {
+                // nothing to do: keep the order of the file
+            }
+        }
+        return 0;
+    }
+}
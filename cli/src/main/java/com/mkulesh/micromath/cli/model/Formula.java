@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.cli.model;
+
+import com.mkulesh.micromath.math.CalculationThreadIf;
+import com.mkulesh.micromath.math.CancelException;
+
+import java.util.ArrayList;
+
+/**
+ * Base class of a calculatable root formula of the batch evaluator. It holds the links to the intervals and
+ * functions used by this formula
+ */
+public abstract class Formula
+{
+    protected final Document document;
+    private final int id;
+    private String error = null;
+
+    private final ArrayList<Equation> directIntervals = new ArrayList<Equation>();
+    private final ArrayList<Equation> directFunctions = new ArrayList<Equation>();
+    private final ArrayList<Equation> allIntervals = new ArrayList<Equation>();
+    private final ArrayList<Equation> allFunctions = new ArrayList<Equation>();
+
+    public Formula(Document document, int id)
+    {
+        this.document = document;
+        this.id = id;
+    }
+
+    /**
+     * Procedure returns the position of this formula within the document
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+    public String getError()
+    {
+        return error;
+    }
+
+    /**
+     * Procedure stores the first error found in this formula
+     */
+    public void setError(String error)
+    {
+        if (this.error == null)
+        {
+            this.error = error;
+        }
+    }
+
+    public boolean isValid()
+    {
+        return error == null;
+    }
+
+    /**
+     * Procedure builds the expressions of this formula. It is called when all formulas of the document are known
+     */
+    public abstract void build();
+
+    /**
+     * Procedure returns the built expression of this formula or null if it is not built
+     */
+    protected abstract Expression getExpression();
+
+    /**
+     * Procedure checks whether all derivatives within this formula can be calculated. It shall be called when the
+     * links of all formulas are validated
+     */
+    public void validateDerivatives()
+    {
+        final Expression e = getExpression();
+        if (isValid() && e != null)
+        {
+            final String error = e.checkDerivatives();
+            if (error != null)
+            {
+                setError(error);
+            }
+        }
+    }
+
+    /**
+     * Procedure invalidates the results of the previous calculation
+     */
+    public abstract void invalidateResult();
+
+    /**
+     * Procedure calculates this formula
+     */
+    public abstract void calculate(CalculationThreadIf thread) throws CancelException;
+
+    /*********************************************************
+     * Links to intervals and functions
+     *********************************************************/
+
+    public ArrayList<Equation> getAllIntervals()
+    {
+        return allIntervals;
+    }
+
+    public ArrayList<Equation> getAllFunctions()
+    {
+        return allFunctions;
+    }
+
+    /**
+     * Procedure sets the equations directly linked from the expressions of this formula
+     */
+    protected void setLinkedEquations(ArrayList<Equation> linkedEquations)
+    {
+        directIntervals.clear();
+        directFunctions.clear();
+        for (Equation e : linkedEquations)
+        {
+            if (e.isInterval())
+            {
+                directIntervals.add(e);
+            }
+            else
+            {
+                directFunctions.add(e);
+            }
+        }
+    }
+
+    /**
+     * Procedure recursively collects all linked intervals and functions. The visited formulas prevent unlimited
+     * recursive calls
+     */
+    public void collectLinks()
+    {
+        allIntervals.clear();
+        allFunctions.clear();
+        collectLinks(this, new ArrayList<Formula>());
+    }
+
+    private void collectLinks(Formula owner, ArrayList<Formula> visited)
+    {
+        visited.add(this);
+        for (Equation e : directIntervals)
+        {
+            if (!owner.allIntervals.contains(e))
+            {
+                owner.allIntervals.add(e);
+            }
+        }
+        for (Equation e : directFunctions)
+        {
+            if (!owner.allFunctions.contains(e))
+            {
+                owner.allFunctions.add(e);
+            }
+            if (!visited.contains(e))
+            {
+                ((Formula) e).collectLinks(owner, visited);
+            }
+        }
+    }
+}
@@ -0,0 +1,778 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.cli.model;
+
+import com.mkulesh.micromath.core.ArgumentHolderIf;
+import com.mkulesh.micromath.core.BinaryDataTable;
+import com.mkulesh.micromath.core.DataTable;
+import com.mkulesh.micromath.core.DataTableIf;
+import com.mkulesh.micromath.core.DataTableWriter;
+import com.mkulesh.micromath.core.MappedDataTable;
+import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CalculationThreadIf;
+import com.mkulesh.micromath.math.CancelException;
+import com.mkulesh.micromath.math.EquationArrayResult;
+
+import org.apache.commons.math3.util.CombinatoricsUtils;
+import org.apache.commons.math3.util.FastMath;
+import org.apache.commons.math3.util.Precision;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Expression that implements a built-in operator, comparator or function.
+ *
+ * The file operations are also implemented here, like in the FileOperations term of the app: read provides the
+ * values of a data file for the arguments of its root equation, write streams a calculated array into a file and
+ * returns the number of written elements. The data file is read on the first access: a binary file is memory-mapped,
+ * a text file is memory-mapped if its parsed columns would not fit into the heap and parsed into the heap otherwise.
+ * A file that can not be read or mapped gives an error of the root equation.
+ */
+public class FunctionExpression extends Expression
+{
+    /**
+     * Supported functions
+     */
+    public enum FunctionType
+    {
+        // operators
+        PLUS(2),
+        MINUS(2),
+        MULT(2),
+        DIVIDE(2),
+        DIVIDE_SLASH(2),
+        // comparators
+        EQUAL(2),
+        NOT_EQUAL(2),
+        LESS(2),
+        LESS_EQUAL(2),
+        GREATER(2),
+        GREATER_EQUAL(2),
+        COMPARATOR_AND(2),
+        COMPARATOR_OR(2),
+        // common functions
+        POWER(2),
+        SQRT_LAYOUT(1),
+        NTHRT_LAYOUT(2),
+        FACTORIAL(1),
+        ABS_LAYOUT(1),
+        CONJUGATE_LAYOUT(1),
+        RE(1),
+        IM(1),
+        IF(3),
+        SQRT(1),
+        ABS(1),
+        // trigonometric functions
+        SIN(1),
+        ASIN(1),
+        COS(1),
+        ACOS(1),
+        TAN(1),
+        ATAN(1),
+        ATAN2(2),
+        // log functions
+        EXP(1),
+        LN(1, 1, "LOG"),
+        LOG10(1),
+        SINH(1),
+        COSH(1),
+        TANH(1),
+        // number functions
+        RANDOM(1, 1, "RND"),
+        CEIL(1),
+        FLOOR(1),
+        ROUND(2),
+        TRUNC(1),
+        MAX(2),
+        MIN(2),
+        SIGN(1, 1, "SIGNUM"),
+        MOD(2),
+        PERC(2),
+        // file operations
+        READ(1),
+        WRITE(2),
+        // user functions
+        IDENTITY(1);
+
+        private final int argNumber;
+        private final int obsoleteVersion;
+        private final String obsoleteCode;
+        private final String lowerCaseName;
+
+        FunctionType(int argNumber)
+        {
+            this(argNumber, 0, null);
+        }
+
+        FunctionType(int argNumber, int obsoleteVersion, String obsoleteCode)
+        {
+            this.argNumber = argNumber;
+            this.obsoleteVersion = obsoleteVersion;
+            this.obsoleteCode = obsoleteCode == null ? null : obsoleteCode.toLowerCase(Locale.ENGLISH);
+            this.lowerCaseName = name().toLowerCase(Locale.ENGLISH);
+        }
+
+        public int getArgNumber()
+        {
+            return argNumber;
+        }
+
+        public String getLowerCaseName()
+        {
+            return lowerCaseName;
+        }
+    }
+
+    /**
+     * Procedure returns the function type for the given term code. In compatibility mode, the obsolete codes of the
+     * older document versions are also accepted
+     */
+    public static FunctionType getFunctionType(String code, int documentVersion)
+    {
+        for (FunctionType f : FunctionType.values())
+        {
+            if (code.equals(f.getLowerCaseName()))
+            {
+                return f;
+            }
+            if (documentVersion != DocumentProperties.LATEST_DOCUMENT_VERSION && documentVersion <= f.obsoleteVersion
+                    && code.equals(f.obsoleteCode))
+            {
+                return f;
+            }
+        }
+        return null;
+    }
+
+    private static final Expression[] NO_ARGUMENTS = new Expression[0];
+
+    private final FunctionType functionType;
+    private final Expression[] args;
+
+    // file operations
+    private Equation fileRoot = null, fileArray = null;
+    private File file = null;
+    private DataTableIf fileData = null;
+
+    // Attention: this is not thread-safety declaration!
+    private final CalculatedValue[] argVal;
+    private CalculatedValue[] argDer = null;
+    private final CalculatedValue tmpVal = new CalculatedValue();
+
+    public FunctionExpression(FunctionType functionType, Expression[] args)
+    {
+        this.functionType = functionType;
+        this.args = args;
+        argVal = new CalculatedValue[args.length];
+        for (int i = 0; i < argVal.length; i++)
+        {
+            argVal[i] = new CalculatedValue();
+        }
+    }
+
+    /**
+     * Procedure creates the read operation for the given file. The row and column are given by the arguments of the
+     * root formula if it is an equation
+     */
+    public static FunctionExpression newRead(Formula root, File file)
+    {
+        final FunctionExpression e = new FunctionExpression(FunctionType.READ, NO_ARGUMENTS);
+        e.fileRoot = (root instanceof Equation) ? (Equation) root : null;
+        e.file = file;
+        return e;
+    }
+
+    /**
+     * Procedure creates the write operation of the given array into the given file
+     */
+    public static FunctionExpression newWrite(File file, Equation array)
+    {
+        final FunctionExpression e = new FunctionExpression(FunctionType.WRITE, NO_ARGUMENTS);
+        e.file = file;
+        e.fileArray = array;
+        return e;
+    }
+
+    public FunctionType getFunctionType()
+    {
+        return functionType;
+    }
+
+    @Override
+    public boolean isParallelizable()
+    {
+        // a data file is read on the first access
+        return functionType != FunctionType.READ && functionType != FunctionType.WRITE && super.isParallelizable();
+    }
+
+    @Override
+    public void collectLinks(ArrayList<Equation> out)
+    {
+        super.collectLinks(out);
+        if (fileArray != null && !out.contains(fileArray))
+        {
+            // the array shall be calculated before it is written
+            out.add(fileArray);
+        }
+    }
+
+    @Override
+    protected Expression[] getChildren()
+    {
+        return args;
+    }
+
+    @Override
+    public CalculatedValue.ValueType getValue(CalculationThreadIf thread, CalculatedValue outValue)
+            throws CancelException
+    {
+        if (functionType == FunctionType.READ)
+        {
+            return readFile(thread, outValue);
+        }
+        if (functionType == FunctionType.WRITE)
+        {
+            return writeFile(thread, outValue);
+        }
+        for (int i = 0; i < args.length; i++)
+        {
+            args[i].getValue(thread, argVal[i]);
+        }
+        final CalculatedValue a0 = argVal[0];
+        final CalculatedValue a1 = argVal.length > 1 ? argVal[1] : null;
+        switch (functionType)
+        {
+        case PLUS:
+            return outValue.add(a0, a1);
+        case MINUS:
+            return outValue.subtract(a0, a1);
+        case MULT:
+            return outValue.multiply(a0, a1);
+        case DIVIDE:
+        case DIVIDE_SLASH:
+            return outValue.divide(a0, a1);
+
+        // Do not check invalid value since a comparator can handle it!
+        case EQUAL:
+            return outValue.setValue((a0.getReal() == a1.getReal()) ? 1 : -1);
+        case NOT_EQUAL:
+            return outValue.setValue((a0.getReal() != a1.getReal()) ? 1 : -1);
+        case LESS:
+            return outValue.setValue((a0.getReal() < a1.getReal()) ? 1 : -1);
+        case LESS_EQUAL:
+            return outValue.setValue((a0.getReal() <= a1.getReal()) ? 1 : -1);
+        case GREATER:
+            return outValue.setValue((a0.getReal() > a1.getReal()) ? 1 : -1);
+        case GREATER_EQUAL:
+            return outValue.setValue((a0.getReal() >= a1.getReal()) ? 1 : -1);
+        case COMPARATOR_AND:
+            return outValue.setValue((a0.getReal() > 0 && a1.getReal() > 0) ? 1 : -1);
+        case COMPARATOR_OR:
+            return outValue.setValue((a0.getReal() > 0 || a1.getReal() > 0) ? 1 : -1);
+
+        case POWER:
+            return outValue.pow(a0, a1);
+        case SQRT:
+        case SQRT_LAYOUT:
+            return outValue.sqrt(a0);
+        case NTHRT_LAYOUT:
+            return outValue.nthRoot(a1, a0.getInteger());
+        case ABS:
+        case ABS_LAYOUT:
+            return outValue.abs(a0);
+        case CONJUGATE_LAYOUT:
+            return outValue.conj(a0);
+        case RE:
+            return outValue.setValue(a0.getReal());
+        case IM:
+            return outValue.setValue(a0.isComplex() ? a0.getImaginary() : 0.0);
+        case IF:
+            if (a0.isComplex())
+            {
+                return outValue.invalidate(CalculatedValue.ErrorType.PASSED_COMPLEX);
+            }
+            return outValue.assign((a0.getReal() > 0) ? a1 : argVal[2]);
+        case FACTORIAL:
+            if (a0.isComplex())
+            {
+                return outValue.invalidate(CalculatedValue.ErrorType.PASSED_COMPLEX);
+            }
+            try
+            {
+                return outValue.setValue(CombinatoricsUtils.factorialDouble((int) a0.getReal()));
+            }
+            catch (Exception e)
+            {
+                return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+            }
+
+        case SIN:
+            return outValue.sin(a0);
+        case ASIN:
+            return outValue.asin(a0);
+        case COS:
+            return outValue.cos(a0);
+        case ACOS:
+            return outValue.acos(a0);
+        case TAN:
+            return outValue.tan(a0);
+        case ATAN:
+            return outValue.atan(a0);
+        case ATAN2:
+            if (a0.isComplex() || a1.isComplex())
+            {
+                return outValue.invalidate(CalculatedValue.ErrorType.PASSED_COMPLEX);
+            }
+            return outValue.setValue(FastMath.atan2(a0.getReal(), a1.getReal()));
+
+        case EXP:
+            return outValue.exp(a0);
+        case LN:
+            return outValue.log(a0);
+        case LOG10:
+            return outValue.log10(a0);
+        case SINH:
+            return outValue.sinh(a0);
+        case COSH:
+            return outValue.cosh(a0);
+        case TANH:
+            return outValue.tanh(a0);
+
+        case RANDOM:
+            return outValue.random(a0);
+        case CEIL:
+            return outValue.ceil(a0);
+        case FLOOR:
+            return outValue.floor(a0);
+        case ROUND:
+            if (a0.isComplex() || a1.isComplex())
+            {
+                return outValue.invalidate(CalculatedValue.ErrorType.PASSED_COMPLEX);
+            }
+            return outValue.setValue(Precision.round(a0.getReal(), a1.getInteger()));
+        case TRUNC:
+            if (a0.isComplex())
+            {
+                return outValue.invalidate(CalculatedValue.ErrorType.PASSED_COMPLEX);
+            }
+            return outValue.setValue(a0.getInteger());
+        case MAX:
+        case MIN:
+            if (a0.isComplex() || a1.isComplex())
+            {
+                return outValue.invalidate(CalculatedValue.ErrorType.PASSED_COMPLEX);
+            }
+            return outValue.setValue((functionType == FunctionType.MAX) ? FastMath.max(a0.getReal(), a1.getReal())
+                    : FastMath.min(a0.getReal(), a1.getReal()));
+        case SIGN:
+            if (a0.isComplex())
+            {
+                return outValue.invalidate(CalculatedValue.ErrorType.PASSED_COMPLEX);
+            }
+            return outValue.setValue(FastMath.signum(a0.getReal()));
+        case MOD:
+            if (a0.isComplex() || a1.isComplex())
+            {
+                return outValue.invalidate(CalculatedValue.ErrorType.PASSED_COMPLEX);
+            }
+            return outValue.setValue(a0.getReal() % a1.getReal());
+        case PERC:
+            tmpVal.assign(a1);
+            tmpVal.multiply(0.01);
+            return outValue.multiply(tmpVal, a0);
+
+        case IDENTITY:
+            return outValue.assign(a0);
+        }
+        return outValue.invalidate(CalculatedValue.ErrorType.TERM_NOT_READY);
+    }
+
+    /*********************************************************
+     * Derivatives
+     *********************************************************/
+
+    @Override
+    public DifferentiableType isDifferentiable(ArgumentHolderIf holder, int index)
+    {
+        final DifferentiableType[] argTypes = new DifferentiableType[args.length];
+        for (int i = 0; i < args.length; i++)
+        {
+            argTypes[i] = args[i].isDifferentiable(holder, index);
+        }
+        return getDifferentiableType(functionType, argTypes);
+    }
+
+    @Override
+    public CalculatedValue.ValueType getDerivativeValue(ArgumentHolderIf holder, int index,
+                                                        CalculationThreadIf thread, CalculatedValue outValue)
+            throws CancelException
+    {
+        if (isPiecewise(functionType))
+        {
+            return (isDifferentiable(args, holder, index) == DifferentiableType.INDEPENDENT) ? outValue.setValue(0.0)
+                    : outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+        }
+        if (argDer == null)
+        {
+            argDer = new CalculatedValue[args.length];
+            for (int i = 0; i < argDer.length; i++)
+            {
+                argDer[i] = new CalculatedValue();
+            }
+        }
+        for (int i = 0; i < args.length; i++)
+        {
+            args[i].getValue(thread, argVal[i]);
+            args[i].getDerivativeValue(holder, index, thread, argDer[i]);
+        }
+        return getDerivativeValue(functionType, argVal, argDer, tmpVal, outValue);
+    }
+
+    /**
+     * Procedure checks whether the given function is only differentiable if its arguments do not depend on the
+     * differentiation argument. The derivative of such a function is zero
+     */
+    public static boolean isPiecewise(FunctionType f)
+    {
+        switch (f)
+        {
+        case EQUAL:
+        case NOT_EQUAL:
+        case LESS:
+        case LESS_EQUAL:
+        case GREATER:
+        case GREATER_EQUAL:
+        case COMPARATOR_AND:
+        case COMPARATOR_OR:
+        case FACTORIAL:
+        case CONJUGATE_LAYOUT:
+        case IF:
+        case ATAN2:
+        case RANDOM:
+        case CEIL:
+        case FLOOR:
+        case ROUND:
+        case TRUNC:
+        case MAX:
+        case MIN:
+        case SIGN:
+        case MOD:
+        case PERC:
+        case READ:
+        case WRITE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Procedure returns the derivative type of the given function for the given derivative types of its arguments
+     */
+    public static DifferentiableType getDifferentiableType(FunctionType f, DifferentiableType[] argTypes)
+    {
+        DifferentiableType argsType = DifferentiableType.INDEPENDENT;
+        for (DifferentiableType t : argTypes)
+        {
+            argsType = min(argsType, t);
+        }
+        switch (f)
+        {
+        // a comparator or a file operation is never differentiable
+        case EQUAL:
+        case NOT_EQUAL:
+        case LESS:
+        case LESS_EQUAL:
+        case GREATER:
+        case GREATER_EQUAL:
+        case COMPARATOR_AND:
+        case COMPARATOR_OR:
+        case READ:
+        case WRITE:
+            return DifferentiableType.NONE;
+        // n-th root is only differentiable if the power does not depend on the given argument
+        case NTHRT_LAYOUT:
+            return (argsType == DifferentiableType.INDEPENDENT || argTypes[0] == DifferentiableType.INDEPENDENT) ?
+                    argsType : DifferentiableType.NONE;
+        default:
+            if (isPiecewise(f))
+            {
+                return (argsType == DifferentiableType.INDEPENDENT) ? argsType : DifferentiableType.NONE;
+            }
+            return argsType;
+        }
+    }
+
+    /**
+     * Procedure calculates the derivative of the given function using its argument values and the derivatives of
+     * its arguments. The piecewise functions (see isPiecewise) are not handled here
+     */
+    public static CalculatedValue.ValueType getDerivativeValue(FunctionType f, CalculatedValue[] argVal,
+                                                               CalculatedValue[] argDer, CalculatedValue tmpVal,
+                                                               CalculatedValue outValue)
+    {
+        final CalculatedValue a0 = argVal[0], a0der = argDer[0];
+        final CalculatedValue a1 = argVal.length > 1 ? argVal[1] : null;
+        final CalculatedValue a1der = argDer.length > 1 ? argDer[1] : null;
+        switch (f)
+        {
+        case PLUS:
+            return outValue.add(a0der, a1der);
+        case MINUS:
+            return outValue.subtract(a0der, a1der);
+        case MULT: // a0' * a1 + a0 * a1'
+            outValue.multiply(a0der, a1);
+            tmpVal.multiply(a0, a1der);
+            return outValue.add(outValue, tmpVal);
+        case DIVIDE:
+        case DIVIDE_SLASH: // (a0' * a1 - a0 * a1') / (a1 * a1)
+            outValue.multiply(a0der, a1);
+            tmpVal.multiply(a0, a1der);
+            outValue.subtract(outValue, tmpVal);
+            tmpVal.multiply(a1, a1);
+            return outValue.divide(outValue, tmpVal);
+
+        case POWER:
+            if (a0der.isZero() && a1der.isZero())
+            {
+                // the case a^a
+                return outValue.setValue(0.0);
+            }
+            else if (a1der.isZero())
+            {
+                // the case f^a: a1 * a0^(a1 - 1) * a0'
+                tmpVal.subtract(a1, CalculatedValue.ONE);
+                tmpVal.pow(a0, tmpVal);
+                outValue.multiply(a1, tmpVal);
+                return outValue.multiply(outValue, a0der);
+            }
+            else if (a0der.isZero())
+            {
+                // the case a^g: a0^a1 * log(a0) * a1'
+                tmpVal.log(a0);
+                outValue.pow(a0, a1);
+                outValue.multiply(outValue, tmpVal);
+                return outValue.multiply(outValue, a1der);
+            }
+            // the case f^g: a0^a1 * (a0' * a1 / a0 + a1' * log(a0))
+            outValue.log(a0);
+            outValue.multiply(a1der, outValue);
+            tmpVal.multiply(a0der, a1);
+            tmpVal.divide(tmpVal, a0);
+            tmpVal.add(tmpVal, outValue);
+            outValue.pow(a0, a1);
+            return outValue.multiply(outValue, tmpVal);
+        case SQRT:
+        case SQRT_LAYOUT: // (1.0 / (2.0 * √a0)) * a0'
+            outValue.sqrt(a0);
+            outValue.multiply(2.0);
+            outValue.divide(CalculatedValue.ONE, outValue);
+            return outValue.multiply(outValue, a0der);
+        case NTHRT_LAYOUT: // ( n√ a1 )' = 1 / ( n n√ a1^(n-1) ) * a1'
+        {
+            final int n = a0.getInteger();
+            outValue.setValue(n - 1);
+            outValue.pow(a1, outValue);
+            outValue.nthRoot(outValue, n);
+            outValue.multiply((double) n);
+            return outValue.divide(a1der, outValue);
+        }
+        case ABS:
+        case ABS_LAYOUT: // not defined for complex number
+            if (a0.isComplex())
+            {
+                return outValue.invalidate(CalculatedValue.ErrorType.PASSED_COMPLEX);
+            }
+            return outValue.setValue((a0.getReal() >= 0 ? 1.0 : -1.0) * a0der.getReal());
+        case RE:
+            return outValue.setValue(a0der.getReal());
+        case IM:
+            return outValue.setValue(a0der.isComplex() ? a0der.getImaginary() : 0.0);
+
+        case SIN: // cos(a0) * a0'
+            outValue.cos(a0);
+            return outValue.multiply(outValue, a0der);
+        case ASIN: // (1.0 / sqrt(1.0 - a0 * a0)) * a0'
+            outValue.multiply(a0, a0);
+            outValue.subtract(CalculatedValue.ONE, outValue);
+            outValue.sqrt(outValue);
+            outValue.divide(CalculatedValue.ONE, outValue);
+            return outValue.multiply(outValue, a0der);
+        case COS: // -1 * sin(a0) * a0'
+            outValue.sin(a0);
+            outValue.multiply(-1.0);
+            return outValue.multiply(outValue, a0der);
+        case ACOS: // (-1.0 / sqrt(1.0 - a0 * a0)) * a0'
+            outValue.multiply(a0, a0);
+            outValue.subtract(CalculatedValue.ONE, outValue);
+            outValue.sqrt(outValue);
+            outValue.divide(CalculatedValue.MINUS_ONE, outValue);
+            return outValue.multiply(outValue, a0der);
+        case TAN: // (1.0 + tan(a0) * tan(a0)) * a0'
+            outValue.tan(a0);
+            outValue.multiply(outValue, outValue);
+            outValue.add(CalculatedValue.ONE, outValue);
+            return outValue.multiply(outValue, a0der);
+        case ATAN: // (1.0 / (1.0 + a0 * a0)) * a0'
+            outValue.multiply(a0, a0);
+            outValue.add(CalculatedValue.ONE, outValue);
+            outValue.divide(CalculatedValue.ONE, outValue);
+            return outValue.multiply(outValue, a0der);
+
+        case SINH: // cosh(a0) * a0'
+            outValue.cosh(a0);
+            return outValue.multiply(outValue, a0der);
+        case COSH: // sinh(a0) * a0'
+            outValue.sinh(a0);
+            return outValue.multiply(outValue, a0der);
+        case TANH: // (1.0 / (cosh(a0) * cosh(a0))) * a0'
+            outValue.cosh(a0);
+            outValue.multiply(outValue, outValue);
+            outValue.divide(CalculatedValue.ONE, outValue);
+            return outValue.multiply(outValue, a0der);
+        case EXP: // exp(a0) * a0'
+            outValue.exp(a0);
+            return outValue.multiply(outValue, a0der);
+        case LN: // (1.0 / a0) * a0'
+            outValue.divide(CalculatedValue.ONE, a0);
+            return outValue.multiply(outValue, a0der);
+        case LOG10: // (1.0 / (a0 * FastMath.log(10.0))) * a0'
+            outValue.assign(a0);
+            outValue.multiply(FastMath.log(10.0));
+            outValue.divide(CalculatedValue.ONE, outValue);
+            return outValue.multiply(outValue, a0der);
+
+        case IDENTITY:
+            return outValue.assign(a0der);
+        default:
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+        }
+    }
+
+    /*********************************************************
+     * File operations
+     *********************************************************/
+
+    private CalculatedValue.ValueType readFile(CalculationThreadIf thread, CalculatedValue outValue)
+            throws CancelException
+    {
+        final int argNumber = (fileRoot != null && fileRoot.getArguments() != null) ? fileRoot.getArguments().size()
+                : 0;
+        if (argNumber != 1 && argNumber != 2)
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+        }
+        if (fileData == null)
+        {
+            try
+            {
+                fileData = openDataTable(file, thread);
+            }
+            catch (IOException e)
+            {
+                fileRoot.setError("cannot read file " + file.getName() + ": " + e.getLocalizedMessage());
+                return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+            }
+        }
+        final int a0 = fileRoot.getArgumentValue(0).getInteger();
+        final int a1 = (argNumber == 1) ? 0 : fileRoot.getArgumentValue(1).getInteger();
+        return fileData.getValue(a0, a1, outValue);
+    }
+
+    /**
+     * Procedure opens the given data file: the binary format is selected by the file extension. A file that shall be
+     * mapped is never read into the heap instead: if the mapping fails, the IOException is thrown
+     */
+    private static DataTableIf openDataTable(File file, CalculationThreadIf thread) throws IOException,
+            CancelException
+    {
+        final BinaryDataTable.Format binaryFormat = BinaryDataTable.getFormat(file.getName());
+        if (binaryFormat != null || !DataTable.isHeapSufficient(file.length()))
+        {
+            final RandomAccessFile stream = new RandomAccessFile(file, "r");
+            try
+            {
+                final FileChannel channel = stream.getChannel();
+                if (binaryFormat != null)
+                {
+                    return BinaryDataTable.map(channel, binaryFormat);
+                }
+                final MappedDataTable table = MappedDataTable.map(channel);
+                table.buildLineIndex(thread);
+                return table;
+            }
+            finally
+            {
+                stream.close();
+            }
+        }
+        final InputStreamReader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try
+        {
+            return DataTable.read(reader);
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * Procedure streams the linked array into the file. The value of this term is the number of written elements
+     */
+    private CalculatedValue.ValueType writeFile(CalculationThreadIf thread, CalculatedValue outValue)
+            throws CancelException
+    {
+        final EquationArrayResult array = fileArray.getArrayResult();
+        if (array == null || array.getRawValues() == null)
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+        }
+        long written = -1;
+        try
+        {
+            final FileOutputStream stream = new FileOutputStream(file);
+            try
+            {
+                final DataTableWriter writer = new DataTableWriter(stream.getChannel(), thread);
+                final BinaryDataTable.Format binaryFormat = BinaryDataTable.getFormat(file.getName());
+                written = (binaryFormat != null) ? writer.writeBinary(array, binaryFormat)
+                        : writer.writeText(array, DataTableWriter.getSeparator(file.getName()));
+            }
+            finally
+            {
+                stream.close();
+            }
+        }
+        catch (IOException e)
+        {
+            // nothing to do: the value is invalid
+        }
+        return (written < 0) ? outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER)
+                : outValue.setValue(written);
+    }
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.cli.model;
+
+import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CalculationThreadIf;
+import com.mkulesh.micromath.math.CancelException;
+import com.mkulesh.micromath.math.IntervalPoints;
+
+import java.util.ArrayList;
+
+/**
+ * Expression that declares an equidistant interval given by its first, second and last values
+ */
+public class IntervalExpression extends Expression
+{
+    private final Equation owner;
+    private final Expression minValueTerm, nextValueTerm, maxValueTerm;
+
+    // Attention: this is not thread-safety declaration!
+    private final CalculatedValue minValue = new CalculatedValue(), nextValue = new CalculatedValue(),
+            maxValue = new CalculatedValue();
+
+    public IntervalExpression(Equation owner, Expression minValueTerm, Expression nextValueTerm,
+                              Expression maxValueTerm)
+    {
+        this.owner = owner;
+        this.minValueTerm = minValueTerm;
+        this.nextValueTerm = nextValueTerm;
+        this.maxValueTerm = maxValueTerm;
+    }
+
+    @Override
+    protected Expression[] getChildren()
+    {
+        return new Expression[]{ minValueTerm, nextValueTerm, maxValueTerm };
+    }
+
+    /**
+     * Procedure returns the interval value for the index given by the first argument of the owner equation
+     */
+    @Override
+    public CalculatedValue.ValueType getValue(CalculationThreadIf thread, CalculatedValue outValue)
+            throws CancelException
+    {
+        if (!calculateBoundaries(thread))
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_REAL);
+        }
+        final double min = minValue.getReal(), max = maxValue.getReal();
+        final double delta = IntervalPoints.getDelta(min, nextValue.getReal(), max);
+        final CalculatedValue ravArg = owner.getArgumentValue(0);
+        if (Double.isNaN(delta) || ravArg.isNaN())
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_REAL);
+        }
+        final long idx = ravArg.getInteger();
+        final int N = IntervalPoints.getNumberOfPoints(min, max, delta);
+        if (idx >= 0 && idx <= N)
+        {
+            return outValue.setValue(IntervalPoints.getPoint(min, max, delta, N, idx));
+        }
+        return outValue.invalidate(CalculatedValue.ErrorType.TERM_NOT_READY);
+    }
+
+    /**
+     * Procedure returns all points of this interval
+     */
+    public ArrayList<Double> getInterval(CalculationThreadIf thread) throws CancelException
+    {
+        if (!calculateBoundaries(thread))
+        {
+            return null;
+        }
+        return IntervalPoints.getPoints(thread, minValue.getReal(), nextValue.getReal(), maxValue.getReal());
+    }
+
+    private boolean calculateBoundaries(CalculationThreadIf thread) throws CancelException
+    {
+        minValueTerm.getRealValue(thread, minValue);
+        nextValueTerm.getRealValue(thread, nextValue);
+        maxValueTerm.getRealValue(thread, maxValue);
+        return !(minValue.isNaN() || nextValue.isNaN() || maxValue.isNaN());
+    }
+}
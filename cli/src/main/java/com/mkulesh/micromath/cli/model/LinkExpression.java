@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.cli.model;
+
+import com.mkulesh.micromath.core.ArgumentHolderIf;
+import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CalculationThreadIf;
+import com.mkulesh.micromath.math.CancelException;
+
+import java.util.ArrayList;
+
+/**
+ * Expression that links a user-defined function, an array or an interval with the given argument values
+ */
+public class LinkExpression extends Expression
+{
+    private final Equation linkedFunction;
+    private final Expression[] args;
+
+    // Attention: this is not thread-safety declaration!
+    private final CalculatedValue[] argVal, argDer;
+    private final CalculatedValue tmpVal = new CalculatedValue();
+
+    public LinkExpression(Equation linkedFunction, Expression[] args)
+    {
+        this.linkedFunction = linkedFunction;
+        this.args = args;
+        argVal = new CalculatedValue[args.length];
+        argDer = new CalculatedValue[args.length];
+        for (int i = 0; i < argVal.length; i++)
+        {
+            argVal[i] = new CalculatedValue();
+            argDer[i] = new CalculatedValue();
+        }
+    }
+
+    public Equation getLinkedFunction()
+    {
+        return linkedFunction;
+    }
+
+    @Override
+    protected Expression[] getChildren()
+    {
+        return args;
+    }
+
+    @Override
+    public CalculatedValue.ValueType getValue(CalculationThreadIf thread, CalculatedValue outValue)
+            throws CancelException
+    {
+        for (int i = 0; i < args.length; i++)
+        {
+            args[i].getValue(thread, argVal[i]);
+        }
+        if (linkedFunction.setArgumentValues(argVal))
+        {
+            if (thread != null)
+            {
+                thread.checkCancelation();
+            }
+            return linkedFunction.getValue(thread, outValue);
+        }
+        return outValue.invalidate(CalculatedValue.ErrorType.TERM_NOT_READY);
+    }
+
+    /**
+     * An element of an array or an interval is not differentiable with respect to its index. The derivative of a
+     * function call is given by the chain rule and requires the derivatives of the function with respect to its own
+     * arguments
+     */
+    @Override
+    public DifferentiableType isDifferentiable(ArgumentHolderIf holder, int index)
+    {
+        final DifferentiableType argsType = isDifferentiable(args, holder, index);
+        if (argsType == DifferentiableType.INDEPENDENT)
+        {
+            return argsType;
+        }
+        if (linkedFunction.isArray() || linkedFunction.isInterval())
+        {
+            return DifferentiableType.NONE;
+        }
+        DifferentiableType retValue = argsType;
+        for (int i = 0; i < args.length; i++)
+        {
+            retValue = min(retValue, linkedFunction.isDifferentiable(linkedFunction, i));
+        }
+        return retValue;
+    }
+
+    @Override
+    public CalculatedValue.ValueType getDerivativeValue(ArgumentHolderIf holder, int index,
+                                                        CalculationThreadIf thread, CalculatedValue outValue)
+            throws CancelException
+    {
+        final DifferentiableType argsType = isDifferentiable(args, holder, index);
+        if (argsType == DifferentiableType.INDEPENDENT)
+        {
+            return outValue.setValue(0.0);
+        }
+        if (linkedFunction.isArray() || linkedFunction.isInterval())
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+        }
+        // the argument values are set at last since their calculation may call the same function
+        for (int i = 0; i < args.length; i++)
+        {
+            args[i].getValue(thread, argVal[i]);
+            args[i].getDerivativeValue(holder, index, thread, argDer[i]);
+        }
+        if (!linkedFunction.setArgumentValues(argVal))
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.TERM_NOT_READY);
+        }
+        if (thread != null)
+        {
+            thread.checkCancelation();
+        }
+        outValue.setValue(0.0);
+        for (int i = 0; i < args.length; i++)
+        {
+            linkedFunction.getDerivativeValue(linkedFunction, i, thread, tmpVal);
+            tmpVal.multiply(tmpVal, argDer[i]);
+            outValue.add(outValue, tmpVal);
+        }
+        return outValue.getValueType();
+    }
+
+    @Override
+    public boolean isParallelizable()
+    {
+        // the argument values are set into the linked function that is shared by all callers
+        return false;
+    }
+
+    @Override
+    public void collectLinks(ArrayList<Equation> out)
+    {
+        super.collectLinks(out);
+        if (!linkedFunction.isInterval() && !out.contains(linkedFunction))
+        {
+            out.add(linkedFunction);
+        }
+    }
+}
@@ -0,0 +1,771 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.cli.model;
+
+import com.mkulesh.micromath.core.ArgumentHolderIf;
+import com.mkulesh.micromath.math.AdaptiveCubature;
+import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CalculationThreadIf;
+import com.mkulesh.micromath.math.CancelException;
+import com.mkulesh.micromath.math.ChunkedReduction;
+import com.mkulesh.micromath.math.DoubleExponentialQuadrature;
+import com.mkulesh.micromath.math.InfiniteSeries;
+import com.mkulesh.micromath.math.ParallelReduction;
+import com.mkulesh.micromath.math.QuasiMonteCarlo;
+import com.mkulesh.micromath.math.RiddersDerivative;
+import com.mkulesh.micromath.math.SimpsonIntegrator;
+
+import org.apache.commons.math3.util.FastMath;
+
+import java.util.ArrayList;
+
+/**
+ * Expression that implements summation, product, integral and derivative. The loop index is the only argument of
+ * this holder. A derivative is calculated analytically if its term allows it and numerically otherwise; the
+ * summation and the product with the boundaries independent of the differentiation argument are differentiated
+ * term by term.
+ *
+ * A long summation or product is calculated by several workers (see ParallelReduction) if its term does not call
+ * any function. Each worker has its own copy of the term that is bound to the own index value of the worker.
+ */
+public class LoopExpression extends Expression implements ArgumentHolderIf
+{
+    public enum LoopType
+    {
+        SUMMATION,
+        PRODUCT,
+        INTEGRAL,
+        DERIVATIVE
+    }
+
+    private static final int CUBATURE_MAX_DIMENSION = 3;
+    private static final int NESTED_MAX_DIMENSION = 10;
+    private static final long CUBATURE_MAX_EVALUATIONS = 1L << 18;
+
+    private final LoopType loopType;
+    private final DocumentProperties properties;
+    private final ArrayList<String> arguments = new ArrayList<String>();
+    private Expression minValueTerm = null, maxValueTerm = null, indexTerm = null, argTerm = null;
+    private ArrayList<LoopExpression> nestedIntegrals = null;
+
+    // Attention: this is not thread-safety declaration!
+    private final CalculatedValue argValue = new CalculatedValue();
+    private final CalculatedValue minValue = new CalculatedValue(), maxValue = new CalculatedValue();
+    private final CalculatedValue calcVal = new CalculatedValue();
+    private final ChunkedReduction sumReduction = new ChunkedReduction(ChunkedReduction.Type.SUM);
+    private final ChunkedReduction productReduction = new ChunkedReduction(ChunkedReduction.Type.PRODUCT);
+    private CalculationThreadIf thread = null;
+    private InfiniteSeries series = null;
+    private SimpsonIntegrator simpson = null;
+    private DoubleExponentialQuadrature quadrature = null;
+    private RiddersDerivative ridders = null;
+    private DifferentiableType differentiableType = null;
+
+    // the argument of the derivative calculated by the infinite series, or null if the series value is calculated
+    private ArgumentHolderIf seriesHolder = null;
+    private int seriesIndex = -1;
+
+    // the source of the term copies used by the workers of a parallel reduction
+    private ExpressionBuilder workerBuilder = null;
+    private TermNode workerArgNode = null;
+    private ArrayList<ReductionWorker> workers = null;
+    private ParallelReduction parallelReduction = null;
+
+    /**
+     * Worker of a parallel reduction: a copy of the loop term with its own index value
+     */
+    private static final class ReductionWorker implements ArgumentHolderIf, ParallelReduction.WorkerIf
+    {
+        private final ArrayList<String> arguments;
+        private final CalculatedValue argValue = new CalculatedValue();
+        private Expression argTerm = null;
+
+        ReductionWorker(ArrayList<String> arguments)
+        {
+            this.arguments = arguments;
+        }
+
+        @Override
+        public ArrayList<String> getArguments()
+        {
+            return arguments;
+        }
+
+        @Override
+        public int getArgumentIndex(String text)
+        {
+            return arguments.indexOf(text);
+        }
+
+        @Override
+        public CalculatedValue getArgumentValue(int idx)
+        {
+            return argValue;
+        }
+
+        @Override
+        public void getValue(long idx, CalculatedValue outValue, CalculationThreadIf thread) throws CancelException
+        {
+            argValue.setValue((double) idx);
+            argTerm.getValue(thread, outValue);
+        }
+    }
+
+    public LoopExpression(LoopType loopType, String indexName, DocumentProperties properties)
+    {
+        this.loopType = loopType;
+        this.properties = properties;
+        arguments.add(indexName);
+    }
+
+    public LoopType getLoopType()
+    {
+        return loopType;
+    }
+
+    /**
+     * Procedure sets the sub-expressions of this loop. The boundaries are only given for summation, product and
+     * integral; the index term is only given for derivative and defines the point where it is calculated
+     */
+    public void setTerms(Expression minValueTerm, Expression maxValueTerm, Expression indexTerm, Expression argTerm)
+    {
+        this.minValueTerm = minValueTerm;
+        this.maxValueTerm = maxValueTerm;
+        this.indexTerm = indexTerm;
+        this.argTerm = argTerm;
+    }
+
+    /**
+     * Procedure sets the builder and the term node used to create the term copies for a parallel reduction. The
+     * builder shall contain the argument holders of this loop without the loop itself
+     */
+    public void setWorkerSource(ExpressionBuilder workerBuilder, TermNode workerArgNode)
+    {
+        this.workerBuilder = workerBuilder;
+        this.workerArgNode = workerArgNode;
+    }
+
+    /*********************************************************
+     * Implementation of ArgumentHolderIf interface
+     *********************************************************/
+
+    @Override
+    public ArrayList<String> getArguments()
+    {
+        return arguments;
+    }
+
+    @Override
+    public int getArgumentIndex(String text)
+    {
+        return arguments.indexOf(text);
+    }
+
+    @Override
+    public CalculatedValue getArgumentValue(int idx)
+    {
+        return argValue;
+    }
+
+    /*********************************************************
+     * Implementation of Expression methods
+     *********************************************************/
+
+    @Override
+    protected Expression[] getChildren()
+    {
+        final ArrayList<Expression> children = new ArrayList<Expression>();
+        for (Expression e : new Expression[]{ minValueTerm, maxValueTerm, indexTerm, argTerm })
+        {
+            if (e != null)
+            {
+                children.add(e);
+            }
+        }
+        return children.toArray(new Expression[children.size()]);
+    }
+
+    @Override
+    public String checkDerivatives()
+    {
+        if (loopType == LoopType.DERIVATIVE && argTerm != null
+                && argTerm.isDifferentiable(this, 0) == DifferentiableType.NONE)
+        {
+            return "not differentiable: " + arguments.get(0);
+        }
+        return super.checkDerivatives();
+    }
+
+    @Override
+    public DifferentiableType isDifferentiable(ArgumentHolderIf holder, int index)
+    {
+        return isLoopDifferentiable(holder, index) ? argTerm.isDifferentiable(holder, index)
+                : DifferentiableType.NUMERICAL;
+    }
+
+    @Override
+    public CalculatedValue.ValueType getDerivativeValue(ArgumentHolderIf holder, int index,
+                                                        CalculationThreadIf thread, CalculatedValue outValue)
+            throws CancelException
+    {
+        if (!isLoopDifferentiable(holder, index))
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+        }
+        this.thread = thread;
+        if (!calculateBoundaries(thread))
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_REAL);
+        }
+        if (loopType == LoopType.SUMMATION)
+        {
+            if (isInfiniteBoundary(maxValue))
+            {
+                return getInfiniteSeries(holder, index).calculate(false, minValue.getInteger(),
+                        properties.significantDigits, outValue);
+            }
+            return summationDerivative(holder, index, minValue.getInteger(), maxValue.getInteger(), outValue);
+        }
+        if (isInfiniteBoundary(maxValue))
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+        }
+        return productDerivative(holder, index, minValue.getInteger(), maxValue.getInteger(), outValue);
+    }
+
+    @Override
+    public CalculatedValue.ValueType getValue(CalculationThreadIf thread, CalculatedValue outValue)
+            throws CancelException
+    {
+        if (argTerm == null)
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.TERM_NOT_READY);
+        }
+        this.thread = thread;
+        if (!calculateBoundaries(thread))
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_REAL);
+        }
+        switch (loopType)
+        {
+        case SUMMATION:
+            if (isInfiniteBoundary(maxValue))
+            {
+                return getInfiniteSeries(null, -1).calculate(false, minValue.getInteger(),
+                        properties.significantDigits, outValue);
+            }
+            return reduce(sumReduction, minValue.getInteger(), maxValue.getInteger(), outValue);
+        case PRODUCT:
+            if (isInfiniteBoundary(maxValue))
+            {
+                return getInfiniteSeries(null, -1).calculate(true, minValue.getInteger(),
+                        properties.significantDigits, outValue);
+            }
+            return reduce(productReduction, minValue.getInteger(), maxValue.getInteger(), outValue);
+        case INTEGRAL:
+            return integrate(outValue);
+        case DERIVATIVE:
+            return derivative(outValue);
+        }
+        return outValue.invalidate(CalculatedValue.ErrorType.TERM_NOT_READY);
+    }
+
+    /*********************************************************
+     * Loop-specific methods
+     *********************************************************/
+
+    /**
+     * Procedure checks whether this loop is differentiated term by term: it shall be a summation or a product whose
+     * boundaries do not depend on the given argument
+     */
+    private boolean isLoopDifferentiable(ArgumentHolderIf holder, int index)
+    {
+        if (loopType != LoopType.SUMMATION && loopType != LoopType.PRODUCT)
+        {
+            return false;
+        }
+        return minValueTerm != null && maxValueTerm != null && argTerm != null
+                && minValueTerm.isDifferentiable(holder, index) == DifferentiableType.INDEPENDENT
+                && maxValueTerm.isDifferentiable(holder, index) == DifferentiableType.INDEPENDENT;
+    }
+
+    private boolean isInfiniteBoundary(CalculatedValue v)
+    {
+        if (!v.isReal())
+        {
+            return false;
+        }
+        if (loopType == LoopType.SUMMATION || loopType == LoopType.PRODUCT)
+        {
+            return v.getReal() == Double.POSITIVE_INFINITY;
+        }
+        return loopType == LoopType.INTEGRAL && Double.isInfinite(v.getReal());
+    }
+
+    private boolean calculateBoundaries(CalculationThreadIf thread) throws CancelException
+    {
+        minValue.invalidate(CalculatedValue.ErrorType.TERM_NOT_READY);
+        if (minValueTerm != null)
+        {
+            minValueTerm.getRealValue(thread, minValue);
+            if (minValue.isNaN() && !(loopType == LoopType.INTEGRAL && isInfiniteBoundary(minValue)))
+            {
+                return false;
+            }
+        }
+        maxValue.invalidate(CalculatedValue.ErrorType.TERM_NOT_READY);
+        if (maxValueTerm != null)
+        {
+            maxValueTerm.getRealValue(thread, maxValue);
+            if (maxValue.isNaN() && !isInfiniteBoundary(maxValue))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Procedure checks the cancellation and the calculation budget once per loop iteration
+     */
+    private void checkCancelation() throws CancelException
+    {
+        if (thread != null)
+        {
+            thread.checkCancelation();
+        }
+    }
+
+    /**
+     * Calculate summation or product
+     */
+    private CalculatedValue.ValueType reduce(ChunkedReduction reduction, long minValue, long maxValue,
+                                             CalculatedValue outValue) throws CancelException
+    {
+        if ((double) maxValue - (double) minValue + 1.0 >= ParallelReduction.MIN_TERMS && prepareWorkers())
+        {
+            if (parallelReduction == null || parallelReduction.getType() != reduction.getType())
+            {
+                parallelReduction = new ParallelReduction(reduction.getType());
+            }
+            return parallelReduction.calculate(workers, minValue, maxValue, thread, outValue);
+        }
+        reduction.reset();
+        for (long idx = minValue; idx <= maxValue; idx++)
+        {
+            checkCancelation();
+            argValue.setValue((double) idx);
+            argTerm.getValue(thread, calcVal);
+            reduction.add(calcVal);
+            if (calcVal.isNaN())
+            {
+                break;
+            }
+        }
+        return reduction.getValue(outValue);
+    }
+
+    /**
+     * Procedure prepares the workers of a parallel reduction. Returns false if the reduction shall be calculated
+     * sequentially
+     */
+    private boolean prepareWorkers() throws CancelException
+    {
+        if (workerBuilder == null || ParallelReduction.getWorkersNumber() < 2 || !argTerm.isParallelizable())
+        {
+            return false;
+        }
+        if (workers == null)
+        {
+            workers = new ArrayList<ReductionWorker>();
+            for (int i = 0; i < ParallelReduction.getWorkersNumber(); i++)
+            {
+                final ReductionWorker worker = new ReductionWorker(arguments);
+                workerBuilder.pushHolder(worker);
+                worker.argTerm = workerBuilder.build(workerArgNode, false);
+                workerBuilder.popHolder();
+                workers.add(worker);
+            }
+        }
+        // the linked constants are calculated here, so that the workers only read them
+        final ArrayList<Equation> links = new ArrayList<Equation>();
+        argTerm.collectLinks(links);
+        for (Equation e : links)
+        {
+            if (e.isConstant())
+            {
+                e.getValue(thread, calcVal);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calculate derivative of summation term by term
+     */
+    private CalculatedValue.ValueType summationDerivative(ArgumentHolderIf holder, int index, long minValue,
+                                                          long maxValue, CalculatedValue outValue)
+            throws CancelException
+    {
+        sumReduction.reset();
+        for (long idx = minValue; idx <= maxValue; idx++)
+        {
+            checkCancelation();
+            argValue.setValue((double) idx);
+            argTerm.getDerivativeValue(holder, index, thread, calcVal);
+            sumReduction.add(calcVal);
+            if (calcVal.isNaN())
+            {
+                break;
+            }
+        }
+        return sumReduction.getValue(outValue);
+    }
+
+    /**
+     * Calculate derivative of product using the product rule
+     */
+    private CalculatedValue.ValueType productDerivative(ArgumentHolderIf holder, int index, long minValue,
+                                                        long maxValue, CalculatedValue outValue)
+            throws CancelException
+    {
+        outValue.setValue(0.0);
+        final CalculatedValue tmp1 = new CalculatedValue();
+        tmp1.setValue(1.0);
+
+        final CalculatedValue tmp2 = new CalculatedValue();
+        for (long k = minValue; k <= maxValue; k++)
+        {
+            checkCancelation();
+            tmp2.setValue(1.0);
+            for (long m = k + 1; m <= maxValue; m++)
+            {
+                checkCancelation();
+                argValue.setValue((double) m);
+                argTerm.getValue(thread, calcVal);
+                tmp2.multiply(tmp2, calcVal);
+                if (tmp2.isNaN())
+                {
+                    break;
+                }
+            }
+
+            argValue.setValue((double) k);
+            argTerm.getDerivativeValue(holder, index, thread, calcVal);
+            calcVal.multiply(calcVal, tmp1);
+            calcVal.multiply(calcVal, tmp2);
+            outValue.add(outValue, calcVal);
+            if (outValue.isNaN())
+            {
+                break;
+            }
+
+            argTerm.getValue(thread, calcVal);
+            tmp1.multiply(tmp1, calcVal);
+        }
+        return outValue.getValueType();
+    }
+
+    /**
+     * Calculate derivative in the point given by the index term. A term that does not depend on the index is not
+     * differentiated
+     */
+    private CalculatedValue.ValueType derivative(CalculatedValue outValue) throws CancelException
+    {
+        if (indexTerm == null)
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.TERM_NOT_READY);
+        }
+        if (differentiableType == null)
+        {
+            differentiableType = argTerm.isDifferentiable(this, 0);
+        }
+        indexTerm.getValue(thread, calcVal);
+        if (calcVal.isNaN())
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+        }
+        if (differentiableType == DifferentiableType.ANALYTICAL)
+        {
+            argValue.assign(calcVal);
+            return argTerm.getDerivativeValue(this, 0, thread, outValue);
+        }
+        if (differentiableType != DifferentiableType.NUMERICAL)
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+        }
+        final double zRe = calcVal.getReal(), zIm = calcVal.getImaginary();
+        final RiddersDerivative ridders = getRiddersDerivative();
+        final double re = ridders.differentiate(CalculatedValue.PartType.RE, zRe, zIm, RiddersDerivative.INITIAL_STEP);
+        if (ridders.isComplexDetected())
+        {
+            final double im = ridders.differentiate(CalculatedValue.PartType.IM, zRe, zIm,
+                    RiddersDerivative.INITIAL_STEP);
+            return outValue.setComplexValue(re, im);
+        }
+        return outValue.setValue(re);
+    }
+
+    /**
+     * Calculate defined integral
+     */
+    private CalculatedValue.ValueType integrate(CalculatedValue outValue) throws CancelException
+    {
+        final double absoluteAccuracy = FastMath.pow(10, -1.0 * properties.significantDigits);
+        final ArrayList<LoopExpression> nested = getNestedIntegrals();
+        if (nested.size() > 1)
+        {
+            final double[] min = new double[nested.size()];
+            final double[] max = new double[nested.size()];
+            if (calculateCubatureDomain(nested, min, max))
+            {
+                return (nested.size() <= CUBATURE_MAX_DIMENSION) ?
+                        integrateCubature(nested, min, max, absoluteAccuracy, outValue) :
+                        integrateMonteCarlo(nested, min, max, absoluteAccuracy, 1L << properties.sampleBudget,
+                                outValue);
+            }
+        }
+        final double min = minValue.getReal(), max = maxValue.getReal();
+        if (Double.isInfinite(min) || Double.isInfinite(max))
+        {
+            return integrateDoubleExponential(min, max, absoluteAccuracy, outValue);
+        }
+        final SimpsonIntegrator simpson = getSimpsonIntegrator();
+        if (!simpson.integrate(CalculatedValue.PartType.RE, min, max, absoluteAccuracy))
+        {
+            return integrateDoubleExponential(min, max, absoluteAccuracy, outValue);
+        }
+        final double re = simpson.getValue();
+        if (Double.isNaN(re))
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+        }
+        if (simpson.isComplexDetected())
+        {
+            if (!simpson.integrate(CalculatedValue.PartType.IM, min, max, absoluteAccuracy))
+            {
+                return integrateDoubleExponential(min, max, absoluteAccuracy, outValue);
+            }
+            return outValue.setComplexValue(re, simpson.getValue());
+        }
+        return outValue.setValue(re);
+    }
+
+    /**
+     * Procedure returns the chain of directly nested integrals whose boundaries do not depend on the indices of the
+     * outer integrals. The first element is this integral
+     */
+    private ArrayList<LoopExpression> getNestedIntegrals()
+    {
+        if (nestedIntegrals == null)
+        {
+            nestedIntegrals = new ArrayList<LoopExpression>();
+            nestedIntegrals.add(this);
+            final ArrayList<ArgumentHolderIf> holders = new ArrayList<ArgumentHolderIf>();
+            LoopExpression outer = this;
+            while (nestedIntegrals.size() < NESTED_MAX_DIMENSION)
+            {
+                holders.add(outer);
+                if (!(outer.argTerm instanceof LoopExpression)
+                        || ((LoopExpression) outer.argTerm).loopType != LoopType.INTEGRAL)
+                {
+                    break;
+                }
+                final LoopExpression inner = (LoopExpression) outer.argTerm;
+                if (inner.minValueTerm.dependsOn(holders) || inner.maxValueTerm.dependsOn(holders))
+                {
+                    break;
+                }
+                nestedIntegrals.add(inner);
+                outer = inner;
+            }
+        }
+        return nestedIntegrals;
+    }
+
+    /**
+     * Calculate the boundaries of the chain of nested integrals. Returns false if a boundary is not valid or
+     * infinite: such integrals are calculated one by one.
+     */
+    private boolean calculateCubatureDomain(final ArrayList<LoopExpression> nested, double[] min, double[] max)
+            throws CancelException
+    {
+        for (int i = 0; i < nested.size(); i++)
+        {
+            final LoopExpression loop = nested.get(i);
+            if (i > 0 && !loop.calculateBoundaries(thread))
+            {
+                return false;
+            }
+            min[i] = loop.minValue.getReal();
+            max[i] = loop.maxValue.getReal();
+            if (Double.isInfinite(min[i]) || Double.isInfinite(max[i]))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calculate the multiple integral given by the chain of nested integrals using adaptive cubature
+     */
+    private CalculatedValue.ValueType integrateCubature(final ArrayList<LoopExpression> nested, double[] min,
+                                                        double[] max, double accuracy, CalculatedValue outValue)
+            throws CancelException
+    {
+        final AdaptiveCubature cubature = new AdaptiveCubature(nested.size(), getMultipleIntegrand(nested));
+        if (!cubature.integrate(min, max, accuracy, CUBATURE_MAX_EVALUATIONS))
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+        }
+        return cubature.isComplexDetected() ? outValue.setComplexValue(cubature.getReal(), cubature.getImaginary())
+                : outValue.setValue(cubature.getReal());
+    }
+
+    /**
+     * Calculate the multiple integral given by the chain of nested integrals using the randomized quasi-Monte
+     * Carlo method
+     */
+    private CalculatedValue.ValueType integrateMonteCarlo(final ArrayList<LoopExpression> nested, double[] min,
+                                                          double[] max, double accuracy, long maxEvaluations,
+                                                          CalculatedValue outValue) throws CancelException
+    {
+        final QuasiMonteCarlo monteCarlo = new QuasiMonteCarlo(nested.size(), getMultipleIntegrand(nested));
+        if (!monteCarlo.integrate(min, max, accuracy, maxEvaluations))
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+        }
+        return monteCarlo.isComplexDetected() ? outValue.setComplexValue(monteCarlo.getReal(),
+                monteCarlo.getImaginary()) : outValue.setValue(monteCarlo.getReal());
+    }
+
+    /**
+     * Procedure returns the integrand of the multiple integral given by the chain of nested integrals
+     */
+    private AdaptiveCubature.Integrand getMultipleIntegrand(final ArrayList<LoopExpression> nested)
+    {
+        final Expression integrandTerm = nested.get(nested.size() - 1).argTerm;
+        return new AdaptiveCubature.Integrand()
+        {
+            @Override
+            public void getValue(double[] x, CalculatedValue outValue) throws CancelException
+            {
+                checkCancelation();
+                for (int i = 0; i < x.length; i++)
+                {
+                    nested.get(i).argValue.setValue(x[i]);
+                }
+                integrandTerm.getValue(thread, outValue);
+            }
+        };
+    }
+
+    /**
+     * Calculate the integral using the double exponential quadrature. It is used if a boundary is infinite or the
+     * integrand can not be calculated in an endpoint of the interval.
+     */
+    private CalculatedValue.ValueType integrateDoubleExponential(double min, double max, double accuracy,
+                                                                 CalculatedValue outValue) throws CancelException
+    {
+        if (quadrature == null)
+        {
+            quadrature = new DoubleExponentialQuadrature(getIntegrand());
+        }
+        if (!quadrature.integrate(min, max, accuracy))
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+        }
+        return quadrature.isComplexDetected() ? outValue.setComplexValue(quadrature.getReal(),
+                quadrature.getImaginary()) : outValue.setValue(quadrature.getReal());
+    }
+
+    private DoubleExponentialQuadrature.Integrand getIntegrand()
+    {
+        return new DoubleExponentialQuadrature.Integrand()
+        {
+            @Override
+            public void getValue(double x, CalculatedValue outValue) throws CancelException
+            {
+                checkCancelation();
+                argValue.setValue(x);
+                argTerm.getValue(thread, outValue);
+            }
+        };
+    }
+
+    private SimpsonIntegrator getSimpsonIntegrator()
+    {
+        if (simpson == null)
+        {
+            simpson = new SimpsonIntegrator(getIntegrand());
+        }
+        return simpson;
+    }
+
+    /**
+     * Procedure returns the infinite series. If the holder is given, the series of the derivatives with respect to
+     * its argument is calculated
+     */
+    private InfiniteSeries getInfiniteSeries(ArgumentHolderIf holder, int index)
+    {
+        if (series == null)
+        {
+            series = new InfiniteSeries(new InfiniteSeries.Term()
+            {
+                @Override
+                public void getValue(long idx, CalculatedValue outValue) throws CancelException
+                {
+                    checkCancelation();
+                    argValue.setValue((double) idx);
+                    if (seriesHolder == null)
+                    {
+                        argTerm.getValue(thread, outValue);
+                    }
+                    else
+                    {
+                        argTerm.getDerivativeValue(seriesHolder, seriesIndex, thread, outValue);
+                    }
+                }
+            });
+        }
+        seriesHolder = holder;
+        seriesIndex = index;
+        series.reset();
+        return series;
+    }
+
+    private RiddersDerivative getRiddersDerivative()
+    {
+        if (ridders == null)
+        {
+            ridders = new RiddersDerivative(new RiddersDerivative.Function()
+            {
+                @Override
+                public void getValue(double re, double im, CalculatedValue outValue) throws CancelException
+                {
+                    checkCancelation();
+                    argValue.setComplexValue(re, im);
+                    argTerm.getValue(thread, outValue);
+                }
+            });
+        }
+        return ridders;
+    }
+}
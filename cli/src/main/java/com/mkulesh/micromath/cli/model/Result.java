@@ -0,0 +1,303 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.cli.model;
+
+import com.mkulesh.micromath.core.TextParser;
+import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CalculationThreadIf;
+import com.mkulesh.micromath.math.CancelException;
+import com.mkulesh.micromath.math.EquationArrayResult;
+
+import java.util.ArrayList;
+
+/**
+ * Result of the batch evaluator: a constant value or an 1D or 2D array if the formula depends on intervals
+ */
+public class Result extends Formula
+{
+    public enum ResultType
+    {
+        NONE,
+        NAN,
+        CONSTANT,
+        ARRAY_1D,
+        ARRAY_2D
+    }
+
+    public static final String CELL_DOTS = "...";
+
+    private final TermNode leftNode;
+    private final boolean disableCalculation;
+    private final int arrayLength;
+    private Expression leftTerm = null;
+
+    private ResultType resultType = ResultType.NONE;
+    private CalculatedValue constantResult = null;
+    private EquationArrayResult arrayArgument = null, arrayResult = null;
+
+    public Result(Document document, int id, TermNode leftNode, boolean disableCalculation, int arrayLength)
+    {
+        super(document, id);
+        this.leftNode = leftNode;
+        this.disableCalculation = disableCalculation;
+        this.arrayLength = arrayLength;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Result(Id: " + getId() + ", Term: " + getName() + ")";
+    }
+
+    /**
+     * Procedure returns the text representation of the calculated term
+     */
+    public String getName()
+    {
+        return leftNode == null ? "" : leftNode.toString();
+    }
+
+    public boolean isDisabled()
+    {
+        return disableCalculation;
+    }
+
+    public ResultType getResultType()
+    {
+        return resultType;
+    }
+
+    public CalculatedValue getConstantResult()
+    {
+        return constantResult;
+    }
+
+    public EquationArrayResult getArrayArgument()
+    {
+        return arrayArgument;
+    }
+
+    public EquationArrayResult getArrayResult()
+    {
+        return arrayResult;
+    }
+
+    /*********************************************************
+     * Implementation of Formula methods
+     *********************************************************/
+
+    @Override
+    public void build()
+    {
+        final ExpressionBuilder builder = new ExpressionBuilder(document, this);
+        leftTerm = builder.build(leftNode, false);
+        final ArrayList<Equation> links = new ArrayList<Equation>();
+        leftTerm.collectLinks(links);
+        setLinkedEquations(links);
+    }
+
+    @Override
+    protected Expression getExpression()
+    {
+        return leftTerm;
+    }
+
+    @Override
+    public void invalidateResult()
+    {
+        resultType = ResultType.NONE;
+        constantResult = null;
+        arrayArgument = null;
+        arrayResult = null;
+    }
+
+    @Override
+    public void calculate(CalculationThreadIf thread) throws CancelException
+    {
+        invalidateResult();
+        if (disableCalculation || !isValid())
+        {
+            return;
+        }
+        final ArrayList<Equation> linkedIntervals = getAllIntervals();
+        if (linkedIntervals.isEmpty())
+        {
+            resultType = ResultType.CONSTANT;
+            constantResult = new CalculatedValue();
+            leftTerm.getValue(thread, constantResult);
+        }
+        else if (linkedIntervals.size() == 1)
+        {
+            final CalculatedValue[] argValues = new CalculatedValue[1];
+            argValues[0] = new CalculatedValue();
+            final ArrayList<Double> xValues = linkedIntervals.get(0).getInterval(thread);
+            if (xValues != null && xValues.size() > 0)
+            {
+                final int xLength = xValues.size();
+                resultType = ResultType.ARRAY_1D;
+                arrayArgument = new EquationArrayResult(xLength);
+                arrayResult = new EquationArrayResult(xLength, 1);
+                for (int xIndex = 0; xIndex < xLength; xIndex++)
+                {
+                    final Double x = xValues.get(xIndex);
+                    argValues[0].setValue(x);
+                    arrayArgument.getValue1D(xIndex).setValue(x);
+                    linkedIntervals.get(0).setArgumentValues(argValues);
+                    if (thread != null)
+                    {
+                        thread.checkCancelation();
+                    }
+                    leftTerm.getValue(thread, arrayResult.getValue2D(xIndex, 0));
+                }
+            }
+            else
+            {
+                resultType = ResultType.NAN;
+            }
+        }
+        else if (linkedIntervals.size() == 2)
+        {
+            final CalculatedValue[][] argValues = new CalculatedValue[2][1];
+            argValues[0][0] = new CalculatedValue();
+            final ArrayList<Double> xValues = linkedIntervals.get(0).getInterval(thread);
+            argValues[1][0] = new CalculatedValue();
+            final ArrayList<Double> yValues = linkedIntervals.get(1).getInterval(thread);
+            if (xValues != null && xValues.size() > 0 && yValues != null && yValues.size() > 0)
+            {
+                final int xLength = xValues.size();
+                final int yLength = yValues.size();
+                resultType = ResultType.ARRAY_2D;
+                arrayResult = new EquationArrayResult(xLength, yLength);
+                for (int xIndex = 0; xIndex < xLength; xIndex++)
+                {
+                    argValues[0][0].setValue(xValues.get(xIndex));
+                    linkedIntervals.get(0).setArgumentValues(argValues[0]);
+                    for (int yIndex = 0; yIndex < yLength; yIndex++)
+                    {
+                        argValues[1][0].setValue(yValues.get(yIndex));
+                        linkedIntervals.get(1).setArgumentValues(argValues[1]);
+                        if (thread != null)
+                        {
+                            thread.checkCancelation();
+                        }
+                        leftTerm.getValue(thread, arrayResult.getValue2D(xIndex, yIndex));
+                    }
+                }
+            }
+            else
+            {
+                resultType = ResultType.NAN;
+            }
+        }
+        else
+        {
+            setError("too many linked intervals: " + linkedIntervals.size());
+        }
+    }
+
+    /*********************************************************
+     * Result-specific methods
+     *********************************************************/
+
+    public boolean isArrayResult()
+    {
+        return (resultType == ResultType.ARRAY_1D || resultType == ResultType.ARRAY_2D) && arrayResult != null;
+    }
+
+    /**
+     * Procedure returns the result as a string like it is shown in the result field of the document
+     */
+    public String getDescription()
+    {
+        if (resultType == ResultType.NAN)
+        {
+            return TextParser.CONST_NAN;
+        }
+        if (resultType == ResultType.CONSTANT)
+        {
+            return constantResult.getResultDescription(document.getProperties().significantDigits);
+        }
+        if (isArrayResult())
+        {
+            return fillResultMatrixArray().toString();
+        }
+        return "";
+    }
+
+    /**
+     * Procedure returns the array result shortened to the array length given in the result properties
+     */
+    public ArrayList<ArrayList<String>> fillResultMatrixArray()
+    {
+        if (!isArrayResult())
+        {
+            return null;
+        }
+        final int significantDigits = document.getProperties().significantDigits;
+        final int xValuesNumber = arrayResult.getDimensions()[0];
+        final int rowsNumber = Math.min(xValuesNumber, arrayLength + 1);
+        final int yValuesNumber = arrayResult.getDimensions()[1];
+        final int colsNumber = Math.min(yValuesNumber, arrayLength + 1);
+
+        final ArrayList<ArrayList<String>> res = new ArrayList<ArrayList<String>>(rowsNumber);
+        for (int r = 0; r < rowsNumber; r++)
+        {
+            int dataRowIdx = r;
+            res.add(new ArrayList<String>(colsNumber));
+            if (xValuesNumber > arrayLength)
+            {
+                // before the last line
+                if (r + 2 == rowsNumber)
+                {
+                    for (int c = 0; c < colsNumber; c++)
+                    {
+                        res.get(r).add(CELL_DOTS);
+                    }
+                    continue;
+                }
+                // the last line
+                if (r + 1 == rowsNumber)
+                {
+                    dataRowIdx = xValuesNumber - 1;
+                }
+            }
+            for (int c = 0; c < colsNumber; c++)
+            {
+                int dataColIdx = c;
+                if (yValuesNumber > arrayLength)
+                {
+                    // before the last column
+                    if (c + 2 == colsNumber)
+                    {
+                        res.get(r).add(CELL_DOTS);
+                        continue;
+                    }
+                    // the last column
+                    if (c + 1 == colsNumber)
+                    {
+                        dataColIdx = yValuesNumber - 1;
+                    }
+                }
+                res.get(r).add(arrayResult.getValue2D(dataRowIdx, dataColIdx).getResultDescription(
+                        significantDigits));
+            }
+        }
+        return res;
+    }
+}
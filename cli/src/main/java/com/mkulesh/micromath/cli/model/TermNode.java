@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.cli.model;
+
+import java.util.ArrayList;
+
+/**
+ * A term of the document as it is stored in the XML file: a key that defines the term position within the parent
+ * term, an optional code of the term type, an optional text content and the child terms
+ */
+public class TermNode
+{
+    private final String key;
+    private final String code;
+    private final String text;
+    private final ArrayList<TermNode> children = new ArrayList<TermNode>();
+
+    public TermNode(String key, String code, String text)
+    {
+        this.key = key;
+        this.code = code;
+        this.text = text;
+    }
+
+    public String getKey()
+    {
+        return key;
+    }
+
+    public String getCode()
+    {
+        return code;
+    }
+
+    public String getText()
+    {
+        return text;
+    }
+
+    public ArrayList<TermNode> getChildren()
+    {
+        return children;
+    }
+
+    public boolean isEmpty()
+    {
+        return code == null && (text == null || text.trim().length() == 0);
+    }
+
+    /**
+     * Procedure returns the child term with the given key
+     */
+    public TermNode getChild(String key)
+    {
+        for (TermNode t : children)
+        {
+            if (key.equals(t.getKey()))
+            {
+                return t;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString()
+    {
+        if (code == null)
+        {
+            return text == null ? "" : text;
+        }
+        String name = code, startBracket = "(", endBracket = ")";
+        if (code.startsWith(ExpressionBuilder.FUNCTION_LINK_PREFIX))
+        {
+            name = getLinkName(code.substring(ExpressionBuilder.FUNCTION_LINK_PREFIX.length()));
+        }
+        else if (code.startsWith(ExpressionBuilder.FUNCTION_INDEX_PREFIX))
+        {
+            name = getLinkName(code.substring(ExpressionBuilder.FUNCTION_INDEX_PREFIX.length()));
+            startBracket = "[";
+            endBracket = "]";
+        }
+        final StringBuilder s = new StringBuilder(name);
+        if (!children.isEmpty())
+        {
+            s.append(startBracket);
+            for (int i = 0; i < children.size(); i++)
+            {
+                s.append(i > 0 ? ", " : "").append(children.get(i).toString());
+            }
+            s.append(endBracket);
+        }
+        return s.toString();
+    }
+
+    private static String getLinkName(String link)
+    {
+        final int markerPos = link.indexOf(ExpressionBuilder.FUNCTION_ARGS_MARKER);
+        return (markerPos < 0) ? link : link.substring(0, markerPos);
+    }
+}
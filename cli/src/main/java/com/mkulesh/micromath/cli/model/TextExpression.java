@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.cli.model;
+
+import com.mkulesh.micromath.core.ArgumentHolderIf;
+import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CalculationThreadIf;
+import com.mkulesh.micromath.math.CancelException;
+
+import java.util.ArrayList;
+
+/**
+ * Expression given by the text of a term: a number, an argument of a holder or a link to a variable
+ */
+public class TextExpression extends Expression
+{
+    public enum ContentType
+    {
+        INVALID,
+        NUMBER,
+        ARGUMENT,
+        VARIABLE_LINK
+    }
+
+    private static final Expression[] NO_CHILDREN = new Expression[0];
+
+    private final ContentType contentType;
+    private final CalculatedValue value;
+    private final ArgumentHolderIf argumentHolder;
+    private final int argumentIndex;
+    private final Equation linkedVariable;
+    private final double sign;
+
+    private TextExpression(ContentType contentType, CalculatedValue value, ArgumentHolderIf argumentHolder,
+                           int argumentIndex, Equation linkedVariable, double sign)
+    {
+        this.contentType = contentType;
+        this.value = value;
+        this.argumentHolder = argumentHolder;
+        this.argumentIndex = argumentIndex;
+        this.linkedVariable = linkedVariable;
+        this.sign = sign;
+    }
+
+    public static TextExpression newInvalid()
+    {
+        return new TextExpression(ContentType.INVALID, null, null, -1, null, 1.0);
+    }
+
+    public static TextExpression newNumber(CalculatedValue value)
+    {
+        return new TextExpression(ContentType.NUMBER, value, null, -1, null, 1.0);
+    }
+
+    public static TextExpression newArgument(ArgumentHolderIf argumentHolder, int argumentIndex, double sign)
+    {
+        return new TextExpression(ContentType.ARGUMENT, null, argumentHolder, argumentIndex, null, sign);
+    }
+
+    public static TextExpression newVariableLink(Equation linkedVariable, double sign)
+    {
+        return new TextExpression(ContentType.VARIABLE_LINK, null, null, -1, linkedVariable, sign);
+    }
+
+    public ContentType getContentType()
+    {
+        return contentType;
+    }
+
+    @Override
+    public CalculatedValue.ValueType getValue(CalculationThreadIf thread, CalculatedValue outValue)
+            throws CancelException
+    {
+        switch (contentType)
+        {
+        case NUMBER:
+            return outValue.assign(value);
+        case ARGUMENT:
+            outValue.assign(argumentHolder.getArgumentValue(argumentIndex));
+            return outValue.multiply(sign);
+        case VARIABLE_LINK:
+            if (linkedVariable.isInterval())
+            {
+                outValue.assign(linkedVariable.getArgumentValue(0));
+            }
+            else
+            {
+                linkedVariable.getValue(thread, outValue);
+            }
+            return outValue.multiply(sign);
+        default:
+            return outValue.invalidate(CalculatedValue.ErrorType.TERM_NOT_READY);
+        }
+    }
+
+    /**
+     * A number or a variable does not depend on any argument, an argument only depends on itself
+     */
+    @Override
+    public DifferentiableType isDifferentiable(ArgumentHolderIf holder, int index)
+    {
+        return isArgument(holder, index) ? DifferentiableType.ANALYTICAL : DifferentiableType.INDEPENDENT;
+    }
+
+    @Override
+    public CalculatedValue.ValueType getDerivativeValue(ArgumentHolderIf holder, int index,
+                                                        CalculationThreadIf thread, CalculatedValue outValue)
+            throws CancelException
+    {
+        return outValue.setValue(isArgument(holder, index) ? sign : 0.0);
+    }
+
+    private boolean isArgument(ArgumentHolderIf holder, int index)
+    {
+        return contentType == ContentType.ARGUMENT && argumentHolder == holder && argumentIndex == index;
+    }
+
+    @Override
+    protected Expression[] getChildren()
+    {
+        return NO_CHILDREN;
+    }
+
+    @Override
+    public boolean dependsOn(ArrayList<ArgumentHolderIf> holders)
+    {
+        return contentType == ContentType.ARGUMENT && holders.contains(argumentHolder);
+    }
+
+    @Override
+    public boolean isParallelizable()
+    {
+        // a constant is calculated only once and then read by all callers
+        return contentType != ContentType.VARIABLE_LINK || linkedVariable.isInterval() || linkedVariable.isConstant();
+    }
+
+    @Override
+    public void collectLinks(ArrayList<Equation> out)
+    {
+        if (contentType == ContentType.VARIABLE_LINK && !out.contains(linkedVariable))
+        {
+            out.add(linkedVariable);
+        }
+    }
+}
@@ -0,0 +1,384 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.core;
+
+import com.mkulesh.micromath.math.CalculatedValue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Table of numbers stored in a binary file. The values are accessed through a typed view of the file bytes without
+ * any conversion; if the file is memory-mapped, nothing is copied into the heap. The following formats are supported:
+ *
+ * - NumPy array files (*.npy) of version 1, 2 or 3 with one or two dimensions in C or Fortran order and the element
+ * types float32, float64, complex64, complex128, int32 and int64 in either byte order.
+ *
+ * - Raw files of little-endian float64 (*.f64) or float32 (*.f32) values. The file starts with a header of two
+ * little-endian int32 numbers that declare the number of rows and columns, followed by the values in row-major order.
+ */
+public class BinaryDataTable implements DataTableIf
+{
+    public enum Format
+    {
+        NPY(".npy"),
+        RAW_FLOAT64(".f64"),
+        RAW_FLOAT32(".f32");
+
+        private final String extension;
+
+        Format(String extension)
+        {
+            this.extension = extension;
+        }
+
+        public String getExtension()
+        {
+            return extension;
+        }
+    }
+
+    private enum ElementType
+    {
+        FLOAT32(4),
+        FLOAT64(8),
+        COMPLEX64(8),
+        COMPLEX128(16),
+        INT32(4),
+        INT64(8);
+
+        private final int size;
+
+        ElementType(int size)
+        {
+            this.size = size;
+        }
+    }
+
+    private static final byte[] NPY_MAGIC = { (byte) 0x93, 'N', 'U', 'M', 'P', 'Y' };
+    private static final Pattern NPY_DESCR = Pattern.compile("'descr'\\s*:\\s*'([^']*)'");
+    private static final Pattern NPY_ORDER = Pattern.compile("'fortran_order'\\s*:\\s*(True|False)");
+    private static final Pattern NPY_SHAPE = Pattern.compile("'shape'\\s*:\\s*\\(([^)]*)\\)");
+    private static final int RAW_HEADER_SIZE = 8;
+
+    private final ElementType type;
+    private final int rows, columns;
+    private final boolean columnMajor;
+    private final Buffer values;
+    private final long memorySize;
+    private long mappedSize = 0;
+
+    private BinaryDataTable(ElementType type, int rows, int columns, boolean columnMajor, ByteBuffer data,
+                            long memorySize) throws IOException
+    {
+        this.type = type;
+        this.rows = rows;
+        this.columns = columns;
+        this.columnMajor = columnMajor;
+        this.memorySize = memorySize;
+        if ((long) rows * columns * type.size > data.remaining())
+        {
+            throw new IOException("file is shorter than declared by its header");
+        }
+        switch (type)
+        {
+        case FLOAT32:
+        case COMPLEX64:
+            values = data.asFloatBuffer();
+            break;
+        case INT32:
+            values = data.asIntBuffer();
+            break;
+        case INT64:
+            values = data.asLongBuffer();
+            break;
+        default:
+            values = data.asDoubleBuffer();
+            break;
+        }
+    }
+
+    /**
+     * Procedure returns the binary format of the given file name, or null if it is not a binary file
+     */
+    public static Format getFormat(String fileName)
+    {
+        if (fileName == null)
+        {
+            return null;
+        }
+        final String name = fileName.trim().toLowerCase(Locale.ENGLISH);
+        for (Format f : Format.values())
+        {
+            if (name.endsWith(f.getExtension()))
+            {
+                return f;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Procedure memory-maps the file given by its channel. The channel can be closed after this call
+     */
+    public static BinaryDataTable map(FileChannel channel, Format format) throws IOException
+    {
+        if (channel.size() > Integer.MAX_VALUE)
+        {
+            throw new IOException("binary file is larger than 2 GB");
+        }
+        final BinaryDataTable table = create(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), format, 0);
+        if (table != null)
+        {
+            table.mappedSize = channel.size();
+        }
+        return table;
+    }
+
+    /**
+     * Procedure reads the whole stream into the heap. The stream is not closed
+     */
+    public static BinaryDataTable read(InputStream stream, Format format) throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[64 * 1024];
+        int n;
+        while ((n = stream.read(buffer)) >= 0)
+        {
+            bytes.write(buffer, 0, n);
+        }
+        return create(ByteBuffer.wrap(bytes.toByteArray()), format, bytes.size());
+    }
+
+    private static BinaryDataTable create(ByteBuffer bytes, Format format, long memorySize) throws IOException
+    {
+        bytes.order(ByteOrder.LITTLE_ENDIAN);
+        switch (format)
+        {
+        case NPY:
+            return createNpy(bytes, memorySize);
+        case RAW_FLOAT32:
+        case RAW_FLOAT64:
+            if (bytes.remaining() < RAW_HEADER_SIZE)
+            {
+                throw new IOException("raw file has no header");
+            }
+            final int rows = bytes.getInt(0);
+            final int columns = bytes.getInt(4);
+            if (rows < 0 || columns < 0)
+            {
+                throw new IOException("invalid shape: " + rows + ", " + columns);
+            }
+            final ElementType type = (format == Format.RAW_FLOAT32) ? ElementType.FLOAT32 : ElementType.FLOAT64;
+            return new BinaryDataTable(type, rows, columns, false, slice(bytes, RAW_HEADER_SIZE,
+                    ByteOrder.LITTLE_ENDIAN), memorySize);
+        }
+        return null;
+    }
+
+    private static BinaryDataTable createNpy(ByteBuffer bytes, long memorySize) throws IOException
+    {
+        for (int i = 0; i < NPY_MAGIC.length; i++)
+        {
+            if (bytes.remaining() <= i || bytes.get(i) != NPY_MAGIC[i])
+            {
+                throw new IOException("not a NumPy file");
+            }
+        }
+        // the magic string is followed by the major and the minor version
+        if (bytes.remaining() < NPY_MAGIC.length + 2)
+        {
+            throw new IOException("NumPy header is not complete");
+        }
+        final int major = bytes.get(NPY_MAGIC.length);
+        if (major < 1 || major > 3)
+        {
+            throw new IOException("unsupported NumPy version: " + major);
+        }
+        final int headerStart = (major == 1) ? 10 : 12;
+        if (bytes.remaining() < headerStart)
+        {
+            throw new IOException("NumPy header is not complete");
+        }
+        final int headerLength = (major == 1) ? (bytes.getShort(8) & 0xFFFF) : bytes.getInt(8);
+        if (headerLength < 0 || headerLength > bytes.remaining() - headerStart)
+        {
+            throw new IOException("NumPy header is not complete");
+        }
+        final byte[] headerBytes = new byte[headerLength];
+        for (int i = 0; i < headerLength; i++)
+        {
+            headerBytes[i] = bytes.get(headerStart + i);
+        }
+        final String header = new String(headerBytes, Charset.forName("UTF-8"));
+
+        final Matcher descr = NPY_DESCR.matcher(header);
+        final Matcher order = NPY_ORDER.matcher(header);
+        final Matcher shape = NPY_SHAPE.matcher(header);
+        if (!descr.find() || !order.find() || !shape.find())
+        {
+            throw new IOException("invalid NumPy header: " + header);
+        }
+
+        // element type: the byte order character is followed by the kind and the size
+        final String d = descr.group(1);
+        if (d.length() < 3)
+        {
+            throw new IOException("unsupported NumPy type: " + d);
+        }
+        final ByteOrder byteOrder = (d.charAt(0) == '>') ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        final String kind = d.substring(1);
+        final ElementType type;
+        if ("f4".equals(kind))
+        {
+            type = ElementType.FLOAT32;
+        }
+        else if ("f8".equals(kind))
+        {
+            type = ElementType.FLOAT64;
+        }
+        else if ("c8".equals(kind))
+        {
+            type = ElementType.COMPLEX64;
+        }
+        else if ("c16".equals(kind))
+        {
+            type = ElementType.COMPLEX128;
+        }
+        else if ("i4".equals(kind))
+        {
+            type = ElementType.INT32;
+        }
+        else if ("i8".equals(kind))
+        {
+            type = ElementType.INT64;
+        }
+        else
+        {
+            throw new IOException("unsupported NumPy type: " + d);
+        }
+
+        // shape: a scalar, a vector that is read as a column or a matrix
+        final String[] dims = shape.group(1).split(",");
+        final int[] shapeValues = { 1, 1 };
+        int n = 0;
+        for (String dim : dims)
+        {
+            final String s = dim.trim();
+            if (s.isEmpty())
+            {
+                continue;
+            }
+            if (n == shapeValues.length)
+            {
+                throw new IOException("unsupported NumPy shape: (" + shape.group(1) + ")");
+            }
+            try
+            {
+                shapeValues[n++] = Integer.parseInt(s.endsWith("L") ? s.substring(0, s.length() - 1) : s);
+            }
+            catch (NumberFormatException ex)
+            {
+                throw new IOException("invalid NumPy shape: (" + shape.group(1) + ")");
+            }
+        }
+        if (shapeValues[0] < 0 || shapeValues[1] < 0)
+        {
+            throw new IOException("invalid NumPy shape: (" + shape.group(1) + ")");
+        }
+        return new BinaryDataTable(type, shapeValues[0], shapeValues[1], "True".equals(order.group(1)),
+                slice(bytes, headerStart + headerLength, byteOrder), memorySize);
+    }
+
+    private static ByteBuffer slice(ByteBuffer bytes, int offset, ByteOrder byteOrder)
+    {
+        final ByteBuffer b = bytes.duplicate();
+        b.position(offset);
+        return b.slice().order(byteOrder);
+    }
+
+    @Override
+    public int getRows()
+    {
+        return rows;
+    }
+
+    @Override
+    public int getRowLength(int row)
+    {
+        return (row >= 0 && row < rows) ? columns : 0;
+    }
+
+    @Override
+    public CalculatedValue.ValueType getValue(int row, int col, CalculatedValue outValue)
+    {
+        if (row < 0 || row >= rows || col < 0 || col >= columns)
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+        }
+        final int idx = columnMajor ? col * rows + row : row * columns + col;
+        switch (type)
+        {
+        case FLOAT32:
+            return outValue.setValue(((FloatBuffer) values).get(idx));
+        case FLOAT64:
+            return outValue.setValue(((DoubleBuffer) values).get(idx));
+        case COMPLEX64:
+            return setComplex(outValue, ((FloatBuffer) values).get(2 * idx), ((FloatBuffer) values).get(2 * idx + 1));
+        case COMPLEX128:
+            return setComplex(outValue, ((DoubleBuffer) values).get(2 * idx),
+                    ((DoubleBuffer) values).get(2 * idx + 1));
+        case INT32:
+            return outValue.setValue(((IntBuffer) values).get(idx));
+        case INT64:
+            return outValue.setValue(((LongBuffer) values).get(idx));
+        }
+        return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+    }
+
+    @Override
+    public long getMemorySize()
+    {
+        return memorySize;
+    }
+
+    @Override
+    public long getMappedSize()
+    {
+        return mappedSize;
+    }
+
+    private static CalculatedValue.ValueType setComplex(CalculatedValue outValue, double re, double im)
+    {
+        return (im != 0.0) ? outValue.setComplexValue(re, im) : outValue.setValue(re);
+    }
+}
@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.core;
+
+import com.mkulesh.micromath.math.CalculatedValue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Table of numbers read from a text file. The file is parsed once into primitive columns, the imaginary part of a
+ * column is only allocated if this column contains a complex number. The numbers are converted by NumberScanner.
+ *
+ * The cells of a line are separated by spaces or by commas. The spaces around a comma are ignored; a comma without a
+ * value before it, like in "1,,3" or "1,2,", gives an empty cell that is not a number.
+ */
+public class DataTable implements DataTableIf
+{
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int INITIAL_ROWS = 64;
+
+    // a parsed value takes 8 bytes in its column and at least two characters in the file: a digit and a separator
+    private static final long MEMORY_PER_FILE_BYTE = 4;
+
+    // the parsed columns may take this part of the heap that is not yet used: the columns grow while reading
+    private static final long FREE_HEAP_DIVIDER = 2;
+
+    private int rows = 0;
+    private int[] rowLength = new int[INITIAL_ROWS];
+    private final ArrayList<double[]> reColumns = new ArrayList<double[]>();
+    private final ArrayList<double[]> imColumns = new ArrayList<double[]>();
+    private final ArrayList<BitSet> invalidCells = new ArrayList<BitSet>();
+
+    // state of the scanner
+    private final NumberScanner scanner = new NumberScanner();
+    private int column = 0;
+    private boolean afterToken = false, afterComma = false;
+
+    /**
+     * Procedure reads the table from the given reader. The reader is not closed
+     */
+    public static DataTable read(Reader reader) throws IOException
+    {
+        final DataTable table = new DataTable();
+        final char[] buffer = new char[READ_BUFFER_SIZE];
+        int n;
+        while ((n = reader.read(buffer)) >= 0)
+        {
+            for (int i = 0; i < n; i++)
+            {
+                table.scan(buffer[i]);
+            }
+        }
+        table.endOfLine();
+        table.trim();
+        return table;
+    }
+
+    /**
+     * Procedure checks whether the columns parsed from a text file of the given size fit into the free heap. The
+     * estimate assumes the shortest possible cells, so a file that fails this check shall be memory-mapped
+     */
+    public static boolean isHeapSufficient(long fileSize)
+    {
+        final Runtime runtime = Runtime.getRuntime();
+        final long freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        return fileSize <= freeHeap / FREE_HEAP_DIVIDER / MEMORY_PER_FILE_BYTE;
+    }
+
+    @Override
+    public int getRows()
+    {
+        return rows;
+    }
+
+    @Override
+    public int getRowLength(int row)
+    {
+        return (row >= 0 && row < rows) ? rowLength[row] : 0;
+    }
+
+    @Override
+    public long getMemorySize()
+    {
+        long size = 4L * rowLength.length;
+        for (int col = 0; col < reColumns.size(); col++)
+        {
+            size += 8L * reColumns.get(col).length;
+            if (imColumns.get(col) != null)
+            {
+                size += 8L * imColumns.get(col).length;
+            }
+            if (invalidCells.get(col) != null)
+            {
+                size += invalidCells.get(col).size() / 8;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public long getMappedSize()
+    {
+        return 0;
+    }
+
+    @Override
+    public CalculatedValue.ValueType getValue(int row, int col, CalculatedValue outValue)
+    {
+        if (row < 0 || row >= rows || col < 0 || col >= rowLength[row])
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+        }
+        final BitSet invalid = invalidCells.get(col);
+        if (invalid != null && invalid.get(row))
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+        }
+        final double[] im = imColumns.get(col);
+        if (im != null && im[row] != 0.0)
+        {
+            return outValue.setComplexValue(reColumns.get(col)[row], im[row]);
+        }
+        return outValue.setValue(reColumns.get(col)[row]);
+    }
+
+    /*********************************************************
+     * Scanner
+     *********************************************************/
+
+    private void scan(char c)
+    {
+        if (NumberScanner.isLineEnd(c))
+        {
+            endOfLine();
+        }
+        else if (NumberScanner.isSpace(c))
+        {
+            if (!scanner.isEmpty())
+            {
+                endOfCell();
+                afterToken = true;
+            }
+        }
+        else if (NumberScanner.isComma(c))
+        {
+            // the comma closes the cell of the previous token, or an empty cell if there is no such token
+            if (!scanner.isEmpty() || !afterToken)
+            {
+                endOfCell();
+            }
+            afterToken = false;
+            afterComma = true;
+        }
+        else
+        {
+            scanner.append(c);
+            afterToken = false;
+            afterComma = false;
+        }
+    }
+
+    private void endOfLine()
+    {
+        if (!scanner.isEmpty() || afterComma)
+        {
+            endOfCell();
+        }
+        afterToken = false;
+        afterComma = false;
+        if (column > 0)
+        {
+            rowLength[rows++] = column;
+            column = 0;
+        }
+    }
+
+    private void endOfCell()
+    {
+        if (column == 0)
+        {
+            ensureRow();
+        }
+        if (column == reColumns.size())
+        {
+            reColumns.add(new double[rowLength.length]);
+            imColumns.add(null);
+            invalidCells.add(null);
+        }
+        final boolean isValid = scanner.scan();
+        reColumns.get(column)[rows] = scanner.getReal();
+        if (scanner.getImaginary() != 0.0)
+        {
+            if (imColumns.get(column) == null)
+            {
+                imColumns.set(column, new double[rowLength.length]);
+            }
+            imColumns.get(column)[rows] = scanner.getImaginary();
+        }
+        if (!isValid)
+        {
+            if (invalidCells.get(column) == null)
+            {
+                invalidCells.set(column, new BitSet());
+            }
+            invalidCells.get(column).set(rows);
+        }
+        column++;
+        scanner.reset();
+    }
+
+    private void ensureRow()
+    {
+        if (rows < rowLength.length)
+        {
+            return;
+        }
+        final int capacity = 2 * rowLength.length;
+        rowLength = Arrays.copyOf(rowLength, capacity);
+        resize(reColumns, capacity);
+        resize(imColumns, capacity);
+    }
+
+    private void trim()
+    {
+        rowLength = Arrays.copyOf(rowLength, rows);
+        resize(reColumns, rows);
+        resize(imColumns, rows);
+    }
+
+    private static void resize(ArrayList<double[]> columns, int capacity)
+    {
+        for (int i = 0; i < columns.size(); i++)
+        {
+            if (columns.get(i) != null)
+            {
+                columns.set(i, Arrays.copyOf(columns.get(i), capacity));
+            }
+        }
+    }
+}
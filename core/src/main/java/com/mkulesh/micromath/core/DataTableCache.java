@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of the parsed data files shared between the calculations. An entry is identified by the resolved file name
+ * and is only used if the stamp of the file (its size and the time of the last modification) is not changed. The
+ * least recently used entries are removed if the total size of the cached tables exceeds the memory budget.
+ *
+ * A memory-mapped table occupies almost no heap, but it keeps its file mapped into the address space of the process
+ * as long as it is cached. Therefore, the mapped bytes are counted separately and limited by the mapping budget.
+ */
+public class DataTableCache
+{
+    private static class Entry
+    {
+        final String stamp;
+        final DataTableIf table;
+        final long memorySize, mappedSize;
+
+        Entry(String stamp, DataTableIf table)
+        {
+            this.stamp = stamp;
+            this.table = table;
+            this.memorySize = table.getMemorySize();
+            this.mappedSize = table.getMappedSize();
+        }
+    }
+
+    private final long memoryBudget, mappingBudget;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long memorySize = 0, mappedSize = 0;
+
+    public DataTableCache(long memoryBudget, long mappingBudget)
+    {
+        this.memoryBudget = memoryBudget;
+        this.mappingBudget = mappingBudget;
+    }
+
+    /**
+     * Procedure returns the cached table for the given file, or null if the file is not cached or its stamp is
+     * changed
+     */
+    public synchronized DataTableIf get(String name, String stamp)
+    {
+        final Entry e = entries.get(name);
+        if (e == null)
+        {
+            return null;
+        }
+        if (!e.stamp.equals(stamp))
+        {
+            remove(name);
+            return null;
+        }
+        return e.table;
+    }
+
+    /**
+     * Procedure puts the table of the given file into the cache. A table that exceeds the memory or the mapping
+     * budget alone is not cached
+     */
+    public synchronized void put(String name, String stamp, DataTableIf table)
+    {
+        remove(name);
+        final Entry e = new Entry(stamp, table);
+        if (e.memorySize > memoryBudget || e.mappedSize > mappingBudget)
+        {
+            return;
+        }
+        entries.put(name, e);
+        memorySize += e.memorySize;
+        mappedSize += e.mappedSize;
+        final Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while ((memorySize > memoryBudget || mappedSize > mappingBudget) && it.hasNext())
+        {
+            final Entry oldest = it.next().getValue();
+            memorySize -= oldest.memorySize;
+            mappedSize -= oldest.mappedSize;
+            it.remove();
+        }
+    }
+
+    /**
+     * Procedure removes all cached tables
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+        memorySize = 0;
+        mappedSize = 0;
+    }
+
+    /**
+     * Procedure returns the total size of the cached tables in bytes
+     */
+    public synchronized long getMemorySize()
+    {
+        return memorySize;
+    }
+
+    /**
+     * Procedure returns the total number of bytes mapped by the cached tables
+     */
+    public synchronized long getMappedSize()
+    {
+        return mappedSize;
+    }
+
+    private void remove(String name)
+    {
+        final Entry e = entries.remove(name);
+        if (e != null)
+        {
+            memorySize -= e.memorySize;
+            mappedSize -= e.mappedSize;
+        }
+    }
+}
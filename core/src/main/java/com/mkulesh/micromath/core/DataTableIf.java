@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.core;
+
+import com.mkulesh.micromath.math.CalculatedValue;
+
+/**
+ * Interface of a table of numbers read from a data file: each non-empty line is a row, the numbers within a line
+ * are separated by white spaces or by commas
+ */
+public interface DataTableIf
+{
+    /**
+     * Procedure returns the number of rows
+     */
+    int getRows();
+
+    /**
+     * Procedure returns the number of values in the given row
+     */
+    int getRowLength(int row);
+
+    /**
+     * Procedure returns the value of the given cell. A missing cell or a cell that does not contain a number is
+     * not a number
+     */
+    CalculatedValue.ValueType getValue(int row, int col, CalculatedValue outValue);
+
+    /**
+     * Procedure returns the estimated number of bytes of the heap occupied by this table
+     */
+    long getMemorySize();
+
+    /**
+     * Procedure returns the number of bytes of the file that are mapped into the address space by this table, or 0
+     * if the table is not memory-mapped
+     */
+    long getMappedSize();
+}
@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.core;
+
+import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CalculationThreadIf;
+import com.mkulesh.micromath.math.CancelException;
+import com.mkulesh.micromath.math.EquationArrayResult;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.Locale;
+
+/**
+ * Writer that streams the values of an array into a file. The values are converted one by one into a fixed-size
+ * buffer that is passed to the channel each time it is full, so the memory used does not depend on the array size.
+ *
+ * In a text file, the first index of the array defines the line and the remaining indices define the column. The
+ * values are separated by a comma in *.csv files and by a tab otherwise; both kinds of files can be read back by
+ * DataTable and MappedDataTable.
+ *
+ * The binary formats are the ones read by BinaryDataTable: a NumPy file keeps the shape of a one- or two-dimensional
+ * array and contains float64 values, or complex128 values if the array contains a complex number. Like in a text
+ * file, an array of three dimensions is written as a matrix whose columns are given by the remaining indices. The
+ * raw files contain real values only: a complex or invalid element is written as NaN.
+ */
+public class DataTableWriter
+{
+    public static final String CSV_EXTENSION = ".csv";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_TEXT_LENGTH = 64;
+    private static final int NPY_ALIGNMENT = 64;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final StringBuilder text = new StringBuilder(MAX_TEXT_LENGTH);
+    private final CalculationThreadIf thread;
+
+    public DataTableWriter(WritableByteChannel channel, CalculationThreadIf thread)
+    {
+        this.channel = channel;
+        this.thread = thread;
+        buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Procedure returns the column separator for a text file with the given name
+     */
+    public static char getSeparator(String fileName)
+    {
+        final boolean isCsv = fileName != null
+                && fileName.trim().toLowerCase(Locale.ENGLISH).endsWith(CSV_EXTENSION);
+        return isCsv ? ',' : '\t';
+    }
+
+    /**
+     * Procedure writes the given array as a text table and returns the number of written values
+     */
+    public long writeText(EquationArrayResult array, char separator) throws IOException, CancelException
+    {
+        final CalculatedValue[] values = getValues(array);
+        final int columns = getColumns(array);
+        for (int i = 0; i < values.length; i++)
+        {
+            if (i % columns == 0)
+            {
+                checkCancelation();
+            }
+            formatValue(values[i]);
+            ensureSpace(text.length() + 1);
+            for (int k = 0; k < text.length(); k++)
+            {
+                buffer.put((byte) text.charAt(k));
+            }
+            buffer.put((byte) ((i + 1) % columns == 0 ? '\n' : separator));
+        }
+        flush();
+        return values.length;
+    }
+
+    /**
+     * Procedure writes the given array in the given binary format and returns the number of written values
+     */
+    public long writeBinary(EquationArrayResult array, BinaryDataTable.Format format)
+            throws IOException, CancelException
+    {
+        final CalculatedValue[] values = getValues(array);
+        final int columns = getColumns(array);
+        final boolean isComplex = format == BinaryDataTable.Format.NPY && containsComplex(values);
+        switch (format)
+        {
+        case NPY:
+            final int[] dimensions = array.getDimensions();
+            writeNpyHeader((dimensions.length <= 2) ? dimensions : new int[]{ values.length / columns, columns },
+                    isComplex);
+            break;
+        case RAW_FLOAT64:
+        case RAW_FLOAT32:
+            ensureSpace(8);
+            buffer.putInt(values.length / columns);
+            buffer.putInt(columns);
+            break;
+        }
+        for (int i = 0; i < values.length; i++)
+        {
+            if (i % columns == 0)
+            {
+                checkCancelation();
+            }
+            final CalculatedValue v = values[i];
+            ensureSpace(16);
+            if (isComplex)
+            {
+                buffer.putDouble(v.isNaN() ? Double.NaN : v.getReal());
+                buffer.putDouble(v.isNaN() ? Double.NaN : v.getImaginary());
+            }
+            else if (format == BinaryDataTable.Format.RAW_FLOAT32)
+            {
+                buffer.putFloat(v.isReal() ? (float) v.getReal() : Float.NaN);
+            }
+            else
+            {
+                buffer.putDouble(v.isReal() ? v.getReal() : Double.NaN);
+            }
+        }
+        flush();
+        return values.length;
+    }
+
+    /**
+     * Procedure passes the buffered bytes to the channel
+     */
+    public void flush() throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void ensureSpace(int size) throws IOException
+    {
+        if (buffer.remaining() < size)
+        {
+            flush();
+        }
+    }
+
+    private void checkCancelation() throws CancelException
+    {
+        if (thread != null)
+        {
+            thread.checkCancelation();
+        }
+    }
+
+    private static CalculatedValue[] getValues(EquationArrayResult array) throws IOException
+    {
+        if (array == null || array.getRawValues() == null || array.getDimNumber() < 1)
+        {
+            throw new IOException("array is not calculated");
+        }
+        return array.getRawValues();
+    }
+
+    /**
+     * Procedure returns the number of values that belong to the same first index
+     */
+    private static int getColumns(EquationArrayResult array)
+    {
+        final int[] dimensions = array.getDimensions();
+        int columns = 1;
+        for (int dim = 1; dim < dimensions.length; dim++)
+        {
+            columns *= dimensions[dim];
+        }
+        return Math.max(1, columns);
+    }
+
+    private static boolean containsComplex(CalculatedValue[] values)
+    {
+        for (CalculatedValue v : values)
+        {
+            if (v.isComplex())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Procedure converts the given value into the text buffer in the form that is accepted by NumberScanner
+     */
+    private void formatValue(CalculatedValue v)
+    {
+        text.setLength(0);
+        if (v.isNaN())
+        {
+            text.append(Double.NaN);
+            return;
+        }
+        text.append(v.getReal());
+        if (v.isComplex())
+        {
+            final double im = v.getImaginary();
+            text.append(im < 0.0 ? '-' : '+').append(Math.abs(im)).append('i');
+        }
+    }
+
+    /**
+     * Procedure writes the header of a NumPy file of version 1.0 with the given shape
+     */
+    private void writeNpyHeader(int[] dimensions, boolean isComplex) throws IOException
+    {
+        final StringBuilder header = new StringBuilder();
+        header.append("{'descr': '").append(isComplex ? "<c16" : "<f8").append("', 'fortran_order': False, ");
+        header.append("'shape': (");
+        for (int dim = 0; dim < dimensions.length; dim++)
+        {
+            header.append(dim > 0 ? ", " : "").append(dimensions[dim]);
+        }
+        header.append(dimensions.length == 1 ? ",), }" : "), }");
+        // the magic string, the version and the header length take 10 bytes; the header ends with a line feed
+        while ((10 + header.length() + 1) % NPY_ALIGNMENT != 0)
+        {
+            header.append(' ');
+        }
+        header.append('\n');
+
+        ensureSpace(10 + header.length());
+        buffer.put((byte) 0x93).put((byte) 'N').put((byte) 'U').put((byte) 'M').put((byte) 'P').put((byte) 'Y');
+        buffer.put((byte) 1).put((byte) 0);
+        buffer.putShort((short) header.length());
+        for (int k = 0; k < header.length(); k++)
+        {
+            buffer.put((byte) header.charAt(k));
+        }
+    }
+}
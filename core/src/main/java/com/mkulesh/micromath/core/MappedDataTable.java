@@ -0,0 +1,313 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.core;
+
+import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CalculationThreadIf;
+import com.mkulesh.micromath.math.CancelException;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Table of numbers that is not loaded into the heap: the file is memory-mapped, and only the requested cells are
+ * parsed on each access.
+ *
+ * Before the first access, the file is scanned once in order to build a compact line index that holds the offset of
+ * each 64th row. A row is found by the index and at most 63 row skips; the last accessed row is remembered, so that
+ * the sequential access does not need any skip. The characters are taken as single bytes, which is sufficient for
+ * numbers in ASCII or UTF-8 files. The cells are separated like in DataTable: by spaces or by commas.
+ */
+public class MappedDataTable implements DataTableIf
+{
+    // the file is mapped by segments since a single mapping is limited to 2 GB
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    // the offset of each (1 << INDEX_STEP_BITS)-th row is stored in the line index
+    private static final int INDEX_STEP_BITS = 6;
+    private static final int INDEX_STEP_MASK = (1 << INDEX_STEP_BITS) - 1;
+
+    // the cancellation is checked once per (1 << CANCEL_CHECK_BITS) scanned bytes
+    private static final int CANCEL_CHECK_BITS = 16;
+    private static final int CANCEL_CHECK_MASK = (1 << CANCEL_CHECK_BITS) - 1;
+
+    private final MappedByteBuffer[] segments;
+    private final long size;
+    private long[] lineIndex = null;
+    private int rows = 0;
+    private int cursorRow = -1;
+    private long cursorOffset = 0;
+    private final NumberScanner scanner = new NumberScanner();
+
+    // state of the cell iteration within a row
+    private long cellPosition = 0, cellStart = 0, cellEnd = 0;
+    private boolean afterComma = false;
+
+    private MappedDataTable(MappedByteBuffer[] segments, long size)
+    {
+        this.segments = segments;
+        this.size = size;
+    }
+
+    /**
+     * Procedure maps the file given by its channel. The channel can be closed after this call
+     */
+    public static MappedDataTable map(FileChannel channel) throws IOException
+    {
+        final long size = channel.size();
+        final MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + SEGMENT_MASK) >> SEGMENT_BITS)];
+        for (int i = 0; i < segments.length; i++)
+        {
+            final long position = (long) i << SEGMENT_BITS;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_MASK + 1,
+                    size - position));
+        }
+        return new MappedDataTable(segments, size);
+    }
+
+    @Override
+    public synchronized int getRows()
+    {
+        ensureLineIndex();
+        return rows;
+    }
+
+    @Override
+    public synchronized int getRowLength(int row)
+    {
+        ensureLineIndex();
+        if (row < 0 || row >= rows)
+        {
+            return 0;
+        }
+        int length = 0;
+        startCells(getRowOffset(row));
+        while (nextCell())
+        {
+            length++;
+        }
+        return length;
+    }
+
+    @Override
+    public synchronized CalculatedValue.ValueType getValue(int row, int col, CalculatedValue outValue)
+    {
+        ensureLineIndex();
+        if (row < 0 || row >= rows || col < 0)
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+        }
+        startCells(getRowOffset(row));
+        for (int i = 0; i <= col; i++)
+        {
+            if (!nextCell())
+            {
+                // the row has less values than requested
+                return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+            }
+        }
+        scanner.reset();
+        for (long p = cellStart; p < cellEnd; p++)
+        {
+            scanner.append((char) get(p));
+        }
+        if (!scanner.scan())
+        {
+            return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+        }
+        if (scanner.getImaginary() != 0.0)
+        {
+            return outValue.setComplexValue(scanner.getReal(), scanner.getImaginary());
+        }
+        return outValue.setValue(scanner.getReal());
+    }
+
+    @Override
+    public synchronized long getMemorySize()
+    {
+        return (lineIndex == null) ? 0 : 8L * lineIndex.length;
+    }
+
+    @Override
+    public long getMappedSize()
+    {
+        return size;
+    }
+
+    /**
+     * Procedure builds the line index if it is not yet built. The scan of a large file takes a while, so the given
+     * calculation thread is polled for cancellation; if the scan is cancelled, the index is not built
+     */
+    public synchronized void buildLineIndex(CalculationThreadIf thread) throws CancelException
+    {
+        if (lineIndex != null)
+        {
+            return;
+        }
+        long[] index = new long[64];
+        int n = 0;
+        boolean inLine = false;
+        for (int s = 0; s < segments.length; s++)
+        {
+            final MappedByteBuffer segment = segments[s];
+            final long base = (long) s << SEGMENT_BITS;
+            final int limit = segment.limit();
+            for (int i = 0; i < limit; i++)
+            {
+                if (thread != null && (i & CANCEL_CHECK_MASK) == 0)
+                {
+                    thread.checkCancelation();
+                }
+                final int c = segment.get(i) & 0xFF;
+                if (NumberScanner.isLineEnd(c))
+                {
+                    inLine = false;
+                }
+                else if (!inLine && !NumberScanner.isSpace(c))
+                {
+                    inLine = true;
+                    if ((n & INDEX_STEP_MASK) == 0)
+                    {
+                        final int idx = n >> INDEX_STEP_BITS;
+                        if (idx == index.length)
+                        {
+                            index = Arrays.copyOf(index, 2 * index.length);
+                        }
+                        index[idx] = base + i;
+                    }
+                    n++;
+                }
+            }
+        }
+        rows = n;
+        lineIndex = Arrays.copyOf(index, (n + INDEX_STEP_MASK) >> INDEX_STEP_BITS);
+    }
+
+    /*********************************************************
+     * Line index
+     *********************************************************/
+
+    /**
+     * Procedure returns the byte at the given position, or -1 behind the end of file
+     */
+    private int get(long p)
+    {
+        return (p < size) ? (segments[(int) (p >> SEGMENT_BITS)].get((int) (p & SEGMENT_MASK)) & 0xFF) : -1;
+    }
+
+    /**
+     * Procedure builds the line index without calculation thread if it is not yet built
+     */
+    private void ensureLineIndex()
+    {
+        if (lineIndex != null)
+        {
+            return;
+        }
+        try
+        {
+            buildLineIndex(null);
+        }
+        catch (CancelException e)
+        {
+            // nothing to do: the scan is not cancelled without calculation thread
+        }
+    }
+
+    /**
+     * Procedure returns the offset of the first token of the given row
+     */
+    private long getRowOffset(int row)
+    {
+        final int indexedRow = row & ~INDEX_STEP_MASK;
+        if (cursorRow < indexedRow || cursorRow > row)
+        {
+            cursorRow = indexedRow;
+            cursorOffset = lineIndex[row >> INDEX_STEP_BITS];
+        }
+        while (cursorRow < row)
+        {
+            // skip the rest of the current line and the following empty lines
+            long p = cursorOffset;
+            while (p < size && !NumberScanner.isLineEnd(get(p)))
+            {
+                p++;
+            }
+            int c = get(p);
+            while (p < size && (NumberScanner.isLineEnd(c) || NumberScanner.isSpace(c)))
+            {
+                c = get(++p);
+            }
+            cursorOffset = p;
+            cursorRow++;
+        }
+        return cursorOffset;
+    }
+
+    /*********************************************************
+     * Cells of a row
+     *********************************************************/
+
+    private void startCells(long rowOffset)
+    {
+        cellPosition = rowOffset;
+        afterComma = false;
+    }
+
+    /**
+     * Procedure finds the next cell of the current row and sets its bounds. Returns false if the row has no more cells
+     */
+    private boolean nextCell()
+    {
+        long p = skipSpaces(cellPosition);
+        int c = get(p);
+        if (p >= size || NumberScanner.isLineEnd(c))
+        {
+            // a comma at the end of the line gives an empty last cell
+            cellStart = p;
+            cellEnd = p;
+            cellPosition = p;
+            final boolean isLastCell = afterComma;
+            afterComma = false;
+            return isLastCell;
+        }
+        cellStart = p;
+        while (p < size && !NumberScanner.isSpace(c) && !NumberScanner.isLineEnd(c) && !NumberScanner.isComma(c))
+        {
+            c = get(++p);
+        }
+        cellEnd = p;
+        p = skipSpaces(p);
+        afterComma = NumberScanner.isComma(get(p));
+        cellPosition = afterComma ? p + 1 : p;
+        return true;
+    }
+
+    private long skipSpaces(long p)
+    {
+        while (p < size && NumberScanner.isSpace(get(p)))
+        {
+            p++;
+        }
+        return p;
+    }
+}
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.core;
+
+import org.apache.commons.math3.complex.Complex;
+
+import java.util.Arrays;
+
+/**
+ * Scanner that converts a token of a data file into a real or complex number. The token is collected character by
+ * character into a reused buffer.
+ *
+ * A decimal number having at most 18 significant digits and a decimal exponent within [-22, 22] is converted
+ * without any allocation exactly like Double.parseDouble does, since both the mantissa and the power of ten are
+ * exact doubles. All other tokens are converted by Double.parseDouble and, if it fails, by
+ * TextParser.complexValueOf
+ */
+public class NumberScanner
+{
+    private static final int MAX_FAST_DIGITS = 18;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    private char[] token = new char[64];
+    private int tokenLength = 0;
+    private double re = 0.0, im = 0.0;
+
+    /**
+     * Procedure returns whether the given character separates the tokens within a line
+     */
+    public static boolean isSpace(int c)
+    {
+        return c == ' ' || c == '\t' || c == '\f' || c == '\u000B';
+    }
+
+    /**
+     * Procedure returns whether the given character terminates a cell of a CSV file. Unlike a space, a comma that
+     * follows another comma gives an empty cell
+     */
+    public static boolean isComma(int c)
+    {
+        return c == ',';
+    }
+
+    /**
+     * Procedure returns whether the given character terminates a line
+     */
+    public static boolean isLineEnd(int c)
+    {
+        return c == '\n' || c == '\r';
+    }
+
+    /**
+     * Procedure starts a new token
+     */
+    public void reset()
+    {
+        tokenLength = 0;
+    }
+
+    /**
+     * Procedure appends a character to the current token
+     */
+    public void append(char c)
+    {
+        if (tokenLength == token.length)
+        {
+            token = Arrays.copyOf(token, 2 * token.length);
+        }
+        token[tokenLength++] = c;
+    }
+
+    public boolean isEmpty()
+    {
+        return tokenLength == 0;
+    }
+
+    public double getReal()
+    {
+        return re;
+    }
+
+    public double getImaginary()
+    {
+        return im;
+    }
+
+    /**
+     * Procedure converts the current token into the real and imaginary parts. Returns false if the token is not a
+     * number: in this case, the real part is NaN
+     */
+    public boolean scan()
+    {
+        im = 0.0;
+        if (scanDecimal())
+        {
+            return true;
+        }
+        final String text = new String(token, 0, tokenLength);
+        try
+        {
+            re = Double.parseDouble(text);
+            return true;
+        }
+        catch (NumberFormatException ex)
+        {
+            // nothing to do: we will try to convert it to complex
+        }
+        final Complex cmplValue = TextParser.complexValueOf(text);
+        if (cmplValue != null)
+        {
+            re = cmplValue.getReal();
+            im = cmplValue.getImaginary();
+            return true;
+        }
+        re = Double.NaN;
+        return false;
+    }
+
+    /**
+     * Procedure scans a decimal number [+-]digits[.digits][(e|E)[+-]digits] into the real part. Returns false if
+     * the token has another format or can not be converted exactly
+     */
+    private boolean scanDecimal()
+    {
+        if (tokenLength == 0)
+        {
+            return false;
+        }
+        int i = 0;
+        boolean negative = false;
+        if (token[i] == '+' || token[i] == '-')
+        {
+            negative = token[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int significantDigits = 0, mantissaDigits = 0, exponent = 0;
+        boolean dot = false;
+        for (; i < tokenLength; i++)
+        {
+            final char c = token[i];
+            if (c >= '0' && c <= '9')
+            {
+                mantissaDigits++;
+                if (mantissa != 0 || c != '0')
+                {
+                    if (++significantDigits > MAX_FAST_DIGITS)
+                    {
+                        return false;
+                    }
+                    mantissa = 10 * mantissa + (c - '0');
+                }
+                if (dot)
+                {
+                    exponent--;
+                }
+            }
+            else if (c == '.' && !dot)
+            {
+                dot = true;
+            }
+            else
+            {
+                break;
+            }
+        }
+        if (mantissaDigits == 0)
+        {
+            return false;
+        }
+        if (i < tokenLength)
+        {
+            if (token[i] != 'e' && token[i] != 'E')
+            {
+                return false;
+            }
+            i++;
+            boolean negativeExp = false;
+            if (i < tokenLength && (token[i] == '+' || token[i] == '-'))
+            {
+                negativeExp = token[i] == '-';
+                i++;
+            }
+            if (i == tokenLength)
+            {
+                return false;
+            }
+            int exp = 0;
+            for (; i < tokenLength; i++)
+            {
+                final char c = token[i];
+                if (c < '0' || c > '9' || exp > 1000)
+                {
+                    return false;
+                }
+                exp = 10 * exp + (c - '0');
+            }
+            exponent += negativeExp ? -exp : exp;
+        }
+        double value;
+        if (mantissa == 0)
+        {
+            value = 0.0;
+        }
+        else if (mantissa > MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22)
+        {
+            return false;
+        }
+        else if (exponent >= 0)
+        {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        }
+        else
+        {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        }
+        re = negative ? -value : value;
+        return true;
+    }
+}
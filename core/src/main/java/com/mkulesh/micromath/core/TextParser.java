@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.core;
+
+import com.mkulesh.micromath.math.CalculatedValue;
+
+import org.apache.commons.math3.complex.Complex;
+
+import java.util.ArrayList;
+
+/**
+ * Parser of the text content of a term: a number, a constant, a name or a name with arguments given in the
+ * function brackets "f(x, y)" or in the array brackets "a[i, j]"
+ */
+public class TextParser
+{
+    public static final String CONST_NAN = CalculatedValue.CONST_NAN;
+    public static final String CONST_INF = CalculatedValue.CONST_INF;
+    public static final String CONST_E = "e";
+    public static final String CONST_PI1 = "π";
+    public static final String CONST_PI2 = "pi";
+    public static final String IMAGINARY_UNIT = "i";
+    public static final String POSITIVE_SIGN = "+";
+    public static final String NEGATIVE_SIGN = "-";
+
+    private static final String[] START_BRACKETS = { "(", "[" };
+    private static final String[] END_BRACKETS = { ")", "]" };
+    private static final int ARRAY_BRACKETS = 1;
+
+    private CalculatedValue value = null;
+    private String name = null;
+    private ArrayList<String> arguments = null;
+    private double sign = 1.0;
+    private boolean isArray = false;
+    private String error = null;
+
+    public TextParser()
+    {
+        // empty
+    }
+
+    public CalculatedValue getValue()
+    {
+        return value;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public ArrayList<String> getArguments()
+    {
+        return arguments;
+    }
+
+    public double getSign()
+    {
+        return sign;
+    }
+
+    public boolean isArray()
+    {
+        return isArray;
+    }
+
+    public String getError()
+    {
+        return error;
+    }
+
+    /**
+     * Procedure parses the given text. If the text is a number or a constant, its value is set. Otherwise, the name
+     * and the optional arguments are set. The infinity is only accepted if it is enabled, like in the loop
+     * boundaries. Returns false if the text can not be parsed
+     */
+    public boolean parse(String inText, boolean infinityEnabled)
+    {
+        value = null;
+        name = null;
+        arguments = null;
+        sign = 1.0;
+        isArray = false;
+        error = null;
+        if (inText == null || inText.trim().length() == 0)
+        {
+            return setError("empty term");
+        }
+
+        String text = inText.trim();
+
+        // check for infinity: it is only allowed in the fields that support it, like loop boundaries
+        if (infinityEnabled)
+        {
+            if (CONST_INF.equals(text) || (POSITIVE_SIGN + CONST_INF).equals(text))
+            {
+                value = new CalculatedValue(CalculatedValue.ValueType.REAL, Double.POSITIVE_INFINITY, 0.0);
+                return true;
+            }
+            else if ((NEGATIVE_SIGN + CONST_INF).equals(text))
+            {
+                value = new CalculatedValue(CalculatedValue.ValueType.REAL, Double.NEGATIVE_INFINITY, 0.0);
+                return true;
+            }
+        }
+
+        // check for forbidden content
+        if (CONST_NAN.equals(text) || CONST_INF.equals(text))
+        {
+            return setError("NaN or infinity is not allowed here");
+        }
+
+        // check if is a valid double value
+        try
+        {
+            value = new CalculatedValue(CalculatedValue.ValueType.REAL, Double.parseDouble(text), 0.0);
+            return true;
+        }
+        catch (Exception ex)
+        {
+            value = null;
+            // nothing to do: we will try to convert it to the function name
+        }
+
+        // check if is a valid complex value
+        final Complex cmplValue = complexValueOf(text);
+        if (cmplValue != null)
+        {
+            if (cmplValue.getImaginary() != 0.0)
+            {
+                value = new CalculatedValue(CalculatedValue.ValueType.COMPLEX, cmplValue.getReal(),
+                        cmplValue.getImaginary());
+            }
+            else
+            {
+                value = new CalculatedValue(CalculatedValue.ValueType.REAL, cmplValue.getReal(), 0.0);
+            }
+            return true;
+        }
+
+        // check for the sign
+        if (text.startsWith(NEGATIVE_SIGN))
+        {
+            sign = -1.0;
+            text = text.substring(1).trim();
+        }
+
+        // check if it is a constant
+        if (CONST_E.equals(text))
+        {
+            value = new CalculatedValue(CalculatedValue.ValueType.REAL, sign * Math.E, 0.0);
+            sign = +1.0;
+            return true;
+        }
+        else if (CONST_PI1.equals(text) || CONST_PI2.equals(text))
+        {
+            value = new CalculatedValue(CalculatedValue.ValueType.REAL, sign * Math.PI, 0.0);
+            sign = +1.0;
+            return true;
+        }
+
+        return parseBrackets(text);
+    }
+
+    /**
+     * Procedure parses a name with the optional arguments given in the function or array brackets
+     */
+    private boolean parseBrackets(String text)
+    {
+        int bracketsIndex = -1;
+        for (int i = 0; i < START_BRACKETS.length; i++)
+        {
+            final int lbPosition = text.indexOf(START_BRACKETS[i]);
+            final int rbPosition = text.indexOf(END_BRACKETS[i]);
+            if (lbPosition < 0 && rbPosition < 0)
+            {
+                continue;
+            }
+            if (bracketsIndex >= 0 || lbPosition > rbPosition)
+            {
+                return setError("invalid brackets order");
+            }
+            if (lbPosition < 0)
+            {
+                return setError("brackets are not completed");
+            }
+            name = text.substring(0, lbPosition).trim();
+            arguments = new ArrayList<String>();
+            for (String s : text.substring(lbPosition + 1, rbPosition).split(",", -1))
+            {
+                final String arg = s.trim();
+                if (!isAlphaOrDigit(arg))
+                {
+                    return setError("invalid argument: " + text);
+                }
+                arguments.add(arg);
+            }
+            bracketsIndex = i;
+        }
+        if (bracketsIndex < 0)
+        {
+            name = text;
+        }
+        if (!isAlphaOrDigit(name))
+        {
+            return setError("invalid name: " + text);
+        }
+        isArray = bracketsIndex == ARRAY_BRACKETS;
+        return true;
+    }
+
+    private boolean setError(String error)
+    {
+        this.error = error;
+        value = null;
+        name = null;
+        arguments = null;
+        isArray = false;
+        return false;
+    }
+
+    private static boolean isAlphaOrDigit(String name)
+    {
+        if (name == null || name.length() == 0)
+        {
+            return false;
+        }
+        for (char c : name.toCharArray())
+        {
+            if (!Character.isLetterOrDigit(c))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static Complex complexValueOf(String text)
+    {
+        // text shall contain imaginary unit
+        if (text == null || !text.contains(IMAGINARY_UNIT))
+        {
+            return null;
+        }
+
+        // imaginary unit shall be the last character
+        final int unitPos = text.indexOf(IMAGINARY_UNIT);
+        if (unitPos != text.length() - 1)
+        {
+            return null;
+        }
+
+        // search for +/- sign before imaginary unit; the sign of an exponent does not split the parts
+        int signPos = 0;
+        for (int i = unitPos - 1; i > 0; i--)
+        {
+            final char prev = text.charAt(i - 1);
+            if ((text.startsWith(POSITIVE_SIGN, i) || text.startsWith(NEGATIVE_SIGN, i)) && prev != 'e' && prev != 'E')
+            {
+                signPos = i;
+                break;
+            }
+        }
+
+        // split real and imaginary part
+        String rePart = "", imPart = "";
+        try
+        {
+            rePart = (signPos > 0) ? text.substring(0, signPos) : "0.0";
+            imPart = (unitPos > signPos) ? text.substring(signPos, unitPos) : "1.0";
+            if (imPart.equals(POSITIVE_SIGN) || imPart.equals(NEGATIVE_SIGN))
+            {
+                imPart += "1.0";
+            }
+        }
+        catch (IndexOutOfBoundsException e)
+        {
+            return null;
+        }
+
+        // convert both parts
+        try
+        {
+            return new Complex(Double.valueOf(rePart), Double.valueOf(imPart));
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+}
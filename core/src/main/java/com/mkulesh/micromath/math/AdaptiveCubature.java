@@ -0,0 +1,306 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.math;
+
+
+import org.apache.commons.math3.util.FastMath;
+
+import java.util.PriorityQueue;
+
+/**
+ * Class that implements a globally adaptive multidimensional integration over a hyper-rectangle. Each sub-region is
+ * integrated by the Genz-Malik rule of degree 7 with an embedded rule of degree 5 that is used as an error estimate.
+ * The sub-region with the largest error is bisected along the axis with the largest fourth divided difference until
+ * the total error is within the requested accuracy. For reference, see A.C. Genz and A.A. Malik, "An adaptive
+ * algorithm for numerical integration over an n-dimensional rectangular region", J. Comput. Appl. Math. 6 (1980).
+ */
+public class AdaptiveCubature
+{
+    /**
+     * Interface of the function to be integrated
+     */
+    public interface Integrand
+    {
+        void getValue(double[] x, CalculatedValue outValue) throws CancelException;
+    }
+
+    private static final double LAMBDA2 = FastMath.sqrt(9.0 / 70.0);
+    private static final double LAMBDA4 = FastMath.sqrt(9.0 / 10.0);
+    private static final double LAMBDA5 = FastMath.sqrt(9.0 / 19.0);
+    private static final double RATIO = (LAMBDA2 * LAMBDA2) / (LAMBDA4 * LAMBDA4);
+
+    /**
+     * Class holding a sub-region and its integral estimate
+     */
+    private final class Region implements Comparable<Region>
+    {
+        final double[] center, halfWidth;
+        double re, im, error;
+        int splitAxis;
+
+        Region(double[] center, double[] halfWidth)
+        {
+            this.center = center;
+            this.halfWidth = halfWidth;
+        }
+
+        @Override
+        public int compareTo(Region r)
+        {
+            // the region with the largest error shall be the head of the queue
+            return Double.compare(r.error, error);
+        }
+    }
+
+    private final int dim;
+    private final Integrand integrand;
+    private final double w1, w2, w3, w4, w5, we1, we2, we3, we4;
+    private final double[] x;
+    private final double[] diff;
+    private final CalculatedValue value = new CalculatedValue();
+    private boolean complexDetected = false;
+    private long evaluations = 0;
+    private double re = 0.0, im = 0.0, error = Double.NaN;
+
+    public AdaptiveCubature(int dim, Integrand integrand)
+    {
+        this.dim = dim;
+        this.integrand = integrand;
+        w1 = (12824.0 - 9120.0 * dim + 400.0 * dim * dim) / 19683.0;
+        w2 = 980.0 / 6561.0;
+        w3 = (1820.0 - 400.0 * dim) / 19683.0;
+        w4 = 200.0 / 19683.0;
+        w5 = 6859.0 / 19683.0 / (1 << dim);
+        we1 = (729.0 - 950.0 * dim + 50.0 * dim * dim) / 729.0;
+        we2 = 245.0 / 486.0;
+        we3 = (265.0 - 100.0 * dim) / 1458.0;
+        we4 = 25.0 / 729.0;
+        x = new double[dim];
+        diff = new double[dim];
+    }
+
+    public double getReal()
+    {
+        return re;
+    }
+
+    public double getImaginary()
+    {
+        return im;
+    }
+
+    public double getError()
+    {
+        return error;
+    }
+
+    public long getEvaluations()
+    {
+        return evaluations;
+    }
+
+    public boolean isComplexDetected()
+    {
+        return complexDetected;
+    }
+
+    /**
+     * Procedure integrates the function over the given hyper-rectangle until the estimated error is less than given
+     * absolute or relative accuracy or the number of function evaluations exceeds the given limit. Returns false if
+     * the integrand is not a number in some point or if the accuracy is not reached within the evaluation limit; the
+     * estimated integral and its error are available in both cases.
+     */
+    public boolean integrate(double[] min, double[] max, double accuracy, long maxEvaluations)
+            throws CancelException
+    {
+        evaluations = 0;
+        complexDetected = false;
+        final double[] center = new double[dim];
+        final double[] halfWidth = new double[dim];
+        for (int i = 0; i < dim; i++)
+        {
+            center[i] = 0.5 * (min[i] + max[i]);
+            halfWidth[i] = 0.5 * (max[i] - min[i]);
+        }
+        final PriorityQueue<Region> regions = new PriorityQueue<Region>();
+        final Region initial = new Region(center, halfWidth);
+        if (!evaluate(initial))
+        {
+            return false;
+        }
+        regions.add(initial);
+        re = initial.re;
+        im = initial.im;
+        error = initial.error;
+
+        while (error > FastMath.max(accuracy, accuracy * FastMath.hypot(re, im)) && evaluations < maxEvaluations)
+        {
+            final Region r = regions.poll();
+            final double[] c1 = r.center.clone(), c2 = r.center.clone(), h = r.halfWidth.clone();
+            h[r.splitAxis] *= 0.5;
+            c1[r.splitAxis] -= h[r.splitAxis];
+            c2[r.splitAxis] += h[r.splitAxis];
+            final Region r1 = new Region(c1, h), r2 = new Region(c2, h.clone());
+            if (!evaluate(r1) || !evaluate(r2))
+            {
+                return false;
+            }
+            regions.add(r1);
+            regions.add(r2);
+            re += r1.re + r2.re - r.re;
+            im += r1.im + r2.im - r.im;
+            error += r1.error + r2.error - r.error;
+        }
+
+        // the totals are recalculated once in order to remove the rounding errors of the running totals
+        re = im = error = 0.0;
+        for (Region q : regions)
+        {
+            re += q.re;
+            im += q.im;
+            error += q.error;
+        }
+        return error <= FastMath.max(accuracy, accuracy * FastMath.hypot(re, im));
+    }
+
+    /**
+     * Procedure applies the Genz-Malik rule to the given region
+     */
+    private boolean evaluate(Region r) throws CancelException
+    {
+        double volume = 1.0;
+        for (int i = 0; i < dim; i++)
+        {
+            volume *= 2.0 * r.halfWidth[i];
+        }
+
+        // center point
+        System.arraycopy(r.center, 0, x, 0, dim);
+        if (!calculate())
+        {
+            return false;
+        }
+        final double f1re = value.getReal(), f1im = value.getImaginary();
+
+        // points along the axes
+        double f2re = 0, f2im = 0, f3re = 0, f3im = 0;
+        for (int i = 0; i < dim; i++)
+        {
+            double d2re = 0, d3re = 0;
+            for (int s = -1; s <= 1; s += 2)
+            {
+                x[i] = r.center[i] + s * LAMBDA2 * r.halfWidth[i];
+                if (!calculate())
+                {
+                    return false;
+                }
+                d2re += value.getReal();
+                f2re += value.getReal();
+                f2im += value.getImaginary();
+
+                x[i] = r.center[i] + s * LAMBDA4 * r.halfWidth[i];
+                if (!calculate())
+                {
+                    return false;
+                }
+                d3re += value.getReal();
+                f3re += value.getReal();
+                f3im += value.getImaginary();
+            }
+            x[i] = r.center[i];
+            diff[i] = FastMath.abs(d2re - 2.0 * f1re - RATIO * (d3re - 2.0 * f1re));
+        }
+
+        // points in the planes of two axes
+        double f4re = 0, f4im = 0;
+        for (int i = 0; i < dim - 1; i++)
+        {
+            for (int j = i + 1; j < dim; j++)
+            {
+                for (int si = -1; si <= 1; si += 2)
+                {
+                    for (int sj = -1; sj <= 1; sj += 2)
+                    {
+                        x[i] = r.center[i] + si * LAMBDA4 * r.halfWidth[i];
+                        x[j] = r.center[j] + sj * LAMBDA4 * r.halfWidth[j];
+                        if (!calculate())
+                        {
+                            return false;
+                        }
+                        f4re += value.getReal();
+                        f4im += value.getImaginary();
+                    }
+                }
+                x[i] = r.center[i];
+                x[j] = r.center[j];
+            }
+        }
+
+        // corner points
+        double f5re = 0, f5im = 0;
+        for (int corner = 0; corner < (1 << dim); corner++)
+        {
+            for (int i = 0; i < dim; i++)
+            {
+                final int s = ((corner >> i) & 1) == 0 ? -1 : 1;
+                x[i] = r.center[i] + s * LAMBDA5 * r.halfWidth[i];
+            }
+            if (!calculate())
+            {
+                return false;
+            }
+            f5re += value.getReal();
+            f5im += value.getImaginary();
+        }
+
+        r.re = volume * (w1 * f1re + w2 * f2re + w3 * f3re + w4 * f4re + w5 * f5re);
+        r.im = volume * (w1 * f1im + w2 * f2im + w3 * f3im + w4 * f4im + w5 * f5im);
+        final double e5re = volume * (we1 * f1re + we2 * f2re + we3 * f3re + we4 * f4re);
+        final double e5im = volume * (we1 * f1im + we2 * f2im + we3 * f3im + we4 * f4im);
+        r.error = FastMath.hypot(r.re - e5re, r.im - e5im);
+
+        // the region is bisected along the axis with the largest fourth difference, or the widest one
+        r.splitAxis = 0;
+        for (int i = 1; i < dim; i++)
+        {
+            final double d = diff[i] - diff[r.splitAxis];
+            if (d > 1.0E-10 * diff[r.splitAxis]
+                    || (FastMath.abs(d) <= 1.0E-10 * diff[r.splitAxis] && r.halfWidth[i] > r.halfWidth[r.splitAxis]))
+            {
+                r.splitAxis = i;
+            }
+        }
+        return true;
+    }
+
+    private boolean calculate() throws CancelException
+    {
+        integrand.getValue(x, value);
+        evaluations++;
+        if (value.isNaN())
+        {
+            return false;
+        }
+        if (value.isComplex())
+        {
+            complexDetected = true;
+        }
+        return true;
+    }
+}
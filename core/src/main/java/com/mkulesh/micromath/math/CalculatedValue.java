@@ -18,19 +18,13 @@
  ******************************************************************************/
 package com.mkulesh.micromath.math;
 
-import com.mkulesh.micromath.formula.CalculaterTask;
-import com.mkulesh.micromath.formula.CalculaterTask.CancelException;
-import com.mkulesh.micromath.formula.TermField;
-import com.mkulesh.micromath.formula.TermParser;
-import com.mkulesh.micromath.properties.DocumentProperties;
-
 import org.apache.commons.math3.complex.Complex;
 import org.apache.commons.math3.util.FastMath;
 
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
-import java.util.List;
+import java.util.Random;
 
 public class CalculatedValue
 {
@@ -56,10 +50,23 @@ public class CalculatedValue
         IM
     }
 
+    public static final String CONST_NAN = "NaN";
+    public static final String CONST_INF = "∞";
+
     public final static CalculatedValue NaN = new CalculatedValue(ValueType.INVALID, Double.NaN, 0.0);
     public final static CalculatedValue ONE = new CalculatedValue(ValueType.REAL, 1.0, 0.0);
     public final static CalculatedValue MINUS_ONE = new CalculatedValue(ValueType.REAL, -1.0, 0.0);
 
+    // Each calculation thread has its own random generator since the shared one of Math.random is synchronized
+    private static final ThreadLocal<Random> RANDOM = new ThreadLocal<Random>()
+    {
+        @Override
+        protected Random initialValue()
+        {
+            return new Random();
+        }
+    };
+
     private ValueType valueType = ValueType.INVALID;
     private double real = Double.NaN;
     private double imaginary = 0.0;
@@ -204,44 +211,44 @@ public class CalculatedValue
         return valueType.toString() + "[" + real + ", " + imaginary + "]";
     }
 
-    public String getResultDescription(DocumentProperties doc)
+    public String getResultDescription(int significantDigits)
     {
         switch (valueType)
         {
         case INVALID:
-            return TermParser.CONST_NAN;
+            return CONST_NAN;
         case REAL:
             if (Double.isNaN(real))
             {
-                return TermParser.CONST_NAN;
+                return CONST_NAN;
             }
-            return formatValue(real, doc, false);
+            return formatValue(real, significantDigits, false);
         case COMPLEX:
             if (Double.isNaN(real) || Double.isNaN(imaginary))
             {
-                return TermParser.CONST_NAN;
+                return CONST_NAN;
             }
-            return formatValue(real, doc, false) + formatValue(imaginary, doc, true) + "i";
+            return formatValue(real, significantDigits, false) + formatValue(imaginary, significantDigits, true) + "i";
         }
         return "";
     }
 
-    private String formatValue(double value, DocumentProperties doc, boolean addPlusSign)
+    private String formatValue(double value, int significantDigits, boolean addPlusSign)
     {
         if (Double.isInfinite(value))
         {
             if (value < 0)
             {
-                return "-" + TermParser.CONST_INF;
+                return "-" + CONST_INF;
             }
             else
             {
-                return addPlusSign ? "+" + TermParser.CONST_INF : TermParser.CONST_INF;
+                return addPlusSign ? "+" + CONST_INF : CONST_INF;
             }
         }
         else
         {
-            final double roundV = roundToNumberOfSignificantDigits(value, doc.significantDigits);
+            final double roundV = roundToNumberOfSignificantDigits(value, significantDigits);
             if (roundV >= 0 && addPlusSign)
             {
                 return "+" + Double.toString(roundV);
@@ -257,15 +264,6 @@ public class CalculatedValue
      * Calculation methods
      *********************************************************/
 
-    public void processRealTerm(CalculaterTask thread, TermField term) throws CancelException
-    {
-        term.getValue(thread, this);
-        if (!isReal())
-        {
-            invalidate(ErrorType.NOT_A_REAL);
-        }
-    }
-
     public ValueType add(CalculatedValue f, CalculatedValue g)
     {
         if (f.isComplex() || g.isComplex())
@@ -341,7 +339,9 @@ public class CalculatedValue
     {
         if (f.isComplex() || g.isComplex())
         {
-            return setComplexValue(f.getComplex().pow(g.getComplex()));
+            // z^w = exp(w * log(z))
+            final double lr = complexAbsLog(f.real, f.imaginary), li = FastMath.atan2(f.imaginary, f.real);
+            return complexExp(lr * g.real - li * g.imaginary, lr * g.imaginary + li * g.real);
         }
         else
         {
@@ -358,7 +358,7 @@ public class CalculatedValue
     {
         if (g.isComplex() || (g.isReal() && g.real < 0))
         {
-            return setComplexValue(g.getComplex().sqrt());
+            return complexSqrt(g.real, g.imaginary);
         }
         else
         {
@@ -370,7 +370,7 @@ public class CalculatedValue
     {
         if (g.isComplex())
         {
-            return setComplexValue(g.getComplex().sin());
+            return complexSin(g.real, g.imaginary);
         }
         else
         {
@@ -382,7 +382,7 @@ public class CalculatedValue
     {
         if (g.isComplex())
         {
-            return setComplexValue(g.getComplex().asin());
+            return complexAsin(g.real, g.imaginary);
         }
         else
         {
@@ -394,7 +394,7 @@ public class CalculatedValue
     {
         if (g.isComplex())
         {
-            return setComplexValue(g.getComplex().sinh());
+            return complexSinh(g.real, g.imaginary);
         }
         else
         {
@@ -406,7 +406,7 @@ public class CalculatedValue
     {
         if (g.isComplex())
         {
-            return setComplexValue(g.getComplex().cos());
+            return complexCos(g.real, g.imaginary);
         }
         else
         {
@@ -418,7 +418,7 @@ public class CalculatedValue
     {
         if (g.isComplex())
         {
-            return setComplexValue(g.getComplex().acos());
+            return complexAcos(g.real, g.imaginary);
         }
         else
         {
@@ -430,7 +430,7 @@ public class CalculatedValue
     {
         if (g.isComplex())
         {
-            return setComplexValue(g.getComplex().cosh());
+            return complexCosh(g.real, g.imaginary);
         }
         else
         {
@@ -442,7 +442,7 @@ public class CalculatedValue
     {
         if (g.isComplex())
         {
-            return setComplexValue(g.getComplex().tan());
+            return complexTan(g.real, g.imaginary);
         }
         else
         {
@@ -454,7 +454,7 @@ public class CalculatedValue
     {
         if (g.isComplex())
         {
-            return setComplexValue(g.getComplex().atan());
+            return complexAtan(g.real, g.imaginary);
         }
         else
         {
@@ -466,7 +466,7 @@ public class CalculatedValue
     {
         if (g.isComplex())
         {
-            return setComplexValue(g.getComplex().tanh());
+            return complexTanh(g.real, g.imaginary);
         }
         else
         {
@@ -478,7 +478,7 @@ public class CalculatedValue
     {
         if (g.isComplex())
         {
-            return setComplexValue(g.getComplex().exp());
+            return complexExp(g.real, g.imaginary);
         }
         else
         {
@@ -490,7 +490,7 @@ public class CalculatedValue
     {
         if (g.isComplex())
         {
-            return setComplexValue(g.getComplex().log());
+            return setComplexValue(complexAbsLog(g.real, g.imaginary), FastMath.atan2(g.imaginary, g.real));
         }
         else
         {
@@ -502,7 +502,9 @@ public class CalculatedValue
     {
         if (g.isComplex())
         {
-            return setComplexValue(g.getComplex().log().divide(FastMath.log(10.0)));
+            final double ln10 = FastMath.log(10.0);
+            return setComplexValue(complexAbsLog(g.real, g.imaginary) / ln10,
+                    FastMath.atan2(g.imaginary, g.real) / ln10);
         }
         else
         {
@@ -538,36 +540,36 @@ public class CalculatedValue
     {
         if (g.isComplex())
         {
-            return setComplexValue(FastMath.random() * g.real, FastMath.random() * g.imaginary);
+            final Random random = RANDOM.get();
+            return setComplexValue(random.nextDouble() * g.real, random.nextDouble() * g.imaginary);
         }
         else
         {
-            return setValue(FastMath.random() * g.real);
+            return setValue(RANDOM.get().nextDouble() * g.real);
         }
     }
 
     public ValueType nthRoot(CalculatedValue g, int n)
     {
-        try
+        if (n <= 0)
         {
-            final List<Complex> roots = g.getComplex().nthRoot(n);
-            for (Complex root : roots)
-            {
-                if (FastMath.abs(root.getImaginary()) < 1E-15)
-                {
-                    return setValue(root.getReal());
-                }
-            }
-            if (!roots.isEmpty())
-            {
-                return setComplexValue(roots.get(0));
-            }
+            return invalidate(ErrorType.NOT_A_NUMBER);
         }
-        catch (Exception ex)
+        // the first real root is preferred, otherwise the principal root is taken
+        final double nthRootOfAbs = FastMath.pow(complexAbs(g.real, g.imaginary), 1.0 / n);
+        final double nthPhi = FastMath.atan2(g.imaginary, g.real) / n;
+        final double slice = 2 * FastMath.PI / n;
+        double innerPart = nthPhi;
+        for (int k = 0; k < n; k++)
         {
-            // nothing to do
+            final double imaginaryPart = nthRootOfAbs * FastMath.sin(innerPart);
+            if (FastMath.abs(imaginaryPart) < 1E-15)
+            {
+                return setValue(nthRootOfAbs * FastMath.cos(innerPart));
+            }
+            innerPart += slice;
         }
-        return invalidate(ErrorType.NOT_A_NUMBER);
+        return setComplexValue(nthRootOfAbs * FastMath.cos(nthPhi), nthRootOfAbs * FastMath.sin(nthPhi));
     }
 
     public ValueType conj(CalculatedValue g)
@@ -582,6 +584,216 @@ public class CalculatedValue
         }
     }
 
+    /*********************************************************
+     * Reduced-precision functions used in the fast-math mode of plots. They use TableMath for real arguments and the
+     * full-precision functions for complex arguments.
+     *********************************************************/
+
+    public ValueType fastSin(CalculatedValue g)
+    {
+        return g.isComplex() ? sin(g) : setValue(TableMath.sin(g.real));
+    }
+
+    public ValueType fastCos(CalculatedValue g)
+    {
+        return g.isComplex() ? cos(g) : setValue(TableMath.cos(g.real));
+    }
+
+    public ValueType fastTan(CalculatedValue g)
+    {
+        return g.isComplex() ? tan(g) : setValue(TableMath.tan(g.real));
+    }
+
+    public ValueType fastExp(CalculatedValue g)
+    {
+        return g.isComplex() ? exp(g) : setValue(TableMath.exp(g.real));
+    }
+
+    public ValueType fastLog(CalculatedValue g)
+    {
+        return g.isComplex() ? log(g) : setValue(TableMath.log(g.real));
+    }
+
+    public ValueType fastLog10(CalculatedValue g)
+    {
+        return g.isComplex() ? log10(g) : setValue(TableMath.log10(g.real));
+    }
+
+    public ValueType fastPow(CalculatedValue f, CalculatedValue g)
+    {
+        return (f.isComplex() || g.isComplex()) ? pow(f, g) : setValue(TableMath.pow(f.real, g.real));
+    }
+
+    /*********************************************************
+     * Complex kernels
+     *
+     * The complex functions are calculated directly on the real and imaginary parts, without intermediate Complex
+     * objects. They use the formulas and the order of floating point operations of the class Complex of commons-math
+     * 3.6.1, so that for finite arguments and finite results they agree with it within 0 ULP, i.e. bit by bit. The
+     * special handling of NaN and infinite arguments by Complex is not reproduced: NaN propagates through the formulas.
+     * Note that the output value may be the same object as an argument, so all arguments are read before the output
+     * is written.
+     *********************************************************/
+
+    /**
+     * Procedure returns the absolute value of a complex number avoiding overflow, like Complex.abs
+     */
+    private static double complexAbs(double re, double im)
+    {
+        if (FastMath.abs(re) < FastMath.abs(im))
+        {
+            final double q = re / im;
+            return FastMath.abs(im) * FastMath.sqrt(1 + q * q);
+        }
+        else
+        {
+            if (re == 0.0)
+            {
+                return FastMath.abs(im);
+            }
+            final double q = im / re;
+            return FastMath.abs(re) * FastMath.sqrt(1 + q * q);
+        }
+    }
+
+    /**
+     * Procedure returns the real part of the complex logarithm
+     */
+    private static double complexAbsLog(double re, double im)
+    {
+        return FastMath.log(complexAbs(re, im));
+    }
+
+    /**
+     * Procedure sets this value to -i * log(re + i * im)
+     */
+    private ValueType setMinusILog(double re, double im)
+    {
+        final double lr = complexAbsLog(re, im), li = FastMath.atan2(im, re);
+        return setComplexValue(lr * -0.0 - li * -1.0, lr * -1.0 + li * -0.0);
+    }
+
+    private ValueType complexExp(double re, double im)
+    {
+        final double expReal = FastMath.exp(re);
+        return setComplexValue(expReal * FastMath.cos(im), expReal * FastMath.sin(im));
+    }
+
+    private ValueType complexSqrt(double re, double im)
+    {
+        if (re == 0.0 && im == 0.0)
+        {
+            return setComplexValue(0.0, 0.0);
+        }
+        final double t = FastMath.sqrt((FastMath.abs(re) + complexAbs(re, im)) / 2.0);
+        if (re >= 0.0)
+        {
+            return setComplexValue(t, im / (2.0 * t));
+        }
+        else
+        {
+            return setComplexValue(FastMath.abs(im) / (2.0 * t), FastMath.copySign(1d, im) * t);
+        }
+    }
+
+    private ValueType complexSin(double re, double im)
+    {
+        return setComplexValue(FastMath.sin(re) * FastMath.cosh(im), FastMath.cos(re) * FastMath.sinh(im));
+    }
+
+    private ValueType complexCos(double re, double im)
+    {
+        return setComplexValue(FastMath.cos(re) * FastMath.cosh(im), -FastMath.sin(re) * FastMath.sinh(im));
+    }
+
+    private ValueType complexSinh(double re, double im)
+    {
+        return setComplexValue(FastMath.sinh(re) * FastMath.cos(im), FastMath.cosh(re) * FastMath.sin(im));
+    }
+
+    private ValueType complexCosh(double re, double im)
+    {
+        return setComplexValue(FastMath.cosh(re) * FastMath.cos(im), FastMath.sinh(re) * FastMath.sin(im));
+    }
+
+    private ValueType complexTan(double re, double im)
+    {
+        if (im > 20.0)
+        {
+            return setComplexValue(0.0, 1.0);
+        }
+        if (im < -20.0)
+        {
+            return setComplexValue(0.0, -1.0);
+        }
+        final double re2 = 2.0 * re, im2 = 2.0 * im;
+        final double d = FastMath.cos(re2) + FastMath.cosh(im2);
+        return setComplexValue(FastMath.sin(re2) / d, FastMath.sinh(im2) / d);
+    }
+
+    private ValueType complexTanh(double re, double im)
+    {
+        if (re > 20.0)
+        {
+            return setComplexValue(1.0, 0.0);
+        }
+        if (re < -20.0)
+        {
+            return setComplexValue(-1.0, 0.0);
+        }
+        final double re2 = 2.0 * re, im2 = 2.0 * im;
+        final double d = FastMath.cosh(re2) + FastMath.cos(im2);
+        return setComplexValue(FastMath.sinh(re2) / d, FastMath.sin(im2) / d);
+    }
+
+    /**
+     * asin(z) = -i * log(sqrt(1 - z^2) + i * z)
+     */
+    private ValueType complexAsin(double re, double im)
+    {
+        complexSqrt(1.0 - (re * re - im * im), 0.0 - (re * im + im * re));
+        return setMinusILog(real + (re * 0.0 - im * 1.0), imaginary + (re * 1.0 + im * 0.0));
+    }
+
+    /**
+     * acos(z) = -i * log(z + i * sqrt(1 - z^2))
+     */
+    private ValueType complexAcos(double re, double im)
+    {
+        complexSqrt(1.0 - (re * re - im * im), 0.0 - (re * im + im * re));
+        return setMinusILog(re + (real * 0.0 - imaginary * 1.0), im + (real * 1.0 + imaginary * 0.0));
+    }
+
+    /**
+     * atan(z) = i/2 * log((z + i) / (i - z))
+     */
+    private ValueType complexAtan(double re, double im)
+    {
+        final double a = re + 0.0, b = im + 1.0;
+        final double c = 0.0 - re, d = 1.0 - im;
+        final double qr, qi;
+        if (c == 0.0 && d == 0.0)
+        {
+            return invalidate(ErrorType.NOT_A_NUMBER);
+        }
+        if (FastMath.abs(c) < FastMath.abs(d))
+        {
+            final double q = c / d;
+            final double denominator = c * q + d;
+            qr = (a * q + b) / denominator;
+            qi = (b * q - a) / denominator;
+        }
+        else
+        {
+            final double q = d / c;
+            final double denominator = d * q + c;
+            qr = (b * q + a) / denominator;
+            qi = (b - a * q) / denominator;
+        }
+        final double lr = complexAbsLog(qr, qi), li = FastMath.atan2(qi, qr);
+        return setComplexValue(lr * 0.0 - li * 0.5, lr * 0.5 + li * 0.0);
+    }
+
     /**
      * Procedure rounds the given value to the given number of significant digits see
      * http://stackoverflow.com/questions/202302
@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.math;
+
+/**
+ * Exception thrown if the calculation is cancelled by the user or exceeds its budget
+ */
+public final class CancelException extends Exception
+{
+    private static final long serialVersionUID = 4916095827341L;
+
+    private final boolean budgetExceeded;
+
+    public CancelException()
+    {
+        this.budgetExceeded = false;
+    }
+
+    public CancelException(boolean budgetExceeded)
+    {
+        this.budgetExceeded = budgetExceeded;
+    }
+
+    /**
+     * Returns true if only the current formula is aborted since it exceeds the calculation budget
+     */
+    public boolean isBudgetExceeded()
+    {
+        return budgetExceeded;
+    }
+}
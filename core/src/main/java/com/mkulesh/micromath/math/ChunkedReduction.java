@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.math;
+
+import org.apache.commons.math3.util.FastMath;
+
+import java.util.ArrayList;
+
+/**
+ * Class that implements a reproducible reduction (summation or product) of a long sequence of values. The sequence is
+ * split into chunks of a fixed size. Within a chunk, the sum is accumulated using Kahan-Babuska (Neumaier)
+ * compensated summation. The chunk results are combined pairwise, like in a binary tree. Since the chunk borders only
+ * depend on the term position, the result does not depend on how the chunks are distributed between workers: the
+ * chunks calculated by the workers (see ParallelReduction) are passed to addChunk in their order and give the same
+ * value as the sequential reduction.
+ */
+public class ChunkedReduction
+{
+    public enum Type
+    {
+        SUM,
+        PRODUCT
+    }
+
+    public static final int CHUNK_SIZE = 1024;
+
+    private final Type type;
+
+    // running chunk
+    private int chunkCount = 0;
+    private double re, reComp, im, imComp;
+    private final CalculatedValue chunkProduct = new CalculatedValue();
+    private boolean isComplex = false;
+
+    // completed chunks waiting to be combined pairwise: each entry holds 2^level chunks
+    private final ArrayList<CalculatedValue> partials = new ArrayList<CalculatedValue>();
+    private final ArrayList<Integer> levels = new ArrayList<Integer>();
+
+    public ChunkedReduction(Type type)
+    {
+        this.type = type;
+        reset();
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    public void reset()
+    {
+        chunkCount = 0;
+        re = reComp = im = imComp = 0.0;
+        chunkProduct.setValue(1.0);
+        isComplex = false;
+        partials.clear();
+        levels.clear();
+    }
+
+    /**
+     * Procedure adds the next value of the sequence
+     */
+    public void add(CalculatedValue v)
+    {
+        if (type == Type.SUM)
+        {
+            if (v.isComplex())
+            {
+                isComplex = true;
+                final double t = im + v.getImaginary();
+                imComp += (FastMath.abs(im) >= FastMath.abs(v.getImaginary())) ? (im - t) + v.getImaginary()
+                        : (v.getImaginary() - t) + im;
+                im = t;
+            }
+            final double t = re + v.getReal();
+            reComp += (FastMath.abs(re) >= FastMath.abs(v.getReal())) ? (re - t) + v.getReal() : (v.getReal() - t)
+                    + re;
+            re = t;
+        }
+        else
+        {
+            chunkProduct.multiply(chunkProduct, v);
+        }
+        chunkCount++;
+        if (chunkCount == CHUNK_SIZE)
+        {
+            finishChunk();
+        }
+    }
+
+    /**
+     * Procedure adds the value of a complete chunk that is reduced separately. The chunks shall be added in their
+     * order, and all chunks except the last one shall contain CHUNK_SIZE values
+     */
+    public void addChunk(CalculatedValue v)
+    {
+        if (chunkCount > 0)
+        {
+            finishChunk();
+        }
+        final CalculatedValue chunk = new CalculatedValue();
+        chunk.assign(v);
+        mergeChunk(chunk);
+    }
+
+    /**
+     * Procedure combines all partial results and stores the reduction value in the given object
+     */
+    public CalculatedValue.ValueType getValue(CalculatedValue outValue)
+    {
+        if (chunkCount > 0 || partials.isEmpty())
+        {
+            finishChunk();
+        }
+        // combine the remaining partials from the smallest one to the largest one
+        outValue.assign(partials.get(partials.size() - 1));
+        for (int i = partials.size() - 2; i >= 0; i--)
+        {
+            combine(outValue, partials.get(i), outValue);
+        }
+        return outValue.getValueType();
+    }
+
+    private void finishChunk()
+    {
+        final CalculatedValue chunk = new CalculatedValue();
+        if (type == Type.SUM)
+        {
+            if (isComplex)
+            {
+                chunk.setComplexValue(re + reComp, im + imComp);
+            }
+            else
+            {
+                chunk.setValue(re + reComp);
+            }
+        }
+        else
+        {
+            chunk.assign(chunkProduct);
+        }
+        chunkCount = 0;
+        re = reComp = im = imComp = 0.0;
+        chunkProduct.setValue(1.0);
+        isComplex = false;
+        mergeChunk(chunk);
+    }
+
+    private void mergeChunk(CalculatedValue chunk)
+    {
+        // pairwise combination: merge the last two partials while they hold the same number of chunks
+        int level = 0;
+        while (!levels.isEmpty() && levels.get(levels.size() - 1) == level)
+        {
+            final int last = partials.size() - 1;
+            combine(partials.get(last), chunk, chunk);
+            partials.remove(last);
+            levels.remove(last);
+            level++;
+        }
+        partials.add(chunk);
+        levels.add(level);
+    }
+
+    private void combine(CalculatedValue f, CalculatedValue g, CalculatedValue outValue)
+    {
+        if (type == Type.SUM)
+        {
+            outValue.add(f, g);
+        }
+        else
+        {
+            outValue.multiply(f, g);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.math;
+
+
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Class that implements the double exponential quadrature of Takahasi and Mori. The integration variable is
+ * transformed so that the transformed integrand decays double exponentially and the trapezoid rule with halved step
+ * size converges very fast. The integrand is never evaluated in the interval endpoints, so that integrable endpoint
+ * singularities and infinite intervals are supported. Following transformations are used:
+ * - tanh-sinh for a finite interval [a, b],
+ * - exp-sinh for a half-infinite interval [a, ∞) or (-∞, b],
+ * - sinh-sinh for the infinite interval (-∞, ∞).
+ * For reference, see H. Takahasi and M. Mori, "Double exponential formulas for numerical integration", Publ. RIMS
+ * Kyoto Univ. 9 (1974).
+ */
+public class DoubleExponentialQuadrature
+{
+    /**
+     * Interface of the function to be integrated
+     */
+    public interface Integrand
+    {
+        void getValue(double x, CalculatedValue outValue) throws CancelException;
+    }
+
+    private enum TransformType
+    {
+        TANH_SINH,
+        EXP_SINH,
+        SINH_SINH
+    }
+
+    private enum PointState
+    {
+        VALID,
+        NEGLIGIBLE,
+        DEGENERATED,
+        INVALID
+    }
+
+    private static final int MAX_LEVEL = 10;
+    private static final double MAX_STEP_NUMBER = 6.0;
+    private static final double LIMIT_STEP = 1.0 / 16.0;
+    private static final int NEGLIGIBLE_POINTS = 3;
+    private static final double HALF_PI = 0.5 * FastMath.PI;
+    private static final double EPSILON = FastMath.ulp(1.0);
+
+    private final Integrand integrand;
+    private final CalculatedValue value = new CalculatedValue();
+
+    // parameters of the current transformation
+    private TransformType transformType = TransformType.TANH_SINH;
+    private double min, max, halfWidth, direction;
+
+    // abscissa and weight of the current point, raw sum of the trapezoid rule and raw sum of its magnitudes
+    private double px, pw, sumRe, sumIm, sumAbs;
+    private boolean nonZeroDetected = false;
+
+    private boolean complexDetected = false;
+    private long evaluations = 0;
+    private double re = 0.0, im = 0.0, error = Double.NaN;
+
+    public DoubleExponentialQuadrature(Integrand integrand)
+    {
+        this.integrand = integrand;
+    }
+
+    public double getReal()
+    {
+        return re;
+    }
+
+    public double getImaginary()
+    {
+        return im;
+    }
+
+    public double getError()
+    {
+        return error;
+    }
+
+    public long getEvaluations()
+    {
+        return evaluations;
+    }
+
+    public boolean isComplexDetected()
+    {
+        return complexDetected;
+    }
+
+    /**
+     * Procedure integrates the function over the given interval whose boundaries can be infinite. The step size is
+     * halved until the difference between two levels is less than given accuracy relative to the integral of the
+     * magnitude, so that an integral with the value zero converges as well. This difference is only checked two
+     * levels after the integrand was not zero in some point: a narrow peak that is missed by the coarse levels shall
+     * not be taken as a zero integral. Returns false if the integrand is not a number in the middle of the interval
+     */
+    public boolean integrate(double a, double b, double accuracy) throws CancelException
+    {
+        evaluations = 0;
+        complexDetected = false;
+        re = im = 0.0;
+        error = Double.NaN;
+        if (Double.isNaN(a) || Double.isNaN(b))
+        {
+            return false;
+        }
+        if (a == b)
+        {
+            error = 0.0;
+            return true;
+        }
+        final double orientation = (a < b) ? 1.0 : -1.0;
+        min = FastMath.min(a, b);
+        max = FastMath.max(a, b);
+        if (Double.isInfinite(min) && Double.isInfinite(max))
+        {
+            transformType = TransformType.SINH_SINH;
+        }
+        else if (Double.isInfinite(min) || Double.isInfinite(max))
+        {
+            transformType = TransformType.EXP_SINH;
+            direction = Double.isInfinite(max) ? 1.0 : -1.0;
+        }
+        else
+        {
+            transformType = TransformType.TANH_SINH;
+            halfWidth = 0.5 * (max - min);
+        }
+
+        // level 0: the step size is 1, the range of the step numbers is truncated where the points can not be
+        // represented or the terms become negligible
+        sumRe = sumIm = sumAbs = 0.0;
+        nonZeroDetected = false;
+        final PointState middle = calculate(0.0);
+        if (middle == PointState.DEGENERATED || middle == PointState.INVALID)
+        {
+            return false;
+        }
+        final double rightLimit = findLimit(1.0);
+        final double leftLimit = findLimit(-1.0);
+        double oldRe = sumRe, oldIm = sumIm;
+        int nonZeroLevel = nonZeroDetected ? 0 : -1;
+
+        // next levels: only new points in the middle between the existing ones are calculated
+        double h = 1.0;
+        for (int level = 1; level <= MAX_LEVEL; level++)
+        {
+            h *= 0.5;
+            addPoints(h, rightLimit, 1.0);
+            addPoints(h, leftLimit, -1.0);
+            re = h * sumRe;
+            im = h * sumIm;
+            error = FastMath.hypot(re - oldRe, im - oldIm);
+            oldRe = re;
+            oldIm = im;
+            if (nonZeroLevel < 0 && nonZeroDetected)
+            {
+                nonZeroLevel = level;
+            }
+            if (nonZeroLevel >= 0 && level > nonZeroLevel + 1 && error <= accuracy * h * sumAbs)
+            {
+                break;
+            }
+        }
+        re *= orientation;
+        im *= orientation;
+        return true;
+    }
+
+    /**
+     * Procedure calculates level 0 points in the given direction and returns the largest step number to be used.
+     * The range is only truncated after several negligible points in a row, so that a single zero of the integrand
+     * does not truncate it. It ends with the first point of this row if a valid point precedes it.
+     */
+    private double findLimit(double side) throws CancelException
+    {
+        // the last step number where the point can be represented
+        double limit = 0.0;
+        while (FastMath.abs(limit) < MAX_STEP_NUMBER && transform(limit + side * LIMIT_STEP))
+        {
+            limit += side * LIMIT_STEP;
+        }
+        boolean validDetected = false;
+        int negligiblePoints = 0;
+        for (double t = side; FastMath.abs(t) <= FastMath.abs(limit); t += side)
+        {
+            final PointState state = calculate(t);
+            if (state == PointState.DEGENERATED || state == PointState.INVALID)
+            {
+                return t - side;
+            }
+            if (state == PointState.VALID)
+            {
+                validDetected = true;
+            }
+            negligiblePoints = (state == PointState.NEGLIGIBLE) ? negligiblePoints + 1 : 0;
+            if (negligiblePoints >= NEGLIGIBLE_POINTS)
+            {
+                return validDetected ? t - side * (NEGLIGIBLE_POINTS - 1) : t;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Procedure calculates the new points of a level with the given step size in the given direction. If the
+     * integrand can not be calculated in a point, the remaining points of this side are skipped.
+     */
+    private void addPoints(double h, double limit, double side) throws CancelException
+    {
+        for (double t = side * h; FastMath.abs(t) <= FastMath.abs(limit); t += 2.0 * side * h)
+        {
+            final PointState state = calculate(t);
+            if (state == PointState.DEGENERATED || state == PointState.INVALID)
+            {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Procedure calculates the integrand in the point given by the step number and adds it to the raw sum
+     */
+    private PointState calculate(double t) throws CancelException
+    {
+        if (!transform(t))
+        {
+            return PointState.DEGENERATED;
+        }
+        integrand.getValue(px, value);
+        evaluations++;
+        if (value.isNaN())
+        {
+            return PointState.INVALID;
+        }
+        if (value.isComplex())
+        {
+            complexDetected = true;
+        }
+        final double termRe = pw * value.getReal(), termIm = pw * value.getImaginary();
+        if (CalculatedValue.isInvalidReal(termRe) || CalculatedValue.isInvalidReal(termIm))
+        {
+            return PointState.INVALID;
+        }
+        if (termRe != 0.0 || termIm != 0.0)
+        {
+            nonZeroDetected = true;
+        }
+        sumRe += termRe;
+        sumIm += termIm;
+        sumAbs += FastMath.hypot(termRe, termIm);
+        return (FastMath.hypot(termRe, termIm) <= EPSILON * FastMath.hypot(sumRe, sumIm)) ? PointState.NEGLIGIBLE
+                : PointState.VALID;
+    }
+
+    /**
+     * Procedure calculates the abscissa and the weight for the given step number. Returns false if the point can not
+     * be represented, i.e. it coincides with an interval boundary or overflows
+     */
+    private boolean transform(double t)
+    {
+        final double u = HALF_PI * FastMath.sinh(t);
+        switch (transformType)
+        {
+        case TANH_SINH:
+        {
+            // distance to the nearest endpoint in normalized coordinates: 1 - tanh(|u|)
+            final double delta = 2.0 / (FastMath.exp(2.0 * FastMath.abs(u)) + 1.0);
+            px = (u >= 0.0) ? max - halfWidth * delta : min + halfWidth * delta;
+            // sech^2(u) = (1 - tanh(|u|)) * (1 + tanh(|u|))
+            pw = halfWidth * HALF_PI * FastMath.cosh(t) * delta * (2.0 - delta);
+            return delta > 0.0 && px > min && px < max;
+        }
+        case EXP_SINH:
+        {
+            final double e = FastMath.exp(u);
+            final double origin = (direction > 0.0) ? min : max;
+            px = origin + direction * e;
+            pw = HALF_PI * FastMath.cosh(t) * e;
+            return px != origin && pw > 0.0 && !Double.isInfinite(px) && !Double.isInfinite(pw);
+        }
+        case SINH_SINH:
+            px = FastMath.sinh(u);
+            pw = HALF_PI * FastMath.cosh(t) * FastMath.cosh(u);
+            return !Double.isInfinite(px) && !Double.isInfinite(pw);
+        }
+        return false;
+    }
+}
@@ -18,13 +18,6 @@
  ******************************************************************************/
 package com.mkulesh.micromath.math;
 
-import com.mkulesh.micromath.formula.CalculaterTask;
-import com.mkulesh.micromath.formula.CalculaterTask.CancelException;
-import com.mkulesh.micromath.formula.Equation;
-import com.mkulesh.micromath.formula.FormulaBase;
-import com.mkulesh.micromath.formula.TermField;
-import com.mkulesh.micromath.utils.ViewUtils;
-
 import java.util.ArrayList;
 
 /*********************************************************
@@ -32,7 +25,16 @@ import java.util.ArrayList;
  *********************************************************/
 public class EquationArrayResult
 {
+    /**
+     * Interface of the function that calculates an array element
+     */
+    public interface ElementFunction
+    {
+        void getValue(CalculatedValue outValue) throws CancelException;
+    }
+
     public final static int MAX_DIMENSION = 3;
+    public final static int INVALID_DIMENSION = -1;
 
     private final static int D0 = 0;
     private final static int D1 = 1;
@@ -41,13 +43,14 @@ public class EquationArrayResult
     private int[] dimensions = null;
     private CalculatedValue[] values = null;
     private int[] idxValues = null;
-    private final Equation equation;
-    private final TermField equationTerm;
+
+    public EquationArrayResult()
+    {
+        // empty
+    }
 
     public EquationArrayResult(int size)
     {
-        this.equation = null;
-        this.equationTerm = null;
         final int dimNumber = 1;
         final int[] dimValues = new int[dimNumber];
         dimValues[D0] = size;
@@ -56,8 +59,6 @@ public class EquationArrayResult
 
     public EquationArrayResult(int size1, int size2)
     {
-        this.equation = null;
-        this.equationTerm = null;
         final int dimNumber = 2;
         final int[] dimValues = new int[dimNumber];
         dimValues[D0] = size1;
@@ -65,15 +66,9 @@ public class EquationArrayResult
         resize(dimValues);
     }
 
-    public EquationArrayResult(Equation equation, TermField rightTerm)
-    {
-        this.equation = equation;
-        this.equationTerm = rightTerm;
-    }
-
     public int getDimNumber()
     {
-        return dimensions == null ? ViewUtils.INVALID_INDEX : dimensions.length;
+        return dimensions == null ? INVALID_DIMENSION : dimensions.length;
     }
 
     public int[] getDimensions()
@@ -86,29 +81,26 @@ public class EquationArrayResult
         return values;
     }
 
-    public void calculate(CalculaterTask thread, ArrayList<String> arguments) throws CancelException
+    /**
+     * Procedure resizes this array to the given intervals of the array indices and calculates all its elements. For
+     * each element, the argument values are set to the indices before the function is called
+     */
+    public void calculate(CalculationThreadIf thread, ArrayList<ArrayList<Double>> intervalValues,
+                          CalculatedValue[] argValues, ElementFunction function) throws CancelException
     {
         values = null;
 
-        final int dimNumber = arguments.size();
-        if (dimNumber < 1 || dimNumber > MAX_DIMENSION)
+        final int dimNumber = intervalValues.size();
+        if (dimNumber < 1 || dimNumber > MAX_DIMENSION || argValues.length != dimNumber)
         {
             return;
         }
 
-        // collect intervals and dimensions
-        final ArrayList<ArrayList<Double>> intervalValues = new ArrayList<ArrayList<Double>>();
+        // collect dimensions
         final int[] dimValues = new int[dimNumber];
-        final CalculatedValue[] argValues = new CalculatedValue[dimNumber];
         for (int dim = 0; dim < dimNumber; dim++)
         {
-            final FormulaBase f = equation.getFormulaList().getFormula(arguments.get(dim), 0, equation.getId(), true);
-            if (f == null || !(f instanceof Equation) || !((Equation) f).isInterval())
-            {
-                return;
-            }
-            final Equation e = (Equation) f;
-            ArrayList<Double> interval = e.getInterval(thread);
+            final ArrayList<Double> interval = intervalValues.get(dim);
             if (interval == null || interval.isEmpty())
             {
                 return;
@@ -119,22 +111,23 @@ public class EquationArrayResult
                 return;
             }
             dimValues[dim] = lastIndex + 1;
-            intervalValues.add(interval);
-            argValues[dim] = new CalculatedValue();
         }
 
         // initialize array with zero
         resize(dimValues);
 
         // calculate array
-        equation.setArgumentValues(argValues);
         for (Double d0 : intervalValues.get(D0))
         {
             final int i0 = d0.intValue();
             argValues[D0].setValue(d0);
             if (dimNumber == 1)
             {
-                equationTerm.getValue(thread, values[i0]);
+                if (thread != null)
+                {
+                    thread.checkCancelation();
+                }
+                function.getValue(values[i0]);
                 continue;
             }
             for (Double d1 : intervalValues.get(D1))
@@ -143,19 +136,35 @@ public class EquationArrayResult
                 argValues[D1].setValue(d1);
                 if (dimNumber == 2)
                 {
-                    equationTerm.getValue(thread, values[getIndex(i0, i1)]);
+                    if (thread != null)
+                    {
+                        thread.checkCancelation();
+                    }
+                    function.getValue(values[getIndex(i0, i1)]);
                     continue;
                 }
                 for (Double d2 : intervalValues.get(D2))
                 {
                     final int i2 = d2.intValue();
                     argValues[D2].setValue(d2);
-                    equationTerm.getValue(thread, values[getIndex(i0, i1, i2)]);
+                    if (thread != null)
+                    {
+                        thread.checkCancelation();
+                    }
+                    function.getValue(values[getIndex(i0, i1, i2)]);
                 }
             }
         }
     }
 
+    /**
+     * Procedure removes the calculated values
+     */
+    public void clear()
+    {
+        values = null;
+    }
+
     private int getIndex(int i0, int i1)
     {
         return i0 * dimensions[1] + i1;
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.math;
+
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Class that calculates a summation or a product with infinite upper boundary. The calculation stops as soon as the
+ * limit of partial sums is reached with given number of significant digits. The limit is estimated by Wynn epsilon
+ * algorithm applied to the first partial sums. For slowly converging series, the same algorithm is applied to the
+ * partial sums with doubling number of terms, which extrapolates the algebraic tail of the series like the Richardson
+ * extrapolation does. Since both methods also produce finite values for some divergent series, an estimate is only
+ * accepted if the terms of the series decrease. The series is divergent if neither the terms nor the changes of the
+ * partial sums decrease from one stage to the next one.
+ */
+public class InfiniteSeries
+{
+    /**
+     * Interface of the series term with given index
+     */
+    public interface Term
+    {
+        void getValue(long idx, CalculatedValue outValue) throws CancelException;
+    }
+
+    public static final int MAX_TERMS_COUNT = 1 << 22;
+    private static final int ACCELERATION_TERMS_COUNT = 64;
+    private static final int STAGES_COUNT = 20;
+    private static final int CONVERGENCE_WINDOW = 3;
+    private static final int STAGES_CONVERGENCE_WINDOW = 2;
+    private static final int DIVERGENCE_WINDOW = 2;
+
+    private final Term term;
+    private final CalculatedValue calcVal = new CalculatedValue();
+
+    /**
+     * Number of terms and error estimate of the last calculated series.
+     */
+    private long termsCount = 0;
+    private double error = Double.NaN;
+
+    public InfiniteSeries(Term term)
+    {
+        this.term = term;
+    }
+
+    public long getTermsCount()
+    {
+        return termsCount;
+    }
+
+    public double getError()
+    {
+        return error;
+    }
+
+    /**
+     * Procedure resets the number of terms of the last calculated series
+     */
+    public void reset()
+    {
+        termsCount = 0;
+    }
+
+    /**
+     * Procedure calculates the summation or, if isProduct is set, the product of the series terms starting from the
+     * given index
+     */
+    public CalculatedValue.ValueType calculate(boolean isProduct, long minValue, int significantDigits,
+                                               CalculatedValue outValue) throws CancelException
+    {
+        final double relativeAccuracy = FastMath.pow(10, -1.0 * significantDigits);
+        final WynnEpsilon[] direct = new WynnEpsilon[] { new WynnEpsilon(ACCELERATION_TERMS_COUNT),
+                new WynnEpsilon(ACCELERATION_TERMS_COUNT) };
+        final WynnEpsilon[] staged = new WynnEpsilon[] { new WynnEpsilon(STAGES_COUNT),
+                new WynnEpsilon(STAGES_COUNT) };
+        int directHits = 0, stagedHits = 0, divergentStages = 0;
+        long nextStage = ACCELERATION_TERMS_COUNT;
+        termsCount = 0;
+        error = Double.NaN;
+
+        outValue.setValue(isProduct ? 1.0 : 0.0);
+        // the last partial value and the partial value of the last stage
+        double lastRe = outValue.getReal(), lastIm = 0.0, stageRe = lastRe, stageIm = 0.0;
+        // the largest change of the partial value: overall, within the current stage and within the previous stage
+        double maxChange = 0.0, blockChange = 0.0, prevBlockChange = Double.NaN;
+        // the change of the partial value between the previous two stages
+        double prevStageChange = Double.NaN;
+        for (long idx = minValue; termsCount < MAX_TERMS_COUNT; idx++)
+        {
+            term.getValue(idx, calcVal);
+            if (isProduct)
+            {
+                outValue.multiply(outValue, calcVal);
+            }
+            else
+            {
+                outValue.add(outValue, calcVal);
+            }
+            termsCount++;
+            if (outValue.isNaN())
+            {
+                return outValue.getValueType();
+            }
+            final double change = FastMath.hypot(outValue.getReal() - lastRe, outValue.getImaginary() - lastIm);
+            lastRe = outValue.getReal();
+            lastIm = outValue.getImaginary();
+            maxChange = FastMath.max(maxChange, change);
+            blockChange = FastMath.max(blockChange, change);
+            if (!direct[0].isFull())
+            {
+                directHits = nextEstimate(direct, outValue, relativeAccuracy) ? directHits + 1 : 0;
+                // the last term shall be less than the largest one, otherwise the terms do not decrease
+                if (directHits >= CONVERGENCE_WINDOW && (change == 0.0 || change < maxChange))
+                {
+                    return setResult(direct, outValue);
+                }
+            }
+            if (termsCount == nextStage)
+            {
+                final double stageChange = FastMath.hypot(lastRe - stageRe, lastIm - stageIm);
+                final boolean isContracting = blockChange == 0.0 || Double.isNaN(prevBlockChange)
+                        || (blockChange < prevBlockChange && stageChange < prevStageChange);
+                stagedHits = nextEstimate(staged, outValue, relativeAccuracy) && isContracting ? stagedHits + 1 : 0;
+                if (stagedHits >= STAGES_CONVERGENCE_WINDOW)
+                {
+                    return setResult(staged, outValue);
+                }
+                divergentStages = isContracting ? 0 : divergentStages + 1;
+                if (divergentStages >= DIVERGENCE_WINDOW)
+                {
+                    break;
+                }
+                stageRe = lastRe;
+                stageIm = lastIm;
+                prevStageChange = stageChange;
+                prevBlockChange = blockChange;
+                blockChange = 0.0;
+                nextStage *= 2;
+            }
+        }
+        // the series diverges or does not converge within the maximum number of terms
+        return outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+    }
+
+    private boolean nextEstimate(WynnEpsilon[] accelerator, CalculatedValue partialSum, double accuracy)
+    {
+        accelerator[0].next(partialSum.getReal());
+        accelerator[1].next(partialSum.getImaginary());
+        return accelerator[0].isConverged(accuracy) && accelerator[1].isConverged(accuracy);
+    }
+
+    private CalculatedValue.ValueType setResult(WynnEpsilon[] accelerator, CalculatedValue outValue)
+    {
+        error = FastMath.hypot(accelerator[0].getChange(), accelerator[1].getChange());
+        return outValue.setComplexValue(accelerator[0].getValue(), accelerator[1].getValue());
+    }
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.math;
+
+import org.apache.commons.math3.util.FastMath;
+
+import java.util.ArrayList;
+
+/**
+ * Class that generates the points of an interval given by its minimum value, the next value and the maximum value
+ */
+public final class IntervalPoints
+{
+    private IntervalPoints()
+    {
+        // this class has only static methods
+    }
+
+    /**
+     * Procedure checks and returns delta value, or NaN if the boundaries are not valid
+     */
+    public static double getDelta(final double min, final double next, final double max)
+    {
+        if (next <= min || max < next)
+        {
+            // error: invalid boundaries
+            return Double.NaN;
+        }
+        return next - min;
+    }
+
+    /**
+     * Procedure returns the index of the last point of the interval
+     */
+    public static int getNumberOfPoints(double min, double max, double delta)
+    {
+        int N = (int) FastMath.ceil(((max - min) / delta));
+        if (N > 0 && min + delta * (double) N > max + delta / 2)
+        {
+            N--;
+        }
+        return N;
+    }
+
+    /**
+     * Procedure returns the point with given index, where N is the index of the last point
+     */
+    public static double getPoint(double min, double max, double delta, int N, long idx)
+    {
+        if (idx == 0)
+        {
+            return min;
+        }
+        else if (idx == N)
+        {
+            return max;
+        }
+        return min + delta * (double) idx;
+    }
+
+    /**
+     * Procedure returns all points of the interval, or null if the boundaries are not valid
+     */
+    public static ArrayList<Double> getPoints(CalculationThreadIf thread, double min, double next, double max)
+            throws CancelException
+    {
+        final double delta = getDelta(min, next, max);
+        if (Double.isNaN(delta))
+        {
+            return null;
+        }
+        final int N = getNumberOfPoints(min, max, delta);
+        ArrayList<Double> retValue = new ArrayList<Double>(N);
+        for (int idx = 0; idx <= N; idx++)
+        {
+            if (thread != null)
+            {
+                thread.checkCancelation();
+            }
+            retValue.add(getPoint(min, max, delta, N, idx));
+        }
+        return retValue;
+    }
+}
@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.math;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class that calculates a summation or a product over a long index range using several worker threads. The range
+ * is split into the chunks of ChunkedReduction; each worker takes the next free chunk, reduces it with its own
+ * argument binding and stores the chunk value. The chunk values are combined in their order, so the result is
+ * identical to the sequential ChunkedReduction regardless of the number of workers.
+ *
+ * The calculation thread is only called from the thread that started the reduction: the workers count their
+ * evaluations and stop if the reduction is cancelled, the calling thread passes these evaluations to the calculation
+ * thread while it waits for the workers. Thus, the cancellation and the budget work like in the sequential loop.
+ */
+public class ParallelReduction
+{
+    /**
+     * Interface of a worker: the summand or factor with its own argument binding
+     */
+    public interface WorkerIf
+    {
+        void getValue(long idx, CalculatedValue outValue, CalculationThreadIf thread) throws CancelException;
+    }
+
+    /**
+     * The range shall contain at least this number of terms in order to be calculated in parallel
+     */
+    public static final long MIN_TERMS = 16L * ChunkedReduction.CHUNK_SIZE;
+
+    // the chunks are distributed in blocks so that the number of stored chunk values is limited
+    private static final int BLOCK_CHUNKS = 4096;
+
+    // the calling thread checks the cancellation at least once per this interval in milliseconds
+    private static final long POLL_INTERVAL = 10;
+
+    // a worker publishes the number of its evaluations once per given number of evaluations
+    private static final long PUBLISH_MASK = (1L << 8) - 1;
+
+    private static final int WORKERS_NUMBER = Runtime.getRuntime().availableProcessors();
+    private static ExecutorService executor = null;
+
+    private final ChunkedReduction.Type type;
+    private final ChunkedReduction reduction;
+    private final CalculatedValue[] chunkValues = new CalculatedValue[BLOCK_CHUNKS];
+    private final AtomicInteger nextChunk = new AtomicInteger();
+    private volatile boolean stopped = false;
+    private long blockStart = 0, maxIdx = 0;
+    private int blockChunks = 0;
+
+    public ParallelReduction(ChunkedReduction.Type type)
+    {
+        this.type = type;
+        this.reduction = new ChunkedReduction(type);
+    }
+
+    public ChunkedReduction.Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * Procedure returns the number of workers used by a parallel reduction. If it is 1, the parallel reduction is
+     * not worth it
+     */
+    public static int getWorkersNumber()
+    {
+        return WORKERS_NUMBER;
+    }
+
+    private static synchronized ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = Executors.newFixedThreadPool(WORKERS_NUMBER, new ThreadFactory()
+            {
+                private final AtomicInteger number = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r)
+                {
+                    final Thread t = new Thread(r, "ParallelReduction-" + number.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Procedure calculates the reduction over the index range [minIdx, maxIdx] using the given workers and stores
+     * its value in the given object. The workers shall not share any state that is changed during the calculation
+     */
+    public CalculatedValue.ValueType calculate(ArrayList<? extends WorkerIf> workers, long minIdx, long maxIdx,
+                                               CalculationThreadIf thread, CalculatedValue outValue)
+            throws CancelException
+    {
+        reduction.reset();
+        this.maxIdx = maxIdx;
+        stopped = false;
+        final long chunks = (maxIdx - minIdx) / ChunkedReduction.CHUNK_SIZE + 1;
+        for (long firstChunk = 0; firstChunk < chunks; firstChunk += BLOCK_CHUNKS)
+        {
+            blockStart = minIdx + firstChunk * ChunkedReduction.CHUNK_SIZE;
+            blockChunks = (int) Math.min(BLOCK_CHUNKS, chunks - firstChunk);
+            calculateBlock(workers, thread);
+            for (int k = 0; k < blockChunks; k++)
+            {
+                reduction.addChunk(chunkValues[k]);
+            }
+        }
+        return reduction.getValue(outValue);
+    }
+
+    /**
+     * Procedure calculates the chunks of the current block and waits until all workers are finished
+     */
+    private void calculateBlock(ArrayList<? extends WorkerIf> workers, CalculationThreadIf thread)
+            throws CancelException
+    {
+        nextChunk.set(0);
+        final int workersNumber = Math.min(workers.size(), blockChunks);
+        final CountDownLatch finished = new CountDownLatch(workersNumber);
+        final ArrayList<WorkerTask> tasks = new ArrayList<WorkerTask>(workersNumber);
+        for (int i = 0; i < workersNumber; i++)
+        {
+            final WorkerTask task = new WorkerTask(workers.get(i), finished);
+            tasks.add(task);
+            getExecutor().execute(task);
+        }
+        long forwarded = 0;
+        try
+        {
+            boolean isFinished = false;
+            while (!isFinished)
+            {
+                isFinished = finished.await(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                long evaluations = 0;
+                for (WorkerTask task : tasks)
+                {
+                    evaluations += task.publishedEvaluations;
+                }
+                if (thread != null)
+                {
+                    thread.checkCancelation();
+                    for (; forwarded < evaluations; forwarded++)
+                    {
+                        thread.checkCancelation();
+                    }
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            stop(finished);
+            throw new CancelException();
+        }
+        catch (CancelException e)
+        {
+            stop(finished);
+            throw e;
+        }
+        for (WorkerTask task : tasks)
+        {
+            if (task.failure != null)
+            {
+                throw task.failure;
+            }
+        }
+    }
+
+    /**
+     * Procedure stops all workers and waits until they are finished, so that the workers can be reused
+     */
+    private void stop(CountDownLatch finished)
+    {
+        stopped = true;
+        boolean isInterrupted = false;
+        while (true)
+        {
+            try
+            {
+                finished.await();
+                break;
+            }
+            catch (InterruptedException e)
+            {
+                isInterrupted = true;
+            }
+        }
+        if (isInterrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Task that reduces the free chunks of the current block with one worker. It is also the calculation thread of
+     * the worker: it counts the evaluations and stops the worker if the reduction is stopped
+     */
+    private final class WorkerTask implements Runnable, CalculationThreadIf
+    {
+        final WorkerIf worker;
+        final CountDownLatch finished;
+        final ChunkedReduction chunkReduction = new ChunkedReduction(type);
+        final CalculatedValue value = new CalculatedValue();
+        long evaluations = 0;
+        volatile long publishedEvaluations = 0;
+        RuntimeException failure = null;
+
+        WorkerTask(WorkerIf worker, CountDownLatch finished)
+        {
+            this.worker = worker;
+            this.finished = finished;
+        }
+
+        @Override
+        public void checkCancelation() throws CancelException
+        {
+            if (stopped)
+            {
+                throw new CancelException();
+            }
+            evaluations++;
+            if ((evaluations & PUBLISH_MASK) == 0)
+            {
+                publishedEvaluations = evaluations;
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                int k;
+                while ((k = nextChunk.getAndIncrement()) < blockChunks)
+                {
+                    final long first = blockStart + (long) k * ChunkedReduction.CHUNK_SIZE;
+                    final long last = Math.min(first + ChunkedReduction.CHUNK_SIZE - 1, maxIdx);
+                    chunkReduction.reset();
+                    for (long idx = first; idx <= last; idx++)
+                    {
+                        checkCancelation();
+                        worker.getValue(idx, value, this);
+                        chunkReduction.add(value);
+                        if (value.isNaN())
+                        {
+                            break;
+                        }
+                    }
+                    final CalculatedValue chunkValue = new CalculatedValue();
+                    chunkReduction.getValue(chunkValue);
+                    chunkValues[k] = chunkValue;
+                }
+            }
+            catch (CancelException e)
+            {
+                // nothing to do: the reduction is stopped
+            }
+            catch (RuntimeException e)
+            {
+                failure = e;
+                stopped = true;
+            }
+            finally
+            {
+                publishedEvaluations = evaluations;
+                finished.countDown();
+            }
+        }
+    }
+}
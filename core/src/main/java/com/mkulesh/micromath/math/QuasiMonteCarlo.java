@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.math;
+
+
+import org.apache.commons.math3.random.HaltonSequenceGenerator;
+import org.apache.commons.math3.util.FastMath;
+
+import java.util.Random;
+
+/**
+ * Class that implements a randomized quasi-Monte Carlo integration over a hyper-rectangle. The points of the scrambled
+ * Halton sequence are used by several replicas, each of them shifts the points modulo 1 by its own random vector
+ * (Cranley-Patterson rotation). The replicas give independent unbiased estimates of the integral, and their spread
+ * is used as the error estimate. The sampling stops if the error is within the requested accuracy or the number of
+ * function evaluations exceeds the given limit.
+ */
+public class QuasiMonteCarlo
+{
+    /**
+     * Limits of the sample budget of a document: the power of two of the maximal number of samples
+     */
+    public static final int MIN_SAMPLE_BUDGET = 8;
+    public static final int MAX_SAMPLE_BUDGET = 30;
+
+    private static final int REPLICAS_COUNT = 8;
+    private static final long MIN_POINTS_COUNT = 64;
+    private static final long SEED = 20170101L;
+
+    private final int dim;
+    private final AdaptiveCubature.Integrand integrand;
+    private final double[][] shifts;
+    private final double[] sumRe, sumIm;
+    private final double[] x;
+    private final CalculatedValue value = new CalculatedValue();
+    private boolean complexDetected = false;
+    private long evaluations = 0;
+    private double re = 0.0, im = 0.0, error = Double.NaN;
+
+    /**
+     * Procedure limits the given sample budget to the supported range
+     */
+    public static int limitSampleBudget(int sampleBudget)
+    {
+        return FastMath.max(MIN_SAMPLE_BUDGET, FastMath.min(MAX_SAMPLE_BUDGET, sampleBudget));
+    }
+
+    public QuasiMonteCarlo(int dim, AdaptiveCubature.Integrand integrand)
+    {
+        this.dim = dim;
+        this.integrand = integrand;
+        shifts = new double[REPLICAS_COUNT][dim];
+        for (int r = 0; r < REPLICAS_COUNT; r++)
+        {
+            // each replica has its own random stream that is reproducible between calculations
+            final Random random = new Random(SEED + r);
+            for (int i = 0; i < dim; i++)
+            {
+                shifts[r][i] = random.nextDouble();
+            }
+        }
+        sumRe = new double[REPLICAS_COUNT];
+        sumIm = new double[REPLICAS_COUNT];
+        x = new double[dim];
+    }
+
+    public double getReal()
+    {
+        return re;
+    }
+
+    public double getImaginary()
+    {
+        return im;
+    }
+
+    public double getError()
+    {
+        return error;
+    }
+
+    public long getEvaluations()
+    {
+        return evaluations;
+    }
+
+    public boolean isComplexDetected()
+    {
+        return complexDetected;
+    }
+
+    /**
+     * Procedure integrates the function over the given hyper-rectangle until the standard error of the replicas is
+     * less than given absolute or relative accuracy or the number of function evaluations exceeds the given limit.
+     * The error is checked each time the number of points is doubled. Returns false if the integrand is not a number
+     * in some point
+     */
+    public boolean integrate(double[] min, double[] max, double accuracy, long maxEvaluations)
+            throws CancelException
+    {
+        evaluations = 0;
+        complexDetected = false;
+        re = im = 0.0;
+        error = Double.NaN;
+        double volume = 1.0;
+        for (int i = 0; i < dim; i++)
+        {
+            volume *= max[i] - min[i];
+        }
+        for (int r = 0; r < REPLICAS_COUNT; r++)
+        {
+            sumRe[r] = sumIm[r] = 0.0;
+        }
+
+        final HaltonSequenceGenerator generator = new HaltonSequenceGenerator(dim);
+        long pointsCount = 0, nextCheck = MIN_POINTS_COUNT;
+        while (evaluations + REPLICAS_COUNT <= maxEvaluations)
+        {
+            final double[] point = generator.nextVector();
+            for (int r = 0; r < REPLICAS_COUNT; r++)
+            {
+                for (int i = 0; i < dim; i++)
+                {
+                    final double u = point[i] + shifts[r][i];
+                    x[i] = min[i] + (max[i] - min[i]) * (u < 1.0 ? u : u - 1.0);
+                }
+                integrand.getValue(x, value);
+                evaluations++;
+                if (value.isNaN())
+                {
+                    return false;
+                }
+                if (value.isComplex())
+                {
+                    complexDetected = true;
+                }
+                sumRe[r] += value.getReal();
+                sumIm[r] += value.getImaginary();
+            }
+            pointsCount++;
+            if (pointsCount == nextCheck)
+            {
+                calculateEstimate(volume, pointsCount);
+                if (error <= FastMath.max(accuracy, accuracy * FastMath.hypot(re, im)))
+                {
+                    return true;
+                }
+                nextCheck *= 2;
+            }
+        }
+        if (pointsCount > 0)
+        {
+            calculateEstimate(volume, pointsCount);
+        }
+        return true;
+    }
+
+    /**
+     * Procedure calculates the mean of the replicas and its standard error
+     */
+    private void calculateEstimate(double volume, long pointsCount)
+    {
+        re = im = 0.0;
+        for (int r = 0; r < REPLICAS_COUNT; r++)
+        {
+            re += sumRe[r];
+            im += sumIm[r];
+        }
+        re *= volume / (pointsCount * REPLICAS_COUNT);
+        im *= volume / (pointsCount * REPLICAS_COUNT);
+        double variance = 0.0;
+        for (int r = 0; r < REPLICAS_COUNT; r++)
+        {
+            final double dRe = volume * sumRe[r] / pointsCount - re;
+            final double dIm = volume * sumIm[r] / pointsCount - im;
+            variance += dRe * dRe + dIm * dIm;
+        }
+        error = FastMath.sqrt(variance / (REPLICAS_COUNT * (REPLICAS_COUNT - 1)));
+    }
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.math;
+
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Class that calculates the derivative of a function at a point by Ridders' method of polynomial extrapolation. The
+ * real and the imaginary parts of the derivative are calculated separately.
+ */
+public class RiddersDerivative
+{
+    /**
+     * Interface of the function to be differentiated, the argument can be complex
+     */
+    public interface Function
+    {
+        void getValue(double re, double im, CalculatedValue outValue) throws CancelException;
+    }
+
+    public static final double INITIAL_STEP = 0.05;
+    public static final int MAX_ITERATIONS_COUNT = 10;
+    private static final double CON = 1.4;
+    private static final double CON2 = (CON * CON);
+
+    private final Function function;
+    private final CalculatedValue leftVal = new CalculatedValue(), rightVal = new CalculatedValue();
+    private final double[][] a = new double[MAX_ITERATIONS_COUNT + 1][MAX_ITERATIONS_COUNT + 1];
+    private boolean complexDetected = false;
+
+    public RiddersDerivative(Function function)
+    {
+        this.function = function;
+    }
+
+    /**
+     * Procedure returns whether the function has an imaginary part in at least one point
+     */
+    public boolean isComplexDetected()
+    {
+        return complexDetected;
+    }
+
+    /**
+     * Returns the derivative of the given part of the function at a point z. The value h is input as an estimated
+     * initial stepsize; it need not be small, but rather should be an increment in x over which func changes
+     * substantially.
+     */
+    public double differentiate(CalculatedValue.PartType partType, double re, double im, double h)
+            throws CancelException
+    {
+        double err = 1.0e30;
+        double hh = h;
+        double value = Double.NaN;
+        complexDetected = false;
+
+        function.getValue(re + hh, im, leftVal);
+        function.getValue(re - hh, im, rightVal);
+        a[1][1] = (leftVal.getPart(partType) - rightVal.getPart(partType)) / (2.0 * hh);
+        if (leftVal.isComplex() || rightVal.isComplex())
+        {
+            complexDetected = true;
+        }
+
+        for (int i = 2; i <= MAX_ITERATIONS_COUNT; i++)
+        {
+            hh /= CON;
+
+            function.getValue(re + hh, im, leftVal);
+            function.getValue(re - hh, im, rightVal);
+            a[1][i] = (leftVal.getPart(partType) - rightVal.getPart(partType)) / (2.0 * hh);
+            if (leftVal.isComplex() || rightVal.isComplex())
+            {
+                complexDetected = true;
+            }
+
+            double fac = CON2;
+            for (int j = 2; j <= i; j++)
+            {
+                a[j][i] = (a[j - 1][i] * fac - a[j - 1][i - 1]) / (fac - 1.0);
+                fac = CON2 * fac;
+                final double errt = FastMath.max(FastMath.abs(a[j][i] - a[j - 1][i]),
+                        FastMath.abs(a[j][i] - a[j - 1][i - 1]));
+                if (errt <= err)
+                {
+                    err = errt;
+                    value = a[j][i];
+                }
+            }
+            if (FastMath.abs(a[i][i] - a[i - 1][i - 1]) >= 2.0 * (err))
+            {
+                break;
+            }
+        }
+        return value;
+    }
+}
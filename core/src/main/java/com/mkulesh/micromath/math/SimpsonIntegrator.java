@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.math;
+
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Class that integrates a function in the given interval. Implements <a
+ * href="http://mathworld.wolfram.com/SimpsonsRule.html"> Simpson's Rule</a> for integration of real univariate
+ * functions. For reference, see <b>Introduction to Numerical Analysis</b>, ISBN 038795452X, chapter 3. This
+ * implementation employs the basic trapezoid rule to calculate Simpson's rule. The real and the imaginary parts of
+ * the integrand are integrated separately.
+ */
+public class SimpsonIntegrator
+{
+    public static final int MAX_ITERATIONS_COUNT = 15;
+
+    private final DoubleExponentialQuadrature.Integrand integrand;
+    private final CalculatedValue minVal = new CalculatedValue(), maxVal = new CalculatedValue(),
+            xVal = new CalculatedValue();
+
+    /**
+     * Intermediate result.
+     */
+    private double qtrapResult;
+
+    private double value = Double.NaN;
+    private boolean complexDetected = false;
+
+    public SimpsonIntegrator(DoubleExponentialQuadrature.Integrand integrand)
+    {
+        this.integrand = integrand;
+    }
+
+    public double getValue()
+    {
+        return value;
+    }
+
+    /**
+     * Procedure returns whether the integrand has an imaginary part in at least one point
+     */
+    public boolean isComplexDetected()
+    {
+        return complexDetected;
+    }
+
+    /**
+     * Compute the n-th stage integral of trapezoid rule. The interval is divided equally into 2^n sections rather
+     * than an arbitrary m sections because this configuration can best utilize the already computed values.
+     */
+    private boolean qtrapStage(CalculatedValue.PartType partType, final double min, final double max, final int n)
+            throws CancelException
+    {
+        if (n == 0)
+        {
+            integrand.getValue(min, minVal);
+            integrand.getValue(max, maxVal);
+            qtrapResult = 0.5 * (max - min) * (minVal.getPart(partType) + maxVal.getPart(partType));
+            return (minVal.isComplex() || maxVal.isComplex());
+        }
+        else
+        {
+            boolean complexDetexted = false;
+            final long np = 1L << (n - 1); // number of new points in this stage
+            double sum = 0;
+            // spacing between adjacent new points
+            final double spacing = (max - min) / np;
+            double x = min + 0.5 * spacing; // the first new point
+            for (long i = 0; i < np; i++)
+            {
+                integrand.getValue(x, xVal);
+                sum += xVal.getPart(partType);
+                x += spacing;
+                if (xVal.isComplex())
+                {
+                    complexDetexted = true;
+                }
+            }
+            // add the new sum to previously calculated result
+            qtrapResult = 0.5 * (qtrapResult + sum * spacing);
+            return complexDetexted;
+        }
+    }
+
+    /**
+     * Procedure integrates the given part of the function. Returns false if the integrand can not be calculated in
+     * an endpoint of the interval. If the integrand is not a number inside of the interval, the value is NaN
+     */
+    public boolean integrate(CalculatedValue.PartType partType, final double min, final double max,
+                             final double absoluteAccuracy) throws CancelException
+    {
+        value = Double.NaN;
+        complexDetected = false;
+        // Simpson's rule requires at least two trapezoid stages.
+        double oldRes = 0;
+        if (qtrapStage(partType, min, max, 0))
+        {
+            complexDetected = true;
+        }
+        if (CalculatedValue.isInvalidReal(qtrapResult))
+        {
+            return false;
+        }
+        double oldt = qtrapResult;
+        for (int iter = 1; iter <= MAX_ITERATIONS_COUNT; iter++)
+        {
+            if (qtrapStage(partType, min, max, iter))
+            {
+                complexDetected = true;
+            }
+            final double t = qtrapResult;
+            if (CalculatedValue.isInvalidReal(t))
+            {
+                value = Double.NaN;
+                complexDetected = false;
+                return true;
+            }
+            final double res = (4 * t - oldt) / 3.0;
+            if (iter > 1)
+            {
+                final double delta = FastMath.abs(res - oldRes);
+                if (delta <= absoluteAccuracy)
+                {
+                    value = res;
+                    return true;
+                }
+            }
+            oldRes = res;
+            oldt = t;
+        }
+        value = oldRes;
+        return true;
+    }
+}
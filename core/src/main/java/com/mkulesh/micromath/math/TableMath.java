@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.math;
+
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Class that implements table-driven approximations of elementary functions for the fast-math mode of plots. The
+ * argument is reduced to a small remainder around a tabulated point and the remainder is evaluated by a short
+ * polynomial. Within the fast ranges, the absolute error of sin and cos is below 1E-15 and the relative error of exp
+ * and log is below 5E-14; outside of these ranges, the FastMath routines are used. These functions are several times
+ * faster than the FastMath ones but they do not provide correct rounding.
+ */
+public final class TableMath
+{
+    // fast ranges of the arguments
+    private static final double SIN_COS_MAX_ARG = 1.0E5;
+    private static final double EXP_MAX_ARG = 700.0;
+
+    // low parts of pi and log(2) that are lost in the double constants
+    private static final double PI_LO = 1.2246467991473532E-16;
+    private static final double LN2_LO = 2.3190468138462996E-17;
+
+    // sin and cos: the table contains sin(2 * pi * j / SIN_SIZE) for a full period
+    private static final int SIN_BITS = 8;
+    private static final int SIN_SIZE = 1 << SIN_BITS;
+    private static final int SIN_MASK = SIN_SIZE - 1;
+    private static final int COS_SHIFT = SIN_SIZE / 4;
+    private static final double SIN_STEP = 2.0 * Math.PI / SIN_SIZE;
+    private static final double SIN_STEP_HI = Double.longBitsToDouble(
+            Double.doubleToRawLongBits(SIN_STEP) & 0xFFFFFFFFF8000000L);
+    private static final double SIN_STEP_LO = (SIN_STEP - SIN_STEP_HI) + 2.0 * PI_LO / SIN_SIZE;
+    private static final double SIN_INV_STEP = SIN_SIZE / (2.0 * Math.PI);
+    private static final double[] SIN_TABLE = new double[SIN_SIZE];
+
+    // exp: the table contains 2^(j / EXP_SIZE)
+    private static final int EXP_BITS = 8;
+    private static final int EXP_SIZE = 1 << EXP_BITS;
+    private static final int EXP_MASK = EXP_SIZE - 1;
+    private static final double EXP_STEP = Math.log(2.0) / EXP_SIZE;
+    private static final double EXP_STEP_HI = Double.longBitsToDouble(
+            Double.doubleToRawLongBits(EXP_STEP) & 0xFFFFFFFFF8000000L);
+    private static final double EXP_STEP_LO = (EXP_STEP - EXP_STEP_HI) + LN2_LO / EXP_SIZE;
+    private static final double EXP_INV_STEP = EXP_SIZE / Math.log(2.0);
+    private static final double[] EXP_TABLE = new double[EXP_SIZE];
+
+    // log: the table contains log(1 + j / LOG_SIZE) and the inverse of 1 + j / LOG_SIZE
+    private static final int LOG_BITS = 8;
+    private static final int LOG_SIZE = 1 << LOG_BITS;
+    private static final double LOG_LN2_HI = Double.longBitsToDouble(
+            Double.doubleToRawLongBits(Math.log(2.0)) & 0xFFFFFFFFFFFFF000L);
+    private static final double LOG_LN2_LO = (Math.log(2.0) - LOG_LN2_HI) + LN2_LO;
+    private static final double LN10 = Math.log(10.0);
+    private static final double LOG_NEAR_ONE = 1.0 - 1.0 / LOG_SIZE;
+    private static final double[] LOG_TABLE = new double[LOG_SIZE];
+    private static final double[] LOG_INV_TABLE = new double[LOG_SIZE];
+
+    static
+    {
+        for (int j = 0; j < SIN_SIZE; j++)
+        {
+            SIN_TABLE[j] = StrictMath.sin(2.0 * StrictMath.PI * j / SIN_SIZE);
+        }
+        for (int j = 0; j < EXP_SIZE; j++)
+        {
+            EXP_TABLE[j] = StrictMath.pow(2.0, (double) j / EXP_SIZE);
+        }
+        for (int j = 0; j < LOG_SIZE; j++)
+        {
+            final double c = 1.0 + (double) j / LOG_SIZE;
+            LOG_TABLE[j] = StrictMath.log(c);
+            LOG_INV_TABLE[j] = 1.0 / c;
+        }
+    }
+
+    private TableMath()
+    {
+        // nothing to do
+    }
+
+    /**
+     * Procedure calculates sin(x + shift * 2 * pi / SIN_SIZE) using sin(a + r) = sin(a) cos(r) + cos(a) sin(r)
+     */
+    private static double sinShifted(double x, int shift)
+    {
+        final long k = Math.round(x * SIN_INV_STEP);
+        final double r = (x - k * SIN_STEP_HI) - k * SIN_STEP_LO;
+        final int j = (int) (k + shift) & SIN_MASK;
+        final double r2 = r * r;
+        final double sinR = r * (1.0 - r2 * (1.0 / 6.0 - r2 * (1.0 / 120.0)));
+        final double cosR = 1.0 - r2 * (0.5 - r2 * (1.0 / 24.0 - r2 * (1.0 / 720.0)));
+        return SIN_TABLE[j] * cosR + SIN_TABLE[(j + COS_SHIFT) & SIN_MASK] * sinR;
+    }
+
+    public static double sin(double x)
+    {
+        if (!(x >= -SIN_COS_MAX_ARG && x <= SIN_COS_MAX_ARG))
+        {
+            return FastMath.sin(x);
+        }
+        return sinShifted(x, 0);
+    }
+
+    public static double cos(double x)
+    {
+        if (!(x >= -SIN_COS_MAX_ARG && x <= SIN_COS_MAX_ARG))
+        {
+            return FastMath.cos(x);
+        }
+        return sinShifted(x, COS_SHIFT);
+    }
+
+    /**
+     * Note that the absolute error of tan is not bounded near its poles: there, its relative error is bounded
+     */
+    public static double tan(double x)
+    {
+        if (!(x >= -SIN_COS_MAX_ARG && x <= SIN_COS_MAX_ARG))
+        {
+            return FastMath.tan(x);
+        }
+        return sinShifted(x, 0) / sinShifted(x, COS_SHIFT);
+    }
+
+    /**
+     * Procedure calculates exp(x) = 2^m * 2^(j / EXP_SIZE) * exp(r)
+     */
+    public static double exp(double x)
+    {
+        if (!(x >= -EXP_MAX_ARG && x <= EXP_MAX_ARG))
+        {
+            return FastMath.exp(x);
+        }
+        final long k = Math.round(x * EXP_INV_STEP);
+        final double r = (x - k * EXP_STEP_HI) - k * EXP_STEP_LO;
+        final long m = k >> EXP_BITS;
+        final double expR = 1.0 + r * (1.0 + r * (0.5 + r * (1.0 / 6.0 + r * (1.0 / 24.0))));
+        final double scale = Double.longBitsToDouble((m + 1023L) << 52);
+        return EXP_TABLE[(int) k & EXP_MASK] * expR * scale;
+    }
+
+    /**
+     * Procedure calculates log(x) = e * log(2) + log(c) + log(1 + t), where x = 2^e * m, c is the tabulated point
+     * below m and t = (m - c) / c
+     */
+    public static double log(double x)
+    {
+        if (!(x >= Double.MIN_NORMAL && x < Double.POSITIVE_INFINITY))
+        {
+            return FastMath.log(x);
+        }
+        if (x >= LOG_NEAR_ONE && x < 1.0)
+        {
+            // log(2) - log(m) cancels for the values just below one: the remainder is calculated directly
+            return log1p(x - 1.0);
+        }
+        final long bits = Double.doubleToRawLongBits(x);
+        final long e = (bits >>> 52) - 1023L;
+        final int j = (int) ((bits >>> (52 - LOG_BITS)) & (LOG_SIZE - 1));
+        final double m = Double.longBitsToDouble((bits & 0x000FFFFFFFFFFFFFL) | 0x3FF0000000000000L);
+        final double t = (m - (1.0 + (double) j / LOG_SIZE)) * LOG_INV_TABLE[j];
+        return e * LOG_LN2_HI + (LOG_TABLE[j] + (log1p(t) + e * LOG_LN2_LO));
+    }
+
+    public static double log10(double x)
+    {
+        return log(x) / LN10;
+    }
+
+    /**
+     * Procedure calculates x^y for the positive finite base using exp(y * log(x)). Other bases are passed to FastMath
+     * since they need the special handling of integer exponents. Note that the relative error grows with
+     * |y * log(x)|
+     */
+    public static double pow(double x, double y)
+    {
+        if (!(x > 0.0 && x < Double.POSITIVE_INFINITY) || Double.isInfinite(y) || Double.isNaN(y))
+        {
+            return FastMath.pow(x, y);
+        }
+        return exp(y * log(x));
+    }
+
+    /**
+     * Procedure calculates log(1 + t) for |t| <= 1 / LOG_SIZE
+     */
+    private static double log1p(double t)
+    {
+        return t * (1.0 - t * (0.5 - t * (1.0 / 3.0 - t * (0.25 - t * (0.2 - t * (1.0 / 6.0))))));
+    }
+}
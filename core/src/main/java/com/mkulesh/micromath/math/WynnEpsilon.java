@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.math;
+
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Class that implements the Wynn epsilon algorithm used to accelerate the convergence of a sequence of partial sums.
+ * The algorithm performs the iterated Shanks transformation, its first step is the Aitken delta-squared process. For
+ * reference, see <b>Numerical Recipes</b>, 3rd edition, chapter 5.3.
+ */
+public class WynnEpsilon
+{
+    private static final double SMALL = Double.MIN_NORMAL * 10.0;
+    private static final double BIG = Double.MAX_VALUE;
+    private static final double ROUNDING_ERRORS = 1024.0;
+
+    private final double[] e;
+    private int n = 0;
+    private double lastSum = Double.NaN;
+    private double lastValue = Double.NaN;
+    private double lastChange = Double.NaN;
+    private double maxSum = 0.0;
+
+    public WynnEpsilon(int maxCount)
+    {
+        e = new double[maxCount];
+    }
+
+    public void reset()
+    {
+        n = 0;
+        lastSum = Double.NaN;
+        lastValue = Double.NaN;
+        lastChange = Double.NaN;
+        maxSum = 0.0;
+    }
+
+    /**
+     * Procedure returns true if no more partial sums can be added
+     */
+    public boolean isFull()
+    {
+        return n >= e.length;
+    }
+
+    /**
+     * Procedure adds the next partial sum and returns the current estimate of the sequence limit, or NaN if no valid
+     * estimate is available
+     */
+    public double next(double sum)
+    {
+        if (isFull())
+        {
+            return lastValue;
+        }
+        double value;
+        if (n > 0 && sum == lastSum)
+        {
+            // the sequence is stationary: its limit is already reached
+            value = sum;
+        }
+        else
+        {
+            e[n] = sum;
+            double temp2 = 0.0;
+            for (int j = n; j > 0; j--)
+            {
+                final double temp1 = temp2;
+                temp2 = e[j - 1];
+                final double diff = e[j] - temp2;
+                e[j - 1] = (FastMath.abs(diff) <= SMALL) ? BIG : temp1 + 1.0 / diff;
+            }
+            value = (n % 2 == 0) ? e[0] : e[1];
+            n++;
+        }
+        if (CalculatedValue.isInvalidReal(value) || FastMath.abs(value) > 0.01 * BIG)
+        {
+            value = Double.NaN;
+        }
+        lastChange = (Double.isNaN(value) || Double.isNaN(lastValue)) ? Double.NaN : FastMath.abs(value - lastValue);
+        lastSum = sum;
+        lastValue = value;
+        maxSum = FastMath.max(maxSum, FastMath.abs(sum));
+        return value;
+    }
+
+    /**
+     * Procedure returns the last estimate of the sequence limit
+     */
+    public double getValue()
+    {
+        return lastValue;
+    }
+
+    /**
+     * Procedure returns the absolute difference between two last estimates that can be used as an error estimate
+     */
+    public double getChange()
+    {
+        return lastChange;
+    }
+
+    /**
+     * Procedure checks whether two last estimates differ by not more than the given relative accuracy. If the limit
+     * is near zero, they can not differ by less than the rounding errors of the largest partial sum: this is the
+     * absolute tolerance.
+     */
+    public boolean isConverged(double relativeAccuracy)
+    {
+        final double tolerance = FastMath.max(relativeAccuracy * FastMath.abs(lastValue),
+                ROUNDING_ERRORS * FastMath.ulp(maxSum));
+        return !Double.isNaN(lastChange) && lastChange <= tolerance;
+    }
+}
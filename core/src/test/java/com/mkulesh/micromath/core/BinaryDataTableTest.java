@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.core;
+
+import com.mkulesh.micromath.math.CalculatedValue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryDataTableTest
+{
+    /**
+     * Procedure creates the bytes of a NumPy file of version 1.0 with the given header dictionary and data
+     */
+    private static byte[] npy(String dictionary, ByteBuffer data)
+    {
+        final String header = dictionary + "\n";
+        final ByteBuffer b = ByteBuffer.allocate(10 + header.length() + data.position());
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        b.put(new byte[]{ (byte) 0x93, 'N', 'U', 'M', 'P', 'Y', 1, 0 });
+        b.putShort((short) header.length());
+        b.put(header.getBytes(Charset.forName("UTF-8")));
+        data.flip();
+        b.put(data);
+        return b.array();
+    }
+
+    private static ByteBuffer data(int size, ByteOrder order)
+    {
+        return ByteBuffer.allocate(size).order(order);
+    }
+
+    private static BinaryDataTable read(byte[] bytes, BinaryDataTable.Format format) throws IOException
+    {
+        return BinaryDataTable.read(new ByteArrayInputStream(bytes), format);
+    }
+
+    private static void assertValue(DataTableIf table, int row, int col, double re, double im)
+    {
+        final CalculatedValue v = new CalculatedValue();
+        table.getValue(row, col, v);
+        assertEquals(re, v.getReal(), 0.0);
+        assertEquals(im, v.isComplex() ? v.getImaginary() : 0.0, 0.0);
+    }
+
+    @Test
+    public void formatByName()
+    {
+        assertEquals(BinaryDataTable.Format.NPY, BinaryDataTable.getFormat("data.NPY"));
+        assertEquals(BinaryDataTable.Format.RAW_FLOAT64, BinaryDataTable.getFormat(" data.f64 "));
+        assertEquals(BinaryDataTable.Format.RAW_FLOAT32, BinaryDataTable.getFormat("data.f32"));
+        assertNull(BinaryDataTable.getFormat("data.csv"));
+        assertNull(BinaryDataTable.getFormat(null));
+    }
+
+    @Test
+    public void npyMatrixInRowOrder() throws IOException
+    {
+        final ByteBuffer d = data(6 * 8, ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 6; i++)
+        {
+            d.putDouble(i + 0.5);
+        }
+        final BinaryDataTable table = read(npy("{'descr': '<f8', 'fortran_order': False, 'shape': (2, 3), }", d),
+                BinaryDataTable.Format.NPY);
+        assertEquals(2, table.getRows());
+        assertEquals(3, table.getRowLength(0));
+        assertEquals(0, table.getRowLength(2));
+        assertValue(table, 0, 0, 0.5, 0.0);
+        assertValue(table, 0, 2, 2.5, 0.0);
+        assertValue(table, 1, 0, 3.5, 0.0);
+        assertValue(table, 1, 2, 5.5, 0.0);
+        assertEquals(0, table.getMappedSize());
+
+        // a cell outside of the table is not a number
+        final CalculatedValue v = new CalculatedValue();
+        table.getValue(2, 0, v);
+        assertTrue(v.isNaN());
+        table.getValue(0, 3, v);
+        assertTrue(v.isNaN());
+    }
+
+    @Test
+    public void npyMatrixInColumnOrder() throws IOException
+    {
+        final ByteBuffer d = data(6 * 4, ByteOrder.BIG_ENDIAN);
+        for (int i = 0; i < 6; i++)
+        {
+            d.putInt(10 * i);
+        }
+        final BinaryDataTable table = read(npy("{'descr': '>i4', 'fortran_order': True, 'shape': (2, 3), }", d),
+                BinaryDataTable.Format.NPY);
+        // the columns are stored one after another
+        assertValue(table, 0, 0, 0.0, 0.0);
+        assertValue(table, 1, 0, 10.0, 0.0);
+        assertValue(table, 0, 1, 20.0, 0.0);
+        assertValue(table, 1, 2, 50.0, 0.0);
+    }
+
+    @Test
+    public void npyVectorIsColumn() throws IOException
+    {
+        final ByteBuffer d = data(3 * 8, ByteOrder.LITTLE_ENDIAN);
+        d.putLong(-1L).putLong(0L).putLong(1L << 40);
+        final BinaryDataTable table = read(npy("{'descr': '<i8', 'fortran_order': False, 'shape': (3L,), }", d),
+                BinaryDataTable.Format.NPY);
+        assertEquals(3, table.getRows());
+        assertEquals(1, table.getRowLength(0));
+        assertValue(table, 0, 0, -1.0, 0.0);
+        assertValue(table, 2, 0, 1L << 40, 0.0);
+    }
+
+    @Test
+    public void npyComplexAndFloat() throws IOException
+    {
+        final ByteBuffer c = data(2 * 16, ByteOrder.LITTLE_ENDIAN);
+        c.putDouble(1.0).putDouble(-2.0).putDouble(3.0).putDouble(0.0);
+        final BinaryDataTable c16 = read(npy("{'descr': '<c16', 'fortran_order': False, 'shape': (1, 2), }", c),
+                BinaryDataTable.Format.NPY);
+        assertValue(c16, 0, 0, 1.0, -2.0);
+        assertValue(c16, 0, 1, 3.0, 0.0);
+
+        final ByteBuffer f = data(2 * 8, ByteOrder.LITTLE_ENDIAN);
+        f.putFloat(0.25f).putFloat(0.5f).putFloat(-1.5f).putFloat(0.0f);
+        final BinaryDataTable c8 = read(npy("{'descr': '<c8', 'fortran_order': False, 'shape': (2,), }", f),
+                BinaryDataTable.Format.NPY);
+        assertValue(c8, 0, 0, 0.25, 0.5);
+        assertValue(c8, 1, 0, -1.5, 0.0);
+    }
+
+    @Test
+    public void rawFiles() throws IOException
+    {
+        final ByteBuffer d64 = data(8 + 4 * 8, ByteOrder.LITTLE_ENDIAN);
+        d64.putInt(2).putInt(2).putDouble(1.0).putDouble(2.0).putDouble(3.0).putDouble(4.0);
+        final BinaryDataTable t64 = read(d64.array(), BinaryDataTable.Format.RAW_FLOAT64);
+        assertEquals(2, t64.getRows());
+        assertValue(t64, 1, 0, 3.0, 0.0);
+
+        final ByteBuffer d32 = data(8 + 3 * 4, ByteOrder.LITTLE_ENDIAN);
+        d32.putInt(1).putInt(3).putFloat(1.5f).putFloat(2.5f).putFloat(3.5f);
+        final BinaryDataTable t32 = read(d32.array(), BinaryDataTable.Format.RAW_FLOAT32);
+        assertEquals(1, t32.getRows());
+        assertEquals(3, t32.getRowLength(0));
+        assertValue(t32, 0, 2, 3.5, 0.0);
+    }
+
+    @Test(expected = IOException.class)
+    public void notNumPy() throws IOException
+    {
+        read("NUMPY but not really".getBytes(Charset.forName("UTF-8")), BinaryDataTable.Format.NPY);
+    }
+
+    @Test(expected = IOException.class)
+    public void numPyWithoutVersion() throws IOException
+    {
+        // the magic string is complete, but the version bytes are missing
+        read(new byte[]{ (byte) 0x93, 'N', 'U', 'M', 'P', 'Y' }, BinaryDataTable.Format.NPY);
+    }
+
+    @Test(expected = IOException.class)
+    public void unsupportedVersion() throws IOException
+    {
+        final byte[] bytes = npy("{'descr': '<f8', 'fortran_order': False, 'shape': (1,), }",
+                data(8, ByteOrder.LITTLE_ENDIAN).putDouble(1.0));
+        bytes[6] = 4;
+        read(bytes, BinaryDataTable.Format.NPY);
+    }
+
+    @Test(expected = IOException.class)
+    public void headerLengthOverflow() throws IOException
+    {
+        final ByteBuffer b = data(16, ByteOrder.LITTLE_ENDIAN);
+        b.put(new byte[]{ (byte) 0x93, 'N', 'U', 'M', 'P', 'Y', 2, 0 }).putInt(Integer.MAX_VALUE);
+        read(b.array(), BinaryDataTable.Format.NPY);
+    }
+
+    @Test(expected = IOException.class)
+    public void negativeShape() throws IOException
+    {
+        read(npy("{'descr': '<f8', 'fortran_order': False, 'shape': (-1, 2), }", data(0, ByteOrder.LITTLE_ENDIAN)),
+                BinaryDataTable.Format.NPY);
+    }
+
+    @Test(expected = IOException.class)
+    public void unsupportedType() throws IOException
+    {
+        read(npy("{'descr': '|b1', 'fortran_order': False, 'shape': (1,), }", data(1, ByteOrder.LITTLE_ENDIAN)),
+                BinaryDataTable.Format.NPY);
+    }
+
+    @Test(expected = IOException.class)
+    public void fileIsShorterThanHeader() throws IOException
+    {
+        final ByteBuffer d = data(8 + 8, ByteOrder.LITTLE_ENDIAN);
+        d.putInt(2).putInt(2).putDouble(1.0);
+        read(d.array(), BinaryDataTable.Format.RAW_FLOAT64);
+    }
+
+    @Test
+    public void mappedFile() throws IOException
+    {
+        final ByteBuffer d = data(8 + 2 * 8, ByteOrder.LITTLE_ENDIAN);
+        d.putInt(2).putInt(1).putDouble(-0.5).putDouble(7.0);
+        final File file = File.createTempFile("table", ".f64");
+        try
+        {
+            final FileOutputStream out = new FileOutputStream(file);
+            out.write(d.array());
+            out.close();
+            final RandomAccessFile in = new RandomAccessFile(file, "r");
+            final BinaryDataTable table = BinaryDataTable.map(in.getChannel(), BinaryDataTable.Format.RAW_FLOAT64);
+            in.close();
+            assertEquals(file.length(), table.getMappedSize());
+            assertEquals(0, table.getMemorySize());
+            assertValue(table, 0, 0, -0.5, 0.0);
+            assertValue(table, 1, 0, 7.0, 0.0);
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.core;
+
+import com.mkulesh.micromath.math.CalculatedValue;
+import com.mkulesh.micromath.math.CalculationThreadIf;
+import com.mkulesh.micromath.math.CancelException;
+import com.mkulesh.micromath.math.EquationArrayResult;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DataTableWriterTest
+{
+    private static final int ROWS = 300, COLUMNS = 40;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    /**
+     * Procedure creates a matrix that contains real, complex and invalid values
+     */
+    private static EquationArrayResult newMatrix()
+    {
+        final EquationArrayResult array = new EquationArrayResult(ROWS, COLUMNS);
+        for (int i = 0; i < ROWS; i++)
+        {
+            for (int j = 0; j < COLUMNS; j++)
+            {
+                final CalculatedValue v = array.getValue2D(i, j);
+                if (i == 1 && j == 2)
+                {
+                    v.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+                }
+                else if (j % 3 == 0)
+                {
+                    v.setComplexValue(i / 7.0, -j * 1e-5);
+                }
+                else
+                {
+                    v.setValue(i * 1e10 + j / 3.0);
+                }
+            }
+        }
+        return array;
+    }
+
+    private DataTableWriter newWriter(CalculationThreadIf thread)
+    {
+        bytes.reset();
+        return new DataTableWriter(Channels.newChannel(bytes), thread);
+    }
+
+    private static void assertCell(EquationArrayResult array, DataTableIf table, int i, int j, boolean isComplex)
+    {
+        final CalculatedValue expected = array.getValue2D(i, j), v = new CalculatedValue();
+        table.getValue(i, j, v);
+        if (expected.isNaN())
+        {
+            assertTrue(v.isNaN());
+        }
+        else if (expected.isComplex() && !isComplex)
+        {
+            // the raw files contain real values only
+            assertTrue(Double.isNaN(v.getReal()));
+        }
+        else
+        {
+            assertEquals(expected.getReal(), v.getReal(), 0.0);
+            assertEquals(expected.getImaginary(), v.isComplex() ? v.getImaginary() : 0.0, 0.0);
+        }
+    }
+
+    @Test
+    public void separator()
+    {
+        assertEquals(',', DataTableWriter.getSeparator("data.CSV"));
+        assertEquals('\t', DataTableWriter.getSeparator("data.txt"));
+        assertEquals('\t', DataTableWriter.getSeparator(null));
+    }
+
+    @Test
+    public void textIsReadBack() throws IOException, CancelException
+    {
+        final EquationArrayResult array = newMatrix();
+        for (char separator : new char[]{ ',', '\t' })
+        {
+            assertEquals(ROWS * COLUMNS, newWriter(null).writeText(array, separator));
+            final DataTable table = DataTable.read(new InputStreamReader(new ByteArrayInputStream(
+                    bytes.toByteArray()), Charset.forName("UTF-8")));
+            assertEquals(ROWS, table.getRows());
+            for (int i = 0; i < ROWS; i++)
+            {
+                assertEquals(COLUMNS, table.getRowLength(i));
+                for (int j = 0; j < COLUMNS; j++)
+                {
+                    assertCell(array, table, i, j, true);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void vectorIsWrittenAsColumn() throws IOException, CancelException
+    {
+        final EquationArrayResult array = new EquationArrayResult(3);
+        for (int i = 0; i < 3; i++)
+        {
+            array.getValue1D(i).setValue(i - 1.5);
+        }
+        newWriter(null).writeText(array, ',');
+        assertEquals("-1.5\n-0.5\n0.5\n", new String(bytes.toByteArray(), Charset.forName("UTF-8")));
+    }
+
+    @Test
+    public void binaryIsReadBack() throws IOException, CancelException
+    {
+        final EquationArrayResult array = newMatrix();
+        for (BinaryDataTable.Format format : BinaryDataTable.Format.values())
+        {
+            assertEquals(ROWS * COLUMNS, newWriter(null).writeBinary(array, format));
+            final BinaryDataTable table = BinaryDataTable.read(new ByteArrayInputStream(bytes.toByteArray()),
+                    format);
+            assertEquals(ROWS, table.getRows());
+            assertEquals(COLUMNS, table.getRowLength(0));
+            for (int i = 0; i < ROWS; i++)
+            {
+                for (int j = 0; j < COLUMNS; j++)
+                {
+                    if (format == BinaryDataTable.Format.RAW_FLOAT32)
+                    {
+                        final CalculatedValue v = new CalculatedValue();
+                        table.getValue(i, j, v);
+                        final CalculatedValue expected = array.getValue2D(i, j);
+                        assertEquals(expected.isReal() ? (float) expected.getReal() : Double.NaN, v.getReal(), 0.0);
+                    }
+                    else
+                    {
+                        assertCell(array, table, i, j, format == BinaryDataTable.Format.NPY);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void npyHeaderIsAligned() throws IOException, CancelException
+    {
+        newWriter(null).writeBinary(newMatrix(), BinaryDataTable.Format.NPY);
+        final byte[] b = bytes.toByteArray();
+        final int headerLength = (b[8] & 0xFF) | ((b[9] & 0xFF) << 8);
+        assertEquals(0, (10 + headerLength) % 64);
+        assertEquals('\n', b[10 + headerLength - 1]);
+    }
+
+    @Test(expected = IOException.class)
+    public void arrayIsNotCalculated() throws IOException, CancelException
+    {
+        newWriter(null).writeText(new EquationArrayResult(), ',');
+    }
+
+    @Test(expected = CancelException.class)
+    public void writingIsCancelled() throws IOException, CancelException
+    {
+        final CalculationThreadIf thread = new CalculationThreadIf()
+        {
+            private int rows = 0;
+
+            @Override
+            public void checkCancelation() throws CancelException
+            {
+                if (++rows > ROWS / 2)
+                {
+                    throw new CancelException();
+                }
+            }
+        };
+        newWriter(thread).writeText(newMatrix(), ',');
+    }
+}
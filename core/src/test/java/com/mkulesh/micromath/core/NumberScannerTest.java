@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.core;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NumberScannerTest
+{
+    private final NumberScanner scanner = new NumberScanner();
+
+    private boolean scan(String token)
+    {
+        scanner.reset();
+        for (int i = 0; i < token.length(); i++)
+        {
+            scanner.append(token.charAt(i));
+        }
+        return scanner.scan();
+    }
+
+    private void assertSameAsParseDouble(String token)
+    {
+        assertTrue(token, scan(token));
+        final long expected = Double.doubleToLongBits(Double.parseDouble(token));
+        assertEquals(token, expected, Double.doubleToLongBits(scanner.getReal()));
+        assertEquals(token, 0.0, scanner.getImaginary(), 0.0);
+    }
+
+    @Test
+    public void decimalNumbers()
+    {
+        final String[] tokens = { "0", "-0", "+0.0", "1", "-1", "42", "3.14159", ".5", "5.", "-.25", "1e3", "1E-3",
+                "2.5e+10", "-7.125E-22", "1e22", "1e-22", "123456789012345678", "0.000001", "000123.4500",
+                "9007199254740993", "1e23", "1e-23", "1234567890123456789", "4.9e-324", "1.7976931348623157e308" };
+        for (String token : tokens)
+        {
+            assertSameAsParseDouble(token);
+        }
+    }
+
+    @Test
+    public void randomNumbers()
+    {
+        final Random random = new Random(1);
+        for (int i = 0; i < 2000; i++)
+        {
+            final double v = (random.nextDouble() - 0.5) * Math.pow(10.0, random.nextInt(40) - 20);
+            assertSameAsParseDouble(Double.toString(v));
+            assertSameAsParseDouble(String.format(Locale.ENGLISH, "%.6f", v));
+            assertSameAsParseDouble(String.format(Locale.ENGLISH, "%.12e", v));
+        }
+    }
+
+    @Test
+    public void specialValues()
+    {
+        assertTrue(scan("NaN"));
+        assertTrue(Double.isNaN(scanner.getReal()));
+        assertTrue(scan("-Infinity"));
+        assertEquals(Double.NEGATIVE_INFINITY, scanner.getReal(), 0.0);
+    }
+
+    @Test
+    public void complexNumbers()
+    {
+        assertTrue(scan("1.5-2.5i"));
+        assertEquals(1.5, scanner.getReal(), 0.0);
+        assertEquals(-2.5, scanner.getImaginary(), 0.0);
+        assertTrue(scan("1e-3+2E+2i"));
+        assertEquals(1e-3, scanner.getReal(), 0.0);
+        assertEquals(200.0, scanner.getImaginary(), 0.0);
+        assertTrue(scan("-i"));
+        assertEquals(0.0, scanner.getReal(), 0.0);
+        assertEquals(-1.0, scanner.getImaginary(), 0.0);
+
+        // the imaginary part is reset by the next real number
+        assertTrue(scan("3"));
+        assertEquals(0.0, scanner.getImaginary(), 0.0);
+    }
+
+    @Test
+    public void invalidTokens()
+    {
+        final String[] tokens = { "abc", "1.2.3", "1e", "e5", "--1", "1,5", "+", "." };
+        for (String token : tokens)
+        {
+            assertFalse(token, scan(token));
+            assertTrue(token, Double.isNaN(scanner.getReal()));
+        }
+        scanner.reset();
+        assertTrue(scanner.isEmpty());
+        assertFalse(scanner.scan());
+    }
+
+    @Test
+    public void longToken()
+    {
+        final StringBuilder token = new StringBuilder("0.");
+        for (int i = 0; i < 200; i++)
+        {
+            token.append('3');
+        }
+        assertSameAsParseDouble(token.toString());
+    }
+
+    @Test
+    public void separators()
+    {
+        assertTrue(NumberScanner.isSpace(' '));
+        assertTrue(NumberScanner.isSpace('\t'));
+        assertFalse(NumberScanner.isSpace(','));
+        assertTrue(NumberScanner.isComma(','));
+        assertFalse(NumberScanner.isComma(';'));
+        assertTrue(NumberScanner.isLineEnd('\n'));
+        assertTrue(NumberScanner.isLineEnd('\r'));
+        assertFalse(NumberScanner.isLineEnd(' '));
+    }
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.math;
+
+import com.mkulesh.micromath.math.AdaptiveCubature.Integrand;
+
+import org.apache.commons.math3.special.Erf;
+import org.apache.commons.math3.util.FastMath;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveCubatureTest
+{
+    private static final long MAX_EVALUATIONS = 1000000;
+
+    @Test
+    public void polynomialIsExact() throws CancelException
+    {
+        // the degree 7 rule integrates this polynomial exactly using a single region
+        final AdaptiveCubature c = new AdaptiveCubature(2, new Integrand()
+        {
+            @Override
+            public void getValue(double[] x, CalculatedValue outValue)
+            {
+                outValue.setValue(x[0] * x[0] * x[1] * x[1] * x[1]);
+            }
+        });
+        assertTrue(c.integrate(new double[]{ 0.0, 0.0 }, new double[]{ 1.0, 2.0 }, 1e-10, MAX_EVALUATIONS));
+        assertEquals(4.0 / 3.0, c.getReal(), 1e-12);
+        assertEquals(17, c.getEvaluations());
+        assertFalse(c.isComplexDetected());
+    }
+
+    @Test
+    public void gaussianIn3D() throws CancelException
+    {
+        final AdaptiveCubature c = new AdaptiveCubature(3, new Integrand()
+        {
+            @Override
+            public void getValue(double[] x, CalculatedValue outValue)
+            {
+                outValue.setValue(FastMath.exp(-(x[0] * x[0] + x[1] * x[1] + x[2] * x[2])));
+            }
+        });
+        final double[] min = { -1.0, -1.0, -1.0 }, max = { 1.0, 1.0, 1.0 };
+        assertTrue(c.integrate(min, max, 1e-8, MAX_EVALUATIONS));
+        final double exact = FastMath.pow(FastMath.sqrt(FastMath.PI) * Erf.erf(1.0), 3);
+        assertEquals(exact, c.getReal(), 1e-7);
+        assertTrue(c.getError() <= 1e-8 * exact);
+        assertTrue(c.getEvaluations() < MAX_EVALUATIONS);
+    }
+
+    @Test
+    public void evaluationsAreLimited() throws CancelException
+    {
+        final AdaptiveCubature c = new AdaptiveCubature(2, new Integrand()
+        {
+            @Override
+            public void getValue(double[] x, CalculatedValue outValue)
+            {
+                outValue.setValue(1.0 / FastMath.sqrt(x[0] * x[0] + x[1] * x[1]));
+            }
+        });
+        // the integrand is singular in the corner, so the accuracy is not reached
+        final long maxEvaluations = 1000;
+        assertFalse(c.integrate(new double[]{ 0.0, 0.0 }, new double[]{ 1.0, 1.0 }, 1e-14, maxEvaluations));
+        assertTrue(c.getEvaluations() >= maxEvaluations);
+        assertTrue(c.getError() > 1e-14);
+        assertTrue(c.getEvaluations() < maxEvaluations + 2 * 17);
+        // 2 * ln(1 + √2)
+        assertEquals(2.0 * FastMath.log(1.0 + FastMath.sqrt(2.0)), c.getReal(), 1e-2);
+    }
+
+    @Test
+    public void complexIntegrand() throws CancelException
+    {
+        final AdaptiveCubature c = new AdaptiveCubature(2, new Integrand()
+        {
+            @Override
+            public void getValue(double[] x, CalculatedValue outValue)
+            {
+                outValue.setComplexValue(x[0], x[1] * x[1]);
+            }
+        });
+        assertTrue(c.integrate(new double[]{ 0.0, 0.0 }, new double[]{ 1.0, 1.0 }, 1e-10, MAX_EVALUATIONS));
+        assertTrue(c.isComplexDetected());
+        assertEquals(0.5, c.getReal(), 1e-12);
+        assertEquals(1.0 / 3.0, c.getImaginary(), 1e-12);
+    }
+
+    @Test
+    public void invalidIntegrand() throws CancelException
+    {
+        final AdaptiveCubature c = new AdaptiveCubature(2, new Integrand()
+        {
+            @Override
+            public void getValue(double[] x, CalculatedValue outValue)
+            {
+                if (x[0] > 0.5)
+                {
+                    outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+                }
+                else
+                {
+                    outValue.setValue(1.0);
+                }
+            }
+        });
+        assertFalse(c.integrate(new double[]{ 0.0, 0.0 }, new double[]{ 1.0, 1.0 }, 1e-10, MAX_EVALUATIONS));
+    }
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.math;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkedReductionTest
+{
+    private static final long TERMS_COUNT = 20L * ChunkedReduction.CHUNK_SIZE + 123;
+
+    /**
+     * The term of the test sequence: a complex value if isComplex is set
+     */
+    private static void getTerm(long idx, boolean isComplex, CalculatedValue outValue)
+    {
+        if (isComplex)
+        {
+            outValue.setComplexValue(1.0 / idx, 1.0 / (idx * (double) idx));
+        }
+        else
+        {
+            outValue.setValue(1.0 / (idx * (double) idx));
+        }
+    }
+
+    private static CalculatedValue reduce(ChunkedReduction.Type type, long minIdx, long maxIdx, boolean isComplex)
+    {
+        final ChunkedReduction reduction = new ChunkedReduction(type);
+        final CalculatedValue v = new CalculatedValue();
+        for (long idx = minIdx; idx <= maxIdx; idx++)
+        {
+            getTerm(idx, isComplex, v);
+            if (type == ChunkedReduction.Type.PRODUCT)
+            {
+                v.setValue(1.0 + v.getReal());
+            }
+            reduction.add(v);
+        }
+        final CalculatedValue outValue = new CalculatedValue();
+        reduction.getValue(outValue);
+        return outValue;
+    }
+
+    @Test
+    public void emptyReduction()
+    {
+        final CalculatedValue v = new CalculatedValue();
+        new ChunkedReduction(ChunkedReduction.Type.SUM).getValue(v);
+        assertEquals(0.0, v.getReal(), 0.0);
+        new ChunkedReduction(ChunkedReduction.Type.PRODUCT).getValue(v);
+        assertEquals(1.0, v.getReal(), 0.0);
+    }
+
+    @Test
+    public void compensatedSum()
+    {
+        final ChunkedReduction reduction = new ChunkedReduction(ChunkedReduction.Type.SUM);
+        final CalculatedValue v = new CalculatedValue();
+        double naive = 0.0;
+        for (int i = 0; i < 10 * ChunkedReduction.CHUNK_SIZE; i++)
+        {
+            v.setValue(0.1);
+            reduction.add(v);
+            naive += 0.1;
+        }
+        reduction.getValue(v);
+        final double exact = ChunkedReduction.CHUNK_SIZE;
+        assertEquals(exact, v.getReal(), 1e-12);
+        assertTrue(Math.abs(naive - exact) > Math.abs(v.getReal() - exact));
+    }
+
+    @Test
+    public void complexSum()
+    {
+        final CalculatedValue v = reduce(ChunkedReduction.Type.SUM, 1, TERMS_COUNT, true);
+        double re = 0.0, im = 0.0;
+        for (long idx = TERMS_COUNT; idx >= 1; idx--)
+        {
+            re += 1.0 / idx;
+            im += 1.0 / (idx * (double) idx);
+        }
+        assertTrue(v.isComplex());
+        assertEquals(re, v.getReal(), 1e-12);
+        assertEquals(im, v.getImaginary(), 1e-12);
+    }
+
+    @Test
+    public void resetReduction()
+    {
+        final ChunkedReduction reduction = new ChunkedReduction(ChunkedReduction.Type.SUM);
+        final CalculatedValue v = new CalculatedValue(CalculatedValue.ValueType.COMPLEX, 5.0, 1.0);
+        reduction.add(v);
+        reduction.reset();
+        v.setValue(2.0);
+        reduction.add(v);
+        reduction.getValue(v);
+        assertTrue(v.isReal());
+        assertEquals(2.0, v.getReal(), 0.0);
+    }
+
+    @Test
+    public void chunksGiveSameValue()
+    {
+        for (ChunkedReduction.Type type : ChunkedReduction.Type.values())
+        {
+            final CalculatedValue sequential = reduce(type, 1, TERMS_COUNT, false);
+
+            // each chunk is reduced separately, like a worker of ParallelReduction does
+            final ChunkedReduction reduction = new ChunkedReduction(type);
+            final CalculatedValue chunk = new CalculatedValue();
+            for (long first = 1; first <= TERMS_COUNT; first += ChunkedReduction.CHUNK_SIZE)
+            {
+                final long last = Math.min(first + ChunkedReduction.CHUNK_SIZE - 1, TERMS_COUNT);
+                chunk.assign(reduce(type, first, last, false));
+                reduction.addChunk(chunk);
+            }
+            final CalculatedValue chunked = new CalculatedValue();
+            reduction.getValue(chunked);
+            assertEquals(type.toString(), sequential.getReal(), chunked.getReal(), 0.0);
+        }
+    }
+
+    @Test
+    public void parallelReductionGivesSameValue() throws CancelException
+    {
+        final ArrayList<ParallelReduction.WorkerIf> workers = new ArrayList<ParallelReduction.WorkerIf>();
+        for (int i = 0; i < Math.max(2, ParallelReduction.getWorkersNumber()); i++)
+        {
+            workers.add(new ParallelReduction.WorkerIf()
+            {
+                @Override
+                public void getValue(long idx, CalculatedValue outValue, CalculationThreadIf thread)
+                        throws CancelException
+                {
+                    thread.checkCancelation();
+                    getTerm(idx, true, outValue);
+                }
+            });
+        }
+        final long maxIdx = ParallelReduction.MIN_TERMS + 5L * ChunkedReduction.CHUNK_SIZE + 17;
+        final CalculatedValue sequential = reduce(ChunkedReduction.Type.SUM, 1, maxIdx, true);
+        final CalculatedValue parallel = new CalculatedValue();
+        new ParallelReduction(ChunkedReduction.Type.SUM).calculate(workers, 1, maxIdx, null, parallel);
+        assertEquals(sequential.getReal(), parallel.getReal(), 0.0);
+        assertEquals(sequential.getImaginary(), parallel.getImaginary(), 0.0);
+    }
+
+    @Test(expected = CancelException.class)
+    public void parallelReductionIsCancelled() throws CancelException
+    {
+        final ArrayList<ParallelReduction.WorkerIf> workers = new ArrayList<ParallelReduction.WorkerIf>();
+        workers.add(new ParallelReduction.WorkerIf()
+        {
+            @Override
+            public void getValue(long idx, CalculatedValue outValue, CalculationThreadIf thread)
+                    throws CancelException
+            {
+                thread.checkCancelation();
+                outValue.setValue(1.0);
+            }
+        });
+        final CalculationThreadIf thread = new CalculationThreadIf()
+        {
+            private long evaluations = 0;
+
+            @Override
+            public void checkCancelation() throws CancelException
+            {
+                if (++evaluations > ChunkedReduction.CHUNK_SIZE)
+                {
+                    throw new CancelException();
+                }
+            }
+        };
+        new ParallelReduction(ChunkedReduction.Type.SUM).calculate(workers, 1, Long.MAX_VALUE / 2, thread,
+                new CalculatedValue());
+    }
+}
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.math;
+
+import com.mkulesh.micromath.math.DoubleExponentialQuadrature.Integrand;
+
+import org.apache.commons.math3.util.FastMath;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DoubleExponentialQuadratureTest
+{
+    private static final double ACCURACY = 1e-10;
+
+    @Test
+    public void finiteInterval() throws CancelException
+    {
+        final DoubleExponentialQuadrature q = new DoubleExponentialQuadrature(new Integrand()
+        {
+            @Override
+            public void getValue(double x, CalculatedValue outValue)
+            {
+                outValue.setValue(FastMath.sin(x));
+            }
+        });
+        assertTrue(q.integrate(0.0, FastMath.PI, ACCURACY));
+        assertEquals(2.0, q.getReal(), ACCURACY);
+        assertEquals(0.0, q.getImaginary(), 0.0);
+        assertFalse(q.isComplexDetected());
+        assertTrue(q.getError() < 1e-8);
+
+        // reversed boundaries change the sign
+        assertTrue(q.integrate(FastMath.PI, 0.0, ACCURACY));
+        assertEquals(-2.0, q.getReal(), ACCURACY);
+    }
+
+    @Test
+    public void endpointSingularity() throws CancelException
+    {
+        final DoubleExponentialQuadrature q = new DoubleExponentialQuadrature(new Integrand()
+        {
+            @Override
+            public void getValue(double x, CalculatedValue outValue)
+            {
+                outValue.setValue(1.0 / FastMath.sqrt(x));
+            }
+        });
+        assertTrue(q.integrate(0.0, 1.0, ACCURACY));
+        assertEquals(2.0, q.getReal(), 1e-8);
+    }
+
+    @Test
+    public void halfInfiniteInterval() throws CancelException
+    {
+        final DoubleExponentialQuadrature q = new DoubleExponentialQuadrature(new Integrand()
+        {
+            @Override
+            public void getValue(double x, CalculatedValue outValue)
+            {
+                outValue.setValue(FastMath.exp(-FastMath.abs(x)));
+            }
+        });
+        assertTrue(q.integrate(0.0, Double.POSITIVE_INFINITY, ACCURACY));
+        assertEquals(1.0, q.getReal(), 1e-8);
+        assertTrue(q.integrate(Double.NEGATIVE_INFINITY, 0.0, ACCURACY));
+        assertEquals(1.0, q.getReal(), 1e-8);
+        assertTrue(q.integrate(0.0, Double.NEGATIVE_INFINITY, ACCURACY));
+        assertEquals(-1.0, q.getReal(), 1e-8);
+    }
+
+    @Test
+    public void infiniteInterval() throws CancelException
+    {
+        final DoubleExponentialQuadrature q = new DoubleExponentialQuadrature(new Integrand()
+        {
+            @Override
+            public void getValue(double x, CalculatedValue outValue)
+            {
+                outValue.setValue(FastMath.exp(-x * x));
+            }
+        });
+        assertTrue(q.integrate(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, ACCURACY));
+        assertEquals(FastMath.sqrt(FastMath.PI), q.getReal(), 1e-8);
+    }
+
+    @Test
+    public void complexIntegrand() throws CancelException
+    {
+        final DoubleExponentialQuadrature q = new DoubleExponentialQuadrature(new Integrand()
+        {
+            @Override
+            public void getValue(double x, CalculatedValue outValue)
+            {
+                outValue.setComplexValue(x, x * x);
+            }
+        });
+        assertTrue(q.integrate(0.0, 1.0, ACCURACY));
+        assertTrue(q.isComplexDetected());
+        assertEquals(0.5, q.getReal(), 1e-8);
+        assertEquals(1.0 / 3.0, q.getImaginary(), 1e-8);
+    }
+
+    @Test
+    public void zeroInMiddlePoint() throws CancelException
+    {
+        final DoubleExponentialQuadrature q = new DoubleExponentialQuadrature(new Integrand()
+        {
+            @Override
+            public void getValue(double x, CalculatedValue outValue)
+            {
+                outValue.setValue((x - 0.5) / FastMath.sqrt(x));
+            }
+        });
+        assertTrue(q.integrate(0.0, 1.0, ACCURACY));
+        assertEquals(-1.0 / 3.0, q.getReal(), 1e-8);
+    }
+
+    @Test
+    public void zeroIntegral() throws CancelException
+    {
+        final DoubleExponentialQuadrature q1 = new DoubleExponentialQuadrature(new Integrand()
+        {
+            @Override
+            public void getValue(double x, CalculatedValue outValue)
+            {
+                outValue.setValue(x * FastMath.exp(-x * x));
+            }
+        });
+        assertTrue(q1.integrate(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, ACCURACY));
+        assertEquals(0.0, q1.getReal(), 1e-8);
+
+        final DoubleExponentialQuadrature q2 = new DoubleExponentialQuadrature(new Integrand()
+        {
+            @Override
+            public void getValue(double x, CalculatedValue outValue)
+            {
+                outValue.setValue((x - 1.0) * FastMath.exp(-x));
+            }
+        });
+        assertTrue(q2.integrate(0.0, Double.POSITIVE_INFINITY, ACCURACY));
+        assertEquals(0.0, q2.getReal(), 1e-8);
+    }
+
+    @Test
+    public void shiftedPeak() throws CancelException
+    {
+        final DoubleExponentialQuadrature q = new DoubleExponentialQuadrature(new Integrand()
+        {
+            @Override
+            public void getValue(double x, CalculatedValue outValue)
+            {
+                outValue.setValue(FastMath.exp(-(x - 100.0) * (x - 100.0)));
+            }
+        });
+        assertTrue(q.integrate(0.0, Double.POSITIVE_INFINITY, ACCURACY));
+        assertEquals(FastMath.sqrt(FastMath.PI), q.getReal(), 1e-8);
+    }
+
+    @Test
+    public void emptyAndInvalidInterval() throws CancelException
+    {
+        final DoubleExponentialQuadrature q = new DoubleExponentialQuadrature(new Integrand()
+        {
+            @Override
+            public void getValue(double x, CalculatedValue outValue)
+            {
+                outValue.setValue(1.0);
+            }
+        });
+        assertTrue(q.integrate(1.0, 1.0, ACCURACY));
+        assertEquals(0.0, q.getReal(), 0.0);
+        assertEquals(0, q.getEvaluations());
+        assertFalse(q.integrate(Double.NaN, 1.0, ACCURACY));
+    }
+
+    @Test
+    public void invalidIntegrand() throws CancelException
+    {
+        final DoubleExponentialQuadrature q = new DoubleExponentialQuadrature(new Integrand()
+        {
+            @Override
+            public void getValue(double x, CalculatedValue outValue)
+            {
+                outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+            }
+        });
+        assertFalse(q.integrate(0.0, 1.0, ACCURACY));
+    }
+}
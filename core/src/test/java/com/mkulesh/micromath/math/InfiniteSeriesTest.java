@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.math;
+
+import org.apache.commons.math3.util.FastMath;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InfiniteSeriesTest
+{
+    private static final int SIGNIFICANT_DIGITS = 8;
+
+    @Test
+    public void geometricSeries() throws CancelException
+    {
+        final InfiniteSeries series = new InfiniteSeries(new InfiniteSeries.Term()
+        {
+            @Override
+            public void getValue(long idx, CalculatedValue outValue)
+            {
+                outValue.setValue(FastMath.pow(0.5, idx));
+            }
+        });
+        final CalculatedValue v = new CalculatedValue();
+        series.calculate(false, 0, SIGNIFICANT_DIGITS, v);
+        assertEquals(2.0, v.getReal(), 1e-10);
+        assertTrue(series.getTermsCount() < 64);
+        assertTrue(series.getError() < 1e-8);
+    }
+
+    @Test
+    public void slowlyConvergingSeries() throws CancelException
+    {
+        final InfiniteSeries series = new InfiniteSeries(new InfiniteSeries.Term()
+        {
+            @Override
+            public void getValue(long idx, CalculatedValue outValue)
+            {
+                outValue.setValue(1.0 / ((double) idx * (double) idx));
+            }
+        });
+        final CalculatedValue v = new CalculatedValue();
+        series.calculate(false, 1, SIGNIFICANT_DIGITS, v);
+        // the direct summation of 1/n^2 would need about 10^8 terms for this accuracy
+        assertEquals(FastMath.PI * FastMath.PI / 6.0, v.getReal(), 1e-7);
+        assertTrue(series.getTermsCount() < InfiniteSeries.MAX_TERMS_COUNT);
+    }
+
+    @Test
+    public void complexSeries() throws CancelException
+    {
+        final CalculatedValue q = new CalculatedValue(CalculatedValue.ValueType.COMPLEX, 0.0, 0.5);
+        final InfiniteSeries series = new InfiniteSeries(new InfiniteSeries.Term()
+        {
+            @Override
+            public void getValue(long idx, CalculatedValue outValue)
+            {
+                outValue.setValue(1.0);
+                for (long i = 0; i < idx; i++)
+                {
+                    outValue.multiply(outValue, q);
+                }
+            }
+        });
+        final CalculatedValue v = new CalculatedValue();
+        series.calculate(false, 0, SIGNIFICANT_DIGITS, v);
+        // 1 / (1 - i/2) = 0.8 + 0.4i
+        assertEquals(0.8, v.getReal(), 1e-10);
+        assertEquals(0.4, v.getImaginary(), 1e-10);
+    }
+
+    @Test
+    public void wallisProduct() throws CancelException
+    {
+        final InfiniteSeries series = new InfiniteSeries(new InfiniteSeries.Term()
+        {
+            @Override
+            public void getValue(long idx, CalculatedValue outValue)
+            {
+                final double n2 = 4.0 * idx * idx;
+                outValue.setValue(1.0 - 1.0 / n2);
+            }
+        });
+        final CalculatedValue v = new CalculatedValue();
+        series.calculate(true, 1, SIGNIFICANT_DIGITS, v);
+        assertEquals(2.0 / FastMath.PI, v.getReal(), 1e-7);
+    }
+
+    @Test
+    public void zeroLimit() throws CancelException
+    {
+        final InfiniteSeries series = new InfiniteSeries(new InfiniteSeries.Term()
+        {
+            @Override
+            public void getValue(long idx, CalculatedValue outValue)
+            {
+                outValue.setValue(FastMath.pow(0.5, idx) - 1.5 * FastMath.pow(0.25, idx));
+            }
+        });
+        final CalculatedValue v = new CalculatedValue();
+        series.calculate(false, 0, SIGNIFICANT_DIGITS, v);
+        // 2 - 1.5 * 4/3 = 0
+        assertEquals(0.0, v.getReal(), 1e-12);
+        assertTrue(series.getTermsCount() < 64);
+    }
+
+    @Test
+    public void divergentSeries() throws CancelException
+    {
+        final InfiniteSeries inverseRoot = new InfiniteSeries(new InfiniteSeries.Term()
+        {
+            @Override
+            public void getValue(long idx, CalculatedValue outValue)
+            {
+                outValue.setValue(1.0 / FastMath.sqrt(idx));
+            }
+        });
+        final CalculatedValue v = new CalculatedValue();
+        inverseRoot.calculate(false, 1, SIGNIFICANT_DIGITS, v);
+        assertTrue(v.isNaN());
+        assertTrue(inverseRoot.getTermsCount() < InfiniteSeries.MAX_TERMS_COUNT);
+
+        final InfiniteSeries alternating = new InfiniteSeries(new InfiniteSeries.Term()
+        {
+            @Override
+            public void getValue(long idx, CalculatedValue outValue)
+            {
+                outValue.setValue((idx % 2 == 0) ? 1.0 : -1.0);
+            }
+        });
+        alternating.calculate(false, 1, SIGNIFICANT_DIGITS, v);
+        assertTrue(v.isNaN());
+        alternating.calculate(true, 1, SIGNIFICANT_DIGITS, v);
+        assertTrue(v.isNaN());
+    }
+
+    @Test
+    public void invalidTerm() throws CancelException
+    {
+        final InfiniteSeries series = new InfiniteSeries(new InfiniteSeries.Term()
+        {
+            @Override
+            public void getValue(long idx, CalculatedValue outValue)
+            {
+                if (idx == 10)
+                {
+                    outValue.invalidate(CalculatedValue.ErrorType.NOT_A_NUMBER);
+                }
+                else
+                {
+                    outValue.setValue(1.0 / (idx + 1));
+                }
+            }
+        });
+        final CalculatedValue v = new CalculatedValue();
+        series.calculate(false, 0, SIGNIFICANT_DIGITS, v);
+        assertTrue(v.isNaN());
+        assertEquals(11, series.getTermsCount());
+    }
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * microMathematics Plus - Extended visual calculator
+ * *****************************************************************************
+ * Copyright (C) 2014-2017 Mikhail Kulesh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.mkulesh.micromath.math;
+
+import com.mkulesh.micromath.math.AdaptiveCubature.Integrand;
+
+import org.apache.commons.math3.util.FastMath;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class QuasiMonteCarloTest
+{
+    private static final int DIM = 6;
+    private static final double[] MIN = new double[DIM], MAX = new double[DIM];
+
+    static
+    {
+        for (int i = 0; i < DIM; i++)
+        {
+            MIN[i] = 0.0;
+            MAX[i] = 1.0;
+        }
+    }
+
+    private static QuasiMonteCarlo newProduct()
+    {
+        return new QuasiMonteCarlo(DIM, new Integrand()
+        {
+            @Override
+            public void getValue(double[] x, CalculatedValue outValue)
+            {
+                double v = 1.0;
+                for (double xi : x)
+                {
+                    v *= 2.0 * xi;
+                }
+                outValue.setValue(v);
+            }
+        });
+    }
+
+    @Test
+    public void productIn6D() throws CancelException
+    {
+        final QuasiMonteCarlo q = newProduct();
+        final double accuracy = 1e-3;
+        assertTrue(q.integrate(MIN, MAX, accuracy, 10000000));
+        assertTrue(q.getError() <= accuracy);
+        // the standard error is a statistical estimate: allow several of them
+        assertEquals(1.0, q.getReal(), 5.0 * accuracy);
+        assertFalse(q.isComplexDetected());
+    }
+
+    @Test
+    public void resultIsReproducible() throws CancelException
+    {
+        final QuasiMonteCarlo q1 = newProduct(), q2 = newProduct();
+        assertTrue(q1.integrate(MIN, MAX, 1e-3, 100000));
+        assertTrue(q2.integrate(MIN, MAX, 1e-3, 100000));
+        assertEquals(q1.getReal(), q2.getReal(), 0.0);
+        assertEquals(q1.getEvaluations(), q2.getEvaluations());
+        // the second call of the same object gives the same value
+        assertTrue(q1.integrate(MIN, MAX, 1e-3, 100000));
+        assertEquals(q2.getReal(), q1.getReal(), 0.0);
+    }
+
+    @Test
+    public void evaluationsAreLimited() throws CancelException
+    {
+        final QuasiMonteCarlo q = newProduct();
+        final long maxEvaluations = 5000;
+        assertTrue(q.integrate(MIN, MAX, 1e-12, maxEvaluations));
+        assertTrue(q.getEvaluations() <= maxEvaluations);
+        assertTrue(q.getError() > 1e-12);
+        assertFalse(Double.isNaN(q.getReal()));
+    }
+
+    @Test
+    public void scaledDomain() throws CancelException
+    {
+        final QuasiMonteCarlo q = new QuasiMonteCarlo(2, new Integrand()
+        {
+            @Override
+            public void getValue(double[] x, CalculatedValue outValue)
+            {
+                outValue.setComplexValue(FastMath.sin(x[0]), x[1]);
+            }
+        });
+        assertTrue(q.integrate(new double[]{ 0.0, -1.0 }, new double[]{ FastMath.PI, 3.0 }, 1e-4, 10000000));
+        assertTrue(q.isComplexDetected());
+        // ∫∫ sin(x) = 2 * 4, ∫∫ y = π * (9 - 1) / 2
+        assertEquals(8.0, q.getReal(), 1e-3);
+        assertEquals(4.0 * FastMath.PI, q.getImaginary(), 1e-3);
+    }
+
+    @Test
+    public void invalidIntegrand() throws CancelException
+    {
+        final QuasiMonteCarlo q = new QuasiMonteCarlo(2, new Integrand()
+        {
+            @Override
+            public void getValue(double[] x, CalculatedValue outValue)
+            {
+                outValue.setValue(x[0] > 0.9 ? Double.NaN : 1.0);
+            }
+        });
+        assertFalse(q.integrate(new double[]{ 0.0, 0.0 }, new double[]{ 1.0, 1.0 }, 1e-6, 100000));
+    }
+
+    @Test
+    public void sampleBudgetIsLimited()
+    {
+        assertEquals(16, QuasiMonteCarlo.limitSampleBudget(16));
+        assertEquals(QuasiMonteCarlo.MIN_SAMPLE_BUDGET, QuasiMonteCarlo.limitSampleBudget(-5));
+        assertEquals(QuasiMonteCarlo.MAX_SAMPLE_BUDGET, QuasiMonteCarlo.limitSampleBudget(64));
+    }
+}